@@ -0,0 +1,36 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// The entry point of benchmarks.jar: runs the benchmarks as org.openjdk.jmh.Main does, always with the GC
+// profiler, so that each result has its allocation rate (gc.alloc.rate.norm, bytes per operation) next to
+// its throughput. The benchmarks are in this package, as the simulators are not public.
+//
+//      java -jar benchmarks.jar                    all of them
+//      java -jar benchmarks.jar DFABenchmark -p states=1024 -f 1
+public final class Benchmarks
+{
+    private Benchmarks()
+    {
+    }
+
+    public static void main(String args[]) throws Exception
+    {
+        ArrayList<String> list = new ArrayList<String>(Arrays.asList(args));
+        boolean profiled = false;
+        for(int i=0; i+1<list.size(); i++) profiled |= (list.get(i).equals("-prof") && list.get(i+1).startsWith("gc"));
+
+        if(!profiled)
+        {
+            list.add("-prof");
+            list.add("gc");
+        }
+        org.openjdk.jmh.Main.main(list.toArray(new String[list.size()]));
+    }
+}
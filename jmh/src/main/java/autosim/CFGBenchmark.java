@@ -0,0 +1,48 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// CFG.run(), the breadth-first search for a derivation, on a^n b^n
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CFGBenchmark
+{
+    @Param({"8", "32", "128"})
+    public int length;
+
+    private Machine cfg;
+    private String input;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        input = Descriptions.repeat('a', length/2) + Descriptions.repeat('b', length/2);
+        cfg = Descriptions.load("cfg", Descriptions.CFG_ANBN, input);
+    }
+
+    @Benchmark
+    public Result run()
+    {
+        return cfg.run(input);
+    }
+}
@@ -0,0 +1,55 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// DFA.run() over random input, which (see Descriptions) it always reads to the end
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DFABenchmark
+{
+    @Param({"16", "1024", "16384"})
+    public int states;
+
+    @Param({"2", "26"})
+    public int alphabet;
+
+    @Param({"1000", "1000000"})
+    public int length;
+
+    private Machine dfa;
+    private String input;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        input = Descriptions.input(length, alphabet);
+        dfa = Descriptions.load("dfa", Descriptions.dfa(states, alphabet), input);
+    }
+
+    @Benchmark
+    public Result run()
+    {
+        return dfa.run(input);
+    }
+}
@@ -0,0 +1,190 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+// Descriptions of machines of a given size, written to temporary files for the benchmarks to load, and
+// inputs for them. The machines are random, but seeded, so that every run measures the same machine.
+//
+// The finite automata have states q0..q{n-1}, of which only q0 is final, and a rule from each state to
+// the next on the first symbol, so that every state can reach every other: no run can then stop early
+// (see DFA.getStopStates()), and a benchmark always runs over the whole of its input.
+final class Descriptions
+{
+    public static final long SEED = 20260101L;
+    private static final String SYMBOLS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+    // a^n b^n, deterministically
+    public static final String DPDA_ANBN =
+        "Q={q0,q1}\nF={q1}\nE={a,b}\nT={a,z}\nZ=z\nI=q0\n" +
+        "d(q0,a,z)=(q0,az)\nd(q0,a,a)=(q0,aa)\nd(q0,b,a)=(q1,~)\nd(q1,b,a)=(q1,~)\n";
+
+    // more b's than a's, the example npda1.npda: a^n b^(n+1) is read to the end without a choice to make
+    public static final String NPDA_COUNTING =
+        "Q={q0,q2}\nF={q2}\nE={a,b}\nT={a,b,z}\nZ=z\nI=q0\n" +
+        "d(q0,a,z)={(q0,az)}\nd(q0,a,a)={(q0,aa)}\nd(q0,a,b)={(q0,~)}\n" +
+        "d(q0,b,z)={(q0,bz)}\nd(q0,b,a)={(q0,~)}\nd(q0,b,b)={(q0,bb)}\nd(q0,~,b)={(q2,~)}\n";
+
+    // guesses the middle of an even palindrome at every symbol; its final state cannot be reached, so
+    // that every choice is searched before the input is rejected
+    public static final String NPDA_PALINDROME =
+        "Q={q0,q1,qf}\nF={qf}\nE={a,b}\nT={a,b,z}\nZ=z\nI=q0\n" +
+        "d(q0,a,z)={(q0,az)}\nd(q0,a,a)={(q0,aa)}\nd(q0,a,b)={(q0,ab)}\n" +
+        "d(q0,b,z)={(q0,bz)}\nd(q0,b,a)={(q0,ba)}\nd(q0,b,b)={(q0,bb)}\n" +
+        "d(q0,~,z)={(q1,z)}\nd(q0,~,a)={(q1,a)}\nd(q0,~,b)={(q1,b)}\n" +
+        "d(q1,a,a)={(q1,~)}\nd(q1,b,b)={(q1,~)}\n";
+
+    // a^n b^n, the example stm1.stm: crosses the tape once for each pair of symbols
+    public static final String STM_ANBN =
+        "Q={q0,q1,q2,q3,q4}\nF={q4}\nE={a,b}\nT={a,b,x,y,$}\nZ=$\nI=q0\n" +
+        "d(q0,a)=(q1,x,R)\nd(q1,a)=(q1,a,R)\nd(q1,y)=(q1,y,R)\nd(q1,b)=(q2,y,L)\n" +
+        "d(q2,y)=(q2,y,L)\nd(q2,a)=(q2,a,L)\nd(q2,x)=(q0,x,R)\n" +
+        "d(q0,y)=(q3,y,R)\nd(q3,y)=(q3,y,R)\nd(q3,$)=(q4,$,R)\n";
+
+    // a^n b^n, of which there is a single derivation
+    public static final String CFG_ANBN =
+        "V={S}\nT={a,b}\nS=S\nS -> aSb | ab\n";
+
+    private Descriptions()
+    {
+    }
+
+    // the symbol of the given index in the alphabets of the machines
+    public static char symbol(int j)
+    {
+        return SYMBOLS.charAt(j);
+    }
+
+    // a random string of the first symbolCount symbols
+    public static String input(int length, int symbolCount)
+    {
+        Random r = new Random(SEED);
+        StringBuilder sb = new StringBuilder(length);
+        for(int i=0; i<length; i++) sb.append(symbol(r.nextInt(symbolCount)));
+        return sb.toString();
+    }
+
+    public static String repeat(char c, int count)
+    {
+        StringBuilder sb = new StringBuilder(count);
+        for(int i=0; i<count; i++) sb.append(c);
+        return sb.toString();
+    }
+
+    // a complete DFA
+    public static String dfa(int stateCount, int symbolCount)
+    {
+        Random r = new Random(SEED);
+        StringBuilder sb = header(stateCount, symbolCount);
+        sb.append("F={q0}\n");
+        for(int i=0; i<stateCount; i++)
+        {
+            sb.append("d(q").append(i).append(',').append(symbol(0)).append(")=q").append((i+1) % stateCount).append('\n');
+            for(int j=1; j<symbolCount; j++) sb.append("d(q").append(i).append(',').append(symbol(j)).append(")=q").append(r.nextInt(stateCount)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // an NFA with `branching` targets (at most) on each state and symbol; q0 is never a target of its
+    // own on the first symbol, so that it is not a sink either
+    public static String nfa(int stateCount, int symbolCount, int branching)
+    {
+        Random r = new Random(SEED);
+        StringBuilder sb = header(stateCount, symbolCount);
+        sb.append("F={q0}\n");
+        for(int i=0; i<stateCount; i++)
+        {
+            for(int j=0; j<symbolCount; j++)
+            {
+                sb.append("d(q").append(i).append(',').append(symbol(j)).append(")={ ");
+                int first = (j==0 ? (i+1) % stateCount : r.nextInt(stateCount));
+                sb.append('q').append(first);
+                for(int k=1; k<branching; k++)
+                {
+                    int t = r.nextInt(stateCount);
+                    if(t==first || (i==0 && j==0 && t==0)) continue;
+                    sb.append(", q").append(t);
+                }
+                sb.append(" }\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    // a Moore machine writing 0 or 1 in each state
+    public static String moore(int stateCount, int symbolCount)
+    {
+        Random r = new Random(SEED);
+        StringBuilder sb = header(stateCount, symbolCount);
+        sb.append("T={0,1}\n");
+        for(int i=0; i<stateCount; i++)
+        {
+            for(int j=0; j<symbolCount; j++) sb.append("d(q").append(i).append(',').append(symbol(j)).append(")=q").append(next(r, i, j, stateCount)).append('\n');
+            sb.append("o(q").append(i).append(")=").append(r.nextInt(2)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // a Mealy machine writing 0 or 1 on each rule
+    public static String mealy(int stateCount, int symbolCount)
+    {
+        Random r = new Random(SEED);
+        StringBuilder sb = header(stateCount, symbolCount);
+        sb.append("T={0,1}\n");
+        for(int i=0; i<stateCount; i++)
+        {
+            for(int j=0; j<symbolCount; j++) sb.append("d(q").append(i).append(',').append(symbol(j)).append(")=(q").append(next(r, i, j, stateCount)).append(',').append(r.nextInt(2)).append(")\n");
+        }
+        return sb.toString();
+    }
+
+    // the machine of the description, prepared and checked to run on the input without an error
+    public static Machine load(String type, String text, String input) throws IOException
+    {
+        Machine m = Automata.load(type, write(text, type));
+        if(m==null) throw new IllegalStateException("The " + type + " cannot be loaded");
+
+        Result r = m.run(input);
+        if(r.getStatus()==Result.Status.ERROR) throw new IllegalStateException(r.getMessage());
+        return m;
+    }
+
+    // writes the description to a temporary file, deleted when the JVM exits, and returns its name
+    public static String write(String text, String extension) throws IOException
+    {
+        File f = File.createTempFile("autosim", "." + extension);
+        f.deleteOnExit();
+        Writer w = new OutputStreamWriter(new FileOutputStream(f), "UTF-8");
+        try {
+            w.write(text);
+        } finally {
+            w.close();
+        }
+        return f.getPath();
+    }
+
+    private static StringBuilder header(int stateCount, int symbolCount)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Q={");
+        for(int i=0; i<stateCount; i++) sb.append(i > 0 ? "," : "").append('q').append(i);
+        sb.append("}\nE={");
+        for(int j=0; j<symbolCount; j++) sb.append(j > 0 ? "," : "").append(symbol(j));
+        sb.append("}\nI=q0\n");
+        return sb;
+    }
+
+    private static int next(Random r, int state, int symbol, int stateCount)
+    {
+        return(symbol==0 ? (state+1) % stateCount : r.nextInt(stateCount));
+    }
+}
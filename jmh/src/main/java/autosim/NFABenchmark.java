@@ -0,0 +1,59 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// NFA.run() over random input; branching is the number of targets of each rule, so that the set of
+// active states grows with it (up to all the states)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NFABenchmark
+{
+    @Param({"16", "256"})
+    public int states;
+
+    @Param({"2", "26"})
+    public int alphabet;
+
+    @Param({"1", "2", "4"})
+    public int branching;
+
+    @Param({"1000", "10000"})
+    public int length;
+
+    private Machine nfa;
+    private String input;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        input = Descriptions.input(length, alphabet);
+        nfa = Descriptions.load("nfa", Descriptions.nfa(states, alphabet, branching), input);
+    }
+
+    @Benchmark
+    public Result run()
+    {
+        return nfa.run(input);
+    }
+}
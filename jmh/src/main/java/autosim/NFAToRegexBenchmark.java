@@ -0,0 +1,77 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// NFAToRegexConverter.simulate() on a random NFA, in each order of elimination (see -order). The converter
+// reads its description each time it is run, and prints the regex, which goes nowhere while measuring.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NFAToRegexBenchmark
+{
+    @Param({"4", "8", "12"})
+    public int states;
+
+    @Param({"1", "2"})
+    public int branching;
+
+    @Param({"none", "degree", "weight", "static"})
+    public String order;
+
+    private String descFile;
+    private EliminationOrder elimination;
+    private PrintStream out;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        descFile = Descriptions.write(Descriptions.nfa(states, 2, branching), "nfa");
+        elimination = EliminationOrder.fromString(order);
+
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) { }
+
+            @Override
+            public void write(byte b[], int off, int len) { }
+        }));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public NFAToRegexConverter convert()
+    {
+        NFAToRegexConverter c = new NFAToRegexConverter(descFile, null, false, elimination);
+        c.simulate();
+        return c;
+    }
+}
@@ -0,0 +1,68 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// DPDA.run() and NPDAParser.run() (which searches the choices of the NPDA with an NPDAClone for each) on
+// inputs of the given length: a^n b^n for the DPDA, a^n b^(n+1) for an NPDA without choices to make, and
+// a^n for one which has a choice at every symbol and searches them all (O(n^2) clones)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PDABenchmark
+{
+    @Param({"16", "64", "256"})
+    public int length;
+
+    private Machine dpda, counting, palindrome;
+    private String balanced, unbalanced, uniform;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        int n = length / 2;
+        balanced = Descriptions.repeat('a', n) + Descriptions.repeat('b', n);
+        unbalanced = Descriptions.repeat('a', n) + Descriptions.repeat('b', n+1);
+        uniform = Descriptions.repeat('a', length);
+
+        dpda = Descriptions.load("dpda", Descriptions.DPDA_ANBN, balanced);
+        counting = Descriptions.load("npda", Descriptions.NPDA_COUNTING, unbalanced);
+        palindrome = Descriptions.load("npda", Descriptions.NPDA_PALINDROME, uniform);
+    }
+
+    @Benchmark
+    public Result dpda()
+    {
+        return dpda.run(balanced);
+    }
+
+    @Benchmark
+    public Result npdaDeterministic()
+    {
+        return counting.run(unbalanced);
+    }
+
+    @Benchmark
+    public Result npdaSearch()
+    {
+        return palindrome.run(uniform);
+    }
+}
@@ -0,0 +1,48 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// STM.run() on a^n b^n, which takes O(n^2) moves of the head
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class STMBenchmark
+{
+    @Param({"16", "128", "1024"})
+    public int length;
+
+    private Machine stm;
+    private String input;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        input = Descriptions.repeat('a', length/2) + Descriptions.repeat('b', length/2);
+        stm = Descriptions.load("stm", Descriptions.STM_ANBN, input);
+    }
+
+    @Benchmark
+    public Result run()
+    {
+        return stm.run(input);
+    }
+}
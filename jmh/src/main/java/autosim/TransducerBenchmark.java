@@ -0,0 +1,62 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// MooreMachine.run() and MealyMachine.run() over random input, which write a symbol of output per symbol
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransducerBenchmark
+{
+    @Param({"16", "1024"})
+    public int states;
+
+    @Param({"2", "26"})
+    public int alphabet;
+
+    @Param({"1000", "100000"})
+    public int length;
+
+    private Machine moore, mealy;
+    private String input;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        input = Descriptions.input(length, alphabet);
+        moore = Descriptions.load("moore", Descriptions.moore(states, alphabet), input);
+        mealy = Descriptions.load("mealy", Descriptions.mealy(states, alphabet), input);
+    }
+
+    @Benchmark
+    public Result moore()
+    {
+        return moore.run(input);
+    }
+
+    @Benchmark
+    public Result mealy()
+    {
+        return mealy.run(input);
+    }
+}
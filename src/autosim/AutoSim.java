@@ -5,6 +5,15 @@
 
 package autosim;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 public class AutoSim
 {
     protected static final char LAMBDA_CHAR = '~';
@@ -17,16 +26,44 @@ public class AutoSim
     protected static final char NULL_PRINT_CHAR = 'Φ';
     protected static final char ARROW_PRINT_CHAR = '→';
     
+    // the encoding of the description files and the input files (and the standard input with '-data -'),
+    // read and written alike whatever the platform's default
+    protected static final Charset FILE_CHARSET = StandardCharsets.UTF_8;
+    
     public static void main(String args[])
     {
         // Arguments:
         // -<automaton> -desc <desc-file> -input <string> [-trace]
         // OR
-        // -<automaton> -desc <desc-file> -data <input-file> [-trace]
+        // -<automaton> -desc <desc-file> -data <input-file> [-trace]        (- reads the standard input)
 	// OR
 	// -<automaton> -desc <desc-file> -output <output-file> [-trace]
 	// OR
-	// -nfa-to-regex -desc <desc-file> [-trace]
+	// -<dfa|nfa|npda> -desc <desc-file> -compile <image-file>           (the image can then be given to -desc)
+	// OR
+	// -<automaton> -desc <desc-file> -input <string> -trace-file <trace-file>     (records the steps in binary)
+	// OR
+	// -<automaton> -desc <desc-file> -show-trace <trace-file>          (prints the recorded steps as -trace does)
+	//
+	// -trace-last <N>, -trace-every <k> and -trace-only <state>[,<symbol>] trace only part of the steps (see TraceLog)
+	// OR
+	// -dfa -desc <desc-file> -data <input-file> [-threads <n>]         (large files are split over <n> threads)
+	// OR
+	// -<dfa|moore|mealy> -desc <desc-file> -data <input-file> -table-file <file>     (the table is kept in the mapped file, see OffHeapTable)
+	// OR
+	// -dfa -desc <desc-file> -data <input-file> -codegen               (the DFA is run as a Java class generated for it, see GeneratedDFA)
+	// OR
+	// -<dfa|nfa> -desc <desc-file> -data <input-file> -scan <all|longest|prefix>     (prints where the matches are, see MatchScanner)
+	// OR
+	// -serve [-port <port>] [-cache <MB>] [-trace]                      (see AutoSimServer for the requests)
+	// OR
+	// -nfa-to-regex -desc <desc-file> [-order <strategy>] [-output <output-file>] [-trace]
+	// OR
+	// -<dfa-and|dfa-or|dfa-minus|dfa-xor> -desc <desc-file> -with <desc-file> -output <output-file>      (see DFAProduct)
+	// OR
+	// -equiv -desc <desc-file> -with <desc-file>                        (DFAs, or NFAs named *.nfa; see Equivalence)
+	// OR
+	// -regex -desc <regex-file> -input <string> [-trace]
 	
 	/*
 	args = new String[] {
@@ -52,7 +89,22 @@ public class AutoSim
 	String input = null;
 	String inputFile = null;
 	String outputFile = null;
+	String eliminationOrder = null;
+	String imageFile = null;
+	String port = null;
+	String cacheSize = null;
+	String traceFile = null;
+	String shownTrace = null;
+	String traceLast = null;
+	String traceEvery = null;
+	String traceOnly = null;
+	String threads = null;
+	String scanMode = null;
+	String secondDescFile = null;
+	String tableFile = null;
+	boolean codegen = false;
 	boolean trace = false;
+	TraceLog.Sampling sampling = null;     // the part of the trace to keep, null for all of it
 	
         for(int i=1; i<args.length; i++)
 	{
@@ -61,21 +113,123 @@ public class AutoSim
 	    if(args[i].equals("-input")) input = args[++i];
 	    if(args[i].equals("-data")) inputFile = args[++i];
 	    if(args[i].equals("-output")) outputFile = args[++i];
+	    if(args[i].equals("-order")) eliminationOrder = args[++i];
+	    if(args[i].equals("-compile")) imageFile = args[++i];
+	    if(args[i].equals("-port")) port = args[++i];
+	    if(args[i].equals("-cache")) cacheSize = args[++i];
 	    if(args[i].equals("-trace")) trace = true;
+	    if(args[i].equals("-trace-file")) traceFile = args[++i];
+	    if(args[i].equals("-show-trace")) shownTrace = args[++i];
+	    if(args[i].equals("-trace-last")) traceLast = args[++i];
+	    if(args[i].equals("-trace-every")) traceEvery = args[++i];
+	    if(args[i].equals("-trace-only")) traceOnly = args[++i];
+	    if(args[i].equals("-threads")) threads = args[++i];
+	    if(args[i].equals("-scan")) scanMode = args[++i];
+	    if(args[i].equals("-with")) secondDescFile = args[++i];
+	    if(args[i].equals("-table-file")) tableFile = args[++i];
+	    if(args[i].equals("-codegen")) codegen = true;
 	}
 	
-	if(input==null && inputFile!=null) input = FileIO.readAll(inputFile);
-	if(input!=null && input.equals(String.valueOf(LAMBDA_CHAR))) input="";
+	// the sampled modes trace only part of the steps, which is what makes tracing long inputs practical
+	if(traceLast!=null || traceEvery!=null || traceOnly!=null)
+	{
+	    int last = 0, every = 1;
+	    try {
+		if(traceLast!=null) last = Integer.parseInt(traceLast);
+		if(traceEvery!=null) every = Integer.parseInt(traceEvery);
+	    } catch(NumberFormatException e) {
+		last = -1;
+	    }
+	    
+	    if(last < 0 || every < 1)
+	    {
+		System.out.println("ERROR: Invalid number of steps to trace");
+		return;
+	    }
+	    sampling = TraceLog.Sampling.parse(last, every, traceOnly);
+	    if(sampling==null) return;
+	    trace = true;
+	}
+	
+	// the machines pull their input in chunks: from the -input string, from a file mapped into memory, or from the standard input with '-data -'
+	InputSource source = null;
+	if(input!=null)
+	{
+	    source = new StringInput(input.equals(String.valueOf(LAMBDA_CHAR)) ? "" : input);
+	} else if(inputFile!=null && inputFile.equals("-")) {
+	    source = new ReaderInput(new InputStreamReader(System.in, FILE_CHARSET));
+	} else if(inputFile!=null) {
+	    try {
+		source = new MappedInput(inputFile);
+	    } catch(IOException e) {
+		System.out.println("ERROR: Cannot open file '" + inputFile + "'.");
+		return;
+	    }
+	}
         
+	if(automataType.equals("serve"))
+	{
+	    long cacheBytes = AutoSimServer.DEFAULT_CACHE_SIZE;
+	    try {
+		if(cacheSize!=null) cacheBytes = Long.parseLong(cacheSize) << 20;
+	    } catch(NumberFormatException e) {
+		System.out.println("ERROR: Invalid cache size '" + cacheSize + "'");
+		return;
+	    }
+	    
+	    AutoSimServer server = new AutoSimServer(trace, cacheBytes);
+	    if(port==null)
+	    {
+		server.serve();
+	    } else {
+		try {
+		    server.serve(Integer.parseInt(port));
+		} catch(NumberFormatException e) {
+		    System.out.println("ERROR: Invalid port '" + port + "'");
+		}
+	    }
+	    return;
+	}
+	
 	if(descFile == null)
 	{
 	    printUsage();
 	    return;
 	}
 	
-	if(input==null)
+	// images written by -compile hold a parsed DFA, NFA or NPDA
+	boolean canCompile = automataType.equals("dfa") || automataType.equals("nfa") || automataType.equals("npda");
+	if(imageFile!=null && !canCompile)
 	{
-	    String requiresInput[] = { "dfa", "nfa", "dpda", "npda", "stm", "cfg", "moore", "mealy" };
+	    System.out.println("ERROR: Only DFA, NFA and NPDA can be compiled");
+	    printUsage();
+	    return;
+	}
+	
+	// the tables which can be kept outside the heap are those of the machines with a dense table of states
+	if(tableFile!=null && !(automataType.equals("dfa") || automataType.equals("moore") || automataType.equals("mealy")))
+	{
+	    System.out.println("ERROR: Only DFA, Moore and Mealy machines can keep their table in a file");
+	    printUsage();
+	    return;
+	}
+	
+	if(codegen && !automataType.equals("dfa"))
+	{
+	    System.out.println("ERROR: Only a DFA can be run as generated code");
+	    printUsage();
+	    return;
+	}
+	
+	if(!canCompile && AutomatonImage.isImage(descFile))
+	{
+	    System.out.println("ERROR: '" + descFile + "' is a compiled automaton, which can only be run with -dfa, -nfa or -npda");
+	    return;
+	}
+	
+	if(source==null && imageFile==null && shownTrace==null)
+	{
+	    String requiresInput[] = { "dfa", "nfa", "dpda", "npda", "stm", "cfg", "moore", "mealy", "regex" };
 	    for(int i=0; i<requiresInput.length; i++)
 	    {
 		if(automataType.equals(requiresInput[i]))
@@ -87,9 +241,17 @@ public class AutoSim
 	    }
 	}
 	
+	EliminationOrder order = EliminationOrder.fromString(eliminationOrder);
+	if(order==null)
+	{
+	    System.out.println("ERROR: Unknown elimination order '" + eliminationOrder + "'");
+	    printUsage();
+	    return;
+	}
+	
 	if(outputFile==null)
 	{
-	    String requiresOutput[] = { "nfa-to-dfa", "clean-cfg", "cfg-to-cnf", "cfg-to-gnf", "cfg-to-npda" };
+	    String requiresOutput[] = { "nfa-to-dfa", "clean-cfg", "cfg-to-cnf", "cfg-to-gnf", "cfg-to-npda", "regex-to-nfa", "dfa-and", "dfa-or", "dfa-minus", "dfa-xor" };
 	    for(int i=0; i<requiresOutput.length; i++)
 	    {
 		if(automataType.equals(requiresOutput[i]))
@@ -102,25 +264,89 @@ public class AutoSim
 	}
 	
         printVersion();
-        if(automataType.equals("dfa")) 
+	
+	// the trace is written out through a buffer, rather than flushed line by line
+	if(trace || shownTrace!=null || scanMode!=null) System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false));
+	
+        if(imageFile!=null)
+        {
+            if(automataType.equals("dfa")) (new DFA(descFile, source, trace)).compile(imageFile);
+            else if(automataType.equals("nfa")) (new NFA(descFile, source, trace)).compile(imageFile);
+            else (new NPDAParser(descFile, null, trace)).compile(imageFile);
+        } else if(traceFile!=null || shownTrace!=null) {
+            traceMachine(automataType, descFile, source, traceFile, shownTrace);
+        } else if(scanMode!=null) {
+            scanText(automataType, descFile, source, scanMode);
+        } else if(automataType.equals("dfa")) 
         {            
-            (new DFA(descFile, input, trace)).simulate();
+            DFA dfa = new DFA(descFile, source, trace);
+            if(threads!=null)
+            {
+                try {
+                    dfa.setThreads(Math.max(1, Integer.parseInt(threads)));
+                } catch(NumberFormatException e) {
+                    System.out.println("ERROR: Invalid number of threads '" + threads + "'");
+                    return;
+                }
+            }
+            dfa.setTableFile(tableFile);
+            dfa.setCodegen(codegen);
+            dfa.setTraceSampling(sampling);
+            dfa.simulate();
         } else if(automataType.equals("nfa")) {            
-            (new NFA(descFile, input, trace)).simulate();
+            NFA nfa = new NFA(descFile, source, trace);
+            nfa.setTraceSampling(sampling);
+            nfa.simulate();
         } else if(automataType.equals("dpda")) {            
-            (new DPDA(descFile, input, trace)).simulate();
+            DPDA dpda = new DPDA(descFile, source, trace);
+            dpda.setTraceSampling(sampling);
+            dpda.simulate();
         } else if(automataType.equals("npda")) {            
-            (new NPDAParser(descFile, input, trace)).simulate();
+            NPDAParser npda = new NPDAParser(descFile, source.readAll(), trace);
+            npda.setTraceSampling(sampling);
+            npda.simulate();
         } else if(automataType.equals("stm")) {            
-            (new STM(descFile, input, trace)).simulate();
+            STM stm = new STM(descFile, source.readAll(), trace);
+            stm.setTraceSampling(sampling);
+            stm.simulate();
         } else if(automataType.equals("cfg")) {            
-            (new CFG(descFile, input, trace)).simulate();
+            CFG cfg = new CFG(descFile, source.readAll(), trace);
+            cfg.setTraceSampling(sampling);
+            cfg.simulate();
         } else if(automataType.equals("moore")) {            
-            (new MooreMachine(descFile, input, trace)).simulate();
+            MooreMachine moore = new MooreMachine(descFile, source, trace);
+            moore.setTableFile(tableFile);
+            moore.setTraceSampling(sampling);
+            moore.simulate();
         } else if(automataType.equals("mealy")) {            
-            (new MealyMachine(descFile, input, trace)).simulate();
+            MealyMachine mealy = new MealyMachine(descFile, source, trace);
+            mealy.setTableFile(tableFile);
+            mealy.setTraceSampling(sampling);
+            mealy.simulate();
         } else if(automataType.equals("nfa-to-regex")) {            
-            (new NFAToRegexConverter(descFile, trace)).simulate();
+            (new NFAToRegexConverter(descFile, outputFile, trace, order)).simulate();
+        } else if(automataType.equals("regex")) {            
+            RegexMatcher regex = new RegexMatcher(descFile, source, trace);
+            regex.setTraceSampling(sampling);
+            regex.simulate();
+        } else if(automataType.equals("regex-to-nfa")) {            
+            (new RegexToNFAConverter(descFile, outputFile, trace)).simulate();
+        } else if(DFAProduct.Operation.fromString(automataType)!=null) {
+            if(secondDescFile==null)
+            {
+                System.out.println("ERROR: Second DFA (-with) required");
+                printUsage();
+                return;
+            }
+            (new DFAProduct(descFile, secondDescFile, outputFile, DFAProduct.Operation.fromString(automataType))).simulate();
+        } else if(automataType.equals("equiv")) {
+            if(secondDescFile==null)
+            {
+                System.out.println("ERROR: Second automaton (-with) required");
+                printUsage();
+                return;
+            }
+            (new Equivalence(descFile, secondDescFile)).simulate();
         } else if(automataType.equals("nfa-to-dfa")) {            
             //(new NFAToDFAConverter(descFile, outputFile, trace)).simulate();
 	} else if(automataType.equals("clean-cfg")) {            
@@ -132,6 +358,65 @@ public class AutoSim
         } else if(automataType.equals("cfg-to-npda")) {            
             //(new CFGToNPDAConverter(descFile, outputFile, trace)).simulate();
         }
+	
+	System.out.flush();
+    }
+    
+    // runs the machine recording its steps to a trace file, or prints the steps recorded in one
+    private static void traceMachine(String automataType, String descFile, InputSource source, String traceFile, String shownTrace)
+    {
+	Machine m = Automata.create(automataType, descFile, false);
+	if(m==null) return;
+	
+	if(!(m instanceof Traceable))
+	{
+	    System.out.println("ERROR: Only DFA, DPDA, STM, Moore and Mealy machines can be traced to a file");
+	    return;
+	}
+	
+	Traceable t = (Traceable)m;
+	if(!t.prepare()) return;
+	
+	if(shownTrace!=null)
+	{
+	    TraceReader reader = TraceReader.open(shownTrace, automataType);
+	    if(reader==null) return;
+	    t.renderTrace(reader, System.out);
+	    reader.close();
+	    return;
+	}
+	
+	TraceWriter writer = TraceWriter.create(traceFile);
+	if(writer==null) return;
+	
+	t.traceTo(writer);
+	t.run(source);
+	if(writer.close()) System.out.println(writer.getStepCount() + " step(s) recorded to '" + traceFile + "'");
+    }
+    
+    // prints where the parts of the input accepted by the machine are
+    private static void scanText(String automataType, String descFile, InputSource source, String scanMode)
+    {
+	MatchScanner.Mode mode = MatchScanner.Mode.fromString(scanMode);
+	if(mode==null)
+	{
+	    System.out.println("ERROR: Unknown scan mode '" + scanMode + "'");
+	    printUsage();
+	    return;
+	}
+	
+	Machine m = Automata.create(automataType, descFile, false);
+	if(m==null) return;
+	
+	if(!(m instanceof Scannable))
+	{
+	    System.out.println("ERROR: Only DFA and NFA can scan an input");
+	    return;
+	}
+	
+	if(!m.prepare()) return;
+	long matches = ((Scannable)m).getScanner().scan(source, mode, System.out);
+	System.out.println(matches + " match(es) found");
     }
     
     private static void printVersion()
@@ -144,14 +429,51 @@ public class AutoSim
         printVersion();
         System.out.println("java -jar autosim.jar <OPTIONS>");
         System.out.println("\nOPTIONS:\n-<automaton> -desc <desc-file> -input <string> [-trace]");
-        System.out.println("OR:\n-<automaton> -desc <desc-file> -data <input-file> [-trace] [-output <output-file>]\nOR:\n-help\n");
-        System.out.println("<automaton> = dfa/nfa/dpda/npda/stm/cfg/moore/mealy/clean-cfg");
-	System.out.println("              nfa-to-regex/nfa-to-dfa/cfg-to-cnf/cfg-to-gnf/cfg-to-npda");
+        System.out.println("OR:\n-<automaton> -desc <desc-file> -data <input-file> [-trace] [-output <output-file>]");
+        System.out.println("OR:\n-dfa -desc <desc-file> -data <input-file> [-threads <n>]");
+        System.out.println("OR:\n-<dfa/moore/mealy> -desc <desc-file> -data <input-file> -table-file <file>");
+        System.out.println("OR:\n-dfa -desc <desc-file> -data <input-file> -codegen");
+        System.out.println("OR:\n-<dfa/nfa> -desc <desc-file> -data <input-file> -scan <all/longest/prefix>");
+        System.out.println("OR:\n-<dfa/nfa/npda> -desc <desc-file> -compile <image-file>");
+        System.out.println("OR:\n-<dfa-and/dfa-or/dfa-minus/dfa-xor> -desc <desc-file> -with <desc-file> -output <output-file>");
+        System.out.println("OR:\n-equiv -desc <desc-file> -with <desc-file>");
+        System.out.println("OR:\n-<dfa/dpda/stm/moore/mealy> -desc <desc-file> -input <string> -trace-file <trace-file>");
+        System.out.println("OR:\n-<dfa/dpda/stm/moore/mealy> -desc <desc-file> -show-trace <trace-file>");
+        System.out.println("OR:\n-serve [-port <port>] [-cache <MB>] [-trace]\nOR:\n-help\n");
+        System.out.println("<automaton> = dfa/nfa/dpda/npda/stm/cfg/moore/mealy/regex/clean-cfg");
+	System.out.println("              nfa-to-regex/regex-to-nfa/nfa-to-dfa/cfg-to-cnf/cfg-to-gnf/cfg-to-npda");
+	System.out.println("              dfa-and/dfa-or/dfa-minus/dfa-xor (the product of the <desc-file> and -with DFAs)");
 	System.out.println("<desc-file> = filename where the automaton is described");
         System.out.println("<string> = the input string to the automaton");
-        System.out.println("<input-file> = specify the file to read the input from (rather than console)");
+        System.out.println("<input-file> = specify the file to read the input from (rather than console), or - for the standard input");
+	System.out.println("              (description files, input files and the standard input are read as UTF-8)");
+	System.out.println("<image-file> = file to write the parsed automaton to, in a binary form which loads faster; it can be given as the <desc-file>");
 	System.out.println("<output-file> = specify the file to write the output to (required for all cleaning and conversion operations)");
-	System.out.println("-trace = [OPTIONAL] to show the progress of the machine through the states");        
+	System.out.println("-serve = keep running, and answer requests read from the standard input (or from 127.0.0.1:<port>):");
+	System.out.println("              load <automaton> <desc-file>, run <automaton> <desc-file> <string>,");
+	System.out.println("              batch <automaton> <desc-file> (then one <string> per line, ending with a line '.'),");
+	System.out.println("              unload [<desc-file>], stats, quit; each reply ends with a line '.'");
+	System.out.println("-threads <n> = [OPTIONAL] threads to run a DFA on input files of 16 MB or more (default: all the processors)");
+	System.out.println("-table-file <file> = [OPTIONAL] keep the table of a DFA, Moore or Mealy machine outside the heap, in the file mapped");
+	System.out.println("              into memory, which processes running the same machine share (very large tables are kept outside");
+	System.out.println("              the heap in any case)");
+	System.out.println("-codegen = [OPTIONAL] run a DFA (of up to " + GeneratedDFA.MAX_RULES + " rules) as a Java class generated and compiled for it, rather than from");
+	System.out.println("              its table; faster on inputs which stay in a few states for a while, slower on random ones");
+	System.out.println("-scan <mode> = prints where the parts of the input accepted by a DFA or NFA end (all), start and end (longest, leftmost and not overlapping), or the accepted prefixes (prefix)");
+	System.out.println("-cache <MB> = [OPTIONAL] approximate memory for the machines kept by -serve (default 256)");
+	System.out.println("-with <desc-file> = the second DFA of dfa-and/dfa-or/dfa-minus/dfa-xor, which build a DFA accepting what both,");
+	System.out.println("              either, only the first, or exactly one of them accept");
+	System.out.println("-equiv = checks whether the <desc-file> and -with automata accept the same strings, and if not prints a");
+	System.out.println("              shortest string accepted by only one of them; each is a DFA, or an NFA if its name ends in .nfa");
+	System.out.println("-order <strategy> = [OPTIONAL] order in which nfa-to-regex eliminates states:");
+	System.out.println("              none (default)/degree (min in x out-degree)/weight (min growth of regex)/");
+	System.out.println("              static (min fill-in, ties broken by degree, computed upfront)");
+	System.out.println("-trace = [OPTIONAL] to show the progress of the machine through the states");
+	System.out.println("-trace-last <N> = [OPTIONAL] trace only the last N steps, shown if the input is rejected or fails");
+	System.out.println("-trace-every <k> = [OPTIONAL] trace only every k-th step");
+	System.out.println("-trace-only <state>[,<symbol>] = [OPTIONAL] trace only the steps out of <state> (* for any) on <symbol>");
+	System.out.println("-trace-file <trace-file> = record the progress of the machine in a compact binary form instead,");
+	System.out.println("              which -show-trace prints as -trace would, given the same <desc-file>");        
         System.out.println("Use -help to view the manual on how to write automata descriptions.\n");        
     }
     
@@ -181,5 +503,7 @@ public class AutoSim
 	System.out.println("Mealy machine:\td(q0, b) = (q1, 1)");
 	System.out.println("o - output-function of Mealy machine, e.g.: o(q0)=1");
         System.out.println("CFG Rule syntax:\tS -> aSb | ~");
+	System.out.println("Regex (regex/regex-to-nfa): the whole file is one expression, e.g. (a+b)*ab~");
+	System.out.println("\t+ is union, * is closure and ~ is the empty string, as in the output of nfa-to-regex");
     }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+
+// Resident mode (-serve): keeps the JVM running and answers requests, one per line, read from the
+// standard input or from clients connecting to a local port. Machines are parsed once and kept in a
+// MachineCache, and parsed again when the file is modified or after they were evicted.
+//
+//      load <automaton> <desc-file>
+//      run <automaton> <desc-file> <input>         (~ is the empty string)
+//      batch <automaton> <desc-file>               followed by one input per line, up to a line with a single '.'
+//      unload [<desc-file>]                        (without a file, all the machines are unloaded)
+//      stats                                       (size of the cache, hits, misses and evictions)
+//      quit
+//
+// The reply to a request is what the command line would have printed, followed by a line with a single '.'.
+class AutoSimServer
+{
+    private static final String END_OF_REPLY = ".";
+    public static final long DEFAULT_CACHE_SIZE = 256L << 20;
+
+    private final boolean trace;
+    private final MachineCache cache;
+
+    public AutoSimServer(boolean trace, long cacheSize)
+    {
+        this.trace = trace;
+        this.cache = new MachineCache(cacheSize);
+    }
+
+    // serves the requests on the standard input, replying on the standard output
+    public void serve()
+    {
+        System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false));
+        try {
+            serve(new BufferedReader(new InputStreamReader(System.in)));
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot read the request.");
+        }
+        System.out.flush();
+    }
+
+    // serves the clients of a local port, one connection after the other, until a client sends 'quit'
+    public void serve(int port)
+    {
+        ServerSocket server;
+        try {
+            server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot listen on port " + port + ".");
+            return;
+        }
+
+        System.out.println("AutoSim serving on 127.0.0.1:" + port);
+        PrintStream console = System.out;
+        boolean running = true;
+
+        while(running)
+        {
+            try {
+                Socket client = server.accept();
+                try {
+                    // the machines print their results, so their output is sent to the client while it is served
+                    System.setOut(new PrintStream(new BufferedOutputStream(client.getOutputStream(), 1 << 16), false));
+                    running = serve(new BufferedReader(new InputStreamReader(client.getInputStream())));
+                    System.out.flush();
+                } finally {
+                    System.setOut(console);
+                    client.close();
+                }
+            } catch(IOException e) {
+                System.out.println("ERROR: Connection failed: " + e.getMessage());
+            }
+        }
+
+        try {
+            server.close();
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot close port " + port + ".");
+        }
+    }
+
+    // answers the requests until the end of the stream, returns false if it ended with 'quit'
+    private boolean serve(BufferedReader in) throws IOException
+    {
+        for(String line; (line=in.readLine())!=null; )
+        {
+            line = line.trim();
+            if(line.length()==0) continue;
+
+            String request[] = line.split("\\s+", 4);
+            String command = request[0].toLowerCase();
+
+            if(command.equals("quit"))
+            {
+                System.out.println(END_OF_REPLY);
+                return false;
+            } else if(command.equals("load") && request.length==3) {
+                if(getMachine(request[1], request[2])!=null) System.out.println("Loaded " + request[1] + " '" + request[2] + "'");
+            } else if(command.equals("run") && request.length==4) {
+                Machine m = getMachine(request[1], request[2]);
+                if(m!=null)
+                {
+                    m.run(toInput(request[3]));
+                    cache.update(request[1].toLowerCase(), request[2]);
+                }
+            } else if(command.equals("batch") && request.length==3) {
+                runBatch(request[1], request[2], in);
+            } else if(command.equals("unload") && request.length<=2) {
+                int count = (request.length==2 ? cache.remove(request[1]) : cache.clear());
+                System.out.println("Unloaded " + count + " machine(s)");
+            } else if(command.equals("stats") && request.length==1) {
+                System.out.println(cache.getStatistics());
+            } else {
+                System.out.println("ERROR: Invalid request '" + line + "'");
+            }
+
+            System.out.println(END_OF_REPLY);
+            System.out.flush();
+        }
+        return true;
+    }
+
+    private void runBatch(String type, String descFile, BufferedReader in) throws IOException
+    {
+        // the inputs are read in full first, so that they are consumed even if the machine fails to load
+        ArrayList<String> inputs = new ArrayList<String>();
+        for(String line; (line=in.readLine())!=null && !line.trim().equals(END_OF_REPLY); ) inputs.add(line.trim());
+
+        Machine m = getMachine(type, descFile);
+        if(m==null) return;
+
+        if(m instanceof DFA && !trace)
+        {
+            // without a trace only the outcomes are printed, so the inputs can be run interleaved
+            CharSequence x[] = new CharSequence[inputs.size()];
+            for(int i=0; i<x.length; i++) x[i] = toString(inputs.get(i));
+
+            Result results[] = ((DFA)m).runBatch(x);
+            for(int i=0; i<x.length; i++)
+            {
+                System.out.println("Input " + (i+1) + ": " + inputs.get(i));
+                System.out.println(results[i].getMessage());
+            }
+        } else {
+            for(int i=0; i<inputs.size(); i++)
+            {
+                System.out.println("Input " + (i+1) + ": " + inputs.get(i));
+                m.run(toInput(inputs.get(i)));
+            }
+        }
+        cache.update(type.toLowerCase(), descFile);
+    }
+
+    private static InputSource toInput(String input)
+    {
+        return new StringInput(toString(input));
+    }
+
+    // the input of a request, where ~ stands for the empty string
+    private static String toString(String input)
+    {
+        return(input.equals(String.valueOf(AutoSim.LAMBDA_CHAR)) ? "" : input);
+    }
+
+    // the cached machine for the description, parsing it if it is not loaded or was modified since; null if it cannot be run
+    private Machine getMachine(String type, String descFile)
+    {
+        type = type.toLowerCase();
+        Machine m = cache.get(type, descFile);
+        if(m!=null) return m;
+
+        m = Automata.create(type, descFile, trace);
+        if(m==null || !m.prepare()) return null;
+
+        cache.put(type, descFile, m);
+        return m;
+    }
+}
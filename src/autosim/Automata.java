@@ -0,0 +1,99 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+
+// Creates machines by the name of their automaton, as on the command line (dfa, nfa, dpda, ...)
+public final class Automata
+{
+    private Automata()
+    {
+    }
+
+    // parses the description into an automaton for use from other JVM code; nothing is printed: the errors
+    // of the description are thrown, and its warnings kept with the automaton
+    public static CompiledAutomaton compile(String type, String descFile) throws AutomatonException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream messages;
+        try {
+            messages = new PrintStream(bytes, true, AutoSim.FILE_CHARSET.name());
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Machine m = create(type, descFile, false, messages);
+        boolean prepared = (m!=null && m.prepare());
+        messages.flush();
+
+        // each message begins with ERROR or WARNING, and may go on over the following lines
+        ArrayList<String> errors = new ArrayList<String>(), warnings = new ArrayList<String>();
+        ArrayList<String> last = warnings;
+        String text = new String(bytes.toByteArray(), AutoSim.FILE_CHARSET).replace("\r\n", "\n");
+        for(String line: text.split("\n"))
+        {
+            if(line.length()==0) continue;
+            if(line.startsWith("ERROR")) last = errors;
+            else if(line.startsWith("WARNING")) last = warnings;
+            else if(!last.isEmpty())
+            {
+                last.set(last.size()-1, last.get(last.size()-1) + "\n" + line);
+                continue;
+            }
+            last.add(line);
+        }
+
+        if(!prepared) throw new AutomatonException(errors);
+        return new CompiledAutomaton(type.toLowerCase(), m, warnings);
+    }
+
+    // parses the description, printing any errors as the command line does; returns null if it cannot be run
+    static Machine load(String type, String descFile)
+    {
+        Machine m = create(type, descFile, false);
+        return(m!=null && m.prepare() ? m : null);
+    }
+
+    // the machine for the description, not yet prepared; null (with a message) if it cannot be created
+    static Machine create(String type, String descFile, boolean trace)
+    {
+        return create(type, descFile, trace, System.out);
+    }
+
+    // the same, with the errors, and those of prepare(), printed to 'messages'
+    private static Machine create(String type, String descFile, boolean trace, PrintStream messages)
+    {
+        type = type.toLowerCase();
+
+        boolean canLoadImage = type.equals("dfa") || type.equals("nfa") || type.equals("npda");
+        if(!canLoadImage && AutomatonImage.isImage(descFile))
+        {
+            messages.println("ERROR: '" + descFile + "' is a compiled automaton, which can only be run with -dfa, -nfa or -npda");
+            return null;
+        }
+
+        Machine m;
+        if(type.equals("dfa")) m = new DFA(descFile, null, trace);
+        else if(type.equals("nfa")) m = new NFA(descFile, null, trace);
+        else if(type.equals("dpda")) m = new DPDA(descFile, null, trace);
+        else if(type.equals("npda")) m = new NPDAParser(descFile, null, trace);
+        else if(type.equals("stm")) m = new STM(descFile, null, trace);
+        else if(type.equals("cfg")) m = new CFG(descFile, null, trace);
+        else if(type.equals("moore")) m = new MooreMachine(descFile, null, trace);
+        else if(type.equals("mealy")) m = new MealyMachine(descFile, null, trace);
+        else if(type.equals("regex")) m = new RegexMatcher(descFile, null, trace);
+        else {
+            messages.println("ERROR: Unknown automaton '" + type + "'");
+            return null;
+        }
+        m.setMessages(messages);
+        return m;
+    }
+}
@@ -0,0 +1,18 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// A prepared machine, for use from other JVM code. run() only reads the tables built when the
+// description was parsed, and keeps the state of the run to itself, so that it can be called any
+// number of times and from any number of threads at once. It prints nothing: the outcome, and any
+// error in the input, is returned as a Result.
+//
+//      Automaton a = Automata.compile("dfa", "examples/dfa1.dfa");     // throws AutomatonException
+//      if(a.run("abab").isAccepted()) ...
+public interface Automaton
+{
+    Result run(CharSequence input);
+}
@@ -0,0 +1,24 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.Collections;
+import java.util.List;
+
+// The errors which kept a description from being compiled (see Automata.compile), as the command line
+// would print them, e.g. "ERROR in Line 3: State 'q9' not found"
+public class AutomatonException extends Exception
+{
+    private final List<String> errors;
+
+    public AutomatonException(List<String> errors)
+    {
+        super(errors.isEmpty() ? "ERROR: Invalid description" : errors.get(0));
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public List<String> getErrors() { return errors; }
+}
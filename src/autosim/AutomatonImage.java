@@ -0,0 +1,71 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Binary image of a parsed automaton, written by -compile and accepted by -desc in place of the
+// description file. Layout (big-endian):
+//
+//      magic "ASIM" | version (int) | kind (byte) | body | CRC-32 of everything before it (int)
+//
+// The body is written by the machine itself: its interned states and symbols in ID order,
+// followed by the transitions as arrays of IDs, so that loading needs no parsing or lookups.
+class AutomatonImage
+{
+    public static final int MAGIC = 0x4153494D;         // "ASIM"
+    public static final int VERSION = 1;
+
+    public static final byte DFA = 'D';
+    public static final byte NFA = 'N';
+    public static final byte NPDA = 'P';
+
+    // true if the file starts with the magic bytes of an image, rather than being a description
+    public static boolean isImage(String fileName)
+    {
+        try {
+            FileInputStream in = new FileInputStream(fileName);
+            try {
+                byte b[] = new byte[4];
+                return(in.read(b)==4 && ByteBuffer.wrap(b).getInt()==MAGIC);
+            } finally {
+                in.close();
+            }
+        } catch(IOException e) {
+            return false;       // reported when the file is opened as a description
+        }
+    }
+
+    // the kind of machine held by the image, 0 if the file is not an image
+    public static byte getKind(String fileName)
+    {
+        try {
+            FileInputStream in = new FileInputStream(fileName);
+            try {
+                byte b[] = new byte[9];
+                if(in.read(b)!=9 || ByteBuffer.wrap(b).getInt()!=MAGIC) return 0;
+                return b[8];
+            } finally {
+                in.close();
+            }
+        } catch(IOException e) {
+            return 0;
+        }
+    }
+
+    public static String kindName(byte kind)
+    {
+        switch(kind)
+        {
+            case DFA: return "DFA";
+            case NFA: return "NFA";
+            case NPDA: return "NPDA";
+            default: return "unknown";
+        }
+    }
+}
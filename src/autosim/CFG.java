@@ -5,12 +5,12 @@
 
 package autosim;
 
+import java.io.PrintStream;
 import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.regex.Pattern;
 
 class Rule
 {
@@ -51,11 +51,12 @@ class DTreeNode
     }    
 }
 
-class CFG
+class CFG implements Machine
 {
     private final String descFile;
     private final String input;
-    private FileIO fio;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
@@ -68,16 +69,17 @@ class CFG
     private Rule[][] groupedRules;
     private char symbols[];
     private HashMap<Character,Integer> symbolMap;
+    private long footprint;             // computed once, by getMemoryFootprint()
+    private TraceLog.Sampling sampling; // the part of the derivation to print, null for all of it
     
     public CFG(String descFile, String input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         this.hasSpec = new boolean[3];       // V, T, S
-        this.fio = new FileIO();
-        this.fio.openFile(this.descFile);
         
         this.variables = new HashSet<Character>();
         this.terminals = new HashSet<Character>();
@@ -97,54 +99,54 @@ class CFG
     
     private boolean parseCFG()
     {
-	String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            if(s==null || s.length()==0) continue;
-            
-	    if(s.startsWith("V={"))
+	    char x = lexer.getHead(), sep = lexer.getSeparator();
+	    
+	    if(x=='V' && sep=='=')
 	    {
-		if(!parseVariables(s)) return false;
-	    } else if(s.startsWith("T={")) {
-		if(!parseTerminals(s)) return false;
-	    } else if(s.startsWith("S=")) {
-		if(!parseStartingSymbol(s)) return false;
+		if(!parseVariables()) return false;
+	    } else if(x=='T' && sep=='=') {
+		if(!parseTerminals()) return false;
+	    } else if(x=='S' && sep=='=') {
+		if(!parseStartingSymbol()) return false;
 	    } else {
-		if(!parseRule(s)) return false;
+		if(!parseRule()) return false;
 	    }
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
-	if(s.indexOf("->") != 1)
+	if(lexer.getHead()==0 || !lexer.isProduction())
 	{
-	    System.out.println("P:ERROR in Line "+fio.getLineNumber()+": Correct syntax: S -> ... | ...");
+	    messages.println("P:ERROR in Line "+lexer.getLineNumber()+": Correct syntax: S -> ... | ...");
 	    return false;
 	}
 	
-	char left = s.charAt(0);
+	char left = lexer.getHead();
 	
 	if(!variables.contains(left))
 	{
-	    System.out.println("P:ERROR in Line "+fio.getLineNumber()+": Expected variable on the left side of the production rule");
+	    messages.println("P:ERROR in Line "+lexer.getLineNumber()+": Expected variable on the left side of the production rule");
 	    return false;
 	}
-	String right[] = s.substring(3).split(Pattern.quote("|"));
+	int count = lexer.getGroupCount();
+	while(count > 1 && lexer.getFieldLength(count-1,0)==0) count--;		// as with split(), trailing empty alternatives are dropped
 	
-	for(int i=0; i<right.length; i++)
+	for(int i=0; i<count; i++)
 	{
-	    String rightRule = right[i];
+	    String rightRule = lexer.getField(i,0);
 	    int n = rightRule.length();
 	    for(int j=0; j<n; j++)
 	    {
 		char c = rightRule.charAt(j);
 		if(c!=AutoSim.LAMBDA_CHAR && !terminals.contains(c) && !variables.contains(c))
 		{
-		    System.out.println("P:ERROR in Line "+fio.getLineNumber()+": Expected variable/terminal combination as part of rule: " + left + " -> " + rightRule);
+		    messages.println("P:ERROR in Line "+lexer.getLineNumber()+": Expected variable/terminal combination as part of rule: " + left + " -> " + rightRule);
 		    return false;
 		}
 	    }
@@ -155,68 +157,65 @@ class CFG
 	return true;
     }
     
-    private boolean parseVariables(String s)
+    private boolean parseVariables()
     {
-	if(!s.startsWith("V={") || !s.endsWith("}"))
+	if(lexer.getShape()!='{')
 	{
-	    System.out.println("V:ERROR in Line "+fio.getLineNumber()+": Correct syntax: V={ S, A, B, ... }");
+	    messages.println("V:ERROR in Line "+lexer.getLineNumber()+": Correct syntax: V={ S, A, B, ... }");
 	    return false;
 	}
 	
-	String vars[] = s.substring(3, s.length()-1).split(",");
-	for(int i=0; i<vars.length; i++)
+	for(int i=0; i<lexer.getGroupCount(); i++)
 	{
-	    if(vars[i].length() > 1)
+	    if(lexer.getFieldLength(i,0) > 1)
 	    {
-		System.out.println("V:ERROR in Line "+fio.getLineNumber()+": Variables must contain a single character");
+		messages.println("V:ERROR in Line "+lexer.getLineNumber()+": Variables must contain a single character");
 		return false;
 	    }
-	    variables.add(vars[i].charAt(0));
+	    variables.add(lexer.getFieldChar(i,0));
 	}
 	
 	hasSpec[0] = true;
 	return true;
     }
     
-    private boolean parseTerminals(String s)
+    private boolean parseTerminals()
     {
-	if(!s.startsWith("T={") || !s.endsWith("}"))
+	if(lexer.getShape()!='{')
 	{
-	    System.out.println("T:ERROR in Line "+fio.getLineNumber()+": Correct syntax: T={ a, b, ... }");
+	    messages.println("T:ERROR in Line "+lexer.getLineNumber()+": Correct syntax: T={ a, b, ... }");
 	    return false;
 	}
 	
-	String term[] = s.substring(3, s.length()-1).split(",");
-	for(int i=0; i<term.length; i++)
+	for(int i=0; i<lexer.getGroupCount(); i++)
 	{
-	    if(term[i].length() > 1)
+	    if(lexer.getFieldLength(i,0) > 1)
 	    {
-		System.out.println("T:ERROR in Line "+fio.getLineNumber()+": Terminals must contain a single character");
+		messages.println("T:ERROR in Line "+lexer.getLineNumber()+": Terminals must contain a single character");
 		return false;
 	    }
-	    terminals.add(term[i].charAt(0));
+	    terminals.add(lexer.getFieldChar(i,0));
 	}
 	
 	hasSpec[1] = true;
 	return true;
     }
     
-    private boolean parseStartingSymbol(String s)
+    private boolean parseStartingSymbol()
     {
-	if(!s.startsWith("S="))
+	if(lexer.getShape()!=0)
 	{
-	    System.out.println("SS:ERROR in Line "+fio.getLineNumber()+": Correct syntax: S=S");
+	    messages.println("SS:ERROR in Line "+lexer.getLineNumber()+": Correct syntax: S=S");
 	    return false;
 	}
 	
-	String x = s.substring(2);
-	if(x.length() > 1)
+	if(lexer.getFieldLength(0,0) > 1)
 	{
-	    System.out.println("SS:ERROR in Line "+fio.getLineNumber()+": Starting symbol must be a variable");
+	    messages.println("SS:ERROR in Line "+lexer.getLineNumber()+": Starting symbol must be a variable");
 	    return false;
 	}
 	
-	startingSymbol = x.charAt(0);
+	startingSymbol = lexer.getFieldChar(0,0);
 	
 	hasSpec[2] = true;
 	return true;
@@ -226,10 +225,55 @@ class CFG
     
     public void simulate()
     {
-	if(!fio.isReadyForReading()) return;
-        if(!parseCFG()) return;
-        if(!verifyInput()) return;
+	if(prepare()) run(new StringInput(input));
+    }
+    
+    // parses and checks the grammar, after which it can be run on any number of inputs
+    public boolean prepare()
+    {
+	// the description is read once, and only the tables built from it are kept
+	lexer = new DescLexer(messages);
+	boolean parsed = (lexer.openFile(descFile) && parseCFG());
+	lexer = null;
+	if(!parsed) return false;
+        if(!verifyGrammar()) return false;
 	groupRules();
+	return true;
+    }
+    
+    public void run(InputSource source)
+    {
+	Result r = derive(source.readAll());
+	System.out.println(r.getMessage());
+	if(!trace || !r.isAccepted()) return;
+	
+	// the derivation is the trace of a grammar, and is sampled as the steps of the machines are
+	System.out.println("Derivation:");
+	TraceLog log = TraceLog.begin(System.out, true, sampling, null, null);
+	String steps[] = r.getOutput().split("\n");
+	for(int i=0; i<steps.length; i++) if(log.wants()) log.println(steps[i]);
+	log.finish(r);
+    }
+    
+    public Result run(CharSequence input)
+    {
+	return derive(input.toString());
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+	this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+	this.messages = messages;
+    }
+    
+    // searches for a derivation of the input, which is returned as the output
+    private Result derive(String input)
+    {
+	if(!verifyInput(input)) return Result.error("ERROR: input contains 1 or more non-terminals");
 	
 	DTreeNode root = new DTreeNode(null, ""+startingSymbol, null);
 	ArrayDeque<DTreeNode> q = new ArrayDeque<DTreeNode>();
@@ -242,7 +286,7 @@ class CFG
 	{
 	    DTreeNode node = q.pollFirst();
 	    
-	    if(expand(node))
+	    if(expand(node, input))
 	    {
 		int n = node.children.size();
 		for(int i=0; i<n; i++)
@@ -261,31 +305,38 @@ class CFG
 	
 	if(!found)
 	{
-	    System.out.println("The given string does not belong to the language specified by the given CFG");
-	    return;
-	} else {
-	    System.out.println("The string can be derived from the given CFG");
+	    return new Result(Result.Status.REJECTED, null, null, "The given string does not belong to the language specified by the given CFG");
 	}
 	
-	if(this.trace)
+	StringBuilder sb = new StringBuilder();
+	printDerivation(sb, correctNode, input.length());
+	return new Result(Result.Status.ACCEPTED, null, sb.toString(), "The string can be derived from the given CFG");
+    }
+    
+    public long getMemoryFootprint()
+    {
+	if(footprint==0)
 	{
-	    System.out.println("Derivation:");
-	    printDerivation(correctNode);
+	    footprint = MachineCache.ofArray(rules.size(), MachineCache.REFERENCE) + MachineCache.ofArray(groupedRules.length, MachineCache.REFERENCE)
+		      + (long)(variables.size() + terminals.size() + symbolMap.size()) * MachineCache.ENTRY;
+	    
+	    for(Rule r: rules) footprint += MachineCache.HEADER + MachineCache.REFERENCE + MachineCache.ofString(r.right.length());
+	    for(int i=0; i<groupedRules.length; i++) footprint += MachineCache.ofArray(groupedRules[i].length, MachineCache.REFERENCE);
 	}
+	return footprint;
     }
     
-    private void printDerivation(DTreeNode node)
+    private void printDerivation(StringBuilder sb, DTreeNode node, int inputLength)
     {
 	if(node==null) return;
 	
-	printDerivation(node.parent);
-	System.out.printf("%-" + (2*input.length()) + "s", node.sentence);
+	printDerivation(sb, node.parent, inputLength);
+	sb.append(String.format("%-" + Math.max(1, 2*inputLength) + "s", node.sentence));
 	if(node.ruleApplied != null)
 	{
-	    System.out.println("\t\tusing: " + node.ruleApplied.toString());
-	} else {
-	    System.out.println();
+	    sb.append("\t\tusing: ").append(node.ruleApplied.toString());
 	}
+	sb.append('\n');
     }
     
     private void groupRules()
@@ -308,21 +359,21 @@ class CFG
 	}
     }
     
-    private boolean verifyInput()
+    private boolean verifyInput(String input)
     {
 	int n = input.length();
 	for(int i=0; i<n; i++)
 	{
-	    if(!terminals.contains(input.charAt(i)))
-	    {
-		System.out.println("ERROR: input contains 1 or more non-terminals");
-		return false;
-	    }
+	    if(!terminals.contains(input.charAt(i))) return false;
 	}
-	
+	return true;
+    }
+    
+    private boolean verifyGrammar()
+    {
 	if(!variables.contains(startingSymbol))
 	{
-	    System.out.println("ERROR: Starting symbol must be a variable!");
+	    messages.println("ERROR: Starting symbol must be a variable!");
 	    return false;
 	}
 	
@@ -331,7 +382,7 @@ class CFG
 	{
 	    if(variables.contains(it.next()))
 	    {
-		System.out.println("ERROR: terminal can not also be a variable!");
+		messages.println("ERROR: terminal can not also be a variable!");
 		return false;
 	    }
 	}
@@ -368,7 +419,7 @@ class CFG
 	return cnt;
     }
     
-    private boolean expand(DTreeNode node)
+    private boolean expand(DTreeNode node, String input)
     {
 	if(node.children != null) return false;   // already expanded
 	if(countOccurrences(node.sentence, variables)==0) return false;	    // no variables to replace
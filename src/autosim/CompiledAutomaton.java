@@ -0,0 +1,34 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.Collections;
+import java.util.List;
+
+// An automaton compiled by Automata.compile(). The description is read once, when it is compiled, and
+// only the tables built from it are kept; nothing about it changes after that, so the same automaton can
+// be run on any number of inputs, from any number of threads at once.
+public final class CompiledAutomaton implements Automaton
+{
+    private final String type;
+    private final Machine machine;
+    private final List<String> warnings;      // e.g. rules missing from a DFA, which only fail the runs that need them
+
+    CompiledAutomaton(String type, Machine machine, List<String> warnings)
+    {
+        this.type = type;
+        this.machine = machine;
+        this.warnings = Collections.unmodifiableList(warnings);
+    }
+
+    public Result run(CharSequence input)
+    {
+        return machine.run(input);
+    }
+
+    public String getType() { return type; }
+    public List<String> getWarnings() { return warnings; }
+}
@@ -5,17 +5,23 @@
 
 package autosim;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.HashSet;
 import java.util.Iterator;
 
-class DFA
+class DFA implements Traceable, Scannable
 {
+    private static final int LANES = 16;        // inputs stepped together by runBatch()
+    
     private final String descFile;
-    private final String input;
-    private FileIO fio;
+    private final InputSource input;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
+    private final boolean compiled;     // descFile is an image written by -compile
     
     private HashSet<String> internalStates;
     private HashSet<String> finalStates;
@@ -24,152 +30,557 @@ class DFA
     
     private String states[];
     private char symbols[];
-    private String table[][];
+    private SymbolTable symbolTable;          // IDs of the states and symbols are their indices in the arrays
+    private RuleTable<String> table;    // the target of each state on each symbol (class, once prepared)
+    private int next[];                 // the table as state IDs, built by prepare() unless it is sparse, see getNextStates()
+    private OffHeapTable offHeap;       // or, for very large tables, the state IDs outside the heap in place of both, see moveOffHeap()
+    private String tableFile;           // the file to map the table to, null to choose by its size
+    private boolean codegen;            // whether to run the DFA as a class of its own, see GeneratedDFA
+    private GeneratedDFA generated;
+    private boolean stop[];             // the states in which a run can stop before the end of its input, null if none, see getStopStates()
+    private TraceLog.Sampling sampling; // the part of the trace of runs on the command line to keep, null for all
+    private TraceWriter traceWriter;    // records the steps of runs on the command line, see -trace-file
+    private int threads;                // for large input files, see ParallelDFA
+    private ParallelDFA parallel;
     
-    public DFA(String descFile, String input, boolean trace)
+    public DFA(String descFile, InputSource input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         hasSpec = new boolean[4];       // Q, E, I(q0), F
-        fio = new FileIO();
-        fio.openFile(this.descFile);
+        compiled = AutomatonImage.isImage(descFile);
         
         internalStates = new HashSet<String>();
         finalStates = new HashSet<String>();
         alphabet = new HashSet<Character>();
         
         table=null;
+        threads = Runtime.getRuntime().availableProcessors();
     }
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
-        if(!parseDFA()) return;
+        if(prepare()) run(input);
+    }
+    
+    // parses the description and checks the table, after which the machine can be run on any number of inputs
+    public boolean prepare()
+    {
+        if(!load()) return false;
         
         if(table==null)
         {
-            System.out.println("ERROR: Incomplete specification of DFA");
-            return;
+            messages.println("ERROR: Incomplete specification of DFA");
+            return false;
         }
         
         if(!isTableComplete())
         {
-            System.out.println("WARNING: Incomplete specification of DFA. One or more rules are undefined.");
+            messages.println("WARNING: Incomplete specification of DFA. One or more rules are undefined.");
         }
         
-        if(!verifyInput())
+        // symbols which every rule treats alike share a column, see SymbolTable
+        table.finish();
+        table.keepColumns(symbolTable.groupSymbols(new RuleTable<?>[] { table }, -1));
+        if(tableFile!=null || (!table.isCompressed() && OffHeapTable.isLarge(states.length, symbolTable.getClassCount())))
         {
-            System.out.println("ERROR: Input string contains symbols not defined in the input alphabet");
-            return;
+            if(!moveOffHeap()) return false;
+        } else if(!table.isCompressed()) {
+            next = getNextStates();
         }
+        stop = getStopStates();
         
-        simulateDFA();
+        if(codegen)
+        {
+            int columns[] = new int[symbols.length];
+            for(int j=0; j<symbols.length; j++) columns[j] = symbolTable.getClassOf(j);
+            generated = GeneratedDFA.create(states.length, symbolTable.getClassCount(), symbols, columns, (next!=null ? next : getNextStates()), stop, messages);
+        }
+        return true;
     }
-        
-    private boolean verifyInput()
+    
+    public void run(InputSource input)
     {
-        int n = input.length();
-        for(int i=0; i<n; i++)
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, states, symbols);
+        TraceLog.end(log, simulateDFA(input, log, traceWriter));
+    }
+    
+    public Result run(CharSequence input)
+    {
+        return simulateDFA(new StringInput(input), null, null);
+    }
+    
+    // runs the inputs LANES at a time, taking one step of each in turn, so that the table lookups of the
+    // different inputs overlap rather than each waiting for the previous one; the results are in input order
+    public Result[] runBatch(CharSequence inputs[])
+    {
+        int n = inputs.length, m = symbolTable.getClassCount();
+        int initial = getIndexOfState(initialState);
+        Result results[] = new Result[n];
+        
+        if(next==null)
+        {
+            // a sparse table, or one outside the heap, has no int table to step through
+            for(int i=0; i<n; i++) results[i] = run(inputs[i]);
+            return results;
+        }
+        
+        String lane[] = new String[LANES];
+        int index[] = new int[LANES], pos[] = new int[LANES], state[] = new int[LANES];
+        int taken = 0, done = 0;
+        
+        for(int l=0; l<LANES; l++)
+        {
+            index[l] = (taken < n ? taken++ : -1);
+            if(index[l]!=-1)
+            {
+                lane[l] = inputs[index[l]].toString();
+                state[l] = initial;
+            }
+        }
+        
+        while(done < n)
         {
-            if(!alphabet.contains(input.charAt(i))) return false;
+            for(int l=0; l<LANES; l++)
+            {
+                if(index[l]==-1) continue;
+                
+                String x = lane[l];
+                int p = pos[l], s = state[l];
+                Result r = null;
+                
+                if(p==x.length())
+                {
+                    r = halt(states[s]);
+                } else if(stop!=null && stop[s]) {
+                    r = (isInAlphabet(x, p) ? stopEarly(s, p) : Result.error("ERROR: Input string contains symbols not defined in the input alphabet"));
+                } else {
+                    char c = x.charAt(p);
+                    int col = getIndexOfSymbol(c);
+                    int t = (col==-1 ? -1 : next[s*m + symbolTable.getClassOf(col)]);
+                    
+                    if(col==-1)
+                        r = Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
+                    else if(t==-1)
+                        r = Result.error("ERROR: no rule defined for δ("+states[s]+","+c+")");
+                    else {
+                        state[l] = t;
+                        pos[l] = p+1;
+                    }
+                }
+                
+                if(r!=null)
+                {
+                    // the lane goes on with the next input
+                    results[index[l]] = r;
+                    done++;
+                    index[l] = (taken < n ? taken++ : -1);
+                    if(index[l]!=-1)
+                    {
+                        lane[l] = inputs[index[l]].toString();
+                        pos[l] = 0;
+                        state[l] = initial;
+                    }
+                }
+            }
         }
+        return results;
+    }
+    
+    // number of threads to run large input files on, 1 to always run sequentially
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+    
+    // the table is kept in the file, mapped into memory, which the processes loading the same machine share (see OffHeapTable)
+    public void setTableFile(String tableFile)
+    {
+        this.tableFile = tableFile;
+    }
+    
+    // the DFA is run by code generated for it rather than from its table, where it is small enough (see GeneratedDFA)
+    public void setCodegen(boolean codegen)
+    {
+        this.codegen = codegen;
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+    
+    public void traceTo(TraceWriter writer)
+    {
+        traceWriter = writer;
+    }
+    
+    public boolean renderTrace(TraceReader reader, PrintStream out)
+    {
+        if(!reader.matches(states.length, symbols.length, 1)) return false;
+        TraceLog log = TraceLog.begin(out, true, null, states, symbols);
+        while(reader.next()) printStep(log, reader.getState(), reader.getSymbol());
         return true;
     }
     
+    public long getMemoryFootprint()
+    {
+        int n1 = states.length;
+        return symbolTable.getMemoryFootprint() + MachineCache.ofArray(n1, MachineCache.REFERENCE) + (table!=null ? table.getMemoryFootprint() : offHeap.getMemoryFootprint())
+             + (long)(internalStates.size() + finalStates.size() + alphabet.size()) * MachineCache.ENTRY
+             + (next==null ? 0 : MachineCache.ofArray(next.length, 4));
+    }
+    
+    // parses the description (or reads the image) and writes it out as an image
+    public void compile(String imageFile)
+    {
+        if(!load()) return;
+        
+        if(table==null)
+        {
+            messages.println("ERROR: Incomplete specification of DFA");
+            return;
+        }
+        
+        if(writeImage(imageFile)) messages.println("DFA with " + states.length + " states compiled to '" + imageFile + "'");
+    }
+    
+    private boolean load()
+    {
+        if(compiled) return readImage();
+        
+        // the description is read once, and only the tables built from it are kept
+        lexer = new DescLexer(messages);
+        boolean parsed = (lexer.openFile(descFile) && parseDFA());
+        lexer = null;
+        return parsed;
+    }
+    
     private boolean isTableComplete()
     {
-        if(table==null) return false;
-        for(int i=0; i<table.length; i++)
+        return(table!=null && table.isComplete());
+    }
+    
+    // the trace and the trace writer are only given on the command line, and are null otherwise
+    private Result simulateDFA(InputSource input, TraceLog log, TraceWriter tw)
+    {
+        if(tw!=null) tw.begin("dfa", states.length, symbols.length, "");
+        
+        if(log==null && tw==null && threads > 1 && next!=null && input instanceof MappedInput && ((MappedInput)input).length() >= ParallelDFA.THRESHOLD)
+        {
+            if(parallel==null) parallel = new ParallelDFA(next, states.length, symbolTable.getClassCount(), getSymbolColumns(), stop);
+            int s = parallel.run((MappedInput)input, getIndexOfState(initialState), threads);
+            if(s!=-1 && (stop==null || !stop[s])) return halt(states[s]);
+            
+            // the input has an error, or enters a state of stop[] somewhere, which is found and reported by running it sequentially
+            ((MappedInput)input).rewind();
+        }
+        
+        if(log==null && tw==null && generated!=null) return runGenerated(input);
+        
+        int row = getIndexOfState(initialState);
+        int position = 0;
+        boolean stop[] = this.stop;
+        
+        char buf[] = new char[input.getChunkSize()];
+        
+        // the input is consumed a chunk at a time, and its symbols are verified as they are read
+        for(int n; (n=input.read(buf))!=-1; )
         {
-            for(int j=0; j<table[i].length; j++)
+            for(int i=0; i<n; i++)
             {
-                if(table[i][j]==null) return false;
+                if(stop!=null && stop[row]) return (isInAlphabet(input, buf, i, n) ? stopEarly(row, position) : Result.error("ERROR: Input string contains symbols not defined in the input alphabet"));
+                
+                char currentSymbol = buf[i];
+                
+                int col = getIndexOfSymbol(currentSymbol);
+                
+                if(col == -1)
+                {
+                    return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
+                }
+                
+                int target = getTarget(row, symbolTable.getClassOf(col));
+                if(target==-1)
+                {
+                    return Result.error("ERROR: no rule defined for δ("+states[row]+","+currentSymbol+")");
+                }
+                
+                if(log!=null)
+                {
+                    if(log.wants(row, col)) printStep(log, row, col);
+                } else if(tw!=null) {
+                    tw.step(row, col, 0, position);
+                }
+                row = target;
+                position++;
             }
         }
-        return true;
+        
+        return halt(states[row]);
     }
     
-    private void simulateDFA()
+    // the run of simulateDFA(), by the generated code
+    private Result runGenerated(InputSource input)
     {
-        int n = input.length();
-        String currentState = initialState;
+        int row = getIndexOfState(initialState);
+        long position = 0;
+        char buf[] = new char[input.getChunkSize()];
         
-        for(int i=0; i<n; i++)
+        for(int n; (n=input.read(buf))!=-1; )
         {
-            char currentSymbol = input.charAt(i);
-            
-            int row = getIndexOfState(currentState);
-            int col = getIndexOfSymbol(currentSymbol);
-            
-            if(col == -1)
+            long r = generated.run(buf, n, row);
+            if(r >= 0)
             {
-                System.out.println("ERROR: undefined symbol '" + currentSymbol + "'");
-                return;
+                row = (int)r;
+                position += n;
+                continue;
             }
             
-            if(table[row][col]==null)
+            // stopped in a state of stop[], or at a symbol outside the alphabet or without a rule
+            r = ~r;
+            row = (int)r;
+            int i = (int)(r >>> 32);
+            if(stop!=null && stop[row]) return (isInAlphabet(input, buf, i, n) ? stopEarly(row, position + i) : Result.error("ERROR: Input string contains symbols not defined in the input alphabet"));
+            
+            char currentSymbol = buf[i];
+            if(getIndexOfSymbol(currentSymbol) == -1)
             {
-                System.out.println("ERROR: no rule defined for δ("+currentState+","+currentSymbol+")");
-                return;
+                return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
             }
-            
-            if(trace) System.out.println("Executing Rule: δ("+currentState+", "+currentSymbol+") = " + table[row][col]);
-            currentState = table[row][col];
+            return Result.error("ERROR: no rule defined for δ("+states[row]+","+currentSymbol+")");
         }
         
+        return halt(states[row]);
+    }
+    
+    private Result halt(String currentState)
+    {
         if(finalStates.contains(currentState))
         {
-            System.out.println("String accepted: DFA halted in state '" + currentState + "'");
+            return new Result(Result.Status.ACCEPTED, currentState, null, "String accepted: DFA halted in state '" + currentState + "'");
         } else {
-            System.out.println("String rejected: DFA halted in state '" + currentState + "'");
+            return new Result(Result.Status.REJECTED, currentState, null, "String rejected: DFA halted in state '" + currentState + "'");
         }
     }
     
+    // the end of a run in a state of stop[], with input left: a final state accepts whatever follows, and any other
+    // rejects it, as long as it is in the alphabet (see isInAlphabet())
+    private Result stopEarly(int row, long position)
+    {
+        String currentState = states[row];
+        if(finalStates.contains(currentState))
+        {
+            return new Result(Result.Status.ACCEPTED, currentState, null, "String accepted: DFA entered state '" + currentState + "' after reading " + position + " symbol(s), from which every string is accepted");
+        } else {
+            return new Result(Result.Status.REJECTED, currentState, null, "String rejected: DFA entered dead state '" + currentState + "' after reading " + position + " symbol(s), from which no final state can be reached");
+        }
+    }
+    
+    // true if the rest of the input, from buf[from] on, is in the alphabet: a run which stops early still reports
+    // a symbol outside it, as a run to the end would
+    private boolean isInAlphabet(InputSource input, char buf[], int from, int n)
+    {
+        for(; n!=-1; from=0, n=input.read(buf))
+        {
+            for(int i=from; i<n; i++) if(getIndexOfSymbol(buf[i])==-1) return false;
+        }
+        return true;
+    }
+    
+    private boolean isInAlphabet(CharSequence x, int from)
+    {
+        for(int i=from; i<x.length(); i++) if(getIndexOfSymbol(x.charAt(i))==-1) return false;
+        return true;
+    }
+    
+    // the states in which the outcome of a run is settled whatever the rest of its (valid) input: the dead states,
+    // from which neither a final state nor a missing rule can be reached, and the accepting sinks, from which
+    // neither a non-final state nor a missing rule can be; a run which could still meet a missing rule has to go
+    // on, to report it. Both are found by searching the rules backwards. A table outside the heap is too large
+    // to reverse, and is taken to have none.
+    private boolean[] getStopStates()
+    {
+        int n = states.length, m = symbolTable.getClassCount();
+        if(table==null) return null;
+        
+        int count = table.getRuleCount();
+        final int from[] = new int[count], to[] = new int[count], ruleCount[] = new int[n];
+        table.visitRules(new RuleTable.Visitor<String>() {
+            int k = 0;
+            public void visit(int row, int column, String target)
+            {
+                from[k] = row;
+                to[k++] = getIndexOfState(target);
+                ruleCount[row]++;
+            }
+        });
+        
+        boolean toLive[] = new boolean[n], toLeave[] = new boolean[n];      // the states which make those that reach them not dead, not sinks
+        for(int i=0; i<n; i++)
+        {
+            boolean missing = (ruleCount[i] < m);       // a run would stop here with an error
+            boolean f = finalStates.contains(states[i]);
+            toLive[i] = (f || missing);
+            toLeave[i] = (!f || missing);
+        }
+        
+        boolean live[] = Reachability.canReach(n, from, to, count, toLive);
+        boolean mayLeave[] = Reachability.canReach(n, from, to, count, toLeave);
+        boolean stop[] = new boolean[n], any = false;
+        for(int i=0; i<n; i++)
+        {
+            stop[i] = (!live[i] || !mayLeave[i]);
+            any |= stop[i];
+        }
+        return(any ? stop : null);
+    }
+    
+    // the table as state IDs: next[state*classCount + class], -1 where there is no rule
+    private int[] getNextStates()
+    {
+        int m = symbolTable.getClassCount();
+        int next[] = new int[states.length * m];
+        for(int i=0; i<states.length; i++)
+        {
+            for(int j=0; j<m; j++) next[i*m + j] = getTarget(i, j);
+        }
+        return next;
+    }
+    
+    // the ID of the state reached from the state on the symbol class, -1 if there is no rule
+    private int getTarget(int state, int column)
+    {
+        if(next!=null) return next[state*symbolTable.getClassCount() + column];
+        if(offHeap!=null) return offHeap.get(state, column);
+        
+        String t = table.get(state, column);
+        return(t==null ? -1 : getIndexOfState(t));
+    }
+    
+    // copies the table outside the heap, as state IDs, and lets go of it
+    private boolean moveOffHeap()
+    {
+        int n = states.length, m = symbolTable.getClassCount();
+        OffHeapTable t;
+        try {
+            t = OffHeapTable.create(n, m, n, tableFile);
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot write to file '" + tableFile + "'.");
+            return false;
+        }
+        
+        for(int i=0; i<n; i++)
+        {
+            for(int j=0; j<m; j++) t.set(i, j, getTarget(i, j));
+        }
+        offHeap = t;
+        table = null;
+        return true;
+    }
+    
+    public MatchScanner getScanner()
+    {
+        int n = states.length, m = symbolTable.getClassCount();
+        final RuleTable<int[]> targets = new RuleTable<int[]>(n, m);
+        if(table!=null)
+        {
+            table.visitRules(new RuleTable.Visitor<String>() {
+                public void visit(int row, int column, String target) { targets.set(row, column, new int[] { getIndexOfState(target) }); }
+            });
+        } else {
+            // a table outside the heap has an entry for every state and symbol anyway
+            for(int i=0; i<n; i++)
+            {
+                for(int j=0; j<m; j++)
+                {
+                    int t = offHeap.get(i, j);
+                    if(t!=-1) targets.set(i, j, new int[] { t });
+                }
+            }
+        }
+        targets.finish();
+        
+        boolean accepting[] = new boolean[states.length];
+        for(String state: finalStates) accepting[getIndexOfState(state)] = true;
+        
+        return new MatchScanner(states.length, symbolTable, targets, new int[] { getIndexOfState(initialState) }, accepting);
+    }
+    
+    // <------------------------- For DFAProduct --------------------------->
+    
+    public int getStateCount() { return states.length; }
+    public char[] getAlphabet() { return symbols.clone(); }
+    public int getInitialStateId() { return getIndexOfState(initialState); }
+    public boolean isFinalState(int state) { return finalStates.contains(states[state]); }
+    
+    // the ID of the state reached on the symbol, -1 if there is no rule or the symbol is not in the alphabet
+    public int getNextState(int state, char symbol)
+    {
+        int col = getIndexOfSymbol(symbol);
+        return(col==-1 ? -1 : getTarget(state, symbolTable.getClassOf(col)));
+    }
+    
+    // the symbol class of each byte of an input file, -1 if it is not in the alphabet
+    private int[] getSymbolColumns()
+    {
+        int columns[] = new int[256];
+        for(int c=0; c<256; c++) columns[c] = symbolTable.getSymbolClass((char)c);
+        return columns;
+    }
+    
+    private void printStep(TraceLog log, int row, int col)
+    {
+        log.println("Executing Rule: δ("+states[row]+", "+symbols[col]+") = " + states[getTarget(row, symbolTable.getClassOf(col))]);
+    }
+    
     private boolean parseDFA()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            if(s==null || s.length()==0) continue;
+            char x = Character.toUpperCase(lexer.getHead()), sep = lexer.getSeparator();
             
-            String x = s.substring(0,2).toUpperCase();
-            
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("F=")) {
-                if(!parseFinalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("D(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='F' && sep=='=') {
+                if(!parseFinalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='D' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
@@ -177,20 +588,19 @@ class DFA
         return true;
     }
         
-    private boolean parseAlphabet(String s)
+    private boolean parseAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) alphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) alphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -198,18 +608,18 @@ class DFA
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[2])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -218,24 +628,26 @@ class DFA
         return true;
     }
         
-    private boolean parseFinalStates(String s)
+    private boolean parseFinalStates()
     {
         if(hasSpec[3])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'F - set of final states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'F - set of final states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) 
+                for(int i=0; i<lexer.getGroupCount(); i++)
                 {
+                    String state = lexer.getField(i,0);
+                    if(state.length()==0 && lexer.getGroupCount()==1) break;        // F = {}, e.g. in the output of DFAProduct
+                    
                     if(!internalStates.contains(state))
                     {
-                        System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + state + "' not found");
+                        messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + state + "' not found");
                         return false;
                     } else {
                         finalStates.add(state);
@@ -248,51 +660,51 @@ class DFA
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int b1 = s.indexOf('('), b3 = s.indexOf(')'), b4 = s.lastIndexOf('='), b2 = s.indexOf(',');
-            if(b1==-1 || b2==-1 || b3==-1 || b4==-1)
+            // d(q0, a) = q1
+            if(!lexer.isWellFormed() || lexer.isProduction() || lexer.getShape()!=0)
             {
                 printRuleSyntax();
                 return false;
             }
             
-            if(!(b1 < b2 && b2 < b3 && b3 < b4 && b3==b2+2))
+            if(lexer.getArgumentCount()!=2 || lexer.getArgumentLength(1)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
             
-            String targetState = s.substring(b4+1);
-            String currentState = s.substring(b1+1,b2);
-            Character currentSymbol = s.charAt(b2+1);
+            String targetState = lexer.getField(0,0);
+            String currentState = lexer.getArgument(0);
+            Character currentSymbol = lexer.getArgumentChar(1);
             
             if(!internalStates.contains(targetState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + targetState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + targetState + "' not found");
                 return false;
             }
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!alphabet.contains(currentSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
                 return false;
             }
             
             int row = getIndexOfState(currentState);
             int col = getIndexOfSymbol(currentSymbol);
-            table[row][col]=targetState;
+            table.set(row, col, targetState);
         }
         
         return true;
@@ -313,30 +725,102 @@ class DFA
         Iterator<Character> it2 = alphabet.iterator();
         while(it2.hasNext()) symbols[++j]=it2.next();  
         
-        table = new String[n1][n2];
+        table = new RuleTable<String>(n1, n2);
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<symbols.length; j++) symbolTable.addSymbol(symbols[j]);
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfSymbol(char symbol)
     {
-        for(int i=0; i<symbols.length; i++)
-        {
-            if(symbol==symbols[i]) return i;
+        return symbolTable.getSymbolId(symbol);
+    }
+        
+    // <------------------------- Compiled image --------------------------->
+    
+    // states, symbols, initial state, final states, then table[i][j] as the ID of the target state (-1 if undefined)
+    private boolean writeImage(String imageFile)
+    {
+        ImageWriter w = new ImageWriter(AutomatonImage.DFA);
+        try {
+            w.writeStrings(states);
+            w.writeChars(symbols);
+            w.writeInt(getIndexOfState(initialState));
+            
+            int f[] = new int[finalStates.size()], k=0;
+            for(String state: finalStates) f[k++] = getIndexOfState(state);
+            w.writeInts(f);
+            
+            int t[] = new int[states.length * symbols.length];
+            for(int i=0; i<states.length; i++)
+            {
+                for(int j=0; j<symbols.length; j++)
+                {
+                    String target = table.get(i, symbolTable.getClassOf(j));
+                    t[i*symbols.length + j] = (target==null ? -1 : getIndexOfState(target));
+                }
+            }
+            w.writeInts(t);
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot write to file '" + imageFile + "'.");
+            return false;
         }
-        return -1;
+        return w.save(imageFile);
     }
+    
+    private boolean readImage()
+    {
+        ImageReader r = ImageReader.open(descFile, AutomatonImage.DFA, messages);
+        if(r==null) return false;
+        
+        try {
+            states = r.readStrings();
+            symbols = r.readChars();
+            initialState = states[r.readInt()];
+            
+            int f[] = r.readInts();
+            for(int k=0; k<f.length; k++) finalStates.add(states[f[k]]);
+            
+            int t[] = r.readInts();
+            if(t.length!=states.length*symbols.length || !r.isAtEnd()) throw new IllegalStateException();
+            
+            table = new RuleTable<String>(states.length, symbols.length);
+            for(int i=0; i<states.length; i++)
+            {
+                for(int j=0; j<symbols.length; j++)
+                {
+                    int target = t[i*symbols.length + j];
+                    if(target!=-1) table.set(i, j, states[target]);
+                }
+            }
+        } catch(RuntimeException e) {       // truncated image, or IDs out of range
+            messages.println("ERROR: '" + descFile + "' is not a valid compiled DFA");
+            return false;
+        }
         
+        symbolTable = new SymbolTable();
+        for(int i=0; i<states.length; i++)
+        {
+            symbolTable.addState(states[i]);
+            internalStates.add(states[i]);
+        }
+        for(int j=0; j<symbols.length; j++)
+        {
+            symbolTable.addSymbol(symbols[j]);
+            alphabet.add(symbols[j]);
+        }
+        return true;
+    }
+    
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = q1");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = q1");
     }
     
     private boolean isSpecReady()
@@ -0,0 +1,216 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+
+// Builds the product of two DFAs, which runs both at once: its states are the pairs (p, q) of a state
+// of each, and it accepts where the pair does, according to the operation:
+//
+//      and     both accept (intersection)          minus   the first accepts, the second does not
+//      or      either accepts (union)              xor     exactly one of them accepts
+//
+// Only the pairs reachable from the initial pair are built, from a worklist; the pairs found so far are
+// kept in an open-addressing hash table, as in SymbolTable. The alphabet is the union of both alphabets,
+// and a DFA which has no rule for a symbol is taken to be stuck (-1) from then on, so that the product
+// has a rule for every symbol. The result is written as a .dfa description, naming pair i as 'qi'.
+class DFAProduct
+{
+    public enum Operation
+    {
+        AND, OR, MINUS, XOR;
+
+        // null if the name is not that of an operation
+        public static Operation fromString(String name)
+        {
+            if(name.equals("dfa-and")) return AND;
+            if(name.equals("dfa-or")) return OR;
+            if(name.equals("dfa-minus")) return MINUS;
+            if(name.equals("dfa-xor")) return XOR;
+            return null;
+        }
+    }
+
+    private final String descFile1, descFile2;
+    private final String outputFile;
+    private final Operation operation;
+
+    private DFA a, b;
+    private char alphabet[];
+
+    // the pairs found so far: pair i is (first[i], second[i]), with -1 for a stuck DFA
+    private int first[], second[];
+    private int pairCount;
+    private int slots[];            // hash table: index+1 of the pair in the slot, 0 if empty
+    private int next[];             // next[pair*alphabet.length + symbol]
+
+    public DFAProduct(String descFile1, String descFile2, String outputFile, Operation operation)
+    {
+        this.descFile1 = descFile1;
+        this.descFile2 = descFile2;
+        this.outputFile = outputFile;
+        this.operation = operation;
+    }
+
+    public void simulate()
+    {
+        a = new DFA(descFile1, null, false);
+        if(!a.prepare()) return;
+        b = new DFA(descFile2, null, false);
+        if(!b.prepare()) return;
+
+        build();
+
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), AutoSim.FILE_CHARSET));
+            writeDFA(out);
+            out.close();
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot write to file '" + outputFile + "'.");
+            return;
+        }
+
+        System.out.println("DFA with " + pairCount + " states written to '" + outputFile + "'");
+    }
+
+    private void build()
+    {
+        char x[] = a.getAlphabet(), y[] = b.getAlphabet();
+        alphabet = Arrays.copyOf(x, x.length + y.length);
+        int m = x.length;
+        for(int j=0; j<y.length; j++)
+        {
+            if(!contains(x, y[j])) alphabet[m++] = y[j];
+        }
+        alphabet = Arrays.copyOf(alphabet, m);
+
+        first = new int[16];
+        second = new int[16];
+        next = new int[16*m];
+        slots = new int[32];
+        pairCount = 0;
+
+        addPair(a.getInitialStateId(), b.getInitialStateId());
+
+        // the pairs are numbered in the order they are found, so the worklist is the pairs not yet expanded
+        for(int i=0; i<pairCount; i++)
+        {
+            int p = first[i], q = second[i];
+            for(int j=0; j<m; j++)
+            {
+                int p2 = (p==-1 ? -1 : a.getNextState(p, alphabet[j]));
+                int q2 = (q==-1 ? -1 : b.getNextState(q, alphabet[j]));
+                int t = addPair(p2, q2);
+                next[i*m + j] = t;
+            }
+        }
+    }
+
+    // returns the index of the pair, adding it if it is not present
+    private int addPair(int p, int q)
+    {
+        int mask = slots.length-1;
+        int i = hash(p, q) & mask;
+        for(; slots[i]!=0; i=(i+1) & mask)
+        {
+            int k = slots[i]-1;
+            if(first[k]==p && second[k]==q) return k;
+        }
+
+        if(pairCount==first.length)
+        {
+            first = Arrays.copyOf(first, 2*pairCount);
+            second = Arrays.copyOf(second, 2*pairCount);
+            next = Arrays.copyOf(next, 2*pairCount*alphabet.length);
+        }
+
+        int k = pairCount++;
+        first[k] = p;
+        second[k] = q;
+
+        if(2*pairCount > slots.length)
+        {
+            rehash(2*slots.length);
+        } else {
+            slots[i] = k+1;
+        }
+        return k;
+    }
+
+    private void rehash(int size)
+    {
+        slots = new int[size];
+        int mask = size-1;
+        for(int k=0; k<pairCount; k++)
+        {
+            int i = hash(first[k], second[k]) & mask;
+            while(slots[i]!=0) i = (i+1) & mask;
+            slots[i] = k+1;
+        }
+    }
+
+    private static int hash(int p, int q)
+    {
+        int h = (p+1) * 0x9E3779B9 + (q+1);
+        return h ^ (h >>> 16);
+    }
+
+    private boolean isFinal(int pair)
+    {
+        boolean x = (first[pair]!=-1 && a.isFinalState(first[pair]));
+        boolean y = (second[pair]!=-1 && b.isFinalState(second[pair]));
+
+        switch(operation)
+        {
+            case AND: return x && y;
+            case OR: return x || y;
+            case MINUS: return x && !y;
+            default: return x!=y;
+        }
+    }
+
+    private static boolean contains(char x[], char c)
+    {
+        for(int i=0; i<x.length; i++) if(x[i]==c) return true;
+        return false;
+    }
+
+    private void writeDFA(BufferedWriter out) throws IOException
+    {
+        int m = alphabet.length;
+
+        out.write("// DFA generated from " + descFile1 + " " + operation.toString().toLowerCase() + " " + descFile2 + "\n\n");
+
+        out.write("Q={");
+        for(int i=0; i<pairCount; i++) out.write((i>0 ? "," : "") + "q" + i);
+        out.write("}\n");
+
+        out.write("E={");
+        for(int j=0; j<m; j++) out.write((j>0 ? "," : "") + alphabet[j]);
+        out.write("}\n");
+
+        out.write("I=q0\n");
+
+        out.write("F={");
+        boolean any = false;
+        for(int i=0; i<pairCount; i++)
+        {
+            if(!isFinal(i)) continue;
+            out.write((any ? "," : "") + "q" + i);
+            any = true;
+        }
+        out.write("}\n\n");
+
+        for(int i=0; i<pairCount; i++)
+        {
+            for(int j=0; j<m; j++) out.write("d(q" + i + "," + alphabet[j] + ")=q" + next[i*m + j] + "\n");
+        }
+    }
+}
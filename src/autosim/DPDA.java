@@ -5,15 +5,17 @@
 
 package autosim;
 
+import java.io.PrintStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Stack;
 
-class DPDA
+class DPDA implements Traceable
 {
     private final String descFile;
-    private final String input;
-    private FileIO fio;
+    private final InputSource input;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
@@ -29,18 +31,21 @@ class DPDA
     private String states[];
     private char inputSymbols[];
     private char stackSymbols[];
-    private PDATarget table[][][];
-    private Stack<Character> stack;
+    private SymbolTable symbolTable;          // IDs of the states and input symbols are their indices in the arrays
+    private SymbolTable stackSymbolTable;
+    private RuleTable<PDATarget> table;         // the rule of each state on each input and stack symbol, see getRule()
+    private TraceLog.Sampling sampling; // the part of the trace of runs on the command line to keep, null for all
+    private TraceWriter traceWriter;    // records the steps of runs on the command line, see -trace-file
+    private long footprint;             // computed once, by getMemoryFootprint()
     
-    public DPDA(String descFile, String input, boolean trace)
+    public DPDA(String descFile, InputSource input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         hasSpec = new boolean[6];       // Q, E, T, z, I(q0), F
-        fio = new FileIO();
-        fio.openFile(this.descFile);
         
         internalStates = new HashSet<String>();
         finalStates = new HashSet<String>();
@@ -52,164 +57,203 @@ class DPDA
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
-        if(!parseDPDA()) return;
+        if(prepare()) run(input);
+    }
+    
+    // parses the description and checks the table, after which the machine can be run on any number of inputs
+    public boolean prepare()
+    {
+        // the description is read once, and only the tables built from it are kept
+        lexer = new DescLexer(messages);
+        boolean parsed = (lexer.openFile(descFile) && parseDPDA());
+        lexer = null;
+        if(!parsed) return false;
         
         if(table==null)
         {
-            System.out.println("ERROR: Incomplete specification of DPDA");
-            return;
+            messages.println("ERROR: Incomplete specification of DPDA");
+            return false;
         }
         
         if(!isTableComplete())
         {
-            System.out.println("WARNING: Incomplete specification of DPDA. One or more rules are undefined.");
+            messages.println("WARNING: Incomplete specification of DPDA. One or more rules are undefined.");
         }
         
-        if(!verifyInput())
-        {
-            System.out.println("ERROR: Input string contains symbols not defined in the input alphabet");
-            return;
-        }
-        
-        simulateDPDA();
+        table.finish();
+        return true;
     }
     
-    private boolean verifyInput()
+    public void run(InputSource input)
     {
-        int n = input.length();
-        for(int i=0; i<n; i++)
-        {
-            if(!inputAlphabet.contains(input.charAt(i))) return false;
-        }
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, states, inputSymbols);
+        TraceLog.end(log, simulateDPDA(input, log, traceWriter));
+    }
+    
+    public Result run(CharSequence input)
+    {
+        return simulateDPDA(new StringInput(input), null, null);
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+    
+    public void traceTo(TraceWriter writer)
+    {
+        traceWriter = writer;
+    }
+    
+    // the stack symbol of each step is recorded as its rule
+    public boolean renderTrace(TraceReader reader, PrintStream out)
+    {
+        if(!reader.matches(states.length, inputSymbols.length, stackSymbols.length)) return false;
+        TraceLog log = TraceLog.begin(out, true, null, states, inputSymbols);
+        while(reader.next()) printStep(log, reader.getState(), reader.getSymbol(), reader.getRule());
         return true;
     }
     
-    private boolean isTableComplete()
+    public long getMemoryFootprint()
     {
-        if(table==null) return false;
-        for(int i=0; i<table.length; i++)
+        if(footprint==0)
         {
-            for(int j=0; j<table[i].length; j++)
-            {
-                for(int k=0; k<table[i][j].length; k++)
-                {
-                    if(table[i][j][k]==null) return false;
-                }
-            }
+            int n1 = states.length;
+            footprint = symbolTable.getMemoryFootprint() + stackSymbolTable.getMemoryFootprint()
+                      + MachineCache.ofArray(n1, MachineCache.REFERENCE) + table.getMemoryFootprint()
+                      + (long)(internalStates.size() + finalStates.size() + inputAlphabet.size() + stackAlphabet.size()) * MachineCache.ENTRY;
+            
+            for(PDATarget t: table.getRules()) footprint += MachineCache.HEADER + 2*MachineCache.REFERENCE + MachineCache.ofString(t.symbols.length());
         }
-        return true;
+        return footprint;
+    }
+    
+    private boolean isTableComplete()
+    {
+        return(table!=null && table.isComplete());
     }
         
-    private void simulateDPDA()
+    // the trace and the trace writer are only given on the command line, and are null otherwise
+    private Result simulateDPDA(InputSource input, TraceLog log, TraceWriter tw)
     {
-        int n = input.length();
-        stack = new Stack<Character>();
+        Stack<Character> stack = new Stack<Character>();
         stack.push(stackStartSymbol);
         String currentState = initialState;
+        int position = 0;
         
-        for(int i=0; i<n; i++)
+        if(tw!=null) tw.begin("dpda", states.length, inputSymbols.length, "");
+        
+        char buf[] = new char[input.getChunkSize()];
+        
+        for(int n; (n=input.read(buf))!=-1; )
         {
-            if(stack.empty())
+            for(int i=0; i<n; i++)
             {
-                System.out.println("ERROR: stack exhausted.");
-                return;
-            }
+                if(stack.empty())
+                {
+                    return Result.error("ERROR: stack exhausted.");
+                }
             
-            char currentInputSymbol = input.charAt(i);
-            char currentStackSymbol = stack.peek();
+                char currentInputSymbol = buf[i];
+                char currentStackSymbol = stack.peek();
             
-            int index1 = getIndexOfState(currentState);
-            int index2 = getIndexOfInputSymbol(currentInputSymbol);
-            int index3 = getIndexOfStackSymbol(currentStackSymbol);
+                int index1 = getIndexOfState(currentState);
+                int index2 = getIndexOfInputSymbol(currentInputSymbol);
+                int index3 = getIndexOfStackSymbol(currentStackSymbol);
             
-            if(index2 == -1)
-            {
-                System.out.println("ERROR: undefined symbol '" + currentInputSymbol + "'");
-                return;
-            }
+                if(index2 == -1)
+                {
+                    return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
+                }
             
-            if(index3 == -1)
-            {
-                System.out.println("ERROR: undefined symbol '" + currentStackSymbol + "'");
-                return;
-            }
+                if(index3 == -1)
+                {
+                    return Result.error("ERROR: undefined symbol '" + currentStackSymbol + "'");
+                }
             
-            if(table[index1][index2][index3]==null)
-            {
-                System.out.println("ERROR: no rule defined for δ("+currentState+","+currentInputSymbol+","+currentStackSymbol+")");
-                return;
-            }
+                PDATarget rule = getRule(index1, index2, index3);
+                if(rule==null)
+                {
+                    return Result.error("ERROR: no rule defined for δ("+currentState+","+currentInputSymbol+","+currentStackSymbol+")");
+                }
             
-            if(trace) System.out.println("Executing Rule: δ("+currentState+","+currentInputSymbol+","+currentStackSymbol+") = " + table[index1][index2][index3]);
+                if(log!=null)
+                {
+                    if(log.wants(index1, index2)) printStep(log, index1, index2, index3);
+                } else if(tw!=null) {
+                    tw.step(index1, index2, index3, position);
+                }
+                position++;
 
-            currentState = table[index1][index2][index3].nextState;
-            String symPush = table[index1][index2][index3].symbols;
-            stack.pop();
-            int len = symPush.length();
-            for(int pi=len-1; pi>=0; pi--) stack.push(symPush.charAt(pi));
+                currentState = rule.nextState;
+                String symPush = rule.symbols;
+                stack.pop();
+                int len = symPush.length();
+                for(int pi=len-1; pi>=0; pi--) stack.push(symPush.charAt(pi));
+            }
         }
         
         if(finalStates.contains(currentState))
         {
-            System.out.println("String accepted: DPDA halted in state '" + currentState + "'");
+            return new Result(Result.Status.ACCEPTED, currentState, null, "String accepted: DPDA halted in state '" + currentState + "'");
         } else {
-            System.out.println("String rejected: DPDA halted in state '" + currentState + "'");
+            return new Result(Result.Status.REJECTED, currentState, null, "String rejected: DPDA halted in state '" + currentState + "'");
         }
     }
     
+    private void printStep(TraceLog log, int index1, int index2, int index3)
+    {
+        log.println("Executing Rule: δ("+states[index1]+","+inputSymbols[index2]+","+stackSymbols[index3]+") = " + getRule(index1, index2, index3));
+    }
+    
     private boolean parseDPDA()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            s = s.replace('\t',' ').trim();
-            int comPos = s.indexOf("//");
-            if(comPos > -1) s=s.substring(0,comPos).trim();
-            
-            if(s.length()==0) continue;
-            s = removeAllChars(s,' ');
+            char x = Character.toUpperCase(lexer.getHead()), sep = lexer.getSeparator();
             
-            String x = s.substring(0,2).toUpperCase();
-            
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseInputAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("F=")) {
-                if(!parseFinalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("T=")) {
-                if(!parseStackAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("Z=")) {
-                if(!parseStackStartSymbol(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("D(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseInputAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='F' && sep=='=') {
+                if(!parseFinalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='T' && sep=='=') {
+                if(!parseStackAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='Z' && sep=='=') {
+                if(!parseStackStartSymbol()) { lexer.closeFile(); return false; }
+            } else if(x=='D' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
@@ -217,20 +261,19 @@ class DPDA
         return true;
     }
         
-    private boolean parseInputAlphabet(String s)
+    private boolean parseInputAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - input alphabet'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - input alphabet'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) inputAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) inputAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -238,20 +281,19 @@ class DPDA
         return true;
     }
     
-    private boolean parseStackAlphabet(String s)
+    private boolean parseStackAlphabet()
     {
         if(hasSpec[2])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'T - stack alphabet'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'T - stack alphabet'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) stackAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) stackAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -259,18 +301,18 @@ class DPDA
         return true;
     }
     
-    private boolean parseStackStartSymbol(String s)
+    private boolean parseStackStartSymbol()
     {
         if(hasSpec[3])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Z - stack start symbol'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Z - stack start symbol'");
             return false;
         } else {
-            char symbol = s.charAt(2);
+            char symbol = lexer.getFieldChar(0,0);
             if(stackAlphabet.contains(symbol))
                 stackStartSymbol = symbol;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + symbol + "' not found in stack alphabet");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + symbol + "' not found in stack alphabet");
                 return false;
             }
         }
@@ -279,18 +321,18 @@ class DPDA
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[4])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -299,24 +341,24 @@ class DPDA
         return true;
     }
         
-    private boolean parseFinalStates(String s)
+    private boolean parseFinalStates()
     {
         if(hasSpec[5])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'F - set of final states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'F - set of final states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) 
+                for(int i=0; i<lexer.getGroupCount(); i++)
                 {
+                    String state = lexer.getField(i,0);
                     if(!internalStates.contains(state))
                     {
-                        System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + state + "' not found");
+                        messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + state + "' not found");
                         return false;
                     } else {
                         finalStates.add(state);
@@ -329,69 +371,61 @@ class DPDA
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Q, E, T, Z, I and F must be defined prior to defining the transition rules.");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Q, E, T, Z, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int b1 = s.indexOf('('), b4 = s.indexOf(')'), b5 = s.lastIndexOf('='), b2 = s.indexOf(','), b3 = s.indexOf(',',b2+1);
-            if(b1==-1 || b2==-1 || b3==-1 || b4==-1 || b5==-1)
+            // d(q0, a, 0) = (q1, 10)
+            if(!lexer.isWellFormed() || lexer.isProduction())
             {
                 printRuleSyntax();
                 return false;
             }
             
-            if(!(b1 < b2 && b2 < b3 && b3 < b4 && b4<b5 && b3==b2+2 && b4==b3+2))
+            if(lexer.getArgumentCount()!=3 || lexer.getArgumentLength(1)!=1 || lexer.getArgumentLength(2)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
             
-            String target = s.substring(b5+1);
-            String currentState = s.substring(b1+1,b2);
-            Character currentInputSymbol = s.charAt(b2+1);
-            Character currentStackSymbol = s.charAt(b3+1);
+            String currentState = lexer.getArgument(0);
+            Character currentInputSymbol = lexer.getArgumentChar(1);
+            Character currentStackSymbol = lexer.getArgumentChar(2);
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!inputAlphabet.contains(currentInputSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
                 return false;
             }
             
             if(!stackAlphabet.contains(currentStackSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
-                return false;
-            }
-            
-            if(target.charAt(0)!='(' || target.charAt(target.length()-1)!=')')
-            {
-                printRuleSyntax();
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
                 return false;
             }
             
-            String g[] = target.substring(1,target.length()-1).split(",");
-            if(g.length!=2)
+            if(lexer.getShape()!='(' || lexer.getFieldCount(0)!=2)
             {
                 printRuleSyntax();
                 return false;
             }
             
-            PDATarget targetState = new PDATarget(g[0], removeAllChars(g[1],AutoSim.LAMBDA_CHAR));
+            PDATarget targetState = new PDATarget(lexer.getField(0,0), removeAllChars(lexer.getField(0,1),AutoSim.LAMBDA_CHAR));
             
             int index1 = getIndexOfState(currentState);
             int index2 = getIndexOfInputSymbol(currentInputSymbol);
             int index3 = getIndexOfStackSymbol(currentStackSymbol);
             
-            table[index1][index2][index3]=targetState;
+            table.set(index1, index2*stackSymbols.length + index3, targetState);
         }
         
         return true;
@@ -416,39 +450,40 @@ class DPDA
         Iterator<Character> it3 = stackAlphabet.iterator();
         while(it3.hasNext()) stackSymbols[++k]=it3.next();  
         
-        table = new PDATarget[n1][n2][n3];
+        table = new RuleTable<PDATarget>(n1, n2*n3);
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<inputSymbols.length; j++) symbolTable.addSymbol(inputSymbols[j]);
+        
+        stackSymbolTable = new SymbolTable();
+        for(k=0; k<stackSymbols.length; k++) stackSymbolTable.addSymbol(stackSymbols[k]);
+    }
+    
+    // the rule for the state, input symbol and stack symbol: the columns of the table are the pairs of symbols
+    private PDATarget getRule(int index1, int index2, int index3)
+    {
+        return table.get(index1, index2*stackSymbols.length + index3);
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfInputSymbol(char symbol)
     {
-        for(int i=0; i<inputSymbols.length; i++)
-        {
-            if(symbol==inputSymbols[i]) return i;
-        }
-        return -1;
+        return symbolTable.getSymbolId(symbol);
     }
         
     private int getIndexOfStackSymbol(char symbol)
     {
-        for(int i=0; i<stackSymbols.length; i++)
-        {
-            if(symbol==stackSymbols[i]) return i;
-        }
-        return -1;
+        return stackSymbolTable.getSymbolId(symbol);
     }
         
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a, 0) = (q1, 10)");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a, 0) = (q1, 10)");
     }
     
     private boolean isSpecReady()
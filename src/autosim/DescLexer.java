@@ -0,0 +1,366 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+// Single-pass tokenizer for the description files of all the machines. Each non-empty line
+// is read into a reusable buffer (without spaces, tabs and comments) and split into:
+//
+//      head [ '(' arguments ')' ] ( '=' | '->' ) right-side
+//
+// where the right side is a set '{ ... }', a tuple '( ... )' or a bare value. The right side
+// is made up of groups of fields: each element of a set is a group (a tuple element such as
+// '(q1, 10)' giving one field per component), a tuple is a single group, and a bare value is a
+// single group with one field, or one group per alternative after '->'. Strings are only
+// created for the fields which are asked for.
+class DescLexer
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private Reader in = null;
+    private final PrintStream messages;     // where the errors of reading the file are printed
+    private final char buf[];
+    private int bufPos, bufCount;
+    private boolean eof;
+    private int lineCounter;
+
+    private char line[];
+    private int length;
+
+    private int headLength;
+    private char separator;         // character following the head: '=', '(' or '-'
+    private boolean wellFormed;
+    private boolean production;     // '->' rather than '=' after the head
+    private char shape;             // '{', '(' or 0 for a bare right side
+
+    private int argCount;
+    private int argStart[], argEnd[];
+
+    private int fieldCount, groupCount;
+    private int fieldStart[], fieldEnd[];
+    private int groupStart[];       // index of the first field of each group
+
+    public DescLexer()
+    {
+        this(System.out);
+    }
+
+    public DescLexer(PrintStream messages)
+    {
+        this.messages = messages;
+        buf = new char[BUFFER_SIZE];
+        line = new char[256];
+        argStart = new int[4];
+        argEnd = new int[4];
+        fieldStart = new int[16];
+        fieldEnd = new int[16];
+        groupStart = new int[16];
+    }
+
+    public boolean openFile(String fileName)
+    {
+        try {
+            in = new InputStreamReader(new FileInputStream(fileName), AutoSim.FILE_CHARSET);
+            bufPos = bufCount = 0;
+            eof = false;
+            lineCounter = 0;
+            return true;
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot open file '" + fileName + "'.");
+            return false;
+        }
+    }
+
+    public void closeFile()
+    {
+        if(in!=null)
+        {
+            try {
+                in.close();
+            } catch(IOException e) {
+                messages.println("ERROR: Cannot close file.");
+            } finally {
+                in = null;
+            }
+        }
+    }
+
+    public boolean isReadyForReading() { return(in!=null); }
+    public int getLineNumber() { return lineCounter; }
+
+    // advances to the next non-empty line and tokenizes it, returns false at the end of the file
+    public boolean nextLine()
+    {
+        while(readLine())
+        {
+            if(length > 0)
+            {
+                tokenize();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // <------------------------- Tokens of the current line --------------------------->
+
+    // the head if it is a single character (e.g. 'Q' in 'Q = {...}' or 'd' in 'd(q0, a) = q1'), 0 otherwise
+    public char getHead() { return(headLength==1 ? line[0] : 0); }
+    public char getSeparator() { return separator; }
+
+    // false if the arguments are not closed by ')' or not followed by '=' or '->'
+    public boolean isWellFormed() { return wellFormed; }
+    public boolean isProduction() { return production; }
+    public char getShape() { return shape; }
+
+    public int getArgumentCount() { return argCount; }
+    public int getArgumentLength(int i) { return argEnd[i] - argStart[i]; }
+    public char getArgumentChar(int i) { return(argEnd[i] > argStart[i] ? line[argStart[i]] : 0); }
+    public String getArgument(int i) { return new String(line, argStart[i], argEnd[i] - argStart[i]); }
+
+    public int getGroupCount() { return groupCount; }
+    public int getFieldCount(int g) { return (g+1 < groupCount ? groupStart[g+1] : fieldCount) - groupStart[g]; }
+
+    public int getFieldLength(int g, int f)
+    {
+        int i = groupStart[g] + f;
+        return fieldEnd[i] - fieldStart[i];
+    }
+
+    public char getFieldChar(int g, int f)
+    {
+        int i = groupStart[g] + f;
+        return(fieldEnd[i] > fieldStart[i] ? line[fieldStart[i]] : 0);
+    }
+
+    public String getField(int g, int f)
+    {
+        int i = groupStart[g] + f;
+        return new String(line, fieldStart[i], fieldEnd[i] - fieldStart[i]);
+    }
+
+    // the whole line, as it was tokenized
+    public String getLine() { return new String(line, 0, length); }
+
+    // <------------------------- Reading --------------------------->
+
+    // reads the next line into 'line', dropping spaces, tabs, control characters, comments and characters above 255
+    // other than ε and Φ, which the regular expressions written by nfa-to-regex may hold
+    private boolean readLine()
+    {
+        length = 0;
+        if(in==null) return false;
+
+        boolean inComment = false, any = false;
+        while(true)
+        {
+            int c = nextChar();
+            if(c==-1) break;
+            any = true;
+
+            if(c=='\n') break;
+            if(c=='\r')
+            {
+                if(peekChar()=='\n') nextChar();
+                break;
+            }
+
+            if(inComment || c<=' ' || (c>=256 && c!=AutoSim.LAMBDA_PRINT_CHAR && c!=AutoSim.NULL_PRINT_CHAR)) continue;
+
+            if(c=='/' && length > 0 && line[length-1]=='/')
+            {
+                length--;
+                inComment = true;
+                continue;
+            }
+
+            if(length==line.length) line = Arrays.copyOf(line, 2*length);
+            line[length++] = (char)c;
+        }
+
+        if(!any) return false;
+        lineCounter++;
+        return true;
+    }
+
+    private int nextChar()
+    {
+        if(bufPos==bufCount && !fill()) return -1;
+        return buf[bufPos++];
+    }
+
+    private int peekChar()
+    {
+        if(bufPos==bufCount && !fill()) return -1;
+        return buf[bufPos];
+    }
+
+    private boolean fill()
+    {
+        if(eof) return false;
+        try {
+            bufCount = in.read(buf);
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot read from file.");
+            bufCount = -1;
+        }
+
+        bufPos = 0;
+        if(bufCount<=0)
+        {
+            bufCount = 0;
+            eof = true;
+            return false;
+        }
+        return true;
+    }
+
+    // <------------------------- Tokenizing --------------------------->
+
+    private void tokenize()
+    {
+        int n = length, i = 0;
+
+        argCount = 0;
+        fieldCount = 0;
+        groupCount = 0;
+        wellFormed = true;
+        production = false;
+        shape = 0;
+
+        while(i < n && line[i]!='=' && line[i]!='(' && !(line[i]=='-' && i+1 < n && line[i+1]=='>')) i++;
+        headLength = i;
+        separator = (i < n ? line[i] : 0);
+
+        if(i < n && line[i]=='(')
+        {
+            int start = ++i;
+            while(i < n && line[i]!=')')
+            {
+                if(line[i]==',')
+                {
+                    addArgument(start, i);
+                    start = i+1;
+                }
+                i++;
+            }
+
+            if(i==n)
+            {
+                wellFormed = false;
+                addArgument(start, n);
+                return;
+            }
+
+            addArgument(start, i++);
+            if(i==n || (line[i]!='=' && line[i]!='-'))
+            {
+                wellFormed = false;
+                return;
+            }
+        }
+
+        if(i==n || (line[i]=='-' && (i+1==n || line[i+1]!='>')))
+        {
+            wellFormed = false;
+            return;
+        }
+
+        production = (line[i]=='-');
+        i += (production ? 2 : 1);
+
+        if(i < n && line[i]=='{' && line[n-1]=='}' && n-1 > i) {
+            shape = '{';
+            tokenizeSet(i+1, n-1);
+        } else if(i < n && line[i]=='(' && line[n-1]==')' && n-1 > i) {
+            shape = '(';
+            addGroup();
+            tokenizeFields(i+1, n-1);
+        } else if(production) {
+            // alternatives of a production rule: S -> aSb | ~
+            int start = i;
+            for(; i<=n; i++)
+            {
+                if(i==n || line[i]=='|')
+                {
+                    addGroup();
+                    addField(start, i);
+                    start = i+1;
+                }
+            }
+        } else {
+            addGroup();
+            addField(i, n);
+        }
+    }
+
+    // elements of a set, separated by commas outside parenthesis; each element is a group
+    private void tokenizeSet(int from, int to)
+    {
+        int start = from, depth = 0;
+        for(int i=from; i<=to; i++)
+        {
+            if(i < to && line[i]=='(') depth++;
+            else if(i < to && line[i]==')') depth--;
+            else if(i==to || (line[i]==',' && depth<=0))
+            {
+                addGroup();
+                if(i-start >= 2 && line[start]=='(' && line[i-1]==')')
+                    tokenizeFields(start+1, i-1);
+                else
+                    addField(start, i);
+                start = i+1;
+            }
+        }
+    }
+
+    private void tokenizeFields(int from, int to)
+    {
+        int start = from;
+        for(int i=from; i<=to; i++)
+        {
+            if(i==to || line[i]==',')
+            {
+                addField(start, i);
+                start = i+1;
+            }
+        }
+    }
+
+    private void addArgument(int start, int end)
+    {
+        if(argCount==argStart.length)
+        {
+            argStart = Arrays.copyOf(argStart, 2*argCount);
+            argEnd = Arrays.copyOf(argEnd, 2*argCount);
+        }
+        argStart[argCount] = start;
+        argEnd[argCount++] = end;
+    }
+
+    private void addGroup()
+    {
+        if(groupCount==groupStart.length) groupStart = Arrays.copyOf(groupStart, 2*groupCount);
+        groupStart[groupCount++] = fieldCount;
+    }
+
+    private void addField(int start, int end)
+    {
+        if(fieldCount==fieldStart.length)
+        {
+            fieldStart = Arrays.copyOf(fieldStart, 2*fieldCount);
+            fieldEnd = Arrays.copyOf(fieldEnd, 2*fieldCount);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount++] = end;
+    }
+}
@@ -0,0 +1,29 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Order in which the NFAToRegexConverter eliminates states, chosen with -order
+enum EliminationOrder
+{
+    NONE, DEGREE, WEIGHT, STATIC;
+    
+    public static EliminationOrder fromString(String s)
+    {
+	if(s==null) return NONE;
+	
+	String x = s.trim().toLowerCase();
+	if(x.equals("none"))
+	    return EliminationOrder.NONE;
+	else if(x.equals("degree"))
+	    return EliminationOrder.DEGREE;
+	else if(x.equals("weight"))
+	    return EliminationOrder.WEIGHT;
+	else if(x.equals("static"))
+	    return EliminationOrder.STATIC;
+	else
+	    return null;
+    }
+}
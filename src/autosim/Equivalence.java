@@ -0,0 +1,339 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Decides whether two automata accept the same language (-equiv), and if they do not, prints a shortest
+// string accepted by only one of them.
+//
+// Two DFAs are compared by the algorithm of Hopcroft and Karp: starting from the pair of initial states,
+// the states which must be equivalent are merged in a union-find, and a pair is only followed if its
+// states are not yet merged, so that at most n1+n2 pairs are followed. An NFA is compared by checking the
+// inclusion of each language in the other, on the pairs (p, S) of a state of one automaton and the set of
+// states the other can be in; the pairs are kept as an antichain, i.e. a pair is dropped when one with
+// the same p and a subset of S was already found, as whatever S' can reject S can too. This avoids
+// building the subset construction of the NFA, most of which is never needed.
+//
+// Both searches are breadth-first, so the shortest counterexample is found. A DFA or NFA with no rule for
+// a symbol (or without the symbol in its alphabet) is taken to reject every string going on from there.
+class Equivalence
+{
+    private final String descFile1, descFile2;
+
+    // the two automata, over the union of their alphabets: next[state*m + symbol] are the states reached
+    private char alphabet[];
+    private Side a, b;
+
+    private static class Side
+    {
+        boolean deterministic;
+        int stateCount;
+        int initial[];
+        boolean accepting[];
+        int next[][];           // sorted, empty where there is no rule
+    }
+
+    public Equivalence(String descFile1, String descFile2)
+    {
+        this.descFile1 = descFile1;
+        this.descFile2 = descFile2;
+    }
+
+    public void simulate()
+    {
+        Machine m1 = load(descFile1), m2 = (m1==null ? null : load(descFile2));
+        if(m2==null) return;
+
+        alphabet = union(getAlphabet(m1), getAlphabet(m2));
+        a = getSide(m1);
+        b = getSide(m2);
+
+        if(a.deterministic && b.deterministic && isEquivalent())
+        {
+            System.out.println("The automata are equivalent");
+            return;
+        }
+
+        // the DFAs are not equivalent, or an NFA is compared: find which inclusion fails
+        String x = getCounterexample(a, b), y = getCounterexample(b, a);
+        if(x==null && y==null)
+        {
+            System.out.println("The automata are equivalent");
+        } else if(y==null || (x!=null && x.length() <= y.length())) {
+            System.out.println("The automata are not equivalent: " + quote(x) + " is accepted by '" + descFile1 + "' only");
+        } else {
+            System.out.println("The automata are not equivalent: " + quote(y) + " is accepted by '" + descFile2 + "' only");
+        }
+    }
+
+    // a DFA, or an NFA if the description is one (its name ends in .nfa, or it is an NFA image)
+    private static Machine load(String descFile)
+    {
+        boolean nfa = descFile.toLowerCase().endsWith(".nfa");
+        if(AutomatonImage.isImage(descFile)) nfa = (AutomatonImage.getKind(descFile)==AutomatonImage.NFA);
+        return Automata.load(nfa ? "nfa" : "dfa", descFile);
+    }
+
+    private static char[] getAlphabet(Machine m)
+    {
+        return(m instanceof DFA ? ((DFA)m).getAlphabet() : ((NFA)m).getAlphabet());
+    }
+
+    private Side getSide(Machine m)
+    {
+        Side s = new Side();
+        int k = alphabet.length;
+
+        if(m instanceof DFA)
+        {
+            DFA d = (DFA)m;
+            s.deterministic = true;
+            s.stateCount = d.getStateCount();
+            s.initial = new int[] { d.getInitialStateId() };
+            s.accepting = new boolean[s.stateCount];
+            s.next = new int[s.stateCount * k][];
+            for(int i=0; i<s.stateCount; i++)
+            {
+                s.accepting[i] = d.isFinalState(i);
+                for(int j=0; j<k; j++)
+                {
+                    int t = d.getNextState(i, alphabet[j]);
+                    s.next[i*k + j] = (t==-1 ? new int[0] : new int[] { t });
+                }
+            }
+        } else {
+            NFA n = (NFA)m;
+            s.deterministic = false;
+            s.stateCount = n.getStateCount();
+            s.initial = sorted(n.getInitialStates());
+            s.accepting = new boolean[s.stateCount];
+            s.next = new int[s.stateCount * k][];
+            for(int i=0; i<s.stateCount; i++)
+            {
+                s.accepting[i] = n.isFinalState(i);
+                for(int j=0; j<k; j++) s.next[i*k + j] = sorted(n.getNextStates(i, alphabet[j]));
+            }
+        }
+        return s;
+    }
+
+    // <------------------------- Hopcroft-Karp --------------------------->
+
+    // both automata are DFAs: the states of a are 0..n1, those of b follow, and the last state of each
+    // is a dead state standing for "no rule"
+    private boolean isEquivalent()
+    {
+        int n1 = a.stateCount, n2 = b.stateCount, k = alphabet.length;
+        int dead1 = n1, dead2 = n1 + 1 + n2;
+
+        int parent[] = new int[dead2 + 1];
+        for(int i=0; i<parent.length; i++) parent[i] = i;
+
+        int queue[] = new int[2*(dead2 + 1)];         // pairs; each union adds at most one
+        int head = 0, tail = 0;
+
+        int p0 = a.initial[0], q0 = n1 + 1 + b.initial[0];
+        parent[find(parent, p0)] = find(parent, q0);
+        queue[tail++] = p0;
+        queue[tail++] = q0;
+
+        while(head < tail)
+        {
+            int p = queue[head++], q = queue[head++];
+            boolean x = (p!=dead1 && a.accepting[p]), y = (q!=dead2 && b.accepting[q-n1-1]);
+            if(x!=y) return false;
+
+            for(int j=0; j<k; j++)
+            {
+                int p2 = dead1, q2 = dead2;
+                if(p!=dead1 && a.next[p*k + j].length > 0) p2 = a.next[p*k + j][0];
+                if(q!=dead2 && b.next[(q-n1-1)*k + j].length > 0) q2 = n1 + 1 + b.next[(q-n1-1)*k + j][0];
+
+                int r1 = find(parent, p2), r2 = find(parent, q2);
+                if(r1==r2) continue;
+
+                parent[r1] = r2;
+                queue[tail++] = p2;
+                queue[tail++] = q2;
+            }
+        }
+        return true;
+    }
+
+    private static int find(int parent[], int x)
+    {
+        while(parent[x]!=x)
+        {
+            parent[x] = parent[parent[x]];      // path halving
+            x = parent[x];
+        }
+        return x;
+    }
+
+    // <------------------------- Antichain inclusion --------------------------->
+
+    // a shortest string accepted by x and not by y, null if L(x) is included in L(y)
+    private String getCounterexample(Side x, Side y)
+    {
+        int k = alphabet.length;
+
+        // the pairs found, in breadth-first order, with the pair and symbol each was reached from
+        ArrayList<int[]> sets = new ArrayList<int[]>();
+        int state[] = new int[16], from[] = new int[16], symbol[] = new int[16];
+        int count = 0;
+
+        // antichain: for each state of x, the minimal sets of states of y it was found with
+        ArrayList<ArrayList<int[]>> antichain = new ArrayList<ArrayList<int[]>>(x.stateCount);
+        for(int i=0; i<x.stateCount; i++) antichain.add(new ArrayList<int[]>());
+
+        boolean mark[] = new boolean[y.stateCount];
+
+        for(int i=0; i<x.initial.length; i++)
+        {
+            if(!addToAntichain(antichain.get(x.initial[i]), y.initial)) continue;
+            if(count==state.length)
+            {
+                state = Arrays.copyOf(state, 2*count);
+                from = Arrays.copyOf(from, 2*count);
+                symbol = Arrays.copyOf(symbol, 2*count);
+            }
+            state[count] = x.initial[i];
+            from[count] = -1;
+            sets.add(y.initial);
+            count++;
+        }
+
+        for(int i=0; i<count; i++)
+        {
+            int p = state[i];
+            int s[] = sets.get(i);
+            if(x.accepting[p] && !acceptsAny(y, s)) return getPath(from, symbol, i);
+
+            for(int j=0; j<k; j++)
+            {
+                int t[] = x.next[p*k + j];
+                if(t.length==0) continue;
+
+                int s2[] = post(y, s, j, mark);
+                for(int l=0; l<t.length; l++)
+                {
+                    if(!addToAntichain(antichain.get(t[l]), s2)) continue;
+                    if(count==state.length)
+                    {
+                        state = Arrays.copyOf(state, 2*count);
+                        from = Arrays.copyOf(from, 2*count);
+                        symbol = Arrays.copyOf(symbol, 2*count);
+                    }
+                    state[count] = t[l];
+                    from[count] = i;
+                    symbol[count] = j;
+                    sets.add(s2);
+                    count++;
+                }
+            }
+        }
+        return null;
+    }
+
+    // adds the set unless a subset of it is already present, removing the supersets of it; returns true if it was added
+    private static boolean addToAntichain(ArrayList<int[]> list, int s[])
+    {
+        for(int i=0; i<list.size(); i++) if(isSubset(list.get(i), s)) return false;
+
+        for(int i=list.size()-1; i>=0; i--)
+        {
+            if(isSubset(s, list.get(i))) list.remove(i);
+        }
+        list.add(s);
+        return true;
+    }
+
+    // both sets are sorted
+    private static boolean isSubset(int x[], int y[])
+    {
+        if(x.length > y.length) return false;
+        int j = 0;
+        for(int i=0; i<x.length; i++)
+        {
+            while(j < y.length && y[j] < x[i]) j++;
+            if(j==y.length || y[j]!=x[i]) return false;
+            j++;
+        }
+        return true;
+    }
+
+    private static boolean acceptsAny(Side y, int s[])
+    {
+        for(int i=0; i<s.length; i++) if(y.accepting[s[i]]) return true;
+        return false;
+    }
+
+    // the states y can be in after the symbol, from any state of s (sorted)
+    private int[] post(Side y, int s[], int symbol, boolean mark[])
+    {
+        int k = alphabet.length, count = 0;
+        for(int i=0; i<s.length; i++)
+        {
+            int t[] = y.next[s[i]*k + symbol];
+            for(int l=0; l<t.length; l++)
+            {
+                if(mark[t[l]]) continue;
+                mark[t[l]] = true;
+                count++;
+            }
+        }
+
+        int r[] = new int[count], n = 0;
+        for(int i=0; i<s.length; i++)
+        {
+            int t[] = y.next[s[i]*k + symbol];
+            for(int l=0; l<t.length; l++)
+            {
+                if(!mark[t[l]]) continue;
+                mark[t[l]] = false;
+                r[n++] = t[l];
+            }
+        }
+        Arrays.sort(r);
+        return r;
+    }
+
+    private String getPath(int from[], int symbol[], int i)
+    {
+        StringBuilder sb = new StringBuilder();
+        for(; from[i]!=-1; i=from[i]) sb.append(alphabet[symbol[i]]);
+        return sb.reverse().toString();
+    }
+
+    // <------------------------- Helpers --------------------------->
+
+    private static char[] union(char x[], char y[])
+    {
+        char r[] = Arrays.copyOf(x, x.length + y.length);
+        int n = x.length;
+        for(int j=0; j<y.length; j++)
+        {
+            boolean found = false;
+            for(int i=0; i<x.length && !found; i++) found = (x[i]==y[j]);
+            if(!found) r[n++] = y[j];
+        }
+        return Arrays.copyOf(r, n);
+    }
+
+    private static int[] sorted(int x[])
+    {
+        int r[] = x.clone();
+        Arrays.sort(r);
+        return r;
+    }
+
+    private static String quote(String s)
+    {
+        return(s.length()==0 ? String.valueOf(AutoSim.LAMBDA_PRINT_CHAR) : "'" + s + "'");
+    }
+}
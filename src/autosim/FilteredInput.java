@@ -0,0 +1,112 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Input read from a file or a pipe, skipping the characters which are not part of the input:
+// spaces, tabs, line breaks, characters outside 1..255 and comments from // to the end of the line.
+// As with -input, an input consisting of a lone ~ stands for the empty string.
+abstract class FilteredInput extends InputSource
+{
+    private final boolean part;     // a part of the input (see MappedInput.slice), for which the lone ~ is not checked
+    private boolean started;
+    private boolean inComment;
+    private int pushback;           // character read ahead after a '/', to check whether it starts a comment
+    private int lookahead[];        // symbols read ahead at the start, to check for a lone ~
+    private int lookaheadCount;
+
+    protected FilteredInput()
+    {
+        this(false);
+    }
+
+    protected FilteredInput(boolean part)
+    {
+        this.part = part;
+        reset();
+    }
+
+    protected void reset()
+    {
+        started = false;
+        inComment = false;
+        pushback = -1;
+        lookahead = new int[2];
+        lookaheadCount = 0;
+    }
+
+    // returns the next character of the underlying file or stream, or -1 at its end
+    protected abstract int nextChar();
+
+    // true if the last character read was in a comment, which goes on into whatever follows
+    public boolean isInComment() { return inComment; }
+
+    @Override
+    public int read(char buf[])
+    {
+        if(!started && !part)
+        {
+            started = true;
+            int a = nextSymbol();
+            int b = (a==-1 ? -1 : nextSymbol());
+            if(a==AutoSim.LAMBDA_CHAR && b==-1) a = -1;
+
+            if(b!=-1) lookahead[lookaheadCount++] = b;
+            if(a!=-1) lookahead[lookaheadCount++] = a;
+        }
+
+        int n = 0;
+        while(n < buf.length)
+        {
+            int c = (lookaheadCount > 0 ? lookahead[--lookaheadCount] : nextSymbol());
+            if(c==-1) break;
+            buf[n++] = (char)c;
+        }
+
+        return(n==0 ? -1 : n);
+    }
+
+    private int nextSymbol()
+    {
+        while(true)
+        {
+            int c = pushback;
+            if(c==-1) c = nextChar();
+            else pushback = -1;
+
+            if(c==-1) return -1;
+
+            if(c=='\n' || c=='\r') {
+                inComment = false;
+                continue;
+            }
+
+            if(inComment || c==' ' || c=='\t' || c<=0 || c>=256) continue;
+
+            if(c=='/')
+            {
+                int d = nextSignificantChar();
+                if(d=='/')
+                {
+                    inComment = true;
+                    continue;
+                }
+                pushback = d;
+            }
+
+            return c;
+        }
+    }
+
+    // the next character which is not a space or tab on the same line (line breaks are returned)
+    private int nextSignificantChar()
+    {
+        while(true)
+        {
+            int d = nextChar();
+            if(d!=' ' && d!='\t' && d!=0) return d;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.util.Arrays;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+// A DFA compiled into a Java class of its own (-codegen), which the JIT can then turn into straight-line
+// code with the table folded in. The class is generated as source, compiled in memory by javax.tools
+// and loaded by a class loader of its own; it has a single method, a loop switching on the state and
+// then on the symbol:
+//
+//      public static long run(char buf[], int n, int s)
+//      {
+//          for(int i=0; i<n; i++)
+//          {
+//              switch(s)
+//              {
+//                  case 0:
+//                      switch(buf[i]) { case 97: case 98: s = 1; continue; ... }
+//                      break;
+//                  ...
+//              }
+//              return ~(((long)i << 32) | s);
+//          }
+//          return s;
+//      }
+//
+// i.e. the state reached, or, at a symbol with no rule (or outside the alphabet) or in a state where
+// the run stops early (see DFA.getStopStates()), the complement of its position and the state. A step
+// from a table has to wait for the load of the next state before the following step can start; here
+// the processor predicts the branch instead, which on inputs that stay in a few states for a while
+// (identifiers, numbers, ...) is several times faster. On inputs which jump between states at random
+// the branches are mispredicted, and the table is faster. The method is bound once to a MethodHandle
+// and called with invokeExact, so a chunk is run without reflection or boxing, and the JIT can inline
+// the generated loop into its caller. A method cannot exceed 64 KB of bytecode, so DFAs of more than
+// MAX_RULES rules are left to their tables.
+class GeneratedDFA
+{
+    public static final int MAX_RULES = 2048;
+    private static final String CLASS_NAME = "GeneratedDFA";
+
+    private static final MethodType RUN_TYPE = MethodType.methodType(long.class, char[].class, int.class, int.class);
+
+    private final MethodHandle run;
+
+    private GeneratedDFA(MethodHandle run)
+    {
+        this.run = run;
+    }
+
+    // the DFA with targets[state*columnCount + column] (-1 for no rule), the column of each symbol and the states
+    // to stop in (null for none), as a class; null (with a warning printed to 'messages') if it cannot be compiled
+    public static GeneratedDFA create(int stateCount, int columnCount, char symbols[], int columns[], int targets[], boolean stop[], PrintStream messages)
+    {
+        int rules = 0;
+        for(int i=0; i<stateCount; i++)
+        {
+            for(int j=0; j<symbols.length; j++) if(targets[i*columnCount + columns[j]]!=-1) rules++;
+        }
+        if(rules > MAX_RULES)
+        {
+            messages.println("WARNING: The DFA has too many rules (" + rules + ") to generate code for, and is run from its table");
+            return null;
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if(compiler==null)
+        {
+            messages.println("WARNING: No Java compiler is available to generate code for the DFA, which is run from its table");
+            return null;
+        }
+
+        final String source = generate(stateCount, columnCount, symbols, columns, targets, stop);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null);
+        ForwardingJavaFileManager<StandardJavaFileManager> memory = new ForwardingJavaFileManager<StandardJavaFileManager>(files) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling)
+            {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() { return bytes; }
+                };
+            }
+        };
+
+        JavaFileObject unit = new SimpleJavaFileObject(URI.create("mem:///" + CLASS_NAME + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) { return source; }
+        };
+
+        boolean ok;
+        try {
+            ok = compiler.getTask(null, memory, null, Arrays.asList("-g:none", "-nowarn"), null, Arrays.asList(unit)).call();
+        } finally {
+            try {
+                files.close();
+            } catch(IOException e) {
+                // nothing was written through it, the class is in memory
+            }
+        }
+        if(!ok)
+        {
+            messages.println("WARNING: The code generated for the DFA did not compile, and it is run from its table");
+            return null;
+        }
+
+        final byte code[] = bytes.toByteArray();
+        ClassLoader loader = new ClassLoader(GeneratedDFA.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException
+            {
+                if(!name.equals(CLASS_NAME)) throw new ClassNotFoundException(name);
+                return defineClass(name, code, 0, code.length);
+            }
+        };
+
+        try {
+            return new GeneratedDFA(MethodHandles.publicLookup().findStatic(loader.loadClass(CLASS_NAME), "run", RUN_TYPE));
+        } catch(ReflectiveOperationException e) {
+            messages.println("WARNING: The code generated for the DFA could not be loaded, and it is run from its table");
+            return null;
+        }
+    }
+
+    // runs the first n symbols of buf from the state, see the class comment for the result
+    public long run(char buf[], int n, int state)
+    {
+        try {
+            return (long)run.invokeExact(buf, n, state);
+        } catch(RuntimeException e) {
+            throw e;
+        } catch(Error e) {
+            throw e;
+        } catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String generate(int stateCount, int columnCount, char symbols[], int columns[], int targets[], boolean stop[])
+    {
+        int m = symbols.length;
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("public final class ").append(CLASS_NAME).append("\n{\n");
+        sb.append("    public static long run(char buf[], int n, int s)\n    {\n");
+        sb.append("        for(int i=0; i<n; i++)\n        {\n");
+        sb.append("            switch(s)\n            {\n");
+
+        int row[] = new int[m];
+        boolean done[] = new boolean[m];
+        for(int i=0; i<stateCount; i++)
+        {
+            if(stop!=null && stop[i]) continue;       // falls through to the return, as a state without rules does
+
+            boolean any = false;
+            for(int j=0; j<m; j++)
+            {
+                row[j] = targets[i*columnCount + columns[j]];
+                any |= (row[j]!=-1);
+            }
+            if(!any) continue;
+
+            sb.append("                case ").append(i).append(":\n");
+            sb.append("                    switch(buf[i])\n                    {\n");
+
+            // the symbols leading to the same state share a case
+            Arrays.fill(done, false);
+            for(int j=0; j<m; j++)
+            {
+                if(row[j]==-1 || done[j]) continue;
+
+                sb.append("                        ");
+                for(int k=j; k<m; k++)
+                {
+                    if(row[k]!=row[j]) continue;
+                    sb.append("case ").append((int)symbols[k]).append(": ");
+                    done[k] = true;
+                }
+                sb.append("s = ").append(row[j]).append("; continue;\n");
+            }
+            sb.append("                    }\n                    break;\n");
+        }
+
+        sb.append("            }\n");
+        sb.append("            return ~(((long)i << 32) | s);\n");
+        sb.append("        }\n        return s;\n    }\n}\n");
+        return sb.toString();
+    }
+}
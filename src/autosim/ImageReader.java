@@ -0,0 +1,109 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+// Reads an image mapped into memory, after verifying its header and checksum
+class ImageReader
+{
+    private final ByteBuffer buf;
+
+    private ImageReader(ByteBuffer buf)
+    {
+        this.buf = buf;
+    }
+
+    // maps the image and checks that it holds a machine of the given kind, returns null (with a message printed
+    // to 'messages') if it does not
+    public static ImageReader open(String fileName, byte kind, PrintStream messages)
+    {
+        ByteBuffer buf;
+        try {
+            RandomAccessFile f = new RandomAccessFile(fileName, "r");
+            try {
+                FileChannel ch = f.getChannel();
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } finally {
+                f.close();
+            }
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot open file '" + fileName + "'.");
+            return null;
+        }
+
+        int n = buf.limit() - 4;
+        if(n < 9)
+        {
+            messages.println("ERROR: '" + fileName + "' is not a valid compiled automaton");
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buf.duplicate();
+        body.limit(n);
+        crc.update(body);
+        if((int)crc.getValue() != buf.getInt(n))
+        {
+            messages.println("ERROR: '" + fileName + "' is corrupt (checksum mismatch)");
+            return null;
+        }
+
+        buf.limit(n);
+        buf.getInt();       // magic, already checked by AutomatonImage.isImage()
+        int version = buf.getInt();
+        if(version != AutomatonImage.VERSION)
+        {
+            messages.println("ERROR: '" + fileName + "' was compiled by an incompatible version of AutoSim (image version " + version + ")");
+            return null;
+        }
+
+        byte k = buf.get();
+        if(k != kind)
+        {
+            messages.println("ERROR: '" + fileName + "' is a compiled " + AutomatonImage.kindName(k) + ", not a " + AutomatonImage.kindName(kind));
+            return null;
+        }
+
+        return new ImageReader(buf);
+    }
+
+    public int readInt() { return buf.getInt(); }
+    public char readChar() { return buf.getChar(); }
+
+    public String readString() { return new String(readChars()); }
+
+    public String[] readStrings()
+    {
+        String s[] = new String[buf.getInt()];
+        for(int i=0; i<s.length; i++) s[i] = readString();
+        return s;
+    }
+
+    public char[] readChars()
+    {
+        char c[] = new char[buf.getInt()];
+        buf.asCharBuffer().get(c);
+        buf.position(buf.position() + 2*c.length);
+        return c;
+    }
+
+    public int[] readInts()
+    {
+        int x[] = new int[buf.getInt()];
+        buf.asIntBuffer().get(x);
+        buf.position(buf.position() + 4*x.length);
+        return x;
+    }
+
+    // true if the whole body was read, i.e. the image was not truncated or padded
+    public boolean isAtEnd() { return !buf.hasRemaining(); }
+}
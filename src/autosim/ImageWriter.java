@@ -0,0 +1,82 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+// Builds an image in memory, and writes it out with its checksum
+class ImageWriter
+{
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+
+    public ImageWriter(byte kind)
+    {
+        bytes = new ByteArrayOutputStream(1 << 16);
+        out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(AutomatonImage.MAGIC);
+            out.writeInt(AutomatonImage.VERSION);
+            out.writeByte(kind);
+        } catch(IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+        }
+    }
+
+    public void writeInt(int x) throws IOException { out.writeInt(x); }
+    public void writeChar(char c) throws IOException { out.writeChar(c); }
+
+    public void writeString(String s) throws IOException
+    {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    public void writeStrings(String s[]) throws IOException
+    {
+        out.writeInt(s.length);
+        for(int i=0; i<s.length; i++) writeString(s[i]);
+    }
+
+    public void writeChars(char c[]) throws IOException
+    {
+        out.writeInt(c.length);
+        for(int i=0; i<c.length; i++) out.writeChar(c[i]);
+    }
+
+    public void writeInts(int x[]) throws IOException
+    {
+        out.writeInt(x.length);
+        for(int i=0; i<x.length; i++) out.writeInt(x[i]);
+    }
+
+    public boolean save(String fileName)
+    {
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int)crc.getValue());
+
+            FileOutputStream f = new FileOutputStream(fileName);
+            try {
+                bytes.writeTo(f);
+            } finally {
+                f.close();
+            }
+            return true;
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot write to file '" + fileName + "'.");
+            return false;
+        }
+    }
+
+    public int size() { return bytes.size(); }
+}
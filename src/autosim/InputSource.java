@@ -0,0 +1,27 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Input of a machine, pulled in chunks so that it never has to be held in memory at once
+abstract class InputSource
+{
+    public static final int CHUNK_SIZE = 8192;
+
+    // fills 'buf' with the next symbols, returning how many were read, or -1 at the end of the input
+    public abstract int read(char buf[]);
+
+    // size of the buffer to read the input with
+    public int getChunkSize() { return CHUNK_SIZE; }
+
+    // reads the rest of the input into a string, for the machines which need random access to it
+    public String readAll()
+    {
+        StringBuilder sb = new StringBuilder();
+        char buf[] = new char[getChunkSize()];
+        for(int n; (n=read(buf))!=-1; ) sb.append(buf, 0, n);
+        return sb.toString();
+    }
+}
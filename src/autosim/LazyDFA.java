@@ -0,0 +1,188 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Matches strings against a ThompsonNFA by building the subset construction lazily: a DFA
+// state (a set of NFA states) and its transitions are only computed when the input reaches
+// them, and the cache is flushed if it grows past MAX_CACHED_STATES.
+//
+// A LazyDFA is not thread-safe: all of its states are built as the runs step into them, so runs
+// sharing one have to hold its lock while they use it (see RegexMatcher.match). As a flush
+// renumbers the states, a run which lets go of the lock keeps the set of its current state, and
+// finds its number again with getState() if getFlushCount() has changed in the meantime.
+class LazyDFA
+{
+    public static final int MAX_CACHED_STATES = 10000;
+
+    private final ThompsonNFA nfa;
+    private final int colOf[];          // symbol -> column, or -1 if the NFA never reads it
+    private final int columns;
+
+    private final HashMap<StateSet, Integer> index;
+    private final ArrayList<StateSet> sets;
+    private final ArrayList<int[]> table;      // DFA transitions: -1 if none, -2 if not yet computed
+
+    private long stateBytes;            // approximate size of the cached DFA states
+    private long flushes;
+
+    public LazyDFA(ThompsonNFA nfa)
+    {
+        this.nfa = nfa;
+
+        char alphabet[] = nfa.getAlphabet();
+        this.colOf = new int[65536];
+        Arrays.fill(colOf, -1);
+        for(int i=0; i<alphabet.length; i++) colOf[alphabet[i]] = i;
+        this.columns = alphabet.length;
+
+        this.index = new HashMap<StateSet, Integer>();
+        this.sets = new ArrayList<StateSet>();
+        this.table = new ArrayList<int[]>();
+
+        this.stateBytes = 0;
+        this.flushes = 0;
+    }
+
+    public int getInitialState()
+    {
+        return addState(closure(new int[] { nfa.start }, 1));
+    }
+
+    // approximate number of bytes held by the NFA and the DFA states built so far
+    public long getMemoryFootprint()
+    {
+        return MachineCache.ofArray(colOf.length, 4) + 3*MachineCache.ofArray(nfa.size(), 4) + stateBytes;
+    }
+
+    // number of times the cache has been flushed, which renumbers the states
+    public long getFlushCount()
+    {
+        return flushes;
+    }
+
+    public StateSet getStateSet(int state)
+    {
+        return sets.get(state);
+    }
+
+    // the state made up of the given set, added to the cache if a flush has dropped it
+    public int getState(StateSet x)
+    {
+        return addState(x);
+    }
+
+    public boolean isFinal(int state)
+    {
+        return sets.get(state).isFinal;
+    }
+
+    // set of NFA states making up a DFA state, for tracing
+    public String getStateName(int state)
+    {
+        return sets.get(state).toString();
+    }
+
+    // returns the next state, or -1 if no NFA state survives reading 'c'
+    public int step(int state, char c)
+    {
+        int col = colOf[c];
+        if(col==-1) return -1;
+
+        int next = table.get(state)[col];
+        if(next!=-2) return next;
+
+        StateSet from = sets.get(state);
+        int targets[] = new int[from.states.length];
+        int n = 0;
+        for(int i=0; i<from.states.length; i++)
+        {
+            int q = from.states[i];
+            if(nfa.getLabel(q)==c) targets[n++] = nfa.getOut1(q);
+        }
+
+        if(n==0) {
+            next = -1;
+        } else {
+            if(sets.size() >= MAX_CACHED_STATES)
+            {
+                flush(from);
+                state = 0;
+            }
+            next = addState(closure(targets, n));
+        }
+
+        table.get(state)[col] = next;
+        return next;
+    }
+
+    // drops all cached DFA states except 'keep', which becomes state 0
+    private void flush(StateSet keep)
+    {
+        index.clear();
+        sets.clear();
+        table.clear();
+        stateBytes = 0;
+        flushes++;
+        addState(keep);
+    }
+
+    private int addState(StateSet x)
+    {
+        Integer i = index.get(x);
+        if(i!=null) return i;
+
+        int row[] = new int[columns];
+        Arrays.fill(row, -2);
+
+        stateBytes += MachineCache.ofArray(columns, 4) + 2*MachineCache.HEADER + MachineCache.ofArray(x.states.length, 4) + MachineCache.ENTRY + 2*MachineCache.REFERENCE;
+        index.put(x, sets.size());
+        sets.add(x);
+        table.add(row);
+        return sets.size()-1;
+    }
+
+    // lambda-closure of the given states, keeping only those with a symbol transition and the final state
+    private StateSet closure(int from[], int n)
+    {
+        boolean mark[] = new boolean[nfa.size()];
+        int stack[] = new int[nfa.size()];
+        int top = 0;
+        for(int i=0; i<n; i++)
+        {
+            if(!mark[from[i]])
+            {
+                mark[from[i]] = true;
+                stack[top++] = from[i];
+            }
+        }
+
+        int kept[] = new int[nfa.size()];
+        int k = 0;
+        boolean isFinal = false;
+
+        while(top > 0)
+        {
+            int q = stack[--top];
+            if(q==nfa.accept) isFinal = true;
+
+            if(nfa.getLabel(q)!=ThompsonNFA.LAMBDA) {
+                kept[k++] = q;
+            } else {
+                int o1 = nfa.getOut1(q), o2 = nfa.getOut2(q);
+                if(o1!=-1 && !mark[o1]) { mark[o1] = true; stack[top++] = o1; }
+                if(o2!=-1 && !mark[o2]) { mark[o2] = true; stack[top++] = o2; }
+            }
+        }
+
+        int states[] = Arrays.copyOf(kept, k);
+        Arrays.sort(states);
+        return new StateSet(states, isFinal);
+    }
+}
@@ -0,0 +1,28 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.PrintStream;
+
+// A machine whose description is parsed once, and which can then be run on any number of inputs (see -serve).
+// run(InputSource) prints the outcome as the command line does; run(CharSequence) returns it (see Automaton).
+public interface Machine extends Automaton
+{
+    // parses the description, printing any errors; returns false if the machine cannot be run
+    boolean prepare();
+
+    // runs the machine on the input, printing the result
+    void run(InputSource input);
+
+    // the part of the trace of the following runs on the command line to keep (see TraceLog), null for all of it
+    void setTraceSampling(TraceLog.Sampling sampling);
+
+    // where prepare() prints the errors and warnings of the description, the standard output unless set
+    void setMessages(PrintStream messages);
+
+    // approximate number of bytes held by the prepared machine, for the cache of the server
+    long getMemoryFootprint();
+}
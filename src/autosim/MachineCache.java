@@ -0,0 +1,159 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Prepared machines of the server, kept by automaton and description file. A machine is only
+// reused while its file has the size and modification time it had when it was parsed. When the
+// approximate size of all the machines exceeds the budget, the least recently used ones are dropped.
+class MachineCache
+{
+    // approximate sizes on a 64-bit JVM, used by the implementations of Machine.getMemoryFootprint()
+    public static final int HEADER = 16;        // object header
+    public static final int REFERENCE = 8;
+    public static final int ENTRY = 48;         // entry of a HashMap/HashSet, with its share of the bucket array
+
+    public static long ofArray(long length, int elementSize) { return HEADER + length*elementSize; }
+    public static long ofString(int length) { return HEADER + 8 + ofArray(length, 2); }
+
+    private final long budget;
+    private final LinkedHashMap<String,Entry> entries;     // in access order: least recently used first
+    private long used;
+
+    private long hits, misses, evictions, invalidations;
+
+    public MachineCache(long budget)
+    {
+        this.budget = budget;
+        this.entries = new LinkedHashMap<String,Entry>(16, 0.75f, true);
+        this.used = 0;
+    }
+
+    // the machine parsed from the description, or null if it is not cached or the file has changed since
+    public Machine get(String type, String descFile)
+    {
+        File f = new File(descFile);
+        String key = keyOf(type, f);
+        Entry e = entries.get(key);
+
+        if(e==null)
+        {
+            misses++;
+            return null;
+        }
+
+        if(e.length!=f.length() || e.modified!=f.lastModified())
+        {
+            invalidations++;
+            misses++;
+            drop(key);
+            return null;
+        }
+
+        hits++;
+        return e.machine;
+    }
+
+    public void put(String type, String descFile, Machine m)
+    {
+        File f = new File(descFile);
+        String key = keyOf(type, f);
+        drop(key);
+
+        Entry e = new Entry(m, f.length(), f.lastModified());
+        entries.put(key, e);
+        used += e.size;
+        evict();
+    }
+
+    // measures the machine again after a run, as some machines (regex) keep growing as they are used
+    public void update(String type, String descFile)
+    {
+        Entry e = entries.get(keyOf(type, new File(descFile)));
+        if(e==null) return;
+
+        long size = e.machine.getMemoryFootprint();
+        used += size - e.size;
+        e.size = size;
+        evict();
+    }
+
+    // drops the machines of the description file (of any automaton), returns how many were dropped
+    public int remove(String descFile)
+    {
+        String path = " " + new File(descFile).getAbsolutePath();
+        int count = 0;
+        Iterator<Map.Entry<String,Entry>> it = entries.entrySet().iterator();
+        while(it.hasNext())
+        {
+            Map.Entry<String,Entry> e = it.next();
+            if(e.getKey().endsWith(path))
+            {
+                used -= e.getValue().size;
+                it.remove();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int clear()
+    {
+        int count = entries.size();
+        entries.clear();
+        used = 0;
+        return count;
+    }
+
+    public String getStatistics()
+    {
+        return "Cache: " + entries.size() + " machine(s), " + (used+1023)/1024 + " KB used of " + budget/1024 + " KB; "
+             + hits + " hit(s), " + misses + " miss(es), " + evictions + " eviction(s), " + invalidations + " invalidation(s)";
+    }
+
+    private void drop(String key)
+    {
+        Entry e = entries.remove(key);
+        if(e!=null) used -= e.size;
+    }
+
+    // drops the least recently used machines until the rest fit, always keeping the most recent one
+    private void evict()
+    {
+        Iterator<Entry> it = entries.values().iterator();
+        while(used > budget && entries.size() > 1)
+        {
+            used -= it.next().size;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static String keyOf(String type, File f)
+    {
+        return type + " " + f.getAbsolutePath();
+    }
+
+    private static class Entry
+    {
+        final Machine machine;
+        final long length;          // size and last-modified time of the description when it was parsed
+        final long modified;
+        long size;                  // approximate bytes held by the machine
+
+        Entry(Machine machine, long length, long modified)
+        {
+            this.machine = machine;
+            this.length = length;
+            this.modified = modified;
+            this.size = machine.getMemoryFootprint();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Input file mapped into memory, read in chunks without ever building a String.
+// The bytes are decoded as UTF-8 (AutoSim.FILE_CHARSET), as descriptions and the standard input are,
+// with a malformed sequence read as U+FFFD; an ASCII byte, the common case, is one symbol as it is.
+// The bytes are read by absolute position, so that slices of the file can be read by several threads
+// at once (see ParallelDFA), which start them at the first byte of a character.
+class MappedInput extends FilteredInput
+{
+    private static final int SEGMENT_BITS = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;     // a single mapping is limited to 2 GB
+    private static final int REPLACEMENT = 0xFFFD;
+
+    private final MappedByteBuffer segments[];
+    private final long start, end;
+    private long pos;
+
+    public MappedInput(String fileName) throws IOException
+    {
+        RandomAccessFile f = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel ch = f.getChannel();
+            long size = ch.size();
+            int n = (int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+
+            segments = new MappedByteBuffer[n];
+            for(int i=0; i<n; i++)
+            {
+                long from = (long)i * SEGMENT_SIZE;
+                segments[i] = ch.map(FileChannel.MapMode.READ_ONLY, from, Math.min(SEGMENT_SIZE, size - from));
+            }
+            start = 0;
+            end = size;
+        } finally {
+            f.close();      // the mappings remain valid after the channel is closed
+        }
+
+        rewind();
+    }
+
+    private MappedInput(MappedByteBuffer segments[], long start, long end)
+    {
+        super(true);
+        this.segments = segments;
+        this.start = start;
+        this.end = end;
+        this.pos = start;
+    }
+
+    // the bytes [from, to) of the file, read as a part of the input
+    public MappedInput slice(long from, long to)
+    {
+        return new MappedInput(segments, from, to);
+    }
+
+    public long length() { return end - start; }
+
+    public int byteAt(long i)
+    {
+        return(segments[(int)(i >>> SEGMENT_BITS)].get((int)(i & (SEGMENT_SIZE-1))) & 0xFF);
+    }
+
+    public void rewind()
+    {
+        pos = start;
+        reset();
+    }
+
+    @Override
+    protected int nextChar()
+    {
+        if(pos==end) return -1;
+        int b = byteAt(pos++);
+        return(b < 0x80 ? b : decode(b));
+    }
+
+    // the character a multi-byte sequence starting with b stands for, reading the bytes after b which belong to
+    // it; U+FFFD for a malformed, overlong or surrogate sequence. Like the characters above U+00FF, which no
+    // alphabet has, it is then skipped (see FilteredInput).
+    private int decode(int b)
+    {
+        int count, c, min;
+        if(b >= 0xC2 && b <= 0xDF) { count = 1; c = b & 0x1F; min = 0x80; }
+        else if(b >= 0xE0 && b <= 0xEF) { count = 2; c = b & 0x0F; min = 0x800; }
+        else if(b >= 0xF0 && b <= 0xF4) { count = 3; c = b & 0x07; min = 0x10000; }
+        else return REPLACEMENT;
+
+        for(int i=0; i<count; i++)
+        {
+            if(pos==end) return REPLACEMENT;
+            int d = byteAt(pos);
+            if((d & 0xC0)!=0x80) return REPLACEMENT;
+            c = (c << 6) | (d & 0x3F);
+            pos++;
+        }
+        return(c < min || (c >= 0xD800 && c <= 0xDFFF) || c > 0x10FFFF ? REPLACEMENT : c);
+    }
+}
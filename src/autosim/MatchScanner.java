@@ -0,0 +1,269 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// Finds the parts of a text accepted by a DFA or NFA (-scan), in a single pass over the text. The
+// machine is run as if its initial state had a self-loop on every symbol, i.e. a new run is started
+// at every position, and the runs which reach the same state are merged (keeping the leftmost start),
+// so that each symbol costs at most one step per state however many runs are under way.
+//
+//      all         the end of every non-empty substring which is accepted
+//      prefix      the end of every non-empty prefix which is accepted
+//      longest     the leftmost-longest matches, which do not overlap
+//
+// For the longest matches, the runs are grouped in families, each looking for one match: the leftmost,
+// then longest, from the end of the match of the family before it. Once a family has a match, the runs
+// started after its end make up the next family, which looks for the next match while the one before
+// may still find a longer one; if it does, the families after it are dropped, and the runs start again
+// from its new end. A family is over when its runs are, and its match is printed once the families
+// before it are over. The families follow one another in the order of their starts, so the merging of
+// runs keeps a state in the earliest family it is in: in a later family it would go on in the same way,
+// and could only be accepted when the earlier one is, which drops it. The text is then read once, in
+// O(symbols x states) time, and nothing is kept of it but the matches which are not yet printed.
+//
+// Symbols outside the alphabet end all the runs under way, rather than being an error. Positions
+// count the symbols of the input from 0, and a match s-e covers the symbols s to e-1.
+class MatchScanner
+{
+    public enum Mode
+    {
+        ALL, PREFIX, LONGEST;
+
+        // null if the name is not that of a mode
+        public static Mode fromString(String name)
+        {
+            if(name.equals("all")) return ALL;
+            if(name.equals("prefix")) return PREFIX;
+            if(name.equals("longest")) return LONGEST;
+            return null;
+        }
+    }
+
+    private final int stateCount;
+    private final SymbolTable symbolTable;
+    private final RuleTable<int[]> targets;     // the states reached from each state on each symbol class, λ-closed; null if none
+    private final int initial[];            // the initial state, λ-closed
+    private final boolean accepting[];
+
+    // the runs under way: the states they are in, the leftmost position each state was started from,
+    // and the family of that run (the families first to last, for the longest matches)
+    private int active[], nextActive[];
+    private int count, nextCount;
+    private long start[], nextStart[];
+    private int family[], nextFamily[];
+
+    // the families first to last: the match each has found, -1 if none yet
+    private long matchStart[], matchEnd[];
+    private int first, last;
+
+    public MatchScanner(int stateCount, SymbolTable symbolTable, RuleTable<int[]> targets, int initial[], boolean accepting[])
+    {
+        this.stateCount = stateCount;
+        this.symbolTable = symbolTable;
+        this.targets = targets;
+        this.initial = initial;
+        this.accepting = accepting;
+    }
+
+    // prints the matches as they are found, and returns how many there were
+    public long scan(InputSource input, Mode mode, PrintStream out)
+    {
+        active = new int[stateCount];
+        nextActive = new int[stateCount];
+        start = new long[stateCount];
+        nextStart = new long[stateCount];
+        family = new int[stateCount];
+        nextFamily = new int[stateCount];
+        Arrays.fill(start, -1);
+        Arrays.fill(nextStart, -1);
+        count = 0;
+
+        matchStart = new long[16];
+        matchEnd = new long[16];
+        first = last = 0;
+        matchStart[0] = matchEnd[0] = -1;
+
+        return(mode==Mode.LONGEST ? scanLongest(input, out) : scanEnds(input, mode==Mode.PREFIX, out));
+    }
+
+    private long scanEnds(InputSource input, boolean prefix, PrintStream out)
+    {
+        long matches = 0, pos = 0;
+        char buf[] = new char[input.getChunkSize()];
+
+        for(int n; (n=input.read(buf))!=-1; )
+        {
+            for(int i=0; i<n; i++, pos++)
+            {
+                if(!prefix || pos==0) startRun(pos);
+                if(step(buf[i]))
+                {
+                    out.println("Match ending at " + (pos+1));
+                    matches++;
+                }
+                if(prefix && count==0) return matches;      // no prefix can be accepted any more
+            }
+        }
+        return matches;
+    }
+
+    private long scanLongest(InputSource input, PrintStream out)
+    {
+        long matches = 0, pos = 0;
+        char buf[] = new char[input.getChunkSize()];
+
+        for(int n; (n=input.read(buf))!=-1; )
+        {
+            for(int i=0; i<n; i++, pos++)
+            {
+                startRun(pos);
+                if(!step(buf[i])) continue;
+
+                // the earliest family to find a match, or a match further left, drops the families after it
+                int f = -1;
+                for(int j=0; j<count; j++)
+                {
+                    int s = active[j], g = family[s];
+                    if(!accepting[s] || (matchStart[g]!=-1 && start[s] > matchStart[g])) continue;
+                    matchStart[g] = start[s];
+                    matchEnd[g] = pos+1;
+                    if(f==-1 || g < f) f = g;
+                }
+                if(f!=-1) dropRunsAfter(f);
+            }
+            matches += printMatches(out, false);
+        }
+        return matches + printMatches(out, true);
+    }
+
+    // prints the matches of the first families which are over (all of them at the end of the input), and
+    // returns how many there were
+    private long printMatches(PrintStream out, boolean end)
+    {
+        long matches = 0;
+        while(end || !hasRuns(first))
+        {
+            if(matchStart[first]!=-1)
+            {
+                out.println("Match: " + matchStart[first] + "-" + matchEnd[first]);
+                matches++;
+            }
+            if(first==last)
+            {
+                // the runs start again in a family of their own, unless this one still has none
+                if(matchStart[first]!=-1 && !end) first = newFamily();
+                break;
+            }
+            first++;
+        }
+        return matches;
+    }
+
+    private boolean hasRuns(int f)
+    {
+        for(int j=0; j<count; j++) if(family[active[j]]==f) return true;
+        return false;
+    }
+
+    // adds a family after the last one, and returns it
+    private int newFamily()
+    {
+        if(last+1==matchStart.length)
+        {
+            if(first > 0)
+            {
+                // the families before the first one are over: the others move down in their place
+                int n = last - first + 1;
+                System.arraycopy(matchStart, first, matchStart, 0, n);
+                System.arraycopy(matchEnd, first, matchEnd, 0, n);
+                for(int j=0; j<count; j++) family[active[j]] -= first;
+                last -= first;
+                first = 0;
+            }
+            if(last+1==matchStart.length)
+            {
+                matchStart = Arrays.copyOf(matchStart, 2*matchStart.length);
+                matchEnd = Arrays.copyOf(matchEnd, 2*matchEnd.length);
+            }
+        }
+
+        last++;
+        matchStart[last] = matchEnd[last] = -1;
+        return last;
+    }
+
+    // starts the runs at the position: in the last family, unless that one already has a match
+    private void startRun(long pos)
+    {
+        int f = (matchStart[last]==-1 ? last : -1);
+        for(int i=0; i<initial.length; i++)
+        {
+            int s = initial[i];
+            if(start[s]==-1)
+            {
+                if(f==-1) f = newFamily();
+                start[s] = pos;
+                family[s] = f;
+                active[count++] = s;
+            }
+        }
+    }
+
+    // takes a step of all the runs, returns true if any of them is then accepted
+    private boolean step(char c)
+    {
+        int col = symbolTable.getSymbolClass(c);
+        boolean accepted = false;
+        nextCount = 0;
+
+        for(int j=0; j<count; j++)
+        {
+            int s = active[j];
+            int t[] = (col==-1 ? null : targets.get(s, col));
+            if(t!=null)
+            {
+                for(int k=0; k<t.length; k++)
+                {
+                    int u = t[k];
+                    if(nextStart[u]==-1)
+                    {
+                        nextActive[nextCount++] = u;
+                        nextStart[u] = start[s];
+                        nextFamily[u] = family[s];
+                        accepted |= accepting[u];
+                    } else if(start[s] < nextStart[u]) {
+                        nextStart[u] = start[s];
+                        nextFamily[u] = family[s];
+                    }
+                }
+            }
+            start[s] = -1;
+        }
+
+        int x[] = active; active = nextActive; nextActive = x;
+        long y[] = start; start = nextStart; nextStart = y;
+        x = family; family = nextFamily; nextFamily = x;
+        count = nextCount;
+        return accepted;
+    }
+
+    // ends the runs of the families after f, and those of f which started after its match
+    private void dropRunsAfter(int f)
+    {
+        int n = 0;
+        for(int j=0; j<count; j++)
+        {
+            int s = active[j];
+            if(family[s] < f || (family[s]==f && start[s] <= matchStart[f])) active[n++] = s;
+            else start[s] = -1;
+        }
+        count = n;
+        last = f;
+    }
+}
@@ -5,15 +5,20 @@
 
 package autosim;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 
-class MealyMachine
+class MealyMachine implements Traceable
 {
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+    
     private final String descFile;
-    private final String input;
-    private FileIO fio;
+    private final InputSource input;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
@@ -25,18 +30,22 @@ class MealyMachine
     
     private String states[];
     private char symbols[];
-    private String table[][];
-    private Character outputTable[][];
+    private SymbolTable symbolTable;          // IDs of the states and symbols are their indices in the arrays
+    private RuleTable<String> table;            // the target of each state on each symbol (class, once prepared)
+    private RuleTable<Character> outputTable;   // and the output
+    private OffHeapTable offHeap;       // or, for very large tables, both outside the heap, see moveOffHeap()
+    private String tableFile;           // the file to map the table to, null to choose by its size
+    private TraceLog.Sampling sampling; // the part of the trace of runs on the command line to keep, null for all
+    private TraceWriter traceWriter;    // records the steps of runs on the command line, see -trace-file
     
-    public MealyMachine(String descFile, String input, boolean trace)
+    public MealyMachine(String descFile, InputSource input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         hasSpec = new boolean[4];       // Q, E, I(q0), T
-        fio = new FileIO();
-        fio.openFile(this.descFile);
         
         internalStates = new HashSet<String>();
         inputAlphabet = new HashSet<Character>();
@@ -48,137 +57,247 @@ class MealyMachine
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
-        if(!parseMealy()) return;
+        if(prepare()) run(input);
+    }
+    
+    // parses the description and checks the table, after which the machine can be run on any number of inputs
+    public boolean prepare()
+    {
+        // the description is read once, and only the tables built from it are kept
+        lexer = new DescLexer(messages);
+        boolean parsed = (lexer.openFile(descFile) && parseMealy());
+        lexer = null;
+        if(!parsed) return false;
         
         if(table==null)
         {
-            System.out.println("ERROR: Incomplete specification of Mealy Machine");
-            return;
+            messages.println("ERROR: Incomplete specification of Mealy Machine");
+            return false;
         }
         
         if(!isTableComplete())
         {
-            System.out.println("WARNING: Incomplete specification of Mealy Machine. One or more rules are undefined.");
+            messages.println("WARNING: Incomplete specification of Mealy Machine. One or more rules are undefined.");
         }
         
-        if(!verifyInput())
-        {
-            System.out.println("ERROR: Input string contains symbols not defined in the input alphabet");
-            return;
-        }
-        
-        simulateMealyMachine();
+        // symbols which every rule treats alike (same target and output) share a column, see SymbolTable
+        table.finish();
+        outputTable.finish();
+        int columns[] = symbolTable.groupSymbols(new RuleTable<?>[] { table, outputTable }, -1);
+        table.keepColumns(columns);
+        outputTable.keepColumns(columns);
+        if(tableFile!=null || (!table.isCompressed() && OffHeapTable.isLarge(states.length, 2*columns.length))) return moveOffHeap();
+        return true;
     }
-        
-    private boolean verifyInput()
+    
+    public void run(InputSource input)
     {
-        int n = input.length();
-        for(int i=0; i<n; i++)
-        {
-            if(!inputAlphabet.contains(input.charAt(i))) return false;
-        }
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, states, symbols);
+        TraceLog.end(log, simulateMealyMachine(input, System.out, log));
+    }
+    
+    public Result run(CharSequence input)
+    {
+        return simulateMealyMachine(new StringInput(input), null, null);
+    }
+    
+    // the table is kept in the file, mapped into memory, which the processes loading the same machine share (see OffHeapTable)
+    public void setTableFile(String tableFile)
+    {
+        this.tableFile = tableFile;
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+    
+    public void traceTo(TraceWriter writer)
+    {
+        traceWriter = writer;
+    }
+    
+    public boolean renderTrace(TraceReader reader, PrintStream out)
+    {
+        if(!reader.matches(states.length, symbols.length, 1)) return false;
+        TraceLog log = TraceLog.begin(out, true, null, states, symbols);
+        printInitialState(log);
+        while(reader.next()) printStep(log, reader.getState(), reader.getSymbol());
         return true;
     }
     
-    private boolean isTableComplete()
+    public long getMemoryFootprint()
     {
-        if(table==null || outputTable==null) return false;
+        int n1 = states.length;
+        return symbolTable.getMemoryFootprint() + MachineCache.ofArray(n1, MachineCache.REFERENCE)
+             + (table!=null ? table.getMemoryFootprint() + outputTable.getMemoryFootprint() : offHeap.getMemoryFootprint())
+             + (long)(internalStates.size() + inputAlphabet.size() + outputAlphabet.size()) * MachineCache.ENTRY;
+    }
         
-	for(int i=0; i<table.length; i++)
-        {
-            for(int j=0; j<table[i].length; j++)
-            {
-                if(table[i][j]==null) return false;
-		if(outputTable[i][j]==null) return false;		
-            }
-        }
-	
-        return true;
+    private boolean isTableComplete()
+    {
+        return(table!=null && outputTable!=null && table.isComplete() && outputTable.isComplete());
     }
     
-    private void simulateMealyMachine()
+    // the output is written out to 'out', and the trace printed to 'log', only on the command line (null otherwise)
+    private Result simulateMealyMachine(InputSource input, PrintStream out, TraceLog log)
     {
-        int n = input.length();
-        String currentState = initialState;
+        int row = getIndexOfState(initialState);
 	StringBuilder sb = new StringBuilder();
+	boolean flushed = false;
 	
-	if(trace) System.out.println("Initial state : " + currentState);
+	if(log!=null && log.wants()) printInitialState(log);
 	
-        for(int i=0; i<n; i++)
+	TraceWriter tw = (out!=null ? traceWriter : null);
+	if(tw!=null) tw.begin("mealy", states.length, symbols.length, "");
+	int position = 0;
+	
+	char buf[] = new char[input.getChunkSize()];
+	
+        for(int n; (n=input.read(buf))!=-1; )
         {
-            char currentSymbol = input.charAt(i);
+            for(int i=0; i<n; i++)
+            {
+                char currentSymbol = buf[i];
             
-            int row = getIndexOfState(currentState);
-            int col = getIndexOfSymbol(currentSymbol);
+                int col = getIndexOfSymbol(currentSymbol);
             
-            if(col == -1)
-            {
-                System.out.println("ERROR: undefined symbol '" + currentSymbol + "'");
-                return;
-            }
+                if(col == -1)
+                {
+                    return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
+                }
             
-            if(table[row][col]==null)
-            {
-                System.out.println("ERROR: no rule defined for δ("+currentState+","+currentSymbol+")");
-                return;
-            }
+                int k = symbolTable.getClassOf(col);
+                int target = getTarget(row, k);
+                if(target==-1)
+                {
+                    return Result.error("ERROR: no rule defined for δ("+states[row]+","+currentSymbol+")");
+                }
             
-            if(trace) 
-	    {
-		System.out.println("Executing Rule: δ("+currentState+", "+currentSymbol+") = (" + table[row][col] + ", " + outputTable[row][col] + ")");
-	    }
+                if(log!=null)
+                {
+                    if(log.wants(row, col)) printStep(log, row, col);
+                } else if(tw!=null) {
+                    tw.step(row, col, 0, position);
+                }
 	    
-            currentState = table[row][col];
-	    sb.append(outputTable[row][col]);	    
+		sb.append(getOutput(row, k));
+                row = target;
+                position++;	    
+	    
+		// write out long outputs in parts, rather than holding all of it (not while tracing, to keep it after the trace,
+		// nor when the output is returned to the caller)
+		if(out!=null && !trace && sb.length() >= OUTPUT_BUFFER_SIZE)
+		{
+		    if(!flushed) out.println("\nOutput:");
+		    out.print(sb);
+		    sb.setLength(0);
+		    flushed = true;
+		}
+            }
         }
         
-	System.out.println("\nOutput:\n" + sb.toString());
+	String output = sb.toString();
+	return new Result(Result.Status.HALTED, states[row], output, (flushed ? output : "\nOutput:\n" + output));
+    }
+    
+    private void printInitialState(TraceLog log)
+    {
+	log.println("Initial state : " + initialState);
+    }
+    
+    private void printStep(TraceLog log, int row, int col)
+    {
+	int k = symbolTable.getClassOf(col);
+	log.println("Executing Rule: δ("+states[row]+", "+symbols[col]+") = (" + states[getTarget(row, k)] + ", " + getOutput(row, k) + ")");
+    }
+    
+    // the ID of the state reached from the state on the symbol class, -1 if there is no rule
+    private int getTarget(int state, int column)
+    {
+        if(offHeap!=null) return offHeap.get(state, 2*column);
+        
+        String t = table.get(state, column);
+        return(t==null ? -1 : getIndexOfState(t));
+    }
+    
+    private Character getOutput(int state, int column)
+    {
+        if(offHeap!=null) return (char)offHeap.get(state, 2*column + 1);
+        return outputTable.get(state, column);
+    }
+    
+    // copies the table outside the heap, with the target ID and the output of each rule side by side, and lets go of it
+    private boolean moveOffHeap()
+    {
+        int n = states.length, m = symbolTable.getClassCount();
+        OffHeapTable t;
+        try {
+            t = OffHeapTable.create(n, 2*m, Math.max(n, Character.MAX_VALUE), tableFile);
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot write to file '" + tableFile + "'.");
+            return false;
+        }
+        
+        for(int i=0; i<n; i++)
+        {
+            for(int j=0; j<m; j++)
+            {
+                Character c = outputTable.get(i, j);
+                t.set(i, 2*j, getTarget(i, j));
+                t.set(i, 2*j + 1, (c==null ? -1 : c));
+            }
+        }
+        offHeap = t;
+        table = null;
+        outputTable = null;
+        return true;
     }
     
     private boolean parseMealy()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            if(s==null || s.length()==0) continue;
+            char x = lexer.getHead(), sep = lexer.getSeparator();
             
-            String x = s.substring(0,2);
-            
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseInputAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("T=")) {
-                if(!parseOutputAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("d(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseInputAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='T' && sep=='=') {
+                if(!parseOutputAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='d' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
@@ -186,20 +305,19 @@ class MealyMachine
         return true;
     }
         
-    private boolean parseInputAlphabet(String s)
+    private boolean parseInputAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) inputAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) inputAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -207,20 +325,19 @@ class MealyMachine
         return true;
     }
     
-    private boolean parseOutputAlphabet(String s)
+    private boolean parseOutputAlphabet()
     {
         if(hasSpec[3])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of T - output alphabet");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of T - output alphabet");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: T = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: T = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) outputAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) outputAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -228,18 +345,18 @@ class MealyMachine
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[2])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -248,64 +365,60 @@ class MealyMachine
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int b1 = s.indexOf('('), b2 = s.indexOf(')');
-	    int b3 = s.lastIndexOf('=');
-	    int b4 = s.lastIndexOf('('), b5 = s.lastIndexOf(')');
-	    int b6 = s.indexOf(','), b7 = s.lastIndexOf(',');
-	    
-            if(b1==-1 || b2==-1 || b3==-1 || b4==-1 || b5==-1 || b6==-1 || b7==-1)
+            // d(q0, a) = (q1, 1)
+            if(!lexer.isWellFormed() || lexer.isProduction() || lexer.getShape()!='(')
             {
                 printRuleSyntax();
                 return false;
             }
             
-            if(!(b1 < b6 && b6 < b2 && b2 < b3 && b3<b4 && b4<b7 && b7<b5 && b3==b2+1 && b4==b3+1 && b2==b6+2 && b5==b7+2))
+            if(lexer.getArgumentCount()!=2 || lexer.getArgumentLength(1)!=1 || lexer.getFieldCount(0)!=2 || lexer.getFieldLength(0,1)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
             
-	    String currentState = s.substring(b1+1,b6);
-            Character currentSymbol = s.charAt(b6+1);
-            String targetState = s.substring(b4+1,b7);
-            Character outputSymbol = s.charAt(b7+1);
+	    String currentState = lexer.getArgument(0);
+            Character currentSymbol = lexer.getArgumentChar(1);
+            String targetState = lexer.getField(0,0);
+            Character outputSymbol = lexer.getFieldChar(0,1);
 	    
             if(!internalStates.contains(targetState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + targetState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + targetState + "' not found");
                 return false;
             }
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!inputAlphabet.contains(currentSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
                 return false;
             }
             
 	    if(!outputAlphabet.contains(outputSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + outputSymbol + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + outputSymbol + "' not found");
                 return false;
             }
 	    
             int row = getIndexOfState(currentState);
             int col = getIndexOfSymbol(currentSymbol);
             
-	    table[row][col]	  = targetState;
-	    outputTable[row][col] = outputSymbol;
+	    table.set(row, col, targetState);
+	    outputTable.set(row, col, outputSymbol);
         }
         
         return true;
@@ -326,36 +439,32 @@ class MealyMachine
         Iterator<Character> it2 = inputAlphabet.iterator();
         while(it2.hasNext()) symbols[++j]=it2.next();  
         
-        table = new String[n1][n2];
-	outputTable = new Character[n1][n2];
+        table = new RuleTable<String>(n1, n2);
+	outputTable = new RuleTable<Character>(n1, n2);
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<symbols.length; j++) symbolTable.addSymbol(symbols[j]);
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfSymbol(char symbol)
     {
-        for(int i=0; i<symbols.length; i++)
-        {
-            if(symbol==symbols[i]) return i;
-        }
-        return -1;
+        return symbolTable.getSymbolId(symbol);
     }
         
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = (q1,1)");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = (q1,1)");
     }
     
     private void printOutputFunctionSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: o(q0) = 1");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: o(q0) = 1");
     }
     
     private boolean isSpecReady()
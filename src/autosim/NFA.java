@@ -5,17 +5,22 @@
 
 package autosim;
 
+import java.io.PrintStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 
-class NFA
+class NFA implements Scannable
 {
     private final String descFile;
-    private final String input;
-    private FileIO fio;
+    private final InputSource input;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
+    private final boolean compiled;     // descFile is an image written by -compile
     
     private HashSet<String> internalStates;
     private HashSet<String> finalStates;
@@ -24,17 +29,23 @@ class NFA
     
     private String states[];
     private char symbols[];
-    private Object table[][];
+    private SymbolTable symbolTable;          // IDs of the states and symbols are their indices in the arrays
+    private RuleTable<HashSet<String>> table;     // the targets of each state on each symbol (class, once prepared)
+    private long footprint;             // computed once, by getMemoryFootprint()
+    private RuleTable<int[]> closedTargets;     // the rules with the lambda-transitions folded in, see getClosedTargets()
+    private boolean live[];             // the states from which a final state can be reached, see findStopStates()
+    private boolean sink[];             // the final states from which every input is accepted
+    private TraceLog.Sampling sampling; // the part of the trace of runs on the command line to keep, null for all
     
-    public NFA(String descFile, String input, boolean trace)
+    public NFA(String descFile, InputSource input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         hasSpec = new boolean[4];       // Q, E, I(q0), F
-        fio = new FileIO();
-        fio.openFile(this.descFile);
+        compiled = AutomatonImage.isImage(descFile);
         
         internalStates = new HashSet<String>();
         finalStates = new HashSet<String>();
@@ -45,110 +56,170 @@ class NFA
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
-        if(!parseNFA()) return;
+        if(prepare()) run(input);
+    }
+    
+    // parses the description and checks the table, after which the machine can be run on any number of inputs
+    public boolean prepare()
+    {
+        if(!load()) return false;
         
         if(table==null)
         {
-            System.out.println("ERROR: Incomplete specification of NFA");
-            return;
+            messages.println("ERROR: Incomplete specification of NFA");
+            return false;
         }
         
         if(!isTableComplete())
         {
-            System.out.println("WARNING: Incomplete specification of NFA. One or more rules are undefined.");
-        }
-        
-        if(!verifyInput())
-        {
-            System.out.println("ERROR: Input string contains symbols not defined in the input alphabet");
-            return;
+            messages.println("WARNING: Incomplete specification of NFA. One or more rules are undefined.");
         }
         
-        simulateNFA();
+        // symbols which every rule treats alike share a column, see SymbolTable; lambda keeps its own
+        table.finish();
+        table.keepColumns(symbolTable.groupSymbols(new RuleTable<?>[] { table }, symbolTable.getSymbolId(AutoSim.LAMBDA_CHAR)));
+        findStopStates();
+        return true;
     }
     
-    private boolean isTableComplete()
+    public void run(InputSource input)
+    {
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, states, symbols);
+        TraceLog.end(log, simulateNFA(input, log));
+    }
+    
+    public Result run(CharSequence input)
+    {
+        return simulateNFA(new StringInput(input), null);
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+    
+    public long getMemoryFootprint()
     {
-        if(table==null) return false;
-        for(int i=0; i<table.length; i++)
+        if(footprint==0)
         {
-            for(int j=0; j<table[i].length; j++)
-            {
-                if(table[i][j]==null) return false;
-            }
+            int n1 = states.length;
+            footprint = symbolTable.getMemoryFootprint() + MachineCache.ofArray(n1, MachineCache.REFERENCE) + table.getMemoryFootprint()
+                      + (long)(internalStates.size() + finalStates.size() + alphabet.size()) * MachineCache.ENTRY;
+            
+            for(HashSet<String> set: table.getRules()) footprint += 3*MachineCache.HEADER + set.size() * MachineCache.ENTRY;
         }
-        return true;
+        return footprint;
     }
     
-    private boolean verifyInput()
+    // parses the description (or reads the image) and writes it out as an image
+    public void compile(String imageFile)
     {
-        int n = input.length();
-        for(int i=0; i<n; i++)
+        if(!load()) return;
+        
+        if(table==null)
         {
-            if(!alphabet.contains(input.charAt(i))) return false;
+            messages.println("ERROR: Incomplete specification of NFA");
+            return;
         }
-        return true;
+        
+        if(writeImage(imageFile)) messages.println("NFA with " + states.length + " states compiled to '" + imageFile + "'");
+    }
+    
+    private boolean load()
+    {
+        if(compiled) return readImage();
+        
+        // the description is read once, and only the tables built from it are kept
+        lexer = new DescLexer(messages);
+        boolean parsed = (lexer.openFile(descFile) && parseNFA());
+        lexer = null;
+        return parsed;
     }
     
-    private void simulateNFA()
+    private boolean isTableComplete()
+    {
+        return(table!=null && table.isComplete());
+    }
+    
+    // the trace is only printed on the command line, and is null otherwise
+    private Result simulateNFA(InputSource input, TraceLog log)
     {
-        int n = input.length();
         int lambdaIndex = getIndexOfSymbol(AutoSim.LAMBDA_CHAR);
         
         HashSet<String> currentState = new HashSet<String>();
         currentState.add(initialState);
+        long position = 0;
         
-        for(int i=0; i<n; i++)
+        char buf[] = new char[input.getChunkSize()];
+        
+        for(int n; (n=input.read(buf))!=-1; )
         {
-            char currentSymbol = input.charAt(i);
-            
-            // perform lambda-transition before normal-transition (reqd. if initial state contains lambda-transitions)
-            HashSet<String> nextState = new HashSet<String>();
-            performLambdaTransitions(lambdaIndex,currentState,nextState);
-            currentState = nextState;
-            
-            nextState = new HashSet<String>();      // clean next-state
-            Iterator<String> it1 = currentState.iterator();
-            
-            while(it1.hasNext())
+            for(int i=0; i<n; i++, position++)
             {
-                String state = it1.next();
-                                
-                int row = getIndexOfState(state);
+                Result early = stopEarly(currentState, position);
+                if(early!=null)
+                {
+                    // the rest of the input is still checked against the alphabet, as a run to the end would
+                    for(int k=i; n!=-1; k=0, n=input.read(buf))
+                    {
+                        for(; k<n; k++) if(getIndexOfSymbol(buf[k])==-1) return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
+                    }
+                    return early;
+                }
+                
+                char currentSymbol = buf[i];
                 int col = getIndexOfSymbol(currentSymbol);
                 
                 if(col == -1)
                 {
-                    System.out.println("ERROR: undefined symbol '" + currentSymbol + "'");
-                    return;
+                    return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
                 }
+                
+                // perform lambda-transition before normal-transition (reqd. if initial state contains lambda-transitions)
+                HashSet<String> nextState = new HashSet<String>();
+                performLambdaTransitions(lambdaIndex,currentState,nextState,log);
+                currentState = nextState;
             
-                // <------------------------- For normal transitions --------------------------->
-                if(table[row][col]==null)
+                nextState = new HashSet<String>();      // clean next-state
+                Iterator<String> it1 = currentState.iterator();
+            
+                while(it1.hasNext())
                 {
-                    if(trace) System.out.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+state+", "+currentSymbol+") = undefined");
-                    continue;
-                } else {            
-                    if(trace) System.out.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+state+", "+currentSymbol+") = " + getStateList(table[row][col]));
+                    String state = it1.next();
+                                
+                    int row = getIndexOfState(state);
+            
+                    // <------------------------- For normal transitions --------------------------->
+                    if(table.get(row, col)==null)
+                    {
+                        if(log!=null && log.wants(row, symbolTable.getSymbolId(currentSymbol))) log.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+state+", "+currentSymbol+") = undefined");
+                        continue;
+                    } else {            
+                        if(log!=null && log.wants(row, symbolTable.getSymbolId(currentSymbol))) log.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+state+", "+currentSymbol+") = " + getStateList(table.get(row, col)));
                 
-                    HashSet<String> targetStates = (HashSet<String>)table[row][col];
-                    Iterator<String> it2 = targetStates.iterator();
-                    while(it2.hasNext()) nextState.add(it2.next());
+                        HashSet<String> targetStates = table.get(row, col);
+                        Iterator<String> it2 = targetStates.iterator();
+                        while(it2.hasNext()) nextState.add(it2.next());
+                    }
                 }
-            }
             
-            currentState = nextState;       // assign changes (after normal transition)
+                currentState = nextState;       // assign changes (after normal transition)
             
-            // perform lambda-transition after normal transition
-            nextState = new HashSet<String>();
-            performLambdaTransitions(lambdaIndex,currentState,nextState);
-            currentState = nextState;            
+                // perform lambda-transition after normal transition
+                nextState = new HashSet<String>();
+                performLambdaTransitions(lambdaIndex,currentState,nextState,log);
+                currentState = nextState;            
+            }
         }
                 
         // perform lambda-transition after completion (reqd. when input = lambda, the for-loop above will never execute)
         HashSet<String> nextState = new HashSet<String>();
-        performLambdaTransitions(lambdaIndex,currentState,nextState);
+        performLambdaTransitions(lambdaIndex,currentState,nextState,log);
         currentState = nextState;            
         
         // <---------------- check final state --------------------->
@@ -158,15 +229,114 @@ class NFA
             String state = it.next();
             if(finalStates.contains(state))
             {
-                System.out.println("String accepted: NFA halted in state '" + state + "'");
-                return;
+                return new Result(Result.Status.ACCEPTED, state, null, "String accepted: NFA halted in state '" + state + "'");
+            }
+        }
+        
+        String states = getStateList(currentState);
+        return new Result(Result.Status.REJECTED, states, null, "String rejected: NFA halted in states: " + states);
+    }
+    
+    // the end of a run with input left, if its outcome is already settled: accepted once it is in a sink, rejected
+    // once none of its states can reach a final state (as when there are none left); null otherwise
+    private Result stopEarly(HashSet<String> currentState, long position)
+    {
+        boolean alive = false;
+        for(String state: currentState)
+        {
+            int row = getIndexOfState(state);
+            if(sink[row])
+            {
+                return new Result(Result.Status.ACCEPTED, state, null, "String accepted: NFA entered state '" + state + "' after reading " + position + " symbol(s), from which every string is accepted");
             }
+            alive |= live[row];
         }
+        if(alive) return null;
         
-        System.out.println("String rejected: NFA halted in states: " + getStateList(currentState));
+        String states = getStateList(currentState);
+        return new Result(Result.Status.REJECTED, states, null, "String rejected: NFA halted after reading " + position + " symbol(s), as no final state can be reached from states: " + states);
     }
     
-    private void performLambdaTransitions(int lambdaIndex, HashSet<String> currentState, HashSet<String> nextState)
+    // finds the states in which the outcome of a run is settled whatever the rest of its input. The live states
+    // are those from which the rules lead to a final state, found by searching them backwards. The sinks are the
+    // final states from which every symbol leads (lambda-closed) to another sink: starting from all the final
+    // states, those with a symbol which leads to none of the others are taken out, one after another, counting
+    // for each rule how many of its targets are left, until every one that is left has them.
+    private void findStopStates()
+    {
+        int n = states.length, m = symbolTable.getClassCount();
+        int lambdaIndex = getIndexOfSymbol(AutoSim.LAMBDA_CHAR);
+        
+        int count = 0;
+        for(HashSet<String> t: table.getRules()) count += t.size();
+        final int from[] = new int[count], to[] = new int[count];
+        table.visitRules(new RuleTable.Visitor<HashSet<String>>() {
+            int k = 0;
+            public void visit(int row, int column, HashSet<String> t)
+            {
+                for(String state: t)
+                {
+                    from[k] = row;
+                    to[k++] = getIndexOfState(state);
+                }
+            }
+        });
+        boolean accepting[] = new boolean[n];
+        for(int i=0; i<n; i++) accepting[i] = finalStates.contains(states[i]);
+        live = Reachability.canReach(n, from, to, count, accepting);
+        
+        // the lambda-closed rules, numbered in row and column order: the state each is out of and its targets
+        RuleTable<int[]> closed = getClosedTargets();
+        int rules = closed.getRuleCount();
+        final int rowOf[] = new int[rules], targetsOf[][] = new int[rules][];
+        closed.visitRules(new RuleTable.Visitor<int[]>() {
+            int c = 0;
+            public void visit(int row, int column, int t[])
+            {
+                rowOf[c] = row;
+                targetsOf[c++] = t;
+            }
+        });
+        
+        // the rules into each state s are users[start[s]..start[s+1]-1]
+        int start[] = new int[n+1];
+        for(int c=0; c<rules; c++) for(int s: targetsOf[c]) start[s+1]++;
+        for(int s=0; s<n; s++) start[s+1] += start[s];
+        int users[] = new int[start[n]], fill[] = new int[n];
+        for(int c=0; c<rules; c++) for(int s: targetsOf[c]) users[start[s] + fill[s]++] = c;
+        
+        int left[] = new int[rules];        // the targets of each rule which may still be sinks
+        int covered[] = new int[n];         // the symbols of each state with a rule to a target which may still be a sink
+        for(int c=0; c<rules; c++)
+        {
+            for(int s: targetsOf[c]) if(accepting[s]) left[c]++;
+            if(left[c] > 0) covered[rowOf[c]]++;
+        }
+        
+        int symbolCount = m - (lambdaIndex==-1 ? 0 : 1);
+        sink = new boolean[n];
+        int queue[] = new int[n], removed = 0;
+        for(int i=0; i<n; i++)
+        {
+            if(!accepting[i]) continue;
+            sink[i] = (covered[i]==symbolCount);
+            if(!sink[i]) queue[removed++] = i;
+        }
+        
+        for(int q=0; q<removed; q++)
+        {
+            int s = queue[q];
+            for(int u=start[s]; u<start[s+1]; u++)
+            {
+                int c = users[u], i = rowOf[c];
+                if(--left[c] > 0 || !sink[i]) continue;
+                sink[i] = false;
+                queue[removed++] = i;
+            }
+        }
+    }
+    
+    private void performLambdaTransitions(int lambdaIndex, HashSet<String> currentState, HashSet<String> nextState, TraceLog log)
     {
         HashSet<String> cs = currentState;
         
@@ -180,11 +350,11 @@ class NFA
                 int row = getIndexOfState(state);
 
                 // <------------------------- For lambda transitions --------------------------->
-                if(table[row][lambdaIndex]!=null)
+                if(table.get(row, lambdaIndex)!=null)
                 {
-                    if(trace) System.out.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+state+", "+AutoSim.LAMBDA_PRINT_CHAR+") = " + getStateList(table[row][lambdaIndex]));
+                    if(log!=null && log.wants(row, symbolTable.getSymbolId(AutoSim.LAMBDA_CHAR))) log.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+state+", "+AutoSim.LAMBDA_PRINT_CHAR+") = " + getStateList(table.get(row, lambdaIndex)));
 
-                    HashSet<String> targetStates = (HashSet<String>)table[row][lambdaIndex];
+                    HashSet<String> targetStates = table.get(row, lambdaIndex);
                     Iterator<String> it2 = targetStates.iterator();
                     while(it2.hasNext()) nextState.add(it2.next());                    
                 }
@@ -193,7 +363,7 @@ class NFA
             }
             
             if(nextState.equals(cs)) return;
-            cs = nextState;
+            cs = new HashSet<String>(nextState);        // iterate over a snapshot, as nextState keeps growing
         }
     }
     
@@ -216,46 +386,43 @@ class NFA
     
     private boolean parseNFA()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            if(s.length()==0) continue;
-            String x = s.substring(0,2).toUpperCase();
+            char x = Character.toUpperCase(lexer.getHead()), sep = lexer.getSeparator();
             
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("F=")) {
-                if(!parseFinalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("D(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='F' && sep=='=') {
+                if(!parseFinalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='D' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
@@ -263,20 +430,19 @@ class NFA
         return true;
     }
         
-    private boolean parseAlphabet(String s)
+    private boolean parseAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) alphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) alphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -284,18 +450,18 @@ class NFA
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[2])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -304,24 +470,24 @@ class NFA
         return true;
     }
         
-    private boolean parseFinalStates(String s)
+    private boolean parseFinalStates()
     {
         if(hasSpec[3])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'F - set of final states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'F - set of final states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) 
+                for(int i=0; i<lexer.getGroupCount(); i++)
                 {
+                    String state = lexer.getField(i,0);
                     if(!internalStates.contains(state))
                     {
-                        System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + state + "' not found");
+                        messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + state + "' not found");
                         return false;
                     } else {
                         finalStates.add(state);
@@ -334,55 +500,49 @@ class NFA
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int b1 = s.indexOf('('), b3 = s.indexOf(')'), b4 = s.lastIndexOf('='), b2 = s.indexOf(',');
-            if(b1==-1 || b2==-1 || b3==-1 || b4==-1)
-            {
-                printRuleSyntax();
-                return false;
-            }
-            
-            if(!(b1 < b2 && b2 < b3 && b3 < b4 && b3==b2+2))
+            // d(q0, a) = { q1, q2, ... }
+            if(!lexer.isWellFormed() || lexer.isProduction() || lexer.getShape()!='{')
             {
                 printRuleSyntax();
                 return false;
             }
             
-            String tss = s.substring(b4+1);
-            if(tss.charAt(0)!='{' || tss.charAt(tss.length()-1)!='}')
+            if(lexer.getArgumentCount()!=2 || lexer.getArgumentLength(1)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
                 
-            String targetStates[]=tss.substring(1,tss.length()-1).split(",");            
-            String currentState = s.substring(b1+1,b2);
-            Character currentSymbol = s.charAt(b2+1);
+            String targetStates[] = new String[lexer.getGroupCount()];
+            for(int i=0; i<targetStates.length; i++) targetStates[i] = lexer.getField(i,0);
+            String currentState = lexer.getArgument(0);
+            Character currentSymbol = lexer.getArgumentChar(1);
             
             for(String targetState: targetStates)
             {
                 if(!internalStates.contains(targetState))
                 {
-                    System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + targetState + "' not found");
+                    messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + targetState + "' not found");
                     return false;
                 }
             }
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!alphabet.contains(currentSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
                 return false;
             }
             
@@ -403,11 +563,11 @@ class NFA
                     if(symbols[k]==AutoSim.LAMBDA_CHAR) continue;
                     
                     int col = getIndexOfSymbol(symbols[k]);
-                    table[row][col]=set;
+                    table.set(row, col, set);
                 }
             } else {
                 int col = getIndexOfSymbol(currentSymbol);
-                table[row][col]=set;            
+                table.set(row, col, set);            
             }
         }
         
@@ -431,30 +591,219 @@ class NFA
         Iterator<Character> it2 = alphabet.iterator();
         while(it2.hasNext()) symbols[++j]=it2.next();  
         
-        table = new Object[n1][n2];
+        table = new RuleTable<HashSet<String>>(n1, n2);
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<symbols.length; j++) symbolTable.addSymbol(symbols[j]);
     }
     
-    private int getIndexOfState(String stateName)
+    public MatchScanner getScanner()
     {
-        for(int i=0; i<states.length; i++)
+        boolean accepting[] = new boolean[states.length];
+        for(String state: finalStates) accepting[getIndexOfState(state)] = true;
+        
+        return new MatchScanner(states.length, symbolTable, getClosedTargets(), getInitialStates(), accepting);
+    }
+    
+    // <------------------------- For Equivalence --------------------------->
+    
+    public int getStateCount() { return states.length; }
+    public boolean isFinalState(int state) { return finalStates.contains(states[state]); }
+    
+    // the symbols of the alphabet, without lambda
+    public char[] getAlphabet()
+    {
+        char x[] = new char[symbols.length];
+        int n = 0;
+        for(int j=0; j<symbols.length; j++) if(symbols[j]!=AutoSim.LAMBDA_CHAR) x[n++] = symbols[j];
+        return Arrays.copyOf(x, n);
+    }
+    
+    // the initial state and the states reachable from it by lambda-transitions
+    public int[] getInitialStates()
+    {
+        return getClosure(new int[] { getIndexOfState(initialState) }, getIndexOfSymbol(AutoSim.LAMBDA_CHAR));
+    }
+    
+    // the IDs of the states reached on the symbol, lambda-closed; empty if there is no rule or the symbol is not in the alphabet
+    public int[] getNextStates(int state, char symbol)
+    {
+        int col = getIndexOfSymbol(symbol);
+        int t[] = (col==-1 || symbol==AutoSim.LAMBDA_CHAR ? null : getClosedTargets().get(state, col));
+        return(t==null ? new int[0] : t);
+    }
+    
+    // the rules as state IDs, with the lambda-transitions folded into them (as performLambdaTransitions() does),
+    // by state and symbol class, with none for lambda; built on first use
+    private RuleTable<int[]> getClosedTargets()
+    {
+        if(closedTargets!=null) return closedTargets;
+        
+        int n = states.length, m = symbolTable.getClassCount();
+        final int lambdaIndex = getIndexOfSymbol(AutoSim.LAMBDA_CHAR);
+        final int seen[] = new int[n], list[] = new int[n];
+        final RuleTable<int[]> closed = new RuleTable<int[]>(n, m);
+        table.visitRules(new RuleTable.Visitor<HashSet<String>>() {
+            int stamp = 0;
+            public void visit(int row, int column, HashSet<String> t)
+            {
+                if(column==lambdaIndex) return;
+                
+                int from[] = new int[t.size()], k = 0;
+                for(String state: t) from[k++] = getIndexOfState(state);
+                closed.set(row, column, getClosure(from, lambdaIndex, seen, ++stamp, list));
+            }
+        });
+        closed.finish();
+        closedTargets = closed;
+        return closed;
+    }
+    
+    // the states reachable from the given ones by lambda-transitions, including themselves
+    private int[] getClosure(int from[], int lambdaIndex)
+    {
+        return getClosure(from, lambdaIndex, new int[states.length], 1, new int[states.length]);
+    }
+    
+    // the same, with the states seen marked in seen[] by the stamp, and list[] to collect them in; both are of a
+    // state each, and can be used again with another stamp, so that a closure costs as much as the states in it
+    private int[] getClosure(int from[], int lambdaIndex, int seen[], int stamp, int list[])
+    {
+        int count = 0;
+        for(int i=0; i<from.length; i++)
+        {
+            if(seen[from[i]]==stamp) continue;
+            seen[from[i]] = stamp;
+            list[count++] = from[i];
+        }
+        
+        for(int k=0; k<count; k++)
         {
-            if(stateName.equals(states[i])) return i;
+            HashSet<String> t = table.get(list[k], lambdaIndex);
+            if(t==null) continue;
+            for(String state: t)
+            {
+                int s = getIndexOfState(state);
+                if(seen[s]==stamp) continue;
+                seen[s] = stamp;
+                list[count++] = s;
+            }
         }
-        return -1;
+        return Arrays.copyOf(list, count);
+    }
+    
+    private int getIndexOfState(String stateName)
+    {
+        return symbolTable.getStateId(stateName);
     }
     
+    // the column of the symbol in the table, i.e. its class once prepare() has grouped the symbols; -1 if it is not in the alphabet
     private int getIndexOfSymbol(char symbol)
     {
-        for(int i=0; i<symbols.length; i++)
-        {
-            if(symbol==symbols[i]) return i;
+        return symbolTable.getSymbolClass(symbol);
+    }
+        
+    // <------------------------- Compiled image --------------------------->
+    
+    // states, symbols (with ~), initial state, final states, then for each table[i][j] the number of
+    // target states (-1 if undefined), followed by the IDs of all the target states, cell after cell
+    private boolean writeImage(String imageFile)
+    {
+        ImageWriter w = new ImageWriter(AutomatonImage.NFA);
+        try {
+            w.writeStrings(states);
+            w.writeChars(symbols);
+            w.writeInt(getIndexOfState(initialState));
+            
+            int f[] = new int[finalStates.size()], k=0;
+            for(String state: finalStates) f[k++] = getIndexOfState(state);
+            w.writeInts(f);
+            
+            int counts[] = new int[states.length * symbols.length], total = 0;
+            for(int i=0; i<states.length; i++)
+            {
+                for(int j=0; j<symbols.length; j++)
+                {
+                    HashSet<String> set = table.get(i, symbolTable.getClassOf(j));
+                    counts[i*symbols.length + j] = (set==null ? -1 : set.size());
+                    if(set!=null) total += set.size();
+                }
+            }
+            w.writeInts(counts);
+            
+            int targets[] = new int[total];
+            k = 0;
+            for(int i=0; i<states.length; i++)
+            {
+                for(int j=0; j<symbols.length; j++)
+                {
+                    HashSet<String> set = table.get(i, symbolTable.getClassOf(j));
+                    if(set==null) continue;
+                    for(String state: set) targets[k++] = getIndexOfState(state);
+                }
+            }
+            w.writeInts(targets);
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot write to file '" + imageFile + "'.");
+            return false;
         }
-        return -1;
+        return w.save(imageFile);
     }
+    
+    private boolean readImage()
+    {
+        ImageReader r = ImageReader.open(descFile, AutomatonImage.NFA, messages);
+        if(r==null) return false;
+        
+        try {
+            states = r.readStrings();
+            symbols = r.readChars();
+            initialState = states[r.readInt()];
+            
+            int f[] = r.readInts();
+            for(int k=0; k<f.length; k++) finalStates.add(states[f[k]]);
+            
+            int counts[] = r.readInts();
+            int targets[] = r.readInts();
+            if(counts.length!=states.length*symbols.length || !r.isAtEnd()) throw new IllegalStateException();
+            
+            table = new RuleTable<HashSet<String>>(states.length, symbols.length);
+            int k = 0;
+            for(int i=0; i<states.length; i++)
+            {
+                for(int j=0; j<symbols.length; j++)
+                {
+                    int n = counts[i*symbols.length + j];
+                    if(n==-1) continue;
+                    
+                    HashSet<String> set = new HashSet<String>();
+                    for(int m=0; m<n; m++) set.add(states[targets[k++]]);
+                    table.set(i, j, set);
+                }
+            }
+        } catch(RuntimeException e) {       // truncated image, or IDs out of range
+            messages.println("ERROR: '" + descFile + "' is not a valid compiled NFA");
+            return false;
+        }
         
+        symbolTable = new SymbolTable();
+        for(int i=0; i<states.length; i++)
+        {
+            symbolTable.addState(states[i]);
+            internalStates.add(states[i]);
+        }
+        for(int j=0; j<symbols.length; j++)
+        {
+            symbolTable.addSymbol(symbols[j]);
+            alphabet.add(symbols[j]);
+        }
+        return true;
+    }
+    
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = { q1, q2, ... }");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = { q1, q2, ... }");
     }
     
     private boolean isSpecReady()
@@ -5,17 +5,23 @@
 
 package autosim;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 class RegexTransition
 {
     protected final String fromState;
     protected final String toState;
-    protected String onRegex;
+    protected Regex onRegex;
     
-    public RegexTransition(String f, String t, String r)
+    public RegexTransition(String f, String t, Regex r)
     {
 	this.fromState = f;
 	this.toState = t;
@@ -42,17 +48,172 @@ class RegexTransition
     @Override
     public String toString()
     {
-	return (onRegex.length()==1 ? "d(" : "d*(") + fromState + ", " + onRegex.replace(AutoSim.LAMBDA_CHAR, AutoSim.LAMBDA_PRINT_CHAR) + ") = " + toState;
+	return (onRegex.isAtomic() ? "d(" : "d*(") + fromState + ", " + onRegex.toString().replace(AutoSim.LAMBDA_CHAR, AutoSim.LAMBDA_PRINT_CHAR) + ") = " + toState;
+    }
+}
+
+// Transition graph used by the state-elimination method: transitions are indexed
+// both by source and by target state, so eliminating a state only visits its own edges
+class RegexGraph
+{
+    private final LinkedHashMap<String, LinkedHashMap<String, RegexTransition>> outgoing;
+    private final HashMap<String, LinkedHashMap<String, RegexTransition>> incoming;
+    private final RegexFactory factory;
+    private int size;
+    
+    public RegexGraph(RegexFactory factory)
+    {
+	this.factory = factory;
+	this.outgoing = new LinkedHashMap<String, LinkedHashMap<String, RegexTransition>>();
+	this.incoming = new HashMap<String, LinkedHashMap<String, RegexTransition>>();
+	this.size = 0;
+    }
+    
+    public int size() { return size; }
+    
+    // adds the transition, or unites the regex with the existing one between the same pair of states
+    public void addTransition(String from, String to, Regex regex)
+    {
+	LinkedHashMap<String, RegexTransition> out = outgoing.get(from);
+	if(out==null)
+	{
+	    out = new LinkedHashMap<String, RegexTransition>();
+	    outgoing.put(from, out);
+	}
+	
+	RegexTransition t = out.get(to);
+	if(t!=null)
+	{
+	    t.onRegex = factory.union(t.onRegex, regex);
+	    return;
+	}
+	
+	t = new RegexTransition(from, to, regex);
+	out.put(to, t);
+	
+	LinkedHashMap<String, RegexTransition> in = incoming.get(to);
+	if(in==null)
+	{
+	    in = new LinkedHashMap<String, RegexTransition>();
+	    incoming.put(to, in);
+	}
+	in.put(from, t);
+	size++;
+    }
+    
+    public RegexTransition getSelfLoop(String state)
+    {
+	LinkedHashMap<String, RegexTransition> out = outgoing.get(state);
+	return(out==null ? null : out.get(state));
+    }
+    
+    // number of transitions entering 'state', excluding its self-loop
+    public int getInDegree(String state)
+    {
+	LinkedHashMap<String, RegexTransition> in = incoming.get(state);
+	if(in==null) return 0;
+	return(in.containsKey(state) ? in.size()-1 : in.size());
+    }
+    
+    // number of transitions leaving 'state', excluding its self-loop
+    public int getOutDegree(String state)
+    {
+	LinkedHashMap<String, RegexTransition> out = outgoing.get(state);
+	if(out==null) return 0;
+	return(out.containsKey(state) ? out.size()-1 : out.size());
+    }
+    
+    // states adjacent to 'state' in either direction, excluding 'state' itself
+    public HashSet<String> getNeighbours(String state)
+    {
+	HashSet<String> x = new HashSet<String>();
+	LinkedHashMap<String, RegexTransition> out = outgoing.get(state);
+	if(out!=null) x.addAll(out.keySet());
+	LinkedHashMap<String, RegexTransition> in = incoming.get(state);
+	if(in!=null) x.addAll(in.keySet());
+	x.remove(state);
+	return x;
+    }
+    
+    // transitions entering 'state', excluding self-loops; null if there are none
+    public ArrayList<RegexTransition> getIncoming(String state)
+    {
+	return filter(incoming.get(state), state);
+    }
+    
+    // transitions leaving 'state', excluding self-loops; null if there are none
+    public ArrayList<RegexTransition> getOutgoing(String state)
+    {
+	return filter(outgoing.get(state), state);
+    }
+    
+    private ArrayList<RegexTransition> filter(LinkedHashMap<String, RegexTransition> edges, String state)
+    {
+	if(edges==null) return null;
+	
+	ArrayList<RegexTransition> x = new ArrayList<RegexTransition>(edges.size());
+	Iterator<RegexTransition> it = edges.values().iterator();
+	while(it.hasNext())
+	{
+	    RegexTransition t = it.next();
+	    if(!t.fromState.equals(t.toState)) x.add(t);
+	}
+	
+	if(x.size()==0) return null;
+	return x;
+    }
+    
+    public void removeState(String s)
+    {
+	LinkedHashMap<String, RegexTransition> out = outgoing.remove(s);
+	if(out!=null)
+	{
+	    Iterator<String> it = out.keySet().iterator();
+	    while(it.hasNext())
+	    {
+		String to = it.next();
+		LinkedHashMap<String, RegexTransition> in = incoming.get(to);
+		if(in!=null) in.remove(s);
+		size--;
+	    }
+	}
+	
+	LinkedHashMap<String, RegexTransition> in = incoming.remove(s);
+	if(in!=null)
+	{
+	    Iterator<String> it = in.keySet().iterator();
+	    while(it.hasNext())
+	    {
+		String from = it.next();
+		if(from.equals(s)) continue;	// self-loop: already counted above
+		
+		LinkedHashMap<String, RegexTransition> o = outgoing.get(from);
+		if(o!=null) o.remove(s);
+		size--;
+	    }
+	}
+    }
+    
+    // iterates over all transitions, grouped by source state
+    public Iterator<RegexTransition> iterator()
+    {
+	ArrayList<RegexTransition> all = new ArrayList<RegexTransition>(size);
+	Iterator<LinkedHashMap<String, RegexTransition>> it = outgoing.values().iterator();
+	while(it.hasNext()) all.addAll(it.next().values());
+	return all.iterator();
     }
 }
 
 public class NFAToRegexConverter
 {
     private final String descFile;
-    private FileIO fio;
+    private final String outputFile;
+    private DescLexer lexer;
     
     private boolean hasSpec[];
     private final boolean trace;
+    private final EliminationOrder order;
+    private final RegexFactory factory;
     
     private HashSet<String> internalStates;
     private HashSet<String> finalStates;
@@ -61,16 +222,25 @@ public class NFAToRegexConverter
     
     private String states[];
     private char symbols[];
+    private SymbolTable symbolTable;          // IDs of the states and symbols are their indices in the arrays
     private Object table[][];
     
     public NFAToRegexConverter(String descFile, boolean trace)
+    {
+        this(descFile, null, trace, EliminationOrder.NONE);
+    }
+    
+    public NFAToRegexConverter(String descFile, String outputFile, boolean trace, EliminationOrder order)
     {
         this.descFile = descFile;
+        this.outputFile = outputFile;
         this.trace = trace;
+        this.order = order;
+        this.factory = new RegexFactory();
         
         hasSpec = new boolean[4];       // Q, E, I(q0), F
-        fio = new FileIO();
-        fio.openFile(this.descFile);
+        lexer = new DescLexer();
+        lexer.openFile(this.descFile);
         
         internalStates = new HashSet<String>();
         finalStates = new HashSet<String>();
@@ -81,7 +251,7 @@ public class NFAToRegexConverter
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
+        if(!lexer.isReadyForReading()) return;
         if(!parseNFA()) return;
         
         if(table==null)
@@ -104,12 +274,14 @@ public class NFAToRegexConverter
 	table[initialRow][lambdaCol] = temp1;
 	initialState = AutoSim.INITIAL_STATE_NAME;
 	
-	// add the transitions to the single final state
+	// add the transitions to the single final state, keeping the lambda-transitions the final states already have
 	Iterator<String> allFinals = finalStates.iterator();
 	while(allFinals.hasNext())
 	{
 	    int rowIndex = getIndexOfState(allFinals.next());
-	    table[rowIndex][lambdaCol] = temp2;
+	    HashSet<String> targets = new HashSet<String>(temp2);
+	    if(table[rowIndex][lambdaCol]!=null) for(Object t: (HashSet<?>)table[rowIndex][lambdaCol]) targets.add((String)t);
+	    table[rowIndex][lambdaCol] = targets;
 	}
 	
 	// make others non-final
@@ -122,53 +294,49 @@ public class NFAToRegexConverter
     
     private boolean parseNFA()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            if(s.length()==0) continue;
+            char x = Character.toUpperCase(lexer.getHead()), sep = lexer.getSeparator();
             
-            String x = s.substring(0,2).toUpperCase();
-            
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("F=")) {
-                if(!parseFinalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("D(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='F' && sep=='=') {
+                if(!parseFinalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='D' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            System.out.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                System.out.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
 	if(internalStates.contains(AutoSim.INITIAL_STATE_NAME) || internalStates.contains(AutoSim.FINAL_STATE_NAME))
 	{
-	    System.out.printf("ERROR in Line "+fio.getLineNumber()+": states cannot be named '%s' or '%s' to facilitate NFA-to-Regex conversion\n", AutoSim.INITIAL_STATE_NAME, AutoSim.FINAL_STATE_NAME);
+	    System.out.printf("ERROR in Line "+lexer.getLineNumber()+": states cannot be named '%s' or '%s' to facilitate NFA-to-Regex conversion\n", AutoSim.INITIAL_STATE_NAME, AutoSim.FINAL_STATE_NAME);
             return false;
 	}
 	
@@ -179,20 +347,19 @@ public class NFAToRegexConverter
         return true;
     }
         
-    private boolean parseAlphabet(String s)
+    private boolean parseAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
+            System.out.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - alphabet / set of symbols'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                System.out.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) alphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) alphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -201,18 +368,18 @@ public class NFAToRegexConverter
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[2])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            System.out.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                System.out.println("ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -221,24 +388,24 @@ public class NFAToRegexConverter
         return true;
     }
         
-    private boolean parseFinalStates(String s)
+    private boolean parseFinalStates()
     {
         if(hasSpec[3])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'F - set of final states'");
+            System.out.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'F - set of final states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
+                System.out.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) 
+                for(int i=0; i<lexer.getGroupCount(); i++)
                 {
+                    String state = lexer.getField(i,0);
                     if(!internalStates.contains(state))
                     {
-                        System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + state + "' not found");
+                        System.out.println("ERROR in Line "+lexer.getLineNumber()+": State '" + state + "' not found");
                         return false;
                     } else {
                         finalStates.add(state);
@@ -251,55 +418,49 @@ public class NFAToRegexConverter
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
+            System.out.println("ERROR in Line "+lexer.getLineNumber()+": Q, E, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int b1 = s.indexOf('('), b3 = s.indexOf(')'), b4 = s.lastIndexOf('='), b2 = s.indexOf(',');
-            if(b1==-1 || b2==-1 || b3==-1 || b4==-1)
-            {
-                printRuleSyntax();
-                return false;
-            }
-            
-            if(!(b1 < b2 && b2 < b3 && b3 < b4 && b3==b2+2))
+            // d(q0, a) = { q1, q2, ... }
+            if(!lexer.isWellFormed() || lexer.isProduction() || lexer.getShape()!='{')
             {
                 printRuleSyntax();
                 return false;
             }
             
-            String tss = s.substring(b4+1);
-            if(tss.charAt(0)!='{' || tss.charAt(tss.length()-1)!='}')
+            if(lexer.getArgumentCount()!=2 || lexer.getArgumentLength(1)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
                 
-            String targetStates[]=tss.substring(1,tss.length()-1).split(",");            
-            String currentState = s.substring(b1+1,b2);
-            Character currentSymbol = s.charAt(b2+1);
+            String targetStates[] = new String[lexer.getGroupCount()];
+            for(int i=0; i<targetStates.length; i++) targetStates[i] = lexer.getField(i,0);
+            String currentState = lexer.getArgument(0);
+            Character currentSymbol = lexer.getArgumentChar(1);
             
             for(String targetState: targetStates)
             {
                 if(!internalStates.contains(targetState))
                 {
-                    System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + targetState + "' not found");
+                    System.out.println("ERROR in Line "+lexer.getLineNumber()+": State '" + targetState + "' not found");
                     return false;
                 }
             }
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                System.out.println("ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!alphabet.contains(currentSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
+                System.out.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentSymbol + "' not found");
                 return false;
             }
             
@@ -349,29 +510,25 @@ public class NFAToRegexConverter
         while(it2.hasNext()) symbols[++j]=it2.next();  
         
         table = new Object[n1][n2];
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<symbols.length; j++) symbolTable.addSymbol(symbols[j]);
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfSymbol(char symbol)
     {
-        for(int i=0; i<symbols.length; i++)
-        {
-            if(symbol==symbols[i]) return i;
-        }
-        return -1;
+        return symbolTable.getSymbolId(symbol);
     }
         
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = { q1, q2, ... }");
+        System.out.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = { q1, q2, ... }");
     }
     
     private boolean isSpecReady()
@@ -379,20 +536,20 @@ public class NFAToRegexConverter
         return(hasSpec[0] && hasSpec[1] && hasSpec[2] && hasSpec[3]);
     }
     
-    private void printTransitionFunction(ArrayList<RegexTransition> transitions)
+    private void printTransitionFunction(RegexGraph graph)
     {
 	System.out.println("Transition Function:");
-	int n = transitions.size();
-	for(int i=0; i<n; i++)
+	Iterator<RegexTransition> it = graph.iterator();
+	while(it.hasNext())
 	{
-	    System.out.println(transitions.get(i));
+	    System.out.println(it.next());
 	}
 	System.out.println();
     }
     
-    private ArrayList<RegexTransition> getTransitionFunction()
+    private RegexGraph getTransitionFunction()
     {
-	ArrayList<RegexTransition> trans = new ArrayList<RegexTransition>();
+	RegexGraph graph = new RegexGraph(factory);
 	
 	for(int i=0; i<table.length; i++)
 	{
@@ -400,78 +557,50 @@ public class NFAToRegexConverter
 	    for(int j=0; j<table[i].length; j++)
 	    {
 		if(table[i][j]==null) continue;
-		String onRegex = String.valueOf(symbols[j]);
+		Regex onRegex = factory.symbol(symbols[j]);
 		
 		HashSet<String> targets =  (HashSet<String>)table[i][j];
 		Iterator<String> it = targets.iterator();
 		while(it.hasNext())
 		{
 		    String toState = it.next();
-		    addTransition(trans, fromState, toState, onRegex);
+		    graph.addTransition(fromState, toState, onRegex);
 		}
 	    }
 	}
 	
-	return trans;
-    }
-    
-    private ArrayList<RegexTransition> filterTransitions(ArrayList<RegexTransition> trans, String stateName, boolean incoming)
-    {
-	int n = trans.size();
-	ArrayList<RegexTransition> x = new ArrayList<RegexTransition>();
-	
-	for(int i=0; i<n; i++)
-	{
-	    RegexTransition t = trans.get(i);
-	    if( (incoming && t.toState.equals(stateName)) || (!incoming && t.fromState.equals(stateName)))
-	    {
-		// don't include self-loops
-		if(!t.fromState.equals(t.toState)) x.add(t);
-	    }
-	}
-	
-	if(x.size()==0) return null;
-	return x;
-    }
-    
-    private RegexTransition getSelfLoopTransition(ArrayList<RegexTransition> trans, String stateName)
-    {
-	int n = trans.size();
-	ArrayList<RegexTransition> x = new ArrayList<RegexTransition>();
-	
-	for(int i=0; i<n; i++)
-	{
-	    RegexTransition t = trans.get(i);
-	    if(t.fromState.equals(stateName) && t.toState.equals(stateName)) return t;
-	}
-	
-	return null;
+	return graph;
     }
     
     private void simulateNFAToRegexConversion()
     {
-	ArrayList<RegexTransition> trans = getTransitionFunction();
+	RegexGraph graph = getTransitionFunction();
 	
 	if(trace)
 	{
 	    System.out.print("Beginning state-elimination method with ");
-	    printTransitionFunction(trans);
+	    printTransitionFunction(graph);
 	}
 	
-	// create a hashset from the set of active states
+	// create a hashset from the set of states to be eliminated
 	HashSet<String> activeStates = new HashSet<String>(states.length);
 	for(int i=0; i<states.length; i++) activeStates.add(states[i]);
-	Iterator<String> it = activeStates.iterator();
+	activeStates.remove(AutoSim.INITIAL_STATE_NAME);
+	activeStates.remove(AutoSim.FINAL_STATE_NAME);
 	
-	while(it.hasNext())
+	ArrayList<String> staticOrder = null;
+	if(order==EliminationOrder.STATIC) staticOrder = getStaticOrder(graph, activeStates);
+	else if(order==EliminationOrder.NONE) staticOrder = new ArrayList<String>(activeStates);
+	
+	for(int step=0; !activeStates.isEmpty(); step++)
 	{
-	    String s = it.next();
-	    if(s.equals(AutoSim.INITIAL_STATE_NAME) || s.equals(AutoSim.FINAL_STATE_NAME)) continue;
+	    String s = (staticOrder!=null ? staticOrder.get(step) : getCheapestState(graph, activeStates));
+	    activeStates.remove(s);
 	    
-	    // Eliminate state 's'
-	    ArrayList<RegexTransition> incoming = filterTransitions(trans, s, true);
-	    ArrayList<RegexTransition> outgoing = filterTransitions(trans, s, false);
-	    RegexTransition loop = getSelfLoopTransition(trans, s);
+	    // Eliminate state 's': only the edges incident on 's' are visited
+	    ArrayList<RegexTransition> incoming = graph.getIncoming(s);
+	    ArrayList<RegexTransition> outgoing = graph.getOutgoing(s);
+	    RegexTransition loop = graph.getSelfLoop(s);
 	    
 	    if(incoming!=null && outgoing!=null)
 	    {
@@ -479,115 +608,163 @@ public class NFAToRegexConverter
 		for(int i=0; i<n1; i++)
 		{
 		    RegexTransition inc = incoming.get(i);
-		    String incomingFrom = inc.fromState;
-		    String incomingRegex = inc.onRegex;
-
-		    if(incomingRegex.equals(String.valueOf(AutoSim.LAMBDA_CHAR))) incomingRegex="";
+		    Regex incomingRegex = (loop==null ? inc.onRegex : factory.concat(inc.onRegex, factory.star(loop.onRegex)));
 		    
 		    for(int j=0; j<n2; j++)
 		    {
 			RegexTransition out = outgoing.get(j);
-			String outgoingTo = out.toState;
-			String outgoingRegex = out.onRegex;
-
-			if(outgoingRegex.equals(String.valueOf(AutoSim.LAMBDA_CHAR))) outgoingRegex="";
-			
-			String loopRegex = (loop==null ? "" : loop.onRegex);
-			if(loopRegex.equals(String.valueOf(AutoSim.LAMBDA_CHAR))) 
-			    loopRegex="";
-			else {
-			    if(loopRegex.length()==1)
-				loopRegex += "*";
-			    else if(loopRegex.length()>1) {
-				if(loopRegex.startsWith("(") && loopRegex.endsWith(")*"))
-				    loopRegex = loopRegex;  // no change
-				else
-				    loopRegex = "(" + loopRegex + ")*";
-			    }
-			}
-			
-			if(incomingRegex.indexOf('+') > -1) incomingRegex = "(" + incomingRegex + ")";
-			if(outgoingRegex.indexOf('+') > -1) outgoingRegex = "(" + outgoingRegex + ")";
-			
-			String totalRegex = incomingRegex + loopRegex + outgoingRegex;
-			if(totalRegex.equals("")) totalRegex = String.valueOf(AutoSim.LAMBDA_CHAR);
-			if(totalRegex.startsWith("(") && totalRegex.endsWith(")"))
-			{
-			    totalRegex = totalRegex.substring(1, totalRegex.length()-1);
-			}
-			
-			addTransition(trans, incomingFrom, outgoingTo, totalRegex);
+			graph.addTransition(inc.fromState, out.toState, factory.concat(incomingRegex, out.onRegex));
 		    }
 		}
 	    } else {
 		// unreachable state or useless state
 	    }
 	    
-	    removeState(trans, s);
+	    graph.removeState(s);
 	    if(trace)
 	    {
 		System.out.print("After eliminating " + s + ", we have the following ");
-		printTransitionFunction(trans);
+		printTransitionFunction(graph);
 	    }
 	}
 	
-	if(trans.size()!=1)
+	if(graph.size()>1)
 	{
 	    System.out.println("Error! More than 1 transitions remaining...");
 	} else {
-	    String r = trans.get(0).onRegex.replace(AutoSim.LAMBDA_CHAR, AutoSim.LAMBDA_PRINT_CHAR);
-	    
-	    System.out.println("Equivalent regular expression:\n" + r);
+	    // no transition remains when no final state is reachable: the language is empty
+	    Regex result = (graph.size()==0 ? factory.EMPTY : graph.iterator().next().onRegex);
+	    if(result.length > Integer.MAX_VALUE - 16)
+	    {
+		System.out.println("ERROR: Equivalent regular expression is too large to be written out");
+	    } else {
+		String r = result.toString();
+		System.out.println("Equivalent regular expression:\n" + r.replace(AutoSim.LAMBDA_CHAR, AutoSim.LAMBDA_PRINT_CHAR));
+		if(outputFile!=null) writeRegex(r);
+	    }
+	    System.out.println("Expression size: " + result.length + " characters, " + result.weight + " symbols, " + factory.size() + " distinct subexpressions");
+	}
+    }
+    
+    // writes the expression in the syntax read by the 'regex' and 'regex-to-nfa' modes
+    private void writeRegex(String r)
+    {
+	try {
+	    BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), AutoSim.FILE_CHARSET));
+	    out.write(r);
+	    out.newLine();
+	    out.close();
+	} catch(IOException e) {
+	    System.out.println("ERROR: Cannot write to file '" + outputFile + "'.");
 	}
     }
     
-    private void addTransition(ArrayList<RegexTransition> trans, String inc, String out, String regex)
+    // picks the state whose elimination is estimated to be the cheapest, as per the chosen ordering
+    private String getCheapestState(RegexGraph graph, HashSet<String> activeStates)
     {
-	boolean found=false;
-	int n = trans.size();
-	for(int i=0; i<n; i++)
+	String best = null;
+	long bestCost = Long.MAX_VALUE;
+	
+	Iterator<String> it = activeStates.iterator();
+	while(it.hasNext())
 	{
-	    RegexTransition t = trans.get(i);
-	    if(t.fromState.equals(inc) && t.toState.equals(out))
+	    String s = it.next();
+	    long cost = (order==EliminationOrder.WEIGHT ? getEliminationWeight(graph, s) : (long)graph.getInDegree(s) * graph.getOutDegree(s));
+	    if(cost < bestCost)
 	    {
-		found=true;
-		
-		String left = t.onRegex;
-		if(left.length() > 1 && left.indexOf('+') > -1) left = "(" + left + ")";
-		
-		String right = regex;
-		if(right.length() > 1 && right.indexOf('+') > -1) right = "(" + right + ")";
-		
-		t.onRegex = left + "+" + (right.length()==0 ? AutoSim.LAMBDA_CHAR : right);
-		break;
+		best = s;
+		bestCost = cost;
 	    }
 	}
 	
-	if(!found)
+	return best;
+    }
+    
+    // growth in the total weight of the regexes if 's' were eliminated now (Delgado-Morais heuristic)
+    private long getEliminationWeight(RegexGraph graph, String s)
+    {
+	ArrayList<RegexTransition> incoming = graph.getIncoming(s);
+	ArrayList<RegexTransition> outgoing = graph.getOutgoing(s);
+	RegexTransition loop = graph.getSelfLoop(s);
+	
+	int n1 = (incoming==null ? 0 : incoming.size()), n2 = (outgoing==null ? 0 : outgoing.size());
+	long w = 0;
+	
+	for(int i=0; i<n1; i++) w += incoming.get(i).onRegex.weight * (n2-1);
+	for(int j=0; j<n2; j++) w += outgoing.get(j).onRegex.weight * (n1-1);
+	if(loop!=null) w += loop.onRegex.weight * (n1*n2-1);
+	
+	return w;
+    }
+    
+    // number of pairs of neighbours of 's' which are not yet adjacent to each other
+    private static long getFillIn(HashMap<String, HashSet<String>> adj, String s)
+    {
+	String nb[] = adj.get(s).toArray(new String[0]);
+	long fill = 0;
+	for(int i=0; i<nb.length; i++)
 	{
-	    // add a new transition
-	    trans.add(new RegexTransition(inc,out,regex));
+	    HashSet<String> x = adj.get(nb[i]);
+	    for(int j=i+1; j<nb.length; j++)
+	    {
+		if(!x.contains(nb[j])) fill++;
+	    }
 	}
+	return fill;
     }
     
-    private void removeState(ArrayList<RegexTransition> trans, String s)
+    // elimination order computed once, upfront, by the minimum fill-in heuristic (ties broken
+    // by minimum degree) on the undirected graph of the NFA: each eliminated state connects its
+    // remaining neighbours, so the order corresponds to a tree-decomposition with small bags
+    private ArrayList<String> getStaticOrder(RegexGraph graph, HashSet<String> activeStates)
     {
-	boolean found=false;
+	HashMap<String, HashSet<String>> adj = new HashMap<String, HashSet<String>>();
+	Iterator<String> it = activeStates.iterator();
+	while(it.hasNext())
+	{
+	    String s = it.next();
+	    HashSet<String> nb = graph.getNeighbours(s);
+	    nb.retainAll(activeStates);
+	    adj.put(s, nb);
+	}
 	
-	do {
-	    found=false;
+	ArrayList<String> result = new ArrayList<String>(activeStates.size());
+	while(!adj.isEmpty())
+	{
+	    String best = null;
+	    long bestCost = Long.MAX_VALUE;
 	    
-	    int n = trans.size();
-	    for(int i=0; i<n; i++)
+	    Iterator<String> it2 = adj.keySet().iterator();
+	    while(it2.hasNext())
 	    {
-		RegexTransition t = trans.get(i);
-		if(t.fromState.equals(s) || t.toState.equals(s)) 
+		String s = it2.next();
+		long cost = getFillIn(adj, s) * adj.size() + adj.get(s).size();
+		if(cost < bestCost)
 		{
-		    found=true;
-		    trans.remove(i);
-		    i=n;
+		    best = s;
+		    bestCost = cost;
 		}
 	    }
-	} while(found);
+	    
+	    HashSet<String> nb = adj.remove(best);
+	    Iterator<String> it3 = nb.iterator();
+	    while(it3.hasNext())
+	    {
+		HashSet<String> x = adj.get(it3.next());
+		x.remove(best);
+		x.addAll(nb);
+	    }
+	    
+	    Iterator<String> it4 = nb.iterator();
+	    while(it4.hasNext())
+	    {
+		String s = it4.next();
+		adj.get(s).remove(s);
+	    }
+	    
+	    result.add(best);
+	}
+	
+	return result;
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@
 
 package autosim;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Stack;
@@ -12,32 +13,32 @@ import java.util.Stack;
 class NPDAClone 
 {
     private Stack<Character> stack;
-    private final PDATarget table[][][][];
+    private final RuleTable<PDATarget[]> table;     // columns: input symbol * stack symbol count + stack symbol
     private final String input;
     private int inputHead;
-    private boolean trace;
+    private PrintStream out;                // where errors are printed, null to run silently
+    private TraceLog log;                   // the trace, null if the run is not traced
     
     private HashSet<String> finalStates;
-    private String states[];
-    private char inputSymbols[];
-    private char stackSymbols[];
+    private SymbolTable symbolTable;        // states and input symbols, with IDs indexing the table
+    private SymbolTable stackSymbolTable;
         
     private String currentState;
     
-    protected static String haltingState = "";    // set only by the clone which halts in final state
+    protected String haltingState = "";     // set only by the clone which halts in final state, and passed up to the parent
     
-    public NPDAClone(HashSet<String> fis, String states[], char is[], char ss[], String cs, PDATarget t[][][][], Stack<Character> stk, String inp, int index, boolean trace)
+    public NPDAClone(HashSet<String> fis, SymbolTable st, SymbolTable sst, String cs, RuleTable<PDATarget[]> t, Stack<Character> stk, String inp, int index, PrintStream out, TraceLog log)
     {
-        this.states = states;
         this.finalStates = fis;
-        this.inputSymbols = is;
-        this.stackSymbols = ss;
+        this.symbolTable = st;
+        this.stackSymbolTable = sst;
         
         this.table = t;
         this.input = inp;
         this.inputHead = index;
         this.currentState = cs;
-        this.trace = trace;
+        this.out = out;
+        this.log = log;
         
         this.stack = copyStack(stk);
     }
@@ -57,7 +58,7 @@ class NPDAClone
     {
         if(stack.isEmpty()) 
         {
-            System.out.println("ERROR: Stack exhausted");
+            if(out!=null) out.println("ERROR: Stack exhausted");
             return null;
         }
         char ss = stack.peek();
@@ -67,11 +68,11 @@ class NPDAClone
         {
             for(int i=0; i<matches1.length; i++) 
             {
-                if(trace)
+                if(log!=null && log.wants(getIndexOfState(currentState), getIndexOfInputSymbol(AutoSim.LAMBDA_CHAR)))
                 {
                     String ps = matches1[i].symbols;
                     if(ps.equals("")) ps = "" + AutoSim.LAMBDA_PRINT_CHAR;
-                    System.out.println("Executing Rule: " +AutoSim.DELTA_PRINT_CHAR+"("+currentState+", "+AutoSim.LAMBDA_PRINT_CHAR+", "+ss+") = (" + matches1[i].nextState + ", " + ps+")");
+                    log.println("Executing Rule: " +AutoSim.DELTA_PRINT_CHAR+"("+currentState+", "+AutoSim.LAMBDA_PRINT_CHAR+", "+ss+") = (" + matches1[i].nextState + ", " + ps+")");
                     printNewStack(stack, ps);
                 }
 
@@ -96,11 +97,11 @@ class NPDAClone
         {
             for(int i=0; i<matches2.length; i++) 
             {
-                if(trace)
+                if(log!=null && log.wants(getIndexOfState(currentState), getIndexOfInputSymbol(is)))
                 {
                     String ps = matches2[i].symbols;
                     if(ps.equals("")) ps = "" + AutoSim.LAMBDA_PRINT_CHAR;
-                    System.out.println("Executing Rule: " +AutoSim.DELTA_PRINT_CHAR+"("+currentState+", "+is+", "+ss+") = (" + matches2[i].nextState + ", " + ps+")");
+                    log.println("Executing Rule: " +AutoSim.DELTA_PRINT_CHAR+"("+currentState+", "+is+", "+ss+") = (" + matches2[i].nextState + ", " + ps+")");
                     printNewStack(stack, ps);
                 }
                 
@@ -120,7 +121,7 @@ class NPDAClone
     {
         String x = NPDAParser.stackToString(stk);
         x = x.substring(0, x.length()-1) + reverse(NPDAParser.removeAllChars(ps,AutoSim.LAMBDA_PRINT_CHAR));
-        System.out.println("\tStack contents after execution: " + x);
+        log.println("\tStack contents after execution: " + x);
     }
     
     private String reverse(String x)
@@ -140,7 +141,7 @@ class NPDAClone
         int index2 = getIndexOfInputSymbol(inps);
         int index3 = getIndexOfStackSymbol(stks);
         
-        return table[index1][index2][index3];
+        return table.get(index1, index2*stackSymbolTable.getSymbolCount() + index3);
     }
     
     private PDATarget[] findMatchingLambdaRules(char stks)
@@ -149,7 +150,7 @@ class NPDAClone
         int index2 = getIndexOfInputSymbol(AutoSim.LAMBDA_CHAR);
         int index3 = getIndexOfStackSymbol(stks);
         
-        return table[index1][index2][index3];
+        return table.get(index1, index2*stackSymbolTable.getSymbolCount() + index3);
     }
     
     private Stack<Character> spawnClone(int index, PDATarget target)
@@ -161,34 +162,24 @@ class NPDAClone
         newStack.pop();
         for(int i=popAndPushSymbols.length()-1; i>=0; i--) newStack.push(popAndPushSymbols.charAt(i));
         
-        NPDAClone child=new NPDAClone(finalStates, states, inputSymbols, stackSymbols, nextState, table, newStack, input, index, trace);
-        return child.simulate();
+        NPDAClone child=new NPDAClone(finalStates, symbolTable, stackSymbolTable, nextState, table, newStack, input, index, out, log);
+        Stack<Character> stk = child.simulate();
+        if(stk!=null) haltingState = child.haltingState;
+        return stk;
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfInputSymbol(char symbol)
     {
-        for(int i=0; i<inputSymbols.length; i++)
-        {
-            if(symbol==inputSymbols[i]) return i;
-        }
-        return -1;
+        return symbolTable.getSymbolId(symbol);
     }
         
     private int getIndexOfStackSymbol(char symbol)
     {
-        for(int i=0; i<stackSymbols.length; i++)
-        {
-            if(symbol==stackSymbols[i]) return i;
-        }
-        return -1;
+        return stackSymbolTable.getSymbolId(symbol);
     }
 }
@@ -5,18 +5,22 @@
 
 package autosim;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Stack;
 
-class NPDAParser
+class NPDAParser implements Machine
 {
     private final String descFile;
     private final String input;
-    private FileIO fio;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
+    private final boolean compiled;     // descFile is an image written by -compile
     
     private HashSet<String> internalStates;
     private HashSet<String> finalStates;
@@ -29,17 +33,21 @@ class NPDAParser
     private String states[];
     private char inputSymbols[];
     private char stackSymbols[];
-    private PDATarget table[][][][];
+    private SymbolTable symbolTable;          // IDs of the states and input symbols are their indices in the arrays
+    private SymbolTable stackSymbolTable;
+    private RuleTable<PDATarget[]> table;       // the rules of each state on each input and stack symbol, see getRules()
+    private long footprint;             // computed once, by getMemoryFootprint()
+    private TraceLog.Sampling sampling; // the part of the trace of runs on the command line to keep, null for all
     
     public NPDAParser(String descFile, String input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         hasSpec = new boolean[6];       // Q, E, T, z, I(q0), F
-        fio = new FileIO();
-        fio.openFile(this.descFile);
+        compiled = AutomatonImage.isImage(descFile);
         
         internalStates = new HashSet<String>();
         finalStates = new HashSet<String>();
@@ -51,30 +59,94 @@ class NPDAParser
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
-        if(!parseNPDA()) return;
+        if(prepare()) run(new StringInput(input));
+    }
+    
+    // parses the description and checks the table, after which the machine can be run on any number of inputs
+    public boolean prepare()
+    {
+        if(!load()) return false;
         
         if(table==null)
         {
-            System.out.println("ERROR: Incomplete specification of NPDA");
-            return;
+            messages.println("ERROR: Incomplete specification of NPDA");
+            return false;
         }
         
         if(!isTableComplete())
         {
-            System.out.println("WARNING: Incomplete specification of NPDA. One or more rules are undefined.");
+            messages.println("WARNING: Incomplete specification of NPDA. One or more rules are undefined.");
         }
         
-        if(!verifyInput())
+        table.finish();
+        return true;
+    }
+    
+    public void run(InputSource source)
+    {
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, states, inputSymbols);
+        TraceLog.end(log, simulateNPDA(source.readAll(), System.out, log));
+    }
+    
+    public Result run(CharSequence input)
+    {
+        return simulateNPDA(input.toString(), null, null);
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+    
+    public long getMemoryFootprint()
+    {
+        if(footprint==0)
+        {
+            int n1 = states.length;
+            footprint = symbolTable.getMemoryFootprint() + stackSymbolTable.getMemoryFootprint()
+                      + MachineCache.ofArray(n1, MachineCache.REFERENCE) + table.getMemoryFootprint()
+                      + (long)(internalStates.size() + finalStates.size() + inputAlphabet.size() + stackAlphabet.size()) * MachineCache.ENTRY;
+            
+            for(PDATarget t[]: table.getRules())
+            {
+                footprint += MachineCache.ofArray(t.length, MachineCache.REFERENCE);
+                for(int x=0; x<t.length; x++) footprint += MachineCache.HEADER + 2*MachineCache.REFERENCE + MachineCache.ofString(t[x].symbols.length());
+            }
+        }
+        return footprint;
+    }
+    
+    // parses the description (or reads the image) and writes it out as an image
+    public void compile(String imageFile)
+    {
+        if(!load()) return;
+        
+        if(table==null)
         {
-            System.out.println("ERROR: Input string contains symbols not defined in the input alphabet");
+            messages.println("ERROR: Incomplete specification of NPDA");
             return;
         }
         
-        simulateNPDA();
+        if(writeImage(imageFile)) messages.println("NPDA with " + states.length + " states compiled to '" + imageFile + "'");
     }
     
-    private boolean verifyInput()
+    private boolean load()
+    {
+        if(compiled) return readImage();
+        
+        // the description is read once, and only the tables built from it are kept
+        lexer = new DescLexer(messages);
+        boolean parsed = (lexer.openFile(descFile) && parseNPDA());
+        lexer = null;
+        return parsed;
+    }
+    
+    private boolean verifyInput(String input)
     {
         int n = input.length();
         for(int i=0; i<n; i++)
@@ -86,30 +158,26 @@ class NPDAParser
     
     private boolean isTableComplete()
     {
-        if(table==null) return false;
-        for(int i=0; i<table.length; i++)
-        {
-            for(int j=0; j<table[i].length; j++)
-            {
-                for(int k=0; k<table[i][j].length; k++)
-                {
-                    if(table[i][j][k]==null) return false;
-                }
-            }
-        }
-        return true;
+        return(table!=null && table.isComplete());
     }
       
-    private void simulateNPDA()
+    // errors are printed to 'out', and the trace to 'log', only on the command line (null otherwise)
+    private Result simulateNPDA(String input, PrintStream out, TraceLog log)
     {
+        if(!verifyInput(input))
+        {
+            return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
+        }
+        
         Stack<Character> stack = new Stack<Character>();
         stack.push(stackStartSymbol);
         
-        NPDAClone parent = new NPDAClone(finalStates, states, inputSymbols, stackSymbols, initialState, table, stack, input, 0, trace);
+        NPDAClone parent = new NPDAClone(finalStates, symbolTable, stackSymbolTable, initialState, table, stack, input, 0, out, log);
         Stack<Character> stk = parent.simulate();
         
-        System.out.println("String "+(stk!=null ? "accepted" : "rejected")+", NPDA halted in state '" + NPDAClone.haltingState + "'.");
-        System.out.println("Stack Contents: " + stackToString(stk));
+        String contents = stackToString(stk);
+        return new Result((stk!=null ? Result.Status.ACCEPTED : Result.Status.REJECTED), parent.haltingState, contents,
+                          "String "+(stk!=null ? "accepted" : "rejected")+", NPDA halted in state '" + parent.haltingState + "'.\nStack Contents: " + contents);
     }
     
     public static String stackToString(Stack<Character> stk)
@@ -125,52 +193,47 @@ class NPDAParser
     
     private boolean parseNPDA()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            if(s.length()==0) continue;
-            s = removeAllChars(s,' ');
-            
-            String x = s.substring(0,2).toUpperCase();
+            char x = Character.toUpperCase(lexer.getHead()), sep = lexer.getSeparator();
             
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseInputAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("F=")) {
-                if(!parseFinalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("T=")) {
-                if(!parseStackAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("Z=")) {
-                if(!parseStackStartSymbol(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("D(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseInputAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='F' && sep=='=') {
+                if(!parseFinalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='T' && sep=='=') {
+                if(!parseStackAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='Z' && sep=='=') {
+                if(!parseStackStartSymbol()) { lexer.closeFile(); return false; }
+            } else if(x=='D' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("IS:ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            messages.println("IS:ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("IS:ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                messages.println("IS:ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
@@ -178,20 +241,19 @@ class NPDAParser
         return true;
     }
         
-    private boolean parseInputAlphabet(String s)
+    private boolean parseInputAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("IA:ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - input alphabet'");
+            messages.println("IA:ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - input alphabet'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("IA:ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("IA:ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) inputAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) inputAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -199,20 +261,19 @@ class NPDAParser
         return true;
     }
     
-    private boolean parseStackAlphabet(String s)
+    private boolean parseStackAlphabet()
     {
         if(hasSpec[2])
         {
-            System.out.println("SA:ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'T - stack alphabet'");
+            messages.println("SA:ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'T - stack alphabet'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("SA:ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("SA:ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) stackAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) stackAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -220,18 +281,18 @@ class NPDAParser
         return true;
     }
     
-    private boolean parseStackStartSymbol(String s)
+    private boolean parseStackStartSymbol()
     {
         if(hasSpec[3])
         {
-            System.out.println("SS:ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Z - stack start symbol'");
+            messages.println("SS:ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Z - stack start symbol'");
             return false;
         } else {
-            char symbol = s.charAt(2);
+            char symbol = lexer.getFieldChar(0,0);
             if(stackAlphabet.contains(symbol))
                 stackStartSymbol = symbol;
             else {
-                System.out.println("SS:ERROR in Line "+fio.getLineNumber()+": Symbol '" + symbol + "' not found in stack alphabet");
+                messages.println("SS:ERROR in Line "+lexer.getLineNumber()+": Symbol '" + symbol + "' not found in stack alphabet");
                 return false;
             }
         }
@@ -240,18 +301,18 @@ class NPDAParser
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[4])
         {
-            System.out.println("I:ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            messages.println("I:ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("I:ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                messages.println("I:ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -260,24 +321,24 @@ class NPDAParser
         return true;
     }
         
-    private boolean parseFinalStates(String s)
+    private boolean parseFinalStates()
     {
         if(hasSpec[5])
         {
-            System.out.println("F1:ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'F - set of final states'");
+            messages.println("F1:ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'F - set of final states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("F2:ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
+                messages.println("F2:ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) 
+                for(int i=0; i<lexer.getGroupCount(); i++)
                 {
+                    String state = lexer.getField(i,0);
                     if(!internalStates.contains(state))
                     {
-                        System.out.println("F3:ERROR in Line "+fio.getLineNumber()+": State '" + state + "' not found");
+                        messages.println("F3:ERROR in Line "+lexer.getLineNumber()+": State '" + state + "' not found");
                         return false;
                     } else {
                         finalStates.add(state);
@@ -290,80 +351,45 @@ class NPDAParser
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("D:ERROR in Line "+fio.getLineNumber()+": Q, E, T, Z, I and F must be defined prior to defining the transition rules.");
+            messages.println("D:ERROR in Line "+lexer.getLineNumber()+": Q, E, T, Z, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int epos = s.indexOf('=');
-            if(epos == -1)
+            // d(q0, a, 0) = { (q1, 10), (q2, 00) }
+            if(!lexer.isWellFormed() || lexer.isProduction() || lexer.getShape()!='{')
             {
                 printRuleSyntax();
                 return false;
             }
             
-            String left = s.substring(1,epos);
-            String right = s.substring(epos+1);
-            
-            if(right.charAt(0)!='{' || right.charAt(right.length()-1)!='}')
-            {
-                printRuleSyntax();
-                return false;
-            }
-            
-            if(left.charAt(0)!='(' || left.charAt(left.length()-1)!=')')
+            if(lexer.getArgumentCount()!=3 || lexer.getArgumentLength(1)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
             
-            
-            left = left.substring(1, left.length()-1);          // remove parenthesis
-            right = right.substring(1, right.length()-1);       // remove braces
-            
-            String rmod = "";
-            boolean pOn = false;
-            int len = right.length();
-            for(int i=0; i<len; i++)
-            {
-                char c = right.charAt(i);
-                
-                if(c=='(') pOn = true;
-                if(c==')') pOn = false;
-                if(c==',' && !pOn) c=';';
-                if(c!='(' && c!=')') rmod += c;
-            }
-            
-            String targets[] = rmod.split(";");
-            
-            int b1 = left.indexOf(','), b2 = left.lastIndexOf(',');
-            if(b1==-1 || b2==-1 || b2!=b1+2)
-            {
-                printRuleSyntax();
-                return false;
-            }
-            
-            String currentState = left.substring(0,b1);
-            Character currentInputSymbol = left.charAt(b1+1);
-            Character currentStackSymbol = left.charAt(b2+1);
+            String currentState = lexer.getArgument(0);
+            Character currentInputSymbol = lexer.getArgumentChar(1);
+            Character currentStackSymbol = lexer.getArgumentChar(2);
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("D2:ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                messages.println("D2:ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!inputAlphabet.contains(currentInputSymbol))
             {
-                System.out.println("D3:ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
+                messages.println("D3:ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
                 return false;
             }
             
             if(!stackAlphabet.contains(currentStackSymbol))
             {
-                System.out.println("D4:ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
+                messages.println("D4:ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentInputSymbol + "' not found");
                 return false;
             }
             
@@ -371,19 +397,20 @@ class NPDAParser
             int index2 = getIndexOfInputSymbol(currentInputSymbol);
             int index3 = getIndexOfStackSymbol(currentStackSymbol);
             
-            table[index1][index2][index3]=new PDATarget[targets.length];
+            int n = lexer.getGroupCount();
+            PDATarget targets[] = new PDATarget[n];
+            table.set(index1, index2*stackSymbols.length + index3, targets);
             
-            for(int i=0; i<targets.length; i++)
+            for(int i=0; i<n; i++)
             {
-                int cpos = targets[i].indexOf(',');
-                if(cpos==-1)
+                if(lexer.getFieldCount(i)!=2)
                 {
                     printRuleSyntax();
                     return false;
                 }
                 
-                String targetState = targets[i].substring(0,cpos);
-                String symbolsToPush = targets[i].substring(cpos+1);
+                String targetState = lexer.getField(i,0);
+                String symbolsToPush = lexer.getField(i,1);
                 
                 symbolsToPush = removeAllChars(symbolsToPush, AutoSim.LAMBDA_CHAR);
                 
@@ -393,7 +420,7 @@ class NPDAParser
                     return false;
                 }
                 
-                table[index1][index2][index3][i] = new PDATarget(targetState, symbolsToPush);
+                targets[i] = new PDATarget(targetState, symbolsToPush);
             }
         }
         
@@ -420,39 +447,168 @@ class NPDAParser
         Iterator<Character> it3 = stackAlphabet.iterator();
         while(it3.hasNext()) stackSymbols[++k]=it3.next();  
         
-        table = new PDATarget[n1][n2][n3][];
+        table = new RuleTable<PDATarget[]>(n1, n2*n3);
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<inputSymbols.length; j++) symbolTable.addSymbol(inputSymbols[j]);
+        
+        stackSymbolTable = new SymbolTable();
+        for(k=0; k<stackSymbols.length; k++) stackSymbolTable.addSymbol(stackSymbols[k]);
+    }
+    
+    // the rules for the state, input symbol and stack symbol: the columns of the table are the pairs of symbols
+    private PDATarget[] getRules(int index1, int index2, int index3)
+    {
+        return table.get(index1, index2*stackSymbols.length + index3);
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfInputSymbol(char symbol)
     {
-        for(int i=0; i<inputSymbols.length; i++)
-        {
-            if(symbol==inputSymbols[i]) return i;
-        }
-        return -1;
+        return symbolTable.getSymbolId(symbol);
     }
         
     private int getIndexOfStackSymbol(char symbol)
     {
-        for(int i=0; i<stackSymbols.length; i++)
-        {
-            if(symbol==stackSymbols[i]) return i;
+        return stackSymbolTable.getSymbolId(symbol);
+    }
+        
+    // <------------------------- Compiled image --------------------------->
+    
+    // states, input symbols (with ~), stack symbols, stack start symbol, initial state, final states,
+    // then for each table[i][j][k] the number of targets (-1 if undefined), followed by the next
+    // state IDs and the strings to push of all the targets, cell after cell
+    private boolean writeImage(String imageFile)
+    {
+        int n1 = states.length, n2 = inputSymbols.length, n3 = stackSymbols.length;
+        
+        ImageWriter w = new ImageWriter(AutomatonImage.NPDA);
+        try {
+            w.writeStrings(states);
+            w.writeChars(inputSymbols);
+            w.writeChars(stackSymbols);
+            w.writeChar(stackStartSymbol);
+            w.writeInt(getIndexOfState(initialState));
+            
+            int f[] = new int[finalStates.size()], m=0;
+            for(String state: finalStates) f[m++] = getIndexOfState(state);
+            w.writeInts(f);
+            
+            int counts[] = new int[n1*n2*n3], total = 0;
+            for(int i=0; i<n1; i++)
+            {
+                for(int j=0; j<n2; j++)
+                {
+                    for(int k=0; k<n3; k++)
+                    {
+                        PDATarget t[] = getRules(i, j, k);
+                        counts[(i*n2 + j)*n3 + k] = (t==null ? -1 : t.length);
+                        if(t!=null) total += t.length;
+                    }
+                }
+            }
+            w.writeInts(counts);
+            
+            int nextStates[] = new int[total];
+            String pushed[] = new String[total];
+            m = 0;
+            for(int i=0; i<n1; i++)
+            {
+                for(int j=0; j<n2; j++)
+                {
+                    for(int k=0; k<n3; k++)
+                    {
+                        PDATarget t[] = getRules(i, j, k);
+                        if(t==null) continue;
+                        for(int x=0; x<t.length; x++, m++)
+                        {
+                            nextStates[m] = getIndexOfState(t[x].nextState);
+                            pushed[m] = t[x].symbols;
+                        }
+                    }
+                }
+            }
+            w.writeInts(nextStates);
+            w.writeStrings(pushed);
+        } catch(IOException e) {
+            messages.println("ERROR: Cannot write to file '" + imageFile + "'.");
+            return false;
         }
-        return -1;
+        return w.save(imageFile);
     }
+    
+    private boolean readImage()
+    {
+        ImageReader r = ImageReader.open(descFile, AutomatonImage.NPDA, messages);
+        if(r==null) return false;
+        
+        try {
+            states = r.readStrings();
+            inputSymbols = r.readChars();
+            stackSymbols = r.readChars();
+            stackStartSymbol = r.readChar();
+            initialState = states[r.readInt()];
+            
+            int f[] = r.readInts();
+            for(int m=0; m<f.length; m++) finalStates.add(states[f[m]]);
+            
+            int n1 = states.length, n2 = inputSymbols.length, n3 = stackSymbols.length;
+            int counts[] = r.readInts();
+            int nextStates[] = r.readInts();
+            String pushed[] = r.readStrings();
+            if(counts.length!=n1*n2*n3 || nextStates.length!=pushed.length || !r.isAtEnd()) throw new IllegalStateException();
+            
+            table = new RuleTable<PDATarget[]>(n1, n2*n3);
+            int m = 0;
+            for(int i=0; i<n1; i++)
+            {
+                for(int j=0; j<n2; j++)
+                {
+                    for(int k=0; k<n3; k++)
+                    {
+                        int n = counts[(i*n2 + j)*n3 + k];
+                        if(n==-1) continue;
+                        
+                        PDATarget t[] = new PDATarget[n];
+                        for(int x=0; x<n; x++, m++) t[x] = new PDATarget(states[nextStates[m]], pushed[m]);
+                        table.set(i, j*n3 + k, t);
+                    }
+                }
+            }
+        } catch(RuntimeException e) {       // truncated image, or IDs out of range
+            messages.println("ERROR: '" + descFile + "' is not a valid compiled NPDA");
+            return false;
+        }
         
+        symbolTable = new SymbolTable();
+        for(int i=0; i<states.length; i++)
+        {
+            symbolTable.addState(states[i]);
+            internalStates.add(states[i]);
+        }
+        for(int j=0; j<inputSymbols.length; j++)
+        {
+            symbolTable.addSymbol(inputSymbols[j]);
+            inputAlphabet.add(inputSymbols[j]);
+        }
+        
+        stackSymbolTable = new SymbolTable();
+        for(int k=0; k<stackSymbols.length; k++)
+        {
+            stackSymbolTable.addSymbol(stackSymbols[k]);
+            stackAlphabet.add(stackSymbols[k]);
+        }
+        return true;
+    }
+    
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a, 0) = { (q1, 10), (q2, 00) }");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a, 0) = { (q1, 10), (q2, 00) }");
     }
     
     private boolean isSpecReady()
@@ -0,0 +1,128 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// A dense table of small non-negative ints (e.g. the state IDs of a transition table), -1 where there is
+// no entry, held outside the Java heap so that very large tables neither count against it nor add to the
+// work of the garbage collector. Entries take 2 bytes when every value is below 0xFFFF, 4 otherwise.
+//
+// The table is either in direct memory, private to the process, or in a file mapped into memory (see
+// -table-file), which the processes that load the same machine with the same file share: each of them
+// writes the same entries into the same pages, of which the OS then keeps a single copy. The file starts
+// with a header (magic, rows, columns, entry width), and is laid out in the byte order of the machine.
+class OffHeapTable
+{
+    public static final long THRESHOLD = 1L << 26;      // dense tables of this many entries or more are kept off the heap
+    public static final int MAGIC = 0x4153544D;         // "ASTM"
+
+    private static final int SEGMENT_BITS = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;     // a single buffer is limited to 2 GB
+    private static final int HEADER = 16;
+
+    private final ByteBuffer segments[];
+    private final int rowCount, columnCount;
+    private final int shift;            // log2 of the entry width
+    private final String fileName;      // null if in direct memory
+
+    private OffHeapTable(ByteBuffer segments[], int rowCount, int columnCount, int shift, String fileName)
+    {
+        this.segments = segments;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.shift = shift;
+        this.fileName = fileName;
+    }
+
+    // a table for values 0..limit-1, in the file if one is given, in direct memory otherwise
+    public static OffHeapTable create(int rowCount, int columnCount, int limit, String fileName) throws IOException
+    {
+        int shift = (limit <= 0xFFFF ? 1 : 2);
+        long size = ((long)rowCount * columnCount) << shift;
+        int n = (int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        ByteBuffer segments[] = new ByteBuffer[n];
+
+        if(fileName==null)
+        {
+            for(int i=0; i<n; i++)
+            {
+                long from = (long)i * SEGMENT_SIZE;
+                segments[i] = ByteBuffer.allocateDirect((int)Math.min(SEGMENT_SIZE, size - from)).order(ByteOrder.nativeOrder());
+            }
+            return new OffHeapTable(segments, rowCount, columnCount, shift, null);
+        }
+
+        RandomAccessFile f = new RandomAccessFile(fileName, "rw");
+        try {
+            FileChannel ch = f.getChannel();
+            if(ch.size()!=HEADER + size) f.setLength(HEADER + size);
+
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER).order(ByteOrder.nativeOrder());
+            header.putInt(0, MAGIC);
+            header.putInt(4, rowCount);
+            header.putInt(8, columnCount);
+            header.putInt(12, 1 << shift);
+
+            for(int i=0; i<n; i++)
+            {
+                long from = (long)i * SEGMENT_SIZE;
+                segments[i] = ch.map(FileChannel.MapMode.READ_WRITE, HEADER + from, Math.min(SEGMENT_SIZE, size - from)).order(ByteOrder.nativeOrder());
+            }
+        } finally {
+            f.close();      // the mappings remain valid after the channel is closed
+        }
+        return new OffHeapTable(segments, rowCount, columnCount, shift, fileName);
+    }
+
+    // true if a dense table of this size should be kept off the heap
+    public static boolean isLarge(int rowCount, int columnCount)
+    {
+        return (long)rowCount * columnCount >= THRESHOLD;
+    }
+
+    public int get(int row, int column)
+    {
+        long i = ((long)row * columnCount + column) << shift;
+        ByteBuffer b = segments[(int)(i >>> SEGMENT_BITS)];
+        int p = (int)(i & (SEGMENT_SIZE-1));
+
+        if(shift==2) return b.getInt(p);
+        int x = b.getChar(p);
+        return(x==0xFFFF ? -1 : x);
+    }
+
+    public void set(int row, int column, int value)
+    {
+        long i = ((long)row * columnCount + column) << shift;
+        ByteBuffer b = segments[(int)(i >>> SEGMENT_BITS)];
+        int p = (int)(i & (SEGMENT_SIZE-1));
+
+        if(shift==2) b.putInt(p, value);
+        else b.putChar(p, (char)value);         // -1 is 0xFFFF
+    }
+
+    public int getRowCount() { return rowCount; }
+    public int getColumnCount() { return columnCount; }
+    public int getEntryWidth() { return 1 << shift; }
+    public String getFileName() { return fileName; }
+
+    // the bytes held outside the heap
+    public long getSize()
+    {
+        return ((long)rowCount * columnCount) << shift;
+    }
+
+    // the bytes held on the heap, which is all a MachineCache has to account for
+    public long getMemoryFootprint()
+    {
+        return MachineCache.HEADER + MachineCache.ofArray(segments.length, MachineCache.REFERENCE) + (long)segments.length * 64;
+    }
+}
@@ -0,0 +1,183 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs a DFA over a large input file on several threads. The file is split into chunks, and each
+// chunk is run from every state at once, giving the state it ends in from each state it could have
+// started in. Chaining these mappings from the initial state gives the state the whole input ends in.
+//
+// Running from every state is cheap in practice: the runs which reach the same state are merged,
+// and in most DFAs they all merge within a few symbols, after which a chunk costs as much as a
+// sequential run over it. Chunks start at a line where possible, so that comments do not span them.
+class ParallelDFA
+{
+    public static final long THRESHOLD = 16L << 20;         // smaller inputs are not worth splitting
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int ALIGNMENT = 1 << 16;           // how far a chunk may be extended to start at a line
+    private static final int FIRST_BLOCK = 16;              // symbols run before the first merge
+
+    private final int next[];           // next[state*symbolCount + symbol class], -1 if there is no rule
+    private final int stateCount, symbolCount;
+    private final int columns[];        // symbol class of each byte, -1 if it is not in the alphabet
+    private final boolean stop[];       // the states which settle the outcome of a run, null if none (see DFA.getStopStates())
+
+    public ParallelDFA(int next[], int stateCount, int symbolCount, int columns[], boolean stop[])
+    {
+        this.next = next;
+        this.stateCount = stateCount;
+        this.symbolCount = symbolCount;
+        this.columns = columns;
+        this.stop = stop;
+    }
+
+    // the state the input ends in, or -1 if it cannot be run to the end (an undefined symbol or rule),
+    // in which case it is left to a sequential run to report the error. A run which enters a state of
+    // stop[] ends at the chunk it enters it in, with that state, without waiting for the chunks after.
+    public int run(MappedInput input, int initial, int threads)
+    {
+        int k = threads * CHUNKS_PER_THREAD;
+        long length = input.length();
+        long bounds[] = new long[k+1];
+        bounds[k] = length;
+
+        for(int i=1; i<k; i++)
+        {
+            long b = Math.max(bounds[i-1], length * i / k);
+            long limit = Math.min(length, b + ALIGNMENT);
+            bounds[i] = align(input, b, limit);
+            if(bounds[i]==-1) return -1;        // nowhere near b to split the input safely: it is run sequentially
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<int[]>> maps = new ArrayList<Future<int[]>>(k);
+            for(int i=0; i<k; i++)
+            {
+                final MappedInput chunk = input.slice(bounds[i], bounds[i+1]);
+                final boolean last = (i==k-1);
+                maps.add(pool.submit(new Callable<int[]>() {
+                    public int[] call() { return map(chunk, last); }
+                }));
+            }
+
+            int state = initial;
+            for(int i=0; i<k; i++)
+            {
+                int map[] = maps.get(i).get();
+                if(map==null) return -1;
+                state = map[state];
+                if(state==-1) return -1;
+                if(stop!=null && stop[state]) return state;
+            }
+            return state;
+        } catch(InterruptedException e) {
+            return -1;
+        } catch(ExecutionException e) {
+            return -1;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // where to start a chunk, at or after from and before limit: the start of a line if there is one, else a place
+    // after a symbol (not a blank, nor a '/', with which a comment could begin) and before the first byte of a
+    // character; -1 if there is neither. A chunk cannot then end in the middle of the "//" of a comment, nor of
+    // a UTF-8 sequence, and one which ends in a comment is left to map().
+    private static long align(MappedInput input, long from, long limit)
+    {
+        if(from==0 || from >= limit) return from;
+
+        for(long j=from; j<limit; j++) if(input.byteAt(j-1)=='\n') return j;
+        for(long j=from; j<limit; j++)
+        {
+            int c = input.byteAt(j-1);
+            if(c!='/' && c!=' ' && c!='\t' && c!='\r' && c!=0 && (input.byteAt(j) & 0xC0)!=0x80) return j;
+        }
+        return -1;
+    }
+
+    // the state the chunk ends in from each state, -1 where a rule is missing; null if the chunk has a
+    // symbol outside the alphabet, or ends in a comment which would go on into the next chunk
+    private int[] map(MappedInput chunk, boolean last)
+    {
+        int n = stateCount, m = symbolCount;
+        int cur[] = new int[n];         // the distinct states reached so far
+        int group[] = new int[n];       // index in cur of the state reached from each state
+        for(int s=0; s<n; s++) cur[s] = group[s] = s;
+        int active = n;
+
+        int seen[] = new int[n+1];      // merging: stamp and new index of each state (+1, for -1)
+        int where[] = new int[n+1];
+        int remap[] = new int[n];
+        int stamp = 0;
+
+        char buf[] = new char[InputSource.CHUNK_SIZE];
+        int cols[] = new int[buf.length];
+        int block = FIRST_BLOCK;
+
+        for(int len; (len=chunk.read(buf))!=-1; )
+        {
+            if(Thread.currentThread().isInterrupted()) return null;        // the run has ended without this chunk
+
+            for(int i=0; i<len; i++)
+            {
+                int c = (buf[i] < 256 ? columns[buf[i]] : -1);
+                if(c==-1) return null;
+                cols[i] = c;
+            }
+
+            for(int from=0; from<len; )
+            {
+                int to = (active==1 ? len : Math.min(len, from + block));
+                for(int j=0; j<active; j++)
+                {
+                    int s = cur[j];
+                    for(int i=from; i<to && s!=-1; i++) s = next[s*m + cols[i]];
+                    cur[j] = s;
+                }
+                from = to;
+
+                if(active > 1)
+                {
+                    // merge the runs which reached the same state
+                    stamp++;
+                    int count = 0;
+                    for(int j=0; j<active; j++)
+                    {
+                        int x = cur[j] + 1;
+                        if(seen[x]!=stamp)
+                        {
+                            seen[x] = stamp;
+                            where[x] = count;
+                            cur[count++] = cur[j];
+                        }
+                        remap[j] = where[x];
+                    }
+
+                    if(count < active)
+                    {
+                        for(int s=0; s<n; s++) group[s] = remap[group[s]];
+                        active = count;
+                    }
+                    block = Math.min(2*block, buf.length);
+                }
+            }
+        }
+
+        if(!last && chunk.isInComment()) return null;
+
+        int map[] = new int[n];
+        for(int s=0; s<n; s++) map[s] = cur[group[s]];
+        return map;
+    }
+}
@@ -0,0 +1,50 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Which states of a machine can reach which, found by a breadth-first search over the rules reversed.
+// The DFA and NFA use it to end their runs early, in a state from which the outcome can no longer change.
+final class Reachability
+{
+    private Reachability()
+    {
+    }
+
+    // the states from which a marked state can be reached (including the marked states); the rules are the
+    // edges from[k] -> to[k], k < edgeCount
+    public static boolean[] canReach(int stateCount, int from[], int to[], int edgeCount, boolean marked[])
+    {
+        // the edges into each state t are those of sources[start[t]..start[t+1]-1]
+        int start[] = new int[stateCount+1];
+        for(int k=0; k<edgeCount; k++) start[to[k]+1]++;
+        for(int t=0; t<stateCount; t++) start[t+1] += start[t];
+
+        int sources[] = new int[edgeCount], fill[] = new int[stateCount];
+        for(int k=0; k<edgeCount; k++) sources[start[to[k]] + fill[to[k]]++] = from[k];
+
+        boolean reached[] = new boolean[stateCount];
+        int queue[] = new int[stateCount], count = 0;
+        for(int s=0; s<stateCount; s++)
+        {
+            if(!marked[s]) continue;
+            reached[s] = true;
+            queue[count++] = s;
+        }
+
+        for(int q=0; q<count; q++)
+        {
+            int t = queue[q];
+            for(int k=start[t]; k<start[t+1]; k++)
+            {
+                int s = sources[k];
+                if(reached[s]) continue;
+                reached[s] = true;
+                queue[count++] = s;
+            }
+        }
+        return reached;
+    }
+}
@@ -0,0 +1,47 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Input read from a character stream, e.g. the standard input with '-data -'
+class ReaderInput extends FilteredInput
+{
+    private final Reader in;
+    private final char buf[];
+    private int pos, count;
+
+    public ReaderInput(Reader in)
+    {
+        this.in = in;
+        this.buf = new char[CHUNK_SIZE];
+        this.pos = 0;
+        this.count = 0;
+    }
+
+    @Override
+    protected int nextChar()
+    {
+        if(pos==count)
+        {
+            try {
+                count = in.read(buf);
+            } catch(IOException e) {
+                System.out.println("ERROR: Cannot read the input.");
+                count = -1;
+            }
+
+            pos = 0;
+            if(count<=0)
+            {
+                count = 0;
+                return -1;
+            }
+        }
+        return buf[pos++];
+    }
+}
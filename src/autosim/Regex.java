@@ -0,0 +1,158 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Immutable node of a regular expression. Nodes are only created through a RegexFactory,
+// which hash-conses them: structurally equal expressions are the same object, so children
+// can be compared by reference and common subexpressions are stored only once.
+class Regex
+{
+    protected final RegexType type;
+    protected final char symbol;
+    protected final Regex children[];
+
+    protected final boolean nullable;     // accepts the empty string
+    protected final long weight;          // number of symbol occurrences when written out
+    protected final long length;          // number of characters when written out
+    private final int hash;
+
+    protected Regex(RegexType type, char symbol, Regex children[])
+    {
+        this.type = type;
+        this.symbol = symbol;
+        this.children = children;
+
+        int h = type.ordinal() * 31 + symbol;
+        if(children!=null)
+        {
+            for(int i=0; i<children.length; i++) h = h * 31 + System.identityHashCode(children[i]);
+        }
+        this.hash = h;
+
+        if(type==RegexType.EMPTY || type==RegexType.EPSILON) {
+            this.nullable = (type==RegexType.EPSILON);
+            this.weight = 0;
+            this.length = 1;
+        } else if(type==RegexType.SYMBOL) {
+            this.nullable = false;
+            this.weight = 1;
+            this.length = 1;
+        } else if(type==RegexType.STAR) {
+            Regex r = children[0];
+            this.nullable = true;
+            this.weight = r.weight;
+            this.length = add(r.length, (r.isAtomic() ? 1 : 3));
+        } else {
+            boolean isUnion = (type==RegexType.UNION);
+            boolean n = !isUnion;
+            long w = 0, len = (isUnion ? children.length-1 : 0);
+            for(int i=0; i<children.length; i++)
+            {
+                Regex r = children[i];
+                n = (isUnion ? n || r.nullable : n && r.nullable);
+                w = add(w, r.weight);
+                len = add(len, r.length);
+                if(!isUnion && r.type==RegexType.UNION) len = add(len, 2);
+            }
+            this.nullable = n;
+            this.weight = w;
+            this.length = len;
+        }
+    }
+
+    // saturating addition, as the written-out size of a shared expression can be exponential
+    private static long add(long a, long b)
+    {
+        long c = a + b;
+        return(c < 0 ? Long.MAX_VALUE : c);
+    }
+
+    public boolean isAtomic()
+    {
+        return(type==RegexType.SYMBOL || type==RegexType.EPSILON || type==RegexType.EMPTY);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object x)
+    {
+        if(x==this) return true;
+        if(!(x instanceof Regex)) return false;
+
+        Regex r = (Regex)x;
+        if(r.type!=type || r.symbol!=symbol || r.hash!=hash) return false;
+        if(children==null || r.children==null) return(children==r.children);
+        if(r.children.length!=children.length) return false;
+        for(int i=0; i<children.length; i++)
+        {
+            if(r.children[i]!=children[i]) return false;    // children are hash-consed
+        }
+        return true;
+    }
+
+    // serializes the expression using the syntax: + (union), * (closure), ~ (empty string)
+    @Override
+    public String toString()
+    {
+        if(length > Integer.MAX_VALUE - 16) throw new IllegalStateException("Expression too large to be written out (" + length + " characters)");
+
+        StringBuilder sb = new StringBuilder((int)length);
+        write(sb);
+        return sb.toString();
+    }
+
+    private void write(StringBuilder sb)
+    {
+        switch(type)
+        {
+            case EMPTY:
+                sb.append(AutoSim.NULL_PRINT_CHAR);
+                break;
+            case EPSILON:
+                sb.append(AutoSim.LAMBDA_CHAR);
+                break;
+            case SYMBOL:
+                sb.append(symbol);
+                break;
+            case STAR:
+                if(children[0].isAtomic())
+                {
+                    children[0].write(sb);
+                } else {
+                    sb.append('(');
+                    children[0].write(sb);
+                    sb.append(')');
+                }
+                sb.append('*');
+                break;
+            case UNION:
+                for(int i=0; i<children.length; i++)
+                {
+                    if(i>0) sb.append('+');
+                    children[i].write(sb);
+                }
+                break;
+            case CONCAT:
+                for(int i=0; i<children.length; i++)
+                {
+                    if(children[i].type==RegexType.UNION)
+                    {
+                        sb.append('(');
+                        children[i].write(sb);
+                        sb.append(')');
+                    } else {
+                        children[i].write(sb);
+                    }
+                }
+                break;
+        }
+    }
+}
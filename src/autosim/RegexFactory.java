@@ -0,0 +1,159 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Creates hash-consed regular expressions, applying the algebraic simplifications:
+// ∅ elimination (r+∅ = r, r∅ = ∅), ε-absorption (rε = r, ε+r* = r*, (ε+r)* = r*),
+// idempotent union (r+r = r) and closure (r** = r*, ∅* = ε* = ε)
+class RegexFactory
+{
+    private final HashMap<Regex, Regex> nodes;
+    private final HashMap<Character, Regex> symbolNodes;
+
+    protected final Regex EMPTY;
+    protected final Regex EPSILON;
+
+    public RegexFactory()
+    {
+        this.nodes = new HashMap<Regex, Regex>();
+        this.symbolNodes = new HashMap<Character, Regex>();
+        this.EMPTY = intern(new Regex(RegexType.EMPTY, (char)0, null));
+        this.EPSILON = intern(new Regex(RegexType.EPSILON, (char)0, null));
+    }
+
+    // number of distinct subexpressions created so far
+    public int size()
+    {
+        return nodes.size();
+    }
+
+    private Regex intern(Regex r)
+    {
+        Regex x = nodes.get(r);
+        if(x!=null) return x;
+
+        nodes.put(r, r);
+        return r;
+    }
+
+    public Regex symbol(char c)
+    {
+        if(c==AutoSim.LAMBDA_CHAR) return EPSILON;
+
+        Regex r = symbolNodes.get(c);
+        if(r==null)
+        {
+            r = intern(new Regex(RegexType.SYMBOL, c, null));
+            symbolNodes.put(c, r);
+        }
+        return r;
+    }
+
+    public Regex star(Regex r)
+    {
+        if(r==EMPTY || r==EPSILON) return EPSILON;
+        if(r.type==RegexType.STAR) return r;
+
+        // (ε+r)* = r*
+        if(r.type==RegexType.UNION && contains(r.children, EPSILON))
+        {
+            ArrayList<Regex> x = new ArrayList<Regex>(r.children.length);
+            for(int i=0; i<r.children.length; i++)
+            {
+                if(r.children[i]!=EPSILON) x.add(r.children[i]);
+            }
+            return star(unionOf(x));
+        }
+
+        return intern(new Regex(RegexType.STAR, (char)0, new Regex[] { r }));
+    }
+
+    public Regex union(Regex a, Regex b)
+    {
+        if(a==b || b==EMPTY) return a;
+        if(a==EMPTY) return b;
+
+        ArrayList<Regex> x = new ArrayList<Regex>();
+        addUnionTerms(x, a);
+        addUnionTerms(x, b);
+
+        // ε is redundant if another term already accepts the empty string
+        if(contains(x, EPSILON))
+        {
+            for(int i=0; i<x.size(); i++)
+            {
+                if(x.get(i)!=EPSILON && x.get(i).nullable)
+                {
+                    x.remove(EPSILON);
+                    break;
+                }
+            }
+        }
+
+        return unionOf(x);
+    }
+
+    public Regex concat(Regex a, Regex b)
+    {
+        if(a==EMPTY || b==EMPTY) return EMPTY;
+        if(a==EPSILON) return b;
+        if(b==EPSILON) return a;
+
+        ArrayList<Regex> x = new ArrayList<Regex>();
+        addConcatTerms(x, a);
+        addConcatTerms(x, b);
+        return intern(new Regex(RegexType.CONCAT, (char)0, x.toArray(new Regex[x.size()])));
+    }
+
+    private Regex unionOf(ArrayList<Regex> x)
+    {
+        if(x.size()==0) return EMPTY;
+        if(x.size()==1) return x.get(0);
+        return intern(new Regex(RegexType.UNION, (char)0, x.toArray(new Regex[x.size()])));
+    }
+
+    private void addUnionTerms(ArrayList<Regex> x, Regex r)
+    {
+        if(r.type==RegexType.UNION)
+        {
+            for(int i=0; i<r.children.length; i++) addUnionTerms(x, r.children[i]);
+        } else if(!contains(x, r)) {
+            x.add(r);
+        }
+    }
+
+    private void addConcatTerms(ArrayList<Regex> x, Regex r)
+    {
+        if(r.type==RegexType.CONCAT)
+        {
+            for(int i=0; i<r.children.length; i++) x.add(r.children[i]);
+        } else {
+            x.add(r);
+        }
+    }
+
+    private static boolean contains(ArrayList<Regex> x, Regex r)
+    {
+        int n = x.size();
+        for(int i=0; i<n; i++)
+        {
+            if(x.get(i)==r) return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(Regex x[], Regex r)
+    {
+        for(int i=0; i<x.length; i++)
+        {
+            if(x[i]==r) return true;
+        }
+        return false;
+    }
+}
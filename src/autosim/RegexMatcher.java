@@ -0,0 +1,143 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.PrintStream;
+
+class RegexMatcher implements Machine
+{
+    private final String descFile;
+    private final InputSource input;
+    private final boolean trace;
+    private LazyDFA dfa;            // states are added as the inputs need them, so they are shared by all the runs
+    private TraceLog.Sampling sampling;     // the part of the trace of runs on the command line to keep, null for all
+    private PrintStream messages;           // where the errors of the expression are printed
+
+    public RegexMatcher(String descFile, InputSource input, boolean trace)
+    {
+        this.descFile = descFile;
+        this.input = input;
+        this.trace = trace;
+        this.messages = System.out;
+    }
+
+    // reads the regular expression from a description file: all non-empty lines are joined
+    protected static Regex readRegex(String descFile, RegexFactory factory, PrintStream messages)
+    {
+        DescLexer lexer = new DescLexer(messages);
+        if(!lexer.openFile(descFile)) return null;
+
+        StringBuilder sb = new StringBuilder();
+        while(lexer.nextLine()) sb.append(lexer.getLine());
+        lexer.closeFile();
+
+        RegexParser parser = new RegexParser(factory);
+        Regex r = parser.parse(sb.toString());
+        if(r==null) messages.println("ERROR: Invalid regular expression: " + parser.getError());
+        return r;
+    }
+
+    public void simulate()
+    {
+        if(prepare()) run(input);
+    }
+
+    // compiles the regular expression, after which it can be matched against any number of inputs
+    public boolean prepare()
+    {
+        Regex r = readRegex(descFile, new RegexFactory(), messages);
+        if(r==null) return false;
+
+        ThompsonNFA nfa = new ThompsonNFA(r);
+        dfa = new LazyDFA(nfa);
+        if(trace) messages.println("Regular expression compiled into an NFA with " + nfa.size() + " states");
+        return true;
+    }
+
+    public void run(InputSource input)
+    {
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, null, null);
+        TraceLog.end(log, match(input, log));
+    }
+
+    public Result run(CharSequence input)
+    {
+        return match(new StringInput(input), null);
+    }
+
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+
+    // the trace is only printed on the command line, and is null otherwise; the states of the DFA have no
+    // names until they are made, so the steps are kept by the names of their states
+    private Result match(InputSource input, TraceLog log)
+    {
+        int currentState;
+        StateSet currentSet;
+        long flushes;
+        synchronized(dfa)
+        {
+            currentState = dfa.getInitialState();
+            currentSet = dfa.getStateSet(currentState);
+            flushes = dfa.getFlushCount();
+        }
+
+        long count = 0;
+        char buf[] = new char[input.getChunkSize()];
+
+        for(int n; (n=input.read(buf))!=-1; )
+        {
+            // the DFA grows as it is stepped, so concurrent runs take turns a chunk at a time
+            synchronized(dfa)
+            {
+                // another run may have flushed the DFA since the last chunk, renumbering its states
+                if(dfa.getFlushCount()!=flushes) currentState = dfa.getState(currentSet);
+
+                for(int i=0; i<n; i++)
+                {
+                    char currentSymbol = buf[i];
+                    int nextState = dfa.step(currentState, currentSymbol);
+                    count++;
+
+                    if(log!=null && log.wants(dfa.getStateName(currentState), currentSymbol)) log.println("Executing Rule: "+AutoSim.DELTA_PRINT_CHAR+"("+dfa.getStateName(currentState)+", "+currentSymbol+") = " + (nextState==-1 ? String.valueOf(AutoSim.NULL_PRINT_CHAR) : dfa.getStateName(nextState)));
+
+                    if(nextState==-1)
+                    {
+                        return new Result(Result.Status.REJECTED, null, null, "String rejected: no match possible after reading " + count + " symbol(s)");
+                    }
+                    currentState = nextState;
+                }
+
+                currentSet = dfa.getStateSet(currentState);
+                flushes = dfa.getFlushCount();
+            }
+        }
+
+        synchronized(dfa)
+        {
+            if(dfa.getFlushCount()!=flushes) currentState = dfa.getState(currentSet);
+            if(dfa.isFinal(currentState))
+                return new Result(Result.Status.ACCEPTED, dfa.getStateName(currentState), null, "String accepted: the input matches the regular expression");
+            else
+                return new Result(Result.Status.REJECTED, dfa.getStateName(currentState), null, "String rejected: the input does not match the regular expression");
+        }
+    }
+    
+    public long getMemoryFootprint()
+    {
+        synchronized(dfa)
+        {
+            return dfa.getMemoryFootprint();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Parses the regex syntax written out by Regex.toString(): + (union), * (closure),
+// parentheses, ~ or ε (empty string) and Φ (empty set); any other character is a symbol
+class RegexParser
+{
+    private final RegexFactory factory;
+    private String s;
+    private int pos;
+    private String error;
+
+    public RegexParser(RegexFactory factory)
+    {
+        this.factory = factory;
+    }
+
+    // returns null if the expression is invalid; see getError()
+    public Regex parse(String s)
+    {
+        this.s = s;
+        this.pos = 0;
+        this.error = null;
+
+        if(s.length()==0)
+        {
+            error = "empty expression";
+            return null;
+        }
+
+        Regex r = parseUnion();
+        if(r!=null && pos < s.length())
+        {
+            error = "unexpected '" + s.charAt(pos) + "' at position " + (pos+1);
+            return null;
+        }
+        return r;
+    }
+
+    public String getError() { return error; }
+
+    private Regex parseUnion()
+    {
+        Regex r = parseConcat();
+        while(r!=null && pos < s.length() && s.charAt(pos)=='+')
+        {
+            pos++;
+            Regex x = parseConcat();
+            r = (x==null ? null : factory.union(r, x));
+        }
+        return r;
+    }
+
+    private Regex parseConcat()
+    {
+        Regex r = null;
+        while(pos < s.length() && s.charAt(pos)!='+' && s.charAt(pos)!=')')
+        {
+            Regex x = parseStar();
+            if(x==null) return null;
+            r = (r==null ? x : factory.concat(r, x));
+        }
+
+        if(r==null) error = "missing operand at position " + (pos+1);
+        return r;
+    }
+
+    private Regex parseStar()
+    {
+        Regex r = parseAtom();
+        while(r!=null && pos < s.length() && s.charAt(pos)=='*')
+        {
+            pos++;
+            r = factory.star(r);
+        }
+        return r;
+    }
+
+    private Regex parseAtom()
+    {
+        char c = s.charAt(pos++);
+        if(c=='(')
+        {
+            Regex r = parseUnion();
+            if(r==null) return null;
+            if(pos >= s.length() || s.charAt(pos)!=')')
+            {
+                error = "missing ')' at position " + (pos+1);
+                return null;
+            }
+            pos++;
+            return r;
+        } else if(c=='*') {
+            error = "missing operand before '*' at position " + pos;
+            return null;
+        } else if(c==AutoSim.LAMBDA_CHAR || c==AutoSim.LAMBDA_PRINT_CHAR) {
+            return factory.EPSILON;
+        } else if(c==AutoSim.NULL_PRINT_CHAR) {
+            return factory.EMPTY;
+        } else {
+            return factory.symbol(c);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+class RegexToNFAConverter
+{
+    private final String descFile;
+    private final String outputFile;
+    private final boolean trace;
+
+    public RegexToNFAConverter(String descFile, String outputFile, boolean trace)
+    {
+        this.descFile = descFile;
+        this.outputFile = outputFile;
+        this.trace = trace;
+    }
+
+    public void simulate()
+    {
+        Regex r = RegexMatcher.readRegex(descFile, new RegexFactory(), System.out);
+        if(r==null) return;
+
+        ThompsonNFA nfa = new ThompsonNFA(r);
+
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), AutoSim.FILE_CHARSET));
+            writeNFA(nfa, out);
+            out.close();
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot write to file '" + outputFile + "'.");
+            return;
+        }
+
+        System.out.println("NFA with " + nfa.size() + " states written to '" + outputFile + "'");
+    }
+
+    // writes the NFA in the .nfa description format, naming state i as 'qi'
+    private void writeNFA(ThompsonNFA nfa, BufferedWriter out) throws IOException
+    {
+        int n = nfa.size();
+        char alphabet[] = nfa.getAlphabet();
+
+        out.write("// NFA generated from the regular expression in " + descFile + "\n\n");
+
+        out.write("Q={");
+        for(int i=0; i<n; i++) out.write((i>0 ? "," : "") + "q" + i);
+        out.write("}\n");
+
+        out.write("E={");
+        for(int i=0; i<alphabet.length; i++) out.write((i>0 ? "," : "") + alphabet[i]);
+        if(alphabet.length==0) out.write(AutoSim.LAMBDA_CHAR);
+        out.write("}\n");
+
+        out.write("I=q" + nfa.start + "\n");
+        out.write("F={q" + nfa.accept + "}\n\n");
+
+        for(int i=0; i<n; i++)
+        {
+            int o1 = nfa.getOut1(i), o2 = nfa.getOut2(i);
+            if(o1==-1) continue;
+
+            if(nfa.getLabel(i)==ThompsonNFA.LAMBDA)
+            {
+                out.write("d(q" + i + "," + AutoSim.LAMBDA_CHAR + ")={q" + o1 + (o2==-1 ? "" : ",q" + o2) + "}\n");
+                if(trace) System.out.println("Rule: " + AutoSim.DELTA_PRINT_CHAR + "(q" + i + ", " + AutoSim.LAMBDA_PRINT_CHAR + ") = { q" + o1 + (o2==-1 ? "" : ", q" + o2) + " }");
+            } else {
+                out.write("d(q" + i + "," + (char)nfa.getLabel(i) + ")={q" + o1 + "}\n");
+                if(trace) System.out.println("Rule: " + AutoSim.DELTA_PRINT_CHAR + "(q" + i + ", " + (char)nfa.getLabel(i) + ") = { q" + o1 + " }");
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Kind of a node of a regular expression
+enum RegexType
+{
+    EMPTY, EPSILON, SYMBOL, UNION, CONCAT, STAR;
+}
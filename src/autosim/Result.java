@@ -0,0 +1,48 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Outcome of running a machine on one input (see Automaton)
+public final class Result
+{
+    public enum Status
+    {
+        ACCEPTED,
+        REJECTED,
+        HALTED,         // machines which translate their input rather than accept it (Moore, Mealy)
+        ERROR           // the input could not be run to the end, see getMessage()
+    }
+
+    private final Status status;
+    private final String state;         // state the machine halted in (the set of states for an NFA), null on error
+    private final String output;        // output of a Moore/Mealy machine, stack of a PDA or tape of a STM, null if none
+    private final String message;       // what the command line prints for this outcome
+
+    public Result(Status status, String state, String output, String message)
+    {
+        this.status = status;
+        this.state = state;
+        this.output = output;
+        this.message = message;
+    }
+
+    public static Result error(String message)
+    {
+        return new Result(Status.ERROR, null, null, message);
+    }
+
+    public Status getStatus() { return status; }
+    public boolean isAccepted() { return(status==Status.ACCEPTED); }
+    public String getState() { return state; }
+    public String getOutput() { return output; }
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString()
+    {
+        return message;
+    }
+}
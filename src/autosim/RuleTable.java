@@ -0,0 +1,378 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// The transition table of a machine, rule[row][column] (null where there is no rule), e.g. a row per
+// state and a column per symbol. While the description is read the rules are only collected, as arrays of
+// rows, columns and rules in the order they are set; finish() then lays them out, in one of two ways:
+//
+//      dense       an array of rows x columns, when at least 1 in SPARSE_DENSITY entries is a rule
+//      compressed  row displacement ("comb vector"): the rows are overlaid in one array, each shifted
+//                  by base[row] so that its rules fall in slots no other row uses, and check[slot]
+//                  holds the row which owns the slot
+//
+// A lookup costs two array reads either way, while a compressed table takes memory in proportion to
+// its rules rather than to its size, which is what makes machines with many states and few rules load.
+// For the same reason, whatever goes over all the rules does so through visitRules(), not get().
+class RuleTable<T>
+{
+    // receives the rules of a table, see visitRules()
+    interface Visitor<T>
+    {
+        void visit(int row, int column, T rule);
+    }
+
+    public static final int SPARSE_DENSITY = 8;
+    private static final int MAX_TRIES = 32;
+
+    private final int rowCount;
+    private int columnCount;
+    private int ruleCount;
+
+    private int rows[], cols[];             // the rules, until finish(): a null rule removes the one set before it
+    private Object rules[];
+    private int pending;
+    private boolean sorted;                 // the rules are in row and column order, one per entry, none null
+    private Object dense[];                 // dense[row*columnCount + column], null if compressed
+    private int base[], check[];            // compressed: rule (row, column) is in slot base[row]+column, if check[slot]==row
+    private Object values[];
+    private int skip[];                     // while compressing, see freeSlot()
+
+    public RuleTable(int rowCount, int columnCount)
+    {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.rows = new int[16];
+        this.cols = new int[16];
+        this.rules = new Object[16];
+        this.pending = 0;
+        this.sorted = true;
+    }
+
+    // sets a rule, before finish()
+    public void set(int row, int column, T value)
+    {
+        if(rows==null) throw new IllegalStateException("The table is already laid out");
+
+        if(pending==rows.length)
+        {
+            int n = 2*pending;
+            rows = Arrays.copyOf(rows, n);
+            cols = Arrays.copyOf(cols, n);
+            rules = Arrays.copyOf(rules, n);
+        }
+
+        // descriptions mostly list their rules in order, which then need no sorting
+        sorted &= (value!=null && (pending==0 || row > rows[pending-1] || (row==rows[pending-1] && column > cols[pending-1])));
+        rows[pending] = row;
+        cols[pending] = column;
+        rules[pending] = value;
+        pending++;
+    }
+
+    public T get(int row, int column)
+    {
+        if(dense!=null) return rule(dense[row*columnCount + column]);
+        if(rows!=null)
+        {
+            int i = find(row, column);
+            return(i >= 0 ? rule(rules[i]) : null);
+        }
+
+        int slot = base[row] + column;
+        return(check[slot]==row ? rule(values[slot]) : null);
+    }
+
+    public int getRowCount() { return rowCount; }
+    public int getColumnCount() { return columnCount; }
+    public boolean isComplete() { return getRuleCount()==(long)rowCount*columnCount; }
+    public boolean isCompressed() { return(rows==null && dense==null); }
+
+    public int getRuleCount()
+    {
+        if(rows==null) return ruleCount;
+        sort();
+        return pending;
+    }
+
+    // lays out the rules collected so far; the table cannot be changed after this
+    public void finish()
+    {
+        if(rows==null) return;
+
+        sort();
+        ruleCount = pending;
+        long size = (long)rowCount*columnCount;
+        if((long)ruleCount*SPARSE_DENSITY >= size && size <= Integer.MAX_VALUE)
+        {
+            dense = new Object[(int)size];
+            for(int i=0; i<ruleCount; i++) dense[rows[i]*columnCount + cols[i]] = rules[i];
+        } else {
+            compress();
+        }
+        rows = cols = null;
+        rules = null;
+    }
+
+    // puts the rules collected so far in row and column order, keeping the last one set in each place
+    private void sort()
+    {
+        if(sorted) return;
+
+        // counting sorts are stable: the rules set in the same place stay in the order they were set
+        int order[] = new int[pending];
+        for(int i=0; i<pending; i++) order[i] = i;
+        order = sortBy(cols, columnCount, order);
+        order = sortBy(rows, rowCount, order);
+
+        int r[] = new int[pending], c[] = new int[pending];
+        Object v[] = new Object[pending];
+        int k = 0;
+        for(int i=0; i<pending; i++)
+        {
+            int x = order[i];
+            if(i+1 < pending && rows[order[i+1]]==rows[x] && cols[order[i+1]]==cols[x]) continue;     // set again later
+            if(rules[x]==null) continue;
+
+            r[k] = rows[x];
+            c[k] = cols[x];
+            v[k] = rules[x];
+            k++;
+        }
+
+        rows = r;
+        cols = c;
+        rules = v;
+        pending = k;
+        sorted = true;
+    }
+
+    private int[] sortBy(int key[], int range, int order[])
+    {
+        int start[] = new int[range+1];
+        for(int i=0; i<order.length; i++) start[key[order[i]] + 1]++;
+        for(int i=0; i<range; i++) start[i+1] += start[i];
+
+        int x[] = new int[order.length];
+        for(int i=0; i<order.length; i++) x[start[key[order[i]]]++] = order[i];
+        return x;
+    }
+
+    // index of the rule at (row, column) before finish(), or -1 if there is none
+    private int find(int row, int column)
+    {
+        sort();
+        int lo = 0, hi = pending-1;
+        while(lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            int d = (rows[mid]!=row ? rows[mid] - row : cols[mid] - column);
+            if(d==0) return mid;
+            if(d < 0) lo = mid+1;
+            else hi = mid-1;
+        }
+        return -1;
+    }
+
+    // first fit, taking the rows with the most rules first, as they are the hardest to place. The free
+    // slots are found through skip[] (a union-find pointing past the slots in use), and a row which does
+    // not fit in the first MAX_TRIES of them is placed past the end, so that the packing stays linear.
+    private void compress()
+    {
+        int start[] = new int[rowCount+1];          // the rules of row i are rules[start[i]..start[i+1]-1]
+        for(int i=0; i<ruleCount; i++) start[rows[i] + 1]++;
+        for(int i=0; i<rowCount; i++) start[i+1] += start[i];
+
+        Integer order[] = new Integer[rowCount];
+        for(int i=0; i<rowCount; i++) order[i] = i;
+        final int size[] = new int[rowCount];
+        for(int i=0; i<rowCount; i++) size[i] = start[i+1] - start[i];
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer x, Integer y) { return size[y] - size[x]; }
+        });
+
+        base = new int[rowCount];
+        check = new int[Math.max(16, 2*ruleCount) + columnCount];
+        Arrays.fill(check, -1);
+        values = new Object[check.length];
+        skip = new int[check.length+1];
+        for(int i=0; i<skip.length; i++) skip[i] = i;
+        int end = 0;
+
+        for(int r=0; r<rowCount; r++)
+        {
+            int row = order[r];
+            if(size[row]==0) break;         // the rest are empty, and own no slots: base 0 will do
+
+            int first = cols[start[row]];
+            int b = -1;
+            for(int slot=freeSlot(first), tries=0; tries < MAX_TRIES && slot < end; slot=freeSlot(slot+1), tries++)
+            {
+                if(fits(start[row], start[row+1], slot - first)) { b = slot - first; break; }
+            }
+            if(b==-1) b = Math.max(0, end - first);
+            if(b + columnCount > check.length) grow(Math.max(2*check.length, b + columnCount));
+
+            base[row] = b;
+            for(int i=start[row]; i<start[row+1]; i++)
+            {
+                int slot = b + cols[i];
+                check[slot] = row;
+                values[slot] = rules[i];
+                skip[slot] = slot+1;
+            }
+            end = Math.max(end, b + cols[start[row+1]-1] + 1);
+        }
+        skip = null;
+
+        // every row can then be looked up at any column without a bounds check
+        int length = end + columnCount, n = check.length;
+        check = Arrays.copyOf(check, length);
+        if(length > n) Arrays.fill(check, n, length, -1);
+        values = Arrays.copyOf(values, length);
+    }
+
+    private boolean fits(int from, int to, int b)
+    {
+        for(int i=from; i<to; i++)
+        {
+            if(check[b + cols[i]]!=-1) return false;
+        }
+        return true;
+    }
+
+    // the first slot at or after i which is not in use
+    private int freeSlot(int i)
+    {
+        int j = i;
+        while(skip[j]!=j) j = skip[j];
+        while(skip[i]!=j)
+        {
+            int x = skip[i];
+            skip[i] = j;
+            i = x;
+        }
+        return j;
+    }
+
+    private void grow(int length)
+    {
+        int n = check.length;
+        check = Arrays.copyOf(check, length);
+        Arrays.fill(check, n, length, -1);
+        values = Arrays.copyOf(values, length);
+
+        int m = skip.length;
+        skip = Arrays.copyOf(skip, length+1);
+        for(int i=m; i<skip.length; i++) skip[i] = i;
+    }
+
+    // the rules, in no particular order
+    public ArrayList<T> getRules()
+    {
+        ArrayList<T> list = new ArrayList<T>(getRuleCount());
+        Object x[] = (rows!=null ? rules : dense!=null ? dense : values);
+        int n = (rows!=null ? pending : x.length);
+        for(int i=0; i<n; i++) if(x[i]!=null) list.add(rule(x[i]));
+        return list;
+    }
+
+    // passes the rules to the visitor in row and column order, in time proportional to their number rather
+    // than to the size of the table
+    public void visitRules(Visitor<? super T> v)
+    {
+        RuleTable<T> t = unfinished();
+        for(int k=0; k<t.pending; k++) v.visit(t.rows[k], t.cols[k], rule(t.rules[k]));
+    }
+
+    // the rules of each column, as (row, rule) pairs in row order, e.g. to find the columns which are equal
+    public ArrayList<ArrayList<Object>> getColumns()
+    {
+        ArrayList<ArrayList<Object>> columns = new ArrayList<ArrayList<Object>>(columnCount);
+        for(int j=0; j<columnCount; j++) columns.add(new ArrayList<Object>());
+
+        RuleTable<T> t = unfinished();
+        for(int k=0; k<t.pending; k++)
+        {
+            ArrayList<Object> column = columns.get(t.cols[k]);
+            column.add(t.rows[k]);
+            column.add(t.rules[k]);
+        }
+        return columns;
+    }
+
+    // keeps only the given columns, in that order (see SymbolTable.groupSymbols())
+    public void keepColumns(int keep[])
+    {
+        if(keep.length==columnCount) return;        // every column is kept
+
+        // the new columns of each old one, as a list through next[] (a column may be kept twice)
+        int first[] = new int[columnCount], next[] = new int[keep.length];
+        Arrays.fill(first, -1);
+        for(int c=keep.length-1; c>=0; c--)
+        {
+            next[c] = first[keep[c]];
+            first[keep[c]] = c;
+        }
+
+        boolean laidOut = (rows==null);
+        RuleTable<T> t = unfinished(), u = new RuleTable<T>(rowCount, keep.length);
+        for(int k=0; k<t.pending; k++)
+        {
+            for(int c=first[t.cols[k]]; c!=-1; c=next[c]) u.set(t.rows[k], c, rule(t.rules[k]));
+        }
+
+        columnCount = keep.length;
+        rows = u.rows;
+        cols = u.cols;
+        rules = u.rules;
+        pending = u.pending;
+        sorted = u.sorted;
+        dense = null;
+        base = check = null;
+        values = null;
+        if(laidOut) finish();
+    }
+
+    // the rules in row and column order, as a table still being built; this takes time in proportion to the
+    // rules, not to the size of the table. The arrays of a table still being built are shared, not copied.
+    private RuleTable<T> unfinished()
+    {
+        RuleTable<T> t = new RuleTable<T>(rowCount, columnCount);
+        if(rows!=null)
+        {
+            sort();
+            t.rows = rows;
+            t.cols = cols;
+            t.rules = rules;
+            t.pending = pending;
+        } else if(dense!=null) {
+            for(int i=0; i<dense.length; i++) if(dense[i]!=null) t.set(i / columnCount, i % columnCount, rule(dense[i]));
+        } else {
+            for(int slot=0; slot<check.length; slot++) if(check[slot]!=-1) t.set(check[slot], slot - base[check[slot]], rule(values[slot]));
+            t.sort();
+        }
+        return t;
+    }
+
+    // approximate number of bytes held by the table, not counting the rules themselves
+    public long getMemoryFootprint()
+    {
+        if(rows!=null) return 2*MachineCache.ofArray(rows.length, 4) + MachineCache.ofArray(rules.length, MachineCache.REFERENCE);
+        if(dense!=null) return MachineCache.ofArray(dense.length, MachineCache.REFERENCE);
+        return MachineCache.ofArray(base.length, 4) + MachineCache.ofArray(check.length, 4) + MachineCache.ofArray(values.length, MachineCache.REFERENCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T rule(Object x)
+    {
+        return (T)x;
+    }
+}
@@ -5,6 +5,7 @@
 
 package autosim;
 
+import java.io.PrintStream;
 import java.util.HashSet;
 import java.util.Iterator;
 
@@ -49,13 +50,14 @@ enum TMDirection
     }
 }
 
-public class STM
+public class STM implements Traceable
 {
     public static final int TAPE_LENGTH = 10000;
     
     private final String descFile;
     private final String input;
-    private FileIO fio;
+    private DescLexer lexer;            // only while the description is read
+    private PrintStream messages;       // where the errors and warnings of the description are printed
     
     private boolean hasSpec[];
     private final boolean trace;
@@ -70,20 +72,21 @@ public class STM
     
     private String states[];
     private char allSymbols[];      // bcoz once inside tape, input and tape symbols are indistinguishable
-    private STMTarget table[][];
+    private SymbolTable symbolTable;          // IDs of the states and symbols are their indices in the arrays
+    private RuleTable<STMTarget> table;
+    private TraceLog.Sampling sampling; // the part of the trace of runs on the command line to keep, null for all
+    private TraceWriter traceWriter;    // records the steps of runs on the command line, see -trace-file
+    private long footprint;             // computed once, by getMemoryFootprint()
     
-    private char tape[];
-    private int tapeMarker;
     
     public STM(String descFile, String input, boolean trace)
     {
         this.descFile = descFile;
         this.input = input;
         this.trace = trace;
+        this.messages = System.out;
         
         hasSpec = new boolean[6];       // Q, E, T, z, I(q0), F
-        fio = new FileIO();
-        fio.openFile(this.descFile);
         
         internalStates = new HashSet<String>();
         finalStates = new HashSet<String>();
@@ -95,30 +98,101 @@ public class STM
     
     public void simulate()
     {
-        if(!fio.isReadyForReading()) return;
-        if(!parseSTM()) return;
+        if(prepare()) run(new StringInput(input));
+    }
+    
+    // parses the description and checks the table, after which the machine can be run on any number of inputs
+    public boolean prepare()
+    {
+        // the description is read once, and only the tables built from it are kept
+        lexer = new DescLexer(messages);
+        boolean parsed = (lexer.openFile(descFile) && parseSTM());
+        lexer = null;
+        if(!parsed) return false;
         
         if(table==null)
         {
-            System.out.println("ERROR: Incomplete specification of STM");
-            return;
+            messages.println("ERROR: Incomplete specification of STM");
+            return false;
         }
         
         if(!isTableComplete())
         {
-            System.out.println("WARNING: Incomplete specification of STM. One or more rules are undefined.");
+            messages.println("WARNING: Incomplete specification of STM. One or more rules are undefined.");
         }
         
-        if(!verifyInput())
+        table.finish();
+        return true;
+    }
+    
+    public void run(InputSource source)
+    {
+        TraceLog log = TraceLog.begin(System.out, trace, sampling, states, allSymbols);
+        TraceLog.end(log, simulateSTM(source.readAll(), log, traceWriter));
+    }
+    
+    public Result run(CharSequence input)
+    {
+        return simulateSTM(input.toString(), null, null);
+    }
+    
+    public void setTraceSampling(TraceLog.Sampling sampling)
+    {
+        this.sampling = sampling;
+    }
+    
+    public void setMessages(PrintStream messages)
+    {
+        this.messages = messages;
+    }
+    
+    public long getMemoryFootprint()
+    {
+        if(footprint==0)
         {
-            System.out.println("ERROR: Input string contains symbols not defined in the input alphabet");
-            return;
+            int n1 = states.length;
+            footprint = symbolTable.getMemoryFootprint() + MachineCache.ofArray(n1, MachineCache.REFERENCE) + table.getMemoryFootprint()
+                      + (long)(internalStates.size() + finalStates.size() + inputAlphabet.size() + tapeAlphabet.size()) * MachineCache.ENTRY
+                      + (long)table.getRuleCount() * (MachineCache.HEADER + 2*MachineCache.REFERENCE);
         }
+        return footprint;
+    }
+    
+    public void traceTo(TraceWriter writer)
+    {
+        traceWriter = writer;
+    }
+    
+    // the input is recorded as the context, and the tape is written again step by step from the rules
+    public boolean renderTrace(TraceReader reader, PrintStream out)
+    {
+        if(!reader.matches(states.length, allSymbols.length, 1)) return false;
+        
+        String input = reader.getContext();
+        int n = input.length(), start = TAPE_LENGTH/2 - n/2;
+        char tape[] = newTape(input);
+        int touchedMin = (n > 0 ? start : TAPE_LENGTH), touchedMax = (n > 0 ? start+n-1 : -1);
+        TraceLog log = TraceLog.begin(out, true, null, states, allSymbols);
         
-        simulateSTM();
+        while(reader.next())
+        {
+            int index1 = reader.getState(), index2 = reader.getSymbol(), tapeMarker = reader.getPosition();
+            STMTarget rule = table.get(index1, index2);
+            if(tapeMarker<1 || tapeMarker>=TAPE_LENGTH-1 || rule==null)
+            {
+                System.out.println("ERROR: The trace was not recorded from this description");
+                return false;
+            }
+            
+            touchedMin = (tapeMarker < touchedMin ? tapeMarker : touchedMin);
+            touchedMax = (tapeMarker > touchedMax ? tapeMarker : touchedMax);
+            tape[tapeMarker] = rule.replacerSymbol;
+            printStep(log, index1, index2, tape, touchedMin, touchedMax);
+        }
+        return true;
     }
     
-    private boolean verifyInput()
+    private boolean verifyInput(String input)
     {
         int n = input.length();
         for(int i=0; i<n; i++)
@@ -130,36 +204,24 @@ public class STM
     
     private boolean isTableComplete()
     {
-        if(table==null) return false;
-        for(int i=0; i<table.length; i++)
-        {
-            for(int j=0; j<table[i].length; j++)
-            {
-                if(table[i][j]==null) return false;
-            }
-        }
-        return true;
+        return(table!=null && table.isComplete());
     }
       
     
-    private void simulateSTM()
+    // the trace and the trace writer are only given on the command line, and are null otherwise
+    private Result simulateSTM(String input, TraceLog log, TraceWriter tw)
     {
-        int n = input.length();
-        int touchedMin = TAPE_LENGTH, touchedMax = -1;
-        
-        // Initialize the tape
-        tape = new char[TAPE_LENGTH];
-        for(int i=0; i<TAPE_LENGTH; i++) tape[i]=blankSymbol;
-        int m = TAPE_LENGTH/2;
-        for(int i=(m-(n/2)), j=0; j<n; j++, i++)
+        if(!verifyInput(input))
         {
-            tape[i]=input.charAt(j);
-            
-            touchedMin = (i < touchedMin ? i : touchedMin);
-            touchedMax = (i > touchedMax ? i : touchedMax);
+            return Result.error("ERROR: Input string contains symbols not defined in the input alphabet");
         }
-        tapeMarker = (m-(n/2));
-                
+        
+        int n = input.length();
+        int tapeMarker = TAPE_LENGTH/2 - n/2;
+        char tape[] = newTape(input);
+        int touchedMin = (n > 0 ? tapeMarker : TAPE_LENGTH), touchedMax = (n > 0 ? tapeMarker+n-1 : -1);
+        
+        if(tw!=null) tw.begin("stm", states.length, allSymbols.length, input);
         
         String currentState = initialState;
         
@@ -167,8 +229,7 @@ public class STM
         {
             if(tapeMarker<0 || tapeMarker>=TAPE_LENGTH)
             {
-                System.out.println("ERROR: read/write head exceeded tape bounds.");
-                return;
+                return Result.error("ERROR: read/write head exceeded tape bounds.");
             }
             
             char currentTapeSymbol = tape[tapeMarker];
@@ -181,44 +242,57 @@ public class STM
                         
             if(index2 == -1)
             {
-                System.out.println("ERROR: undefined symbol '" + currentTapeSymbol + "'");
-                return;
+                return Result.error("ERROR: undefined symbol '" + currentTapeSymbol + "'");
             }
             
-            if(table[index1][index2]==null) break;      // END OF EXECUTION
+            STMTarget rule = table.get(index1, index2);
+            if(rule==null) break;      // END OF EXECUTION
             
-            if(trace) 
-            {
-                System.out.println("Executing Rule: δ("+currentState+","+currentTapeSymbol+") = " + table[index1][index2]);
-            }
-
-            currentState = table[index1][index2].nextState;
-            tape[tapeMarker] = table[index1][index2].replacerSymbol;
+            currentState = rule.nextState;
+            tape[tapeMarker] = rule.replacerSymbol;
             
-            if(trace)
+            // the tape is only written out for the steps which are kept
+            if(log!=null)
             {
-                System.out.println("\tTape contents after execution: " + tapeToString(tape,touchedMin,touchedMax));
+                if(log.wants(index1, index2)) printStep(log, index1, index2, tape, touchedMin, touchedMax);
+            } else if(tw!=null) {
+                tw.step(index1, index2, 0, tapeMarker);
             }
             
-            TMDirection dir = table[index1][index2].direction;
+            TMDirection dir = rule.direction;
             if(dir==TMDirection.LEFT)
                 tapeMarker--;
             else if(dir==TMDirection.RIGHT)
                 tapeMarker++;
             else {
-                System.out.println("ERROR: In Rule δ("+currentState+","+currentTapeSymbol+"): invalid direction specified.");
-                return;
+                return Result.error("ERROR: In Rule δ("+currentState+","+currentTapeSymbol+"): invalid direction specified.");
             }
         }
         
+        String contents = tapeToString(tape,touchedMin,touchedMax);
         if(finalStates.contains(currentState))
         {
-            System.out.println("String accepted: STM halted in state '" + currentState + "'");
+            return new Result(Result.Status.ACCEPTED, currentState, contents, "String accepted: STM halted in state '" + currentState + "'\nTape contents: " + contents);
         } else {
-            System.out.println("String rejected: STM halted in state '" + currentState + "'");
+            return new Result(Result.Status.REJECTED, currentState, contents, "String rejected: STM halted in state '" + currentState + "'\nTape contents: " + contents);
         }
-        
-        System.out.println("Tape contents: " + tapeToString(tape,touchedMin,touchedMax));
+    }
+    
+    // a blank tape of TAPE_LENGTH cells, with the input written around the middle
+    private char[] newTape(String input)
+    {
+        int n = input.length();
+        char tape[] = new char[TAPE_LENGTH];
+        for(int i=0; i<TAPE_LENGTH; i++) tape[i]=blankSymbol;
+        input.getChars(0, n, tape, TAPE_LENGTH/2 - n/2);
+        return tape;
+    }
+    
+    // prints the rule of the step, and the tape after it was executed
+    private void printStep(TraceLog log, int index1, int index2, char tape[], int touchedMin, int touchedMax)
+    {
+        log.println("Executing Rule: δ("+states[index1]+","+allSymbols[index2]+") = " + table.get(index1, index2));
+        log.println("\tTape contents after execution: " + tapeToString(tape,touchedMin,touchedMax));
     }
     
     private String tapeToString(char tape[], int min, int max)
@@ -230,56 +304,47 @@ public class STM
     
     private boolean parseSTM()
     {
-        String s = null;
-        while((s=fio.readNextLine())!=null)
+        while(lexer.nextLine())
         {
-            s = s.replace('\t',' ').trim();
-            int comPos = s.indexOf("//");
-            if(comPos > -1) s=s.substring(0,comPos).trim();
-            
-            if(s.length()==0) continue;
-            s = removeAllChars(s,' ');
-            
-            String x = s.substring(0,2).toUpperCase();
+            char x = Character.toUpperCase(lexer.getHead()), sep = lexer.getSeparator();
             
-            if(x.equals("Q="))
+            if(x=='Q' && sep=='=')
             {
-                if(!parseInternalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("E=")) {
-                if(!parseInputAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("I=")) {
-                if(!parseInitialState(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("F=")) {
-                if(!parseFinalStates(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("T=")) {
-                if(!parseTapeAlphabet(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("Z=")) {
-                if(!parseBlankSymbol(s)) { fio.closeFile(); return false; }
-            } else if(x.equals("D(")) {
-                if(!parseRule(s)) { fio.closeFile(); return false; }
+                if(!parseInternalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='E' && sep=='=') {
+                if(!parseInputAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='I' && sep=='=') {
+                if(!parseInitialState()) { lexer.closeFile(); return false; }
+            } else if(x=='F' && sep=='=') {
+                if(!parseFinalStates()) { lexer.closeFile(); return false; }
+            } else if(x=='T' && sep=='=') {
+                if(!parseTapeAlphabet()) { lexer.closeFile(); return false; }
+            } else if(x=='Z' && sep=='=') {
+                if(!parseBlankSymbol()) { lexer.closeFile(); return false; }
+            } else if(x=='D' && sep=='(') {
+                if(!parseRule()) { lexer.closeFile(); return false; }
             }
             
             if(isSpecReady() && table==null) makeTable();
         }
         
-        fio.closeFile();        
+        lexer.closeFile();        
         return true;
     }
     
-    private boolean parseInternalStates(String s)
+    private boolean parseInternalStates()
     {
         if(hasSpec[0])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Q - set of internal states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) internalStates.add(state);
+                for(int i=0; i<lexer.getGroupCount(); i++) internalStates.add(lexer.getField(i,0));
             }
         }
         
@@ -287,20 +352,19 @@ public class STM
         return true;
     }
         
-    private boolean parseInputAlphabet(String s)
+    private boolean parseInputAlphabet()
     {
         if(hasSpec[1])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'E - input alphabet'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'E - input alphabet'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) inputAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) inputAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -308,20 +372,19 @@ public class STM
         return true;
     }
     
-    private boolean parseTapeAlphabet(String s)
+    private boolean parseTapeAlphabet()
     {
         if(hasSpec[2])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'T - tape alphabet'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'T - tape alphabet'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: E = { a, b, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String symbol: a) tapeAlphabet.add(new Character(symbol.charAt(0)));
+                for(int i=0; i<lexer.getGroupCount(); i++) tapeAlphabet.add(new Character(lexer.getFieldChar(i,0)));
             }
         }
         
@@ -329,18 +392,18 @@ public class STM
         return true;
     }
     
-    private boolean parseBlankSymbol(String s)
+    private boolean parseBlankSymbol()
     {
         if(hasSpec[3])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'Z - blank symbol'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'Z - blank symbol'");
             return false;
         } else {
-            char symbol = s.charAt(2);
+            char symbol = lexer.getFieldChar(0,0);
             if(tapeAlphabet.contains(symbol))
                 blankSymbol = symbol;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + symbol + "' not found in tape alphabet");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + symbol + "' not found in tape alphabet");
                 return false;
             }
         }
@@ -349,18 +412,18 @@ public class STM
         return true;
     }
     
-    private boolean parseInitialState(String s)
+    private boolean parseInitialState()
     {
         if(hasSpec[4])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'I - initial state'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'I - initial state'");
             return false;
         } else {
-            String stateName = s.substring(2);
+            String stateName = lexer.getField(0,0);
             if(internalStates.contains(stateName))
                 initialState = stateName;
             else {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + stateName + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + stateName + "' not found");
                 return false;
             }
         }
@@ -369,24 +432,24 @@ public class STM
         return true;
     }
         
-    private boolean parseFinalStates(String s)
+    private boolean parseFinalStates()
     {
         if(hasSpec[5])
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Duplicate definition of 'F - set of final states'");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Duplicate definition of 'F - set of final states'");
             return false;
         } else {
-            if(s.charAt(2) != '{' || s.charAt(s.length()-1) != '}')
+            if(lexer.getShape() != '{')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": invalid syntax.\nCorrect syntax: F = { q1, q2, ... }");
                 return false;
             } else {
-                String a[] = s.substring(3,s.length()-1).split(",");
-                for(String state: a) 
+                for(int i=0; i<lexer.getGroupCount(); i++)
                 {
+                    String state = lexer.getField(i,0);
                     if(!internalStates.contains(state))
                     {
-                        System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + state + "' not found");
+                        messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + state + "' not found");
                         return false;
                     } else {
                         finalStates.add(state);
@@ -399,70 +462,53 @@ public class STM
         return true;
     }
     
-    private boolean parseRule(String s)
+    private boolean parseRule()
     {
         if(!isSpecReady())
         {
-            System.out.println("ERROR in Line "+fio.getLineNumber()+": Q, E, T, Z, I and F must be defined prior to defining the transition rules.");
+            messages.println("ERROR in Line "+lexer.getLineNumber()+": Q, E, T, Z, I and F must be defined prior to defining the transition rules.");
             return false;
         } else {
-            int b1 = s.indexOf('('), b2 = s.indexOf(','), b3 = s.indexOf(')'), b4 = s.indexOf('=');
-            
-            String target = s.substring(b4+1);
-            int b5 = target.indexOf('('), b6 = target.indexOf(',');
-            int b7 = target.lastIndexOf(','), b8 = target.indexOf(')');
-            
-            if(target.charAt(0)!='(' || target.charAt(target.length()-1)!=')')
+            // d(q0, a) = (q1, 0, L)
+            if(!lexer.isWellFormed() || lexer.isProduction() || lexer.getShape()!='(')
             {
                 printRuleSyntax();
                 return false;
             }
             
-            if(b1==-1 || b2==-1 || b3==-1 || b4==-1 || b5==-1 || b6==-1 || b7==-1 || b8==-1)
-            {
-                printRuleSyntax();
-                return false;
-            }
-            
-            if(!(b1 < b2 && b2 < b3 && b3 < b4))
-            {
-                printRuleSyntax();
-                return false;
-            }
-            
-            if(!(b5<b6 && b6<b7 && b7<b8))
+            if(lexer.getArgumentCount()!=2 || lexer.getArgumentLength(1)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
                         
-            if(!(b3==b2+2 && b4==b3+1 && b7==b6+2 && b8==b7+2))
+            if(lexer.getFieldCount(0)!=3 || lexer.getFieldLength(0,1)!=1 || lexer.getFieldLength(0,2)!=1)
             {
                 printRuleSyntax();
                 return false;
             }
             
-            String currentState = s.substring(b1+1,b2);
-            Character currentTapeSymbol = s.charAt(b2+1);
-            String nextState = target.substring(b5+1,b6);
-            Character replacerTapeSymbol = target.charAt(b6+1);
-            char directionToMove = Character.toUpperCase(target.charAt(b7+1));
+            String currentState = lexer.getArgument(0);
+            Character currentTapeSymbol = lexer.getArgumentChar(1);
+            String nextState = lexer.getField(0,0);
+            Character replacerTapeSymbol = lexer.getFieldChar(0,1);
+            char directionToMove = Character.toUpperCase(lexer.getFieldChar(0,2));
             
             if(!internalStates.contains(currentState))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": State '" + currentState + "' not found");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": State '" + currentState + "' not found");
                 return false;
             }
             
             if(!inputAlphabet.contains(currentTapeSymbol) && !tapeAlphabet.contains(currentTapeSymbol))
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + currentTapeSymbol + "' not found in input/tape alphabet");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + currentTapeSymbol + "' not found in input/tape alphabet");
                 return false;
             }
             
             if(directionToMove!='L' && directionToMove!='R')
             {
-                System.out.println("ERROR in Line "+fio.getLineNumber()+": Symbol '" + directionToMove + "' is invalid for direction");
+                messages.println("ERROR in Line "+lexer.getLineNumber()+": Symbol '" + directionToMove + "' is invalid for direction");
                 return false;
             }
                         
@@ -471,7 +517,7 @@ public class STM
             int index1 = getIndexOfState(currentState);
             int index2 = getIndexOfSymbol(currentTapeSymbol);
             
-            table[index1][index2]=targetState;
+            table.set(index1, index2, targetState);
         }
         
         return true;
@@ -495,48 +541,33 @@ public class STM
         while(it3.hasNext()) allSym.add(it3.next());
         
         allSymbols = new char[allSym.size()];
-        table = new STMTarget[n1][allSym.size()];
+        table = new RuleTable<STMTarget>(n1, allSym.size());
         
         Iterator<Character> it4 = allSym.iterator();
         while(it4.hasNext()) allSymbols[++j]=it4.next();
+        
+        symbolTable = new SymbolTable();
+        for(i=0; i<states.length; i++) symbolTable.addState(states[i]);
+        for(j=0; j<allSymbols.length; j++) symbolTable.addSymbol(allSymbols[j]);
     }
     
     private int getIndexOfState(String stateName)
     {
-        for(int i=0; i<states.length; i++)
-        {
-            if(stateName.equals(states[i])) return i;
-        }
-        return -1;
+        return symbolTable.getStateId(stateName);
     }
     
     private int getIndexOfSymbol(char symbol)
     {
-        for(int i=0; i<allSymbols.length; i++)
-        {
-            if(symbol==allSymbols[i]) return i;
-        }
-        return -1;
+        return symbolTable.getSymbolId(symbol);
     }
         
     private void printRuleSyntax()
     {
-        System.out.println("ERROR in Line "+fio.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = (q1, 1, R)");
+        messages.println("ERROR in Line "+lexer.getLineNumber()+": Invalid syntax.\nCorrect Syntax: d(q0, a) = (q1, 1, R)");
     }
     
     private boolean isSpecReady()
     {
         return(hasSpec[0] && hasSpec[1] && hasSpec[2] && hasSpec[3] && hasSpec[4] && hasSpec[5]);
     }
-    
-    private String removeAllChars(String s, char c)
-    {
-        int n = s.length();
-        String r = "";
-        for(int i=0; i<n; i++)
-        {
-            if(s.charAt(i)!=c) r+=s.charAt(i);
-        }
-        return r;
-    }
 }
\ No newline at end of file
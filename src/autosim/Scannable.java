@@ -0,0 +1,13 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// A machine which can search a text for the parts it accepts (-scan)
+interface Scannable extends Machine
+{
+    // the scanner for the machine, once it has been prepared
+    MatchScanner getScanner();
+}
@@ -0,0 +1,50 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.Arrays;
+
+// Set of NFA states making up a state of a LazyDFA
+class StateSet
+{
+    protected final int states[];
+    protected final boolean isFinal;
+    private final int hash;
+
+    public StateSet(int states[], boolean isFinal)
+    {
+        this.states = states;
+        this.isFinal = isFinal;
+        this.hash = Arrays.hashCode(states) * 2 + (isFinal ? 1 : 0);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object x)
+    {
+        if(!(x instanceof StateSet)) return false;
+        StateSet s = (StateSet)x;
+        return(s.isFinal==isFinal && Arrays.equals(s.states, states));
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("{ ");
+        for(int i=0; i<states.length; i++)
+        {
+            if(i>0) sb.append(", ");
+            sb.append('q').append(states[i]);
+        }
+        if(isFinal) sb.append(states.length==0 ? "" : ", ").append(AutoSim.FINAL_STATE_NAME);
+        return sb.append(" }").toString();
+    }
+}
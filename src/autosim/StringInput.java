@@ -0,0 +1,46 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Input held in memory, e.g. the string given with -input
+class StringInput extends InputSource
+{
+    private final CharSequence input;
+    private int pos;
+
+    public StringInput(CharSequence input)
+    {
+        this.input = input;
+        this.pos = 0;
+    }
+
+    @Override
+    public int read(char buf[])
+    {
+        int n = Math.min(buf.length, input.length() - pos);
+        if(n<=0) return -1;
+
+        if(input instanceof String)
+            ((String)input).getChars(pos, pos+n, buf, 0);
+        else
+            for(int i=0; i<n; i++) buf[i] = input.charAt(pos+i);
+
+        pos += n;
+        return n;
+    }
+
+    // short inputs are read with a buffer of their own size
+    @Override
+    public int getChunkSize() { return Math.max(1, Math.min(CHUNK_SIZE, input.length() - pos)); }
+
+    @Override
+    public String readAll()
+    {
+        String x = input.subSequence(pos, input.length()).toString();
+        pos = input.length();
+        return x;
+    }
+}
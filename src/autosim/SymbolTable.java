@@ -0,0 +1,175 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Interns state names and symbols to dense int IDs (0, 1, 2, ...) in the order they are added.
+// State names are kept in an open-addressing hash table and symbols are indexed directly by
+// their char value, so that both lookups take constant time however large the machine is.
+//
+// Symbols which every rule treats alike (e.g. the letters of a large alphabet given with '*') can be
+// grouped into classes, so that a machine keeps one table column per class rather than per symbol.
+class SymbolTable
+{
+    private String names[];         // state name by ID
+    private int hashes[];           // hash of each state name, by ID
+    private int slots[];            // hash table: ID+1 of the state in the slot, 0 if empty
+    private int stateCount;
+    private long nameLength;        // total length of the state names
+
+    private final int symbolIds[];  // symbol -> ID, -1 if not added
+    private char symbols[];
+    private int symbolCount;
+    private int classOf[];          // symbol ID -> class, null until groupSymbols() (each symbol is its own class)
+    private int classCount;
+
+    public SymbolTable()
+    {
+        names = new String[16];
+        hashes = new int[16];
+        slots = new int[32];
+        stateCount = 0;
+        nameLength = 0;
+
+        symbolIds = new int[65536];
+        Arrays.fill(symbolIds, -1);
+        symbols = new char[16];
+        symbolCount = 0;
+    }
+
+    // <------------------------- States --------------------------->
+
+    // returns the ID of the state, adding it if it is not present
+    public int addState(String name)
+    {
+        int id = getStateId(name);
+        if(id!=-1) return id;
+
+        if(stateCount==names.length)
+        {
+            names = Arrays.copyOf(names, 2*stateCount);
+            hashes = Arrays.copyOf(hashes, 2*stateCount);
+        }
+        if(2*(stateCount+1) > slots.length) rehash(2*slots.length);
+
+        id = stateCount++;
+        names[id] = name;
+        nameLength += name.length();
+        hashes[id] = name.hashCode();
+        insert(id);
+        return id;
+    }
+
+    // returns the ID of the state, or -1 if it was never added
+    public int getStateId(String name)
+    {
+        int h = name.hashCode(), mask = slots.length-1;
+        for(int i=mix(h) & mask; slots[i]!=0; i=(i+1) & mask)
+        {
+            int id = slots[i]-1;
+            if(hashes[id]==h && names[id].equals(name)) return id;
+        }
+        return -1;
+    }
+
+    public String getStateName(int id) { return names[id]; }
+    public int getStateCount() { return stateCount; }
+
+    // spreads the high bits of String.hashCode() over the low bits used to pick a slot
+    private static int mix(int h)
+    {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void insert(int id)
+    {
+        int mask = slots.length-1;
+        int i = mix(hashes[id]) & mask;
+        while(slots[i]!=0) i = (i+1) & mask;
+        slots[i] = id+1;
+    }
+
+    private void rehash(int size)
+    {
+        slots = new int[size];
+        for(int id=0; id<stateCount; id++) insert(id);
+    }
+
+    // <------------------------- Symbols --------------------------->
+
+    // returns the ID of the symbol, adding it if it is not present
+    public int addSymbol(char c)
+    {
+        if(symbolIds[c]!=-1) return symbolIds[c];
+
+        if(symbolCount==symbols.length) symbols = Arrays.copyOf(symbols, 2*symbolCount);
+        symbols[symbolCount] = c;
+        symbolIds[c] = symbolCount;
+        return symbolCount++;
+    }
+
+    // returns the ID of the symbol, or -1 if it was never added
+    public int getSymbolId(char c) { return symbolIds[c]; }
+
+    public char getSymbol(int id) { return symbols[id]; }
+    public int getSymbolCount() { return symbolCount; }
+
+    // <------------------------- Symbol classes --------------------------->
+
+    // groups the symbols whose columns are equal in every one of the tables (e.g. the targets and the outputs
+    // of a Mealy machine), keeping 'separate' (e.g. lambda, -1 for none) in a class of its own. Returns the ID
+    // of a symbol of each class, i.e. the columns to keep, see RuleTable.keepColumns().
+    public int[] groupSymbols(RuleTable<?> tables[], int separate)
+    {
+        ArrayList<ArrayList<ArrayList<Object>>> columns = new ArrayList<ArrayList<ArrayList<Object>>>(tables.length);
+        for(int t=0; t<tables.length; t++) columns.add(tables[t].getColumns());
+
+        HashMap<List<Object>, Integer> classes = new HashMap<List<Object>, Integer>();
+        classOf = new int[symbolCount];
+        int keep[] = new int[symbolCount];
+        classCount = 0;
+
+        for(int j=0; j<symbolCount; j++)
+        {
+            List<Object> column = new ArrayList<Object>(tables.length);
+            for(int t=0; t<tables.length; t++) column.add(columns.get(t).get(j));
+
+            Integer c = (j==separate ? null : classes.get(column));
+            if(c==null)
+            {
+                c = classCount;
+                if(j!=separate) classes.put(column, c);
+                keep[classCount++] = j;
+            }
+            classOf[j] = c;
+        }
+        return Arrays.copyOf(keep, classCount);
+    }
+
+    // returns the class of the symbol, or -1 if it was never added
+    public int getSymbolClass(char c)
+    {
+        int id = symbolIds[c];
+        return(id==-1 || classOf==null ? id : classOf[id]);
+    }
+
+    public int getClassOf(int id) { return(classOf==null ? id : classOf[id]); }
+    public int getClassCount() { return(classOf==null ? symbolCount : classCount); }
+
+    // approximate number of bytes held by the table, including the state names
+    public long getMemoryFootprint()
+    {
+        return MachineCache.ofArray(symbolIds.length, 4) + MachineCache.ofArray(symbols.length, 2)
+             + MachineCache.ofArray(names.length, MachineCache.REFERENCE) + MachineCache.ofArray(hashes.length, 4)
+             + MachineCache.ofArray(slots.length, 4) + stateCount*MachineCache.ofString(0) + 2*nameLength
+             + (classOf==null ? 0 : MachineCache.ofArray(classOf.length, 4));
+    }
+}
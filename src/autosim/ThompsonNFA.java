@@ -0,0 +1,141 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.util.Arrays;
+
+// NFA built from a regular expression by Thompson's construction. Every state either has a
+// single transition on a symbol, or up to two lambda-transitions; state 'start' is the
+// initial state and state 'accept' the only final state.
+class ThompsonNFA
+{
+    protected static final int LAMBDA = -1;
+
+    private int label[];        // symbol on the transition out of the state, or LAMBDA
+    private int out1[];
+    private int out2[];
+    private int count;
+
+    protected int start;
+    protected int accept;
+
+    public ThompsonNFA(Regex r)
+    {
+        int n = 16;
+        label = new int[n];
+        out1 = new int[n];
+        out2 = new int[n];
+        count = 0;
+
+        start = newState();
+        accept = newState();
+        build(r, start, accept);
+    }
+
+    public int size() { return count; }
+    public int getLabel(int state) { return label[state]; }
+    public int getOut1(int state) { return out1[state]; }
+    public int getOut2(int state) { return out2[state]; }
+
+    private int newState()
+    {
+        if(count==label.length)
+        {
+            int n = 2*count;
+            label = Arrays.copyOf(label, n);
+            out1 = Arrays.copyOf(out1, n);
+            out2 = Arrays.copyOf(out2, n);
+        }
+
+        label[count] = LAMBDA;
+        out1[count] = -1;
+        out2[count] = -1;
+        return count++;
+    }
+
+    private void addLambda(int from, int to)
+    {
+        if(out1[from]==-1) out1[from]=to;
+        else out2[from]=to;
+    }
+
+    // builds the fragment for 'r' going from state 'from' (no transitions yet) to state 'to'
+    private void build(Regex r, int from, int to)
+    {
+        switch(r.type)
+        {
+            case EMPTY:
+                break;
+            case EPSILON:
+                addLambda(from, to);
+                break;
+            case SYMBOL:
+                label[from] = r.symbol;
+                out1[from] = to;
+                break;
+            case CONCAT:
+                int s = from;
+                for(int i=0; i<r.children.length; i++)
+                {
+                    int e = (i==r.children.length-1 ? to : newState());
+                    build(r.children[i], s, e);
+                    s = e;
+                }
+                break;
+            case UNION:
+                // a chain of binary splits, one branch per alternative
+                int split = from;
+                for(int i=0; i<r.children.length; i++)
+                {
+                    int s1 = newState();
+                    int e1 = newState();
+                    build(r.children[i], s1, e1);
+                    addLambda(e1, to);
+
+                    if(i < r.children.length-2) {
+                        int next = newState();
+                        addLambda(split, s1);
+                        addLambda(split, next);
+                        split = next;
+                    } else {
+                        addLambda(split, s1);
+                    }
+                }
+                break;
+            case STAR:
+                int s1 = newState();
+                int e1 = newState();
+                build(r.children[0], s1, e1);
+                addLambda(from, s1);
+                addLambda(from, to);
+                addLambda(e1, s1);
+                addLambda(e1, to);
+                break;
+        }
+    }
+
+    // symbols used on the transitions, in ascending order
+    public char[] getAlphabet()
+    {
+        boolean used[] = new boolean[65536];
+        int n = 0;
+        for(int i=0; i<count; i++)
+        {
+            if(label[i]!=LAMBDA && !used[label[i]])
+            {
+                used[label[i]] = true;
+                n++;
+            }
+        }
+
+        char x[] = new char[n];
+        for(int c=0, j=0; c<used.length; c++)
+        {
+            if(used[c]) x[j++] = (char)c;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,25 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+// Binary trace of a run, written with -trace-file and printed as text with -show-trace. Rather than
+// formatting a line per step, the machine records the IDs it already has at hand; the names are
+// looked up only when the trace is shown, from the same description. Layout (big-endian):
+//
+//      magic "ATRC" | version (int) | automaton (string) | state count (int) | symbol count (int) |
+//      context (string) | steps...
+//
+// where a string is its length (int) followed by its chars, and each step is four ints:
+//
+//      state ID | symbol ID | rule (further index of the rule, e.g. the stack symbol of a PDA) | head position
+//
+// The context holds what a machine needs to replay its run, e.g. the initial tape of a STM.
+class TraceFile
+{
+    public static final int MAGIC = 0x41545243;         // "ATRC"
+    public static final int VERSION = 1;
+    public static final int STEP_SIZE = 16;
+}
@@ -0,0 +1,188 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+
+// The trace of one run, of which only part may be kept, for inputs whose full trace would be too long to read:
+//
+//      -trace-last <N>                 the last N steps, shown only if the input is rejected or fails
+//      -trace-every <k>                every k-th step
+//      -trace-only <state>[,<symbol>]  the steps out of the state (* for any) on the symbol
+//
+// The machines ask wants() for each step, by the IDs of its state and symbol, and format and print
+// the step only if it is kept; the lines printed until the next step (e.g. the tape of a STM after
+// the step) belong to it. The modes can be combined, e.g. the last 100 steps out of state q3.
+class TraceLog
+{
+    private static final int ANY = -1;          // the ID of -trace-only for any state or symbol
+    private static final int NONE = -2;         // for a state or symbol which the machine does not have
+
+    // the part of the trace to keep, as given on the command line; the machines it is set on resolve
+    // the state and symbol to their own IDs for each run
+    static final class Sampling
+    {
+        private final int last;             // 0 to keep all the steps
+        private final int every;
+        private final String state;         // null for any
+        private final int symbol;           // ANY, or the symbol as in the description (λ as LAMBDA_CHAR)
+
+        private Sampling(int last, int every, String state, int symbol)
+        {
+            this.last = last;
+            this.every = every;
+            this.state = state;
+            this.symbol = symbol;
+        }
+
+        // the sampling of -trace-last, -trace-every and -trace-only; null (with a message) if the filter is invalid
+        public static Sampling parse(int last, int every, String only)
+        {
+            String state = null;
+            int symbol = ANY;
+
+            if(only!=null)
+            {
+                // the symbol is the one after the last comma, so that the name of the state may have commas
+                // of its own (e.g. the states of a regular expression, which are sets of states)
+                String name = only.trim();
+                int i = only.lastIndexOf(',');
+                if(i > 0 && only.substring(i+1).trim().length()==0 && only.charAt(i-1)==',') i--;     // the symbol is a comma
+                if(i!=-1 && only.substring(i+1).trim().length()==1)
+                {
+                    symbol = only.substring(i+1).trim().charAt(0);
+                    if(symbol==AutoSim.LAMBDA_PRINT_CHAR) symbol = AutoSim.LAMBDA_CHAR;
+                    name = only.substring(0, i).trim();
+                }
+                if(name.length()==0)
+                {
+                    System.out.println("ERROR: Invalid trace filter '" + only + "'");
+                    return null;
+                }
+                if(!name.equals("*")) state = name;
+            }
+            return new Sampling(last, every, state, symbol);
+        }
+    }
+
+    private final PrintStream target;
+    private final Sampling sampling;            // null to keep every step
+    private final int state, symbol;            // the IDs of -trace-only, ANY or NONE
+    private final ArrayDeque<String> kept;      // the last steps, with -trace-last
+    private boolean keepStep;                   // whether the lines of the current step are kept
+    private boolean stepStarted;                // whether a line of the current step was printed
+    private long steps, matched, shown, dropped;
+
+    private TraceLog(PrintStream target, Sampling sampling, String states[], char symbols[])
+    {
+        this.target = target;
+        this.sampling = sampling;
+        this.state = (sampling==null || sampling.state==null ? ANY : indexOf(states, sampling.state));
+        this.symbol = (sampling==null || sampling.symbol==ANY ? ANY : indexOf(symbols, (char)sampling.symbol));
+        this.kept = (sampling!=null && sampling.last > 0 ? new ArrayDeque<String>() : null);
+    }
+
+    // the trace of a run of the machine with the given states and symbols (their IDs are the indices), printed
+    // to 'out'; null if the run is not traced. A null sampling keeps every step.
+    public static TraceLog begin(PrintStream out, boolean trace, Sampling sampling, String states[], char symbols[])
+    {
+        return(trace ? new TraceLog(out, sampling, states, symbols) : null);
+    }
+
+    // ends the trace of the run, if any, then prints its outcome
+    public static void end(TraceLog log, Result r)
+    {
+        if(log!=null) log.finish(r);
+        (log!=null ? log.target : System.out).println(r.getMessage());
+    }
+
+    // starts a step out of the state on the symbol, given by their IDs; true if it is kept, and is to be printed
+    public boolean wants(int stateId, int symbolId)
+    {
+        if(sampling==null) return true;
+        return step(state!=NONE && symbol!=NONE && (state==ANY || state==stateId) && (symbol==ANY || symbol==symbolId));
+    }
+
+    // the same, for a machine whose states are not known in advance (see RegexMatcher)
+    public boolean wants(String stateName, char symbolName)
+    {
+        if(sampling==null) return true;
+        return step((sampling.state==null || sampling.state.equals(stateName)) && (sampling.symbol==ANY || sampling.symbol==symbolName));
+    }
+
+    // starts a step which is not a rule (e.g. the initial state, or a step of a derivation): -trace-only keeps it
+    public boolean wants()
+    {
+        if(sampling==null) return true;
+        return step(true);
+    }
+
+    private boolean step(boolean matches)
+    {
+        steps++;
+        keepStep = matches && (matched++ % sampling.every)==0;
+        stepStarted = false;
+        return keepStep;
+    }
+
+    // prints a line of the step which was last kept
+    public void println(String x)
+    {
+        if(sampling==null)
+        {
+            target.println(x);
+            return;
+        }
+        if(!keepStep) return;
+
+        boolean continued = stepStarted;
+        stepStarted = true;
+        if(kept==null)
+        {
+            target.println(x);
+            if(!continued) shown++;
+        } else if(continued) {
+            kept.addLast(kept.pollLast() + "\n" + x);
+        } else {
+            kept.addLast(x);
+            if(kept.size() > sampling.last)
+            {
+                kept.pollFirst();
+                dropped++;
+            }
+        }
+    }
+
+    // writes out the steps which were kept back for the end of the run
+    public void finish(Result r)
+    {
+        if(sampling==null) return;
+
+        if(kept!=null)
+        {
+            boolean failed = (r.getStatus()==Result.Status.REJECTED || r.getStatus()==Result.Status.ERROR);
+            if(!failed) return;
+
+            if(dropped > 0) target.println("... " + dropped + " earlier step(s) not shown");
+            while(!kept.isEmpty()) target.println(kept.pollFirst());
+        } else {
+            target.println("Trace: " + shown + " of " + steps + " step(s) shown");
+        }
+    }
+
+    private static int indexOf(String names[], String name)
+    {
+        if(names!=null) for(int i=0; i<names.length; i++) if(names[i].equals(name)) return i;
+        return NONE;
+    }
+
+    private static int indexOf(char names[], char name)
+    {
+        if(names!=null) for(int i=0; i<names.length; i++) if(names[i]==name) return i;
+        return NONE;
+    }
+}
@@ -0,0 +1,129 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+// Reads the steps of a trace back, one at a time
+class TraceReader
+{
+    private final DataInputStream in;
+    private final int stateCount, symbolCount;
+    private final String context;
+    private int ruleCount;
+
+    private int state, symbol, rule, position;
+
+    private TraceReader(DataInputStream in, int stateCount, int symbolCount, String context)
+    {
+        this.in = in;
+        this.stateCount = stateCount;
+        this.symbolCount = symbolCount;
+        this.context = context;
+        this.ruleCount = 1;
+    }
+
+    // opens the trace and checks that it was recorded by the given automaton, returns null (with a message) if it was not
+    public static TraceReader open(String fileName, String automaton)
+    {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot open file '" + fileName + "'.");
+            return null;
+        }
+
+        try {
+            if(in.readInt()!=TraceFile.MAGIC)
+            {
+                System.out.println("ERROR: '" + fileName + "' is not a trace file");
+            } else if(in.readInt()!=TraceFile.VERSION) {
+                System.out.println("ERROR: '" + fileName + "' was recorded by an incompatible version of AutoSim");
+            } else {
+                String a = readString(in);
+                int stateCount = in.readInt(), symbolCount = in.readInt();
+                String context = readString(in);
+
+                if(a.equals(automaton)) return new TraceReader(in, stateCount, symbolCount, context);
+                System.out.println("ERROR: '" + fileName + "' is a trace of a " + a + ", not of a " + automaton);
+            }
+        } catch(IOException e) {
+            System.out.println("ERROR: '" + fileName + "' is not a trace file");
+        }
+
+        close(in);
+        return null;
+    }
+
+    // true if the counts recorded in the header are those of the machine, i.e. the trace was recorded from the same description;
+    // the rules of the steps which follow are then checked to be below ruleCount
+    public boolean matches(int stateCount, int symbolCount, int ruleCount)
+    {
+        this.ruleCount = ruleCount;
+        if(this.stateCount==stateCount && this.symbolCount==symbolCount) return true;
+        System.out.println("ERROR: The trace was not recorded from this description");
+        return false;
+    }
+
+    public String getContext() { return context; }
+
+    // advances to the next step, returns false at the end of the trace
+    public boolean next()
+    {
+        try {
+            state = in.readInt();
+            symbol = in.readInt();
+            rule = in.readInt();
+            position = in.readInt();
+        } catch(EOFException e) {
+            return false;
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot read from file.");
+            return false;
+        }
+
+        if(state < 0 || state >= stateCount || symbol < 0 || symbol >= symbolCount || rule < 0 || rule >= ruleCount)
+        {
+            System.out.println("ERROR: The trace is corrupt");
+            return false;
+        }
+        return true;
+    }
+
+    public int getState() { return state; }
+    public int getSymbol() { return symbol; }
+    public int getRule() { return rule; }
+    public int getPosition() { return position; }
+
+    public void close()
+    {
+        close(in);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int n = in.readInt();
+        if(n < 0 || n > (1 << 28)) throw new IOException();
+
+        char c[] = new char[n];
+        for(int i=0; i<n; i++) c[i] = in.readChar();
+        return new String(c);
+    }
+
+    private static void close(DataInputStream in)
+    {
+        try {
+            in.close();
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot close file.");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Records the steps of a run into a buffer, which is written out whenever it fills up
+class TraceWriter
+{
+    private static final int BUFFER_STEPS = 1 << 16;
+
+    private final String fileName;
+    private final FileOutputStream file;
+    private final FileChannel channel;
+    private final ByteBuffer buf;
+    private long steps;
+    private boolean failed;
+
+    private TraceWriter(String fileName, FileOutputStream file)
+    {
+        this.fileName = fileName;
+        this.file = file;
+        this.channel = file.getChannel();
+        this.buf = ByteBuffer.allocateDirect(BUFFER_STEPS * TraceFile.STEP_SIZE);
+        this.steps = 0;
+        this.failed = false;
+    }
+
+    // null (with a message) if the file cannot be created
+    public static TraceWriter create(String fileName)
+    {
+        try {
+            return new TraceWriter(fileName, new FileOutputStream(fileName));
+        } catch(IOException e) {
+            System.out.println("ERROR: Cannot write to file '" + fileName + "'.");
+            return null;
+        }
+    }
+
+    // writes the header, before the first step of the run
+    public void begin(String automaton, int stateCount, int symbolCount, String context)
+    {
+        buf.putInt(TraceFile.MAGIC);
+        buf.putInt(TraceFile.VERSION);
+        putString(automaton);
+        buf.putInt(stateCount);
+        buf.putInt(symbolCount);
+        putString(context);
+    }
+
+    public void step(int state, int symbol, int rule, int position)
+    {
+        if(buf.remaining() < TraceFile.STEP_SIZE) flush();
+        buf.putInt(state);
+        buf.putInt(symbol);
+        buf.putInt(rule);
+        buf.putInt(position);
+        steps++;
+    }
+
+    public long getStepCount() { return steps; }
+
+    // writes out the rest of the steps, returns false (with a message) if any of them could not be written
+    public boolean close()
+    {
+        flush();
+        try {
+            file.close();
+        } catch(IOException e) {
+            failed = true;
+        }
+
+        if(failed) System.out.println("ERROR: Cannot write to file '" + fileName + "'.");
+        return !failed;
+    }
+
+    private void putString(String s)
+    {
+        int n = s.length();
+        while(buf.remaining() < 4 + 2*n && buf.position() > 0) flush();
+
+        buf.putInt(n);
+        for(int i=0; i<n; i++)
+        {
+            if(buf.remaining() < 2) flush();
+            buf.putChar(s.charAt(i));
+        }
+    }
+
+    private void flush()
+    {
+        buf.flip();
+        try {
+            while(buf.hasRemaining() && !failed) channel.write(buf);
+        } catch(IOException e) {
+            failed = true;      // reported by close(), the run itself goes on
+        }
+        buf.clear();
+    }
+}
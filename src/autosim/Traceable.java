@@ -0,0 +1,18 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.PrintStream;
+
+// A machine whose steps can be recorded to a binary trace (-trace-file), and shown later (-show-trace)
+interface Traceable extends Machine
+{
+    // the steps of the following runs on the command line are recorded to the writer, rather than printed
+    void traceTo(TraceWriter writer);
+
+    // prints the recorded steps as -trace prints them; returns false (with a message) if the trace does not fit the machine
+    boolean renderTrace(TraceReader reader, PrintStream out);
+}
@@ -0,0 +1,122 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class AutomataTest
+{
+    // strings on {a,b} beginning with ab, as in examples/dfa1.dfa
+    private static final String STARTS_WITH_AB =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q3\nd(q1,a)=q3\nd(q1,b)=q2\nd(q3,a)=q3\nd(q3,b)=q3\nd(q2,a)=q2\nd(q2,b)=q2\n";
+
+    @Test
+    public void compilesADescriptionWithoutPrinting() throws Exception
+    {
+        TestFiles.beginCapture();
+        CompiledAutomaton a = Automata.compile("DFA", TestFiles.write(STARTS_WITH_AB, "dfa"));
+        Result r = a.run("abba");
+        String out = TestFiles.endCapture();
+
+        assertEquals("", out);
+        assertEquals("dfa", a.getType());
+        assertTrue(a.getWarnings().isEmpty());
+        assertTrue(r.isAccepted());
+        assertEquals(Result.Status.REJECTED, a.run("ba").getStatus());
+    }
+
+    @Test
+    public void keepsTheWarningsOfTheDescription() throws Exception
+    {
+        CompiledAutomaton a = Automata.compile("dfa", TestFiles.write("Q={q0,q1}\nE={a,b}\nI=q0\nF={q1}\nd(q0,a)=q1\n", "dfa"));
+        assertEquals(Collections.singletonList("WARNING: Incomplete specification of DFA. One or more rules are undefined."), a.getWarnings());
+        assertTrue(a.run("a").isAccepted());
+    }
+
+    @Test
+    public void throwsTheErrorsOfTheDescription() throws IOException
+    {
+        String bad = TestFiles.write("Q={q0,q1}\nE={a,b}\nI=q0\nF={q1}\nd(q0,a)=q9\n", "dfa");
+        assertEquals(Arrays.asList("ERROR in Line 5: State 'q9' not found"), errors("dfa", bad));
+
+        String regex = TestFiles.write("(a|b\n", "regex");
+        List<String> e = errors("regex", regex);
+        assertEquals(1, e.size());
+        assertTrue(e.get(0), e.get(0).startsWith("ERROR: Invalid regular expression"));
+
+        // the lines which go on with a message belong to it
+        String syntax = TestFiles.write("Q=q0\n", "dfa");
+        assertEquals(Arrays.asList("ERROR in Line 1: invalid syntax.\nCorrect syntax: Q = { q0, q1, ... }"), errors("dfa", syntax));
+    }
+
+    @Test
+    public void throwsWhenTheMachineCannotBeCreated() throws IOException
+    {
+        String missing = TestFiles.newFile("dfa");
+        assertEquals(Arrays.asList("ERROR: Cannot open file '" + missing + "'."), errors("dfa", missing));
+        assertEquals(Arrays.asList("ERROR: Unknown automaton 'lba'"), errors("lba", missing));
+    }
+
+    @Test
+    public void runsFromManyThreadsAtOnce() throws Exception
+    {
+        final CompiledAutomaton a = Automata.compile("nfa", TestFiles.write(
+            "Q={qA,qB,qC}\nE={a,b}\nI=qA\nF={qC}\n" +
+            "d(qA,a)={ qB }\nd(qA,b)={ qC }\nd(qB,a)={ qC }\nd(qB,b)={ qB }\nd(qC,a)={ qC }\nd(qC,b)={ qC }\n", "nfa"));
+        final List<String> inputs = DFAProductTest.strings("ab", 8);
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+        Thread threads[] = new Thread[8];
+        for(int t=0; t<threads.length; t++)
+        {
+            threads[t] = new Thread() {
+                public void run()
+                {
+                    for(int pass=0; pass<20; pass++)
+                    {
+                        for(String s: inputs)
+                        {
+                            // b..., or a b* a...
+                            boolean expected = s.startsWith("b") || (s.length() > 1 && s.substring(1).indexOf('a')!=-1);
+                            if(a.run(s).isAccepted()!=expected) failures.add(s);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread t: threads) t.join();
+        assertEquals(Collections.<String>emptyList(), failures);
+    }
+
+    // the errors thrown for the description, which must not be printed
+    private static List<String> errors(String type, String descFile)
+    {
+        TestFiles.beginCapture();
+        try {
+            Automata.compile(type, descFile);
+            fail("The " + type + " was compiled");
+            return null;
+        } catch(AutomatonException e) {
+            assertFalse(e.getErrors().isEmpty());
+            assertEquals(e.getErrors().get(0), e.getMessage());
+            return e.getErrors();
+        } finally {
+            assertEquals("", TestFiles.endCapture());
+        }
+    }
+}
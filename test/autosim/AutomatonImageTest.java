@@ -0,0 +1,106 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class AutomatonImageTest
+{
+    // strings on {a,b} beginning with ab, as in examples/dfa1.dfa
+    private static final String DFA =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q3\nd(q1,a)=q3\nd(q1,b)=q2\nd(q3,a)=q3\nd(q3,b)=q3\nd(q2,a)=q2\nd(q2,b)=q2\n";
+
+    // strings on {a,b} with fewer a's than b's, as in examples/npda1.npda
+    private static final String NPDA =
+        "Q={q0,q2}\nF={q2}\nE={a,b}\nT={a,b,z}\nZ=z\nI=q0\n" +
+        "d(q0,a,z)={(q0,az)}\nd(q0,a,a)={(q0,aa)}\nd(q0,a,b)={(q0,~)}\n" +
+        "d(q0,b,z)={(q0,bz)}\nd(q0,b,a)={(q0,~)}\nd(q0,b,b)={(q0,bb)}\nd(q0,~,b)={(q2,~)}\n";
+
+    @Test
+    public void runsAsTheDescriptionItWasCompiledFrom() throws Exception
+    {
+        assertRoundTrip("dfa", DFA);
+        assertRoundTrip("npda", NPDA);
+
+        // NFAs with missing rules and lambda-transitions, whose sets of states are written as IDs
+        Random r = new Random(34);
+        for(int test=0; test<30; test++) assertRoundTrip("nfa", MatchScannerTest.randomMachine(r, true));
+    }
+
+    @Test
+    public void rejectsACorruptImage() throws Exception
+    {
+        String image = compile("dfa", TestFiles.write(DFA, "dfa"));
+        byte data[] = Files.readAllBytes(new File(image).toPath());
+
+        // any byte changed after the header, or a truncated image, fails the checksum
+        for(int i=9; i<data.length; i+=7)
+        {
+            byte corrupt[] = data.clone();
+            corrupt[i] ^= 0x10;
+            String file = TestFiles.write(corrupt, "img");
+            assertEquals(Arrays.asList("ERROR: '" + file + "' is corrupt (checksum mismatch)"), errors("dfa", file));
+        }
+        String truncated = TestFiles.write(Arrays.copyOf(data, data.length-3), "img");
+        assertEquals(Arrays.asList("ERROR: '" + truncated + "' is corrupt (checksum mismatch)"), errors("dfa", truncated));
+    }
+
+    @Test
+    public void rejectsAnImageOfAnotherKind() throws Exception
+    {
+        String image = compile("dfa", TestFiles.write(DFA, "dfa"));
+        assertEquals(Arrays.asList("ERROR: '" + image + "' is a compiled DFA, not a NFA"), errors("nfa", image));
+        assertEquals(Arrays.asList("ERROR: '" + image + "' is a compiled automaton, which can only be run with -dfa, -nfa or -npda"), errors("stm", image));
+    }
+
+    // every string of up to 6 symbols on {a,b,c}, c being outside the alphabet, has the same outcome from the image
+    private static void assertRoundTrip(String type, String text) throws Exception
+    {
+        String desc = TestFiles.write(text, type);
+        Automaton fromDesc = Automata.compile(type, desc), fromImage = Automata.compile(type, compile(type, desc));
+        for(String s: DFAProductTest.strings("abc", 6))
+        {
+            Result x = fromDesc.run(s), y = fromImage.run(s);
+            assertEquals(type + " on '" + s + "'", x.getStatus(), y.getStatus());
+            assertEquals(type + " on '" + s + "'", x.getMessage(), y.getMessage());
+        }
+    }
+
+    // the image written by -compile for the description
+    private static String compile(String type, String descFile) throws IOException
+    {
+        String image = TestFiles.newFile("img");
+        TestFiles.beginCapture();
+        if(type.equals("dfa")) new DFA(descFile, null, false).compile(image);
+        else if(type.equals("nfa")) new NFA(descFile, null, false).compile(image);
+        else new NPDAParser(descFile, null, false).compile(image);
+        String out = TestFiles.endCapture();
+        assertTrue(out, out.contains("compiled to '" + image + "'"));
+        return image;
+    }
+
+    private static List<String> errors(String type, String file)
+    {
+        try {
+            Automata.compile(type, file);
+            fail("The image was loaded");
+            return null;
+        } catch(AutomatonException e) {
+            return e.getErrors();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import org.junit.Test;
+
+public class DFAProductTest
+{
+    // strings on {a,b} ending in a
+    private static final String ENDS_IN_A =
+        "Q={p0,p1}\nE={a,b}\nI=p0\nF={p1}\n" +
+        "d(p0,a)=p1\nd(p0,b)=p0\nd(p1,a)=p1\nd(p1,b)=p0\n";
+
+    // strings on {b,c} of b's then at least one c; there is no rule for b after a c
+    private static final String B_THEN_C =
+        "Q={r0,r1}\nE={b,c}\nI=r0\nF={r1}\n" +
+        "d(r0,b)=r0\nd(r0,c)=r1\nd(r1,c)=r1\n";
+
+    @Test
+    public void acceptsAsTheOperationOnBothDFAs() throws IOException
+    {
+        String x = TestFiles.write(ENDS_IN_A, "dfa"), y = TestFiles.write(B_THEN_C, "dfa");
+        DFA a = load(x), b = load(y);
+
+        for(DFAProduct.Operation op: DFAProduct.Operation.values())
+        {
+            String out = TestFiles.newFile("dfa");
+            TestFiles.beginCapture();
+            new DFAProduct(x, y, out, op).simulate();
+            assertTrue(TestFiles.endCapture().contains("written to"));
+
+            DFA product = load(out);
+            for(String s: strings("abc", 6))
+            {
+                boolean p = accepts(a, s), q = accepts(b, s), expected;
+                switch(op)
+                {
+                    case AND: expected = p && q; break;
+                    case OR: expected = p || q; break;
+                    case MINUS: expected = p && !q; break;
+                    default: expected = p != q; break;
+                }
+                assertEquals(op + " on '" + s + "'", expected, accepts(product, s));
+            }
+        }
+    }
+
+    @Test
+    public void buildsOnlyTheReachablePairs() throws IOException
+    {
+        String x = TestFiles.write(ENDS_IN_A, "dfa"), out = TestFiles.newFile("dfa");
+        TestFiles.beginCapture();
+        new DFAProduct(x, x, out, DFAProduct.Operation.AND).simulate();
+        assertEquals("DFA with 2 states written to '" + out + "'", TestFiles.endCapture().trim());
+    }
+
+    @Test
+    public void rejectsSymbolsOutsideTheUnionOfTheAlphabets() throws IOException
+    {
+        String x = TestFiles.write(ENDS_IN_A, "dfa"), y = TestFiles.write(B_THEN_C, "dfa"), out = TestFiles.newFile("dfa");
+        TestFiles.beginCapture();
+        new DFAProduct(x, y, out, DFAProduct.Operation.OR).simulate();
+        TestFiles.endCapture();
+
+        Result r = load(out).run("abz");
+        assertEquals(Result.Status.ERROR, r.getStatus());
+    }
+
+    private static DFA load(String descFile)
+    {
+        DFA dfa = new DFA(descFile, null, false);
+        TestFiles.beginCapture();
+        boolean ok = dfa.prepare();
+        TestFiles.endCapture();
+        assertTrue(ok);
+        return dfa;
+    }
+
+    // a string is accepted if the DFA accepts it; a missing rule or symbol rejects it
+    private static boolean accepts(DFA dfa, String s)
+    {
+        return dfa.run(s).isAccepted();
+    }
+
+    // all the strings on the symbols of at most the given length
+    static ArrayList<String> strings(String symbols, int maxLength)
+    {
+        ArrayList<String> list = new ArrayList<String>();
+        list.add("");
+        for(int i=0; i<list.size(); i++)
+        {
+            String s = list.get(i);
+            if(s.length() < maxLength) for(int j=0; j<symbols.length(); j++) list.add(s + symbols.charAt(j));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,166 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import org.junit.Test;
+
+public class EarlyStopTest
+{
+    private static final String ALPHABET_ERROR = "ERROR: Input string contains symbols not defined in the input alphabet";
+
+    // strings on {a,b} beginning with ab: q3 is dead, and q2 an accepting sink
+    private static final String STARTS_WITH_AB =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q3\nd(q1,a)=q3\nd(q1,b)=q2\nd(q3,a)=q3\nd(q3,b)=q3\nd(q2,a)=q2\nd(q2,b)=q2\n";
+
+    // neither q1 nor the final q2 settles a run, as a missing rule can still be met from them
+    private static final String INCOMPLETE =
+        "Q={q0,q1,q2}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q2\nd(q1,a)=q1\n";
+
+    // strings on {a,b} beginning with b or with a b* a, as in examples/nfa1.nfa; qC is an accepting sink
+    private static final String NFA =
+        "Q={qA,qB,qC}\nE={a,b}\nI=qA\nF={qC}\n" +
+        "d(qA,a)={ qB }\nd(qA,b)={ qC }\nd(qB,a)={ qC }\nd(qB,b)={ qB }\nd(qC,a)={ qC }\nd(qC,b)={ qC }\n";
+
+    // a run which dies: no final state can be reached from q1
+    private static final String NFA_DEAD =
+        "Q={q0,q1,q2}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)={ q0, q1 }\nd(q0,b)={ q2 }\nd(q1,a)={ q1 }\nd(q1,b)={ q1 }\n";
+
+    @Test
+    public void stopsADFAInADeadState() throws IOException
+    {
+        DFA dfa = dfa(STARTS_WITH_AB, false);
+        Result r = dfa.run("baaaab");
+        assertEquals(Result.Status.REJECTED, r.getStatus());
+        assertEquals("String rejected: DFA entered dead state 'q3' after reading 1 symbol(s), from which no final state can be reached", r.getMessage());
+    }
+
+    @Test
+    public void stopsADFAInAnAcceptingSink() throws IOException
+    {
+        DFA dfa = dfa(STARTS_WITH_AB, false);
+        Result r = dfa.run("abbbba");
+        assertEquals(Result.Status.ACCEPTED, r.getStatus());
+        assertEquals("String accepted: DFA entered state 'q2' after reading 2 symbol(s), from which every string is accepted", r.getMessage());
+    }
+
+    @Test
+    public void reportsASymbolOutsideTheAlphabetAfterAnEarlyStop() throws IOException
+    {
+        String inputs[] = { "abc", "bzzz", "ab" + repeat('a', 100000) + "z", "b" + repeat('b', 3*InputSource.CHUNK_SIZE) + "z" };
+        for(int codegen=0; codegen<2; codegen++)
+        {
+            DFA dfa = dfa(STARTS_WITH_AB, codegen==1);
+            for(String s: inputs) assertEquals(ALPHABET_ERROR, dfa.run(s).getMessage());
+
+            Result batch[] = dfa.runBatch(inputs);
+            for(int i=0; i<inputs.length; i++) assertEquals(ALPHABET_ERROR, batch[i].getMessage());
+        }
+    }
+
+    @Test
+    public void reportsASymbolOutsideTheAlphabetInAFile() throws IOException
+    {
+        // the invalid symbol is several chunks after the state which settles the run
+        String data = TestFiles.write("ab\n" + repeat('a', 5*InputSource.CHUNK_SIZE) + "\n// a comment\nb z\n", "txt");
+        DFA dfa = new DFA(TestFiles.write(STARTS_WITH_AB, "dfa"), new MappedInput(data), false);
+        TestFiles.beginCapture();
+        dfa.simulate();
+        String out = TestFiles.endCapture();
+        assertTrue(out, out.contains(ALPHABET_ERROR));
+    }
+
+    @Test
+    public void runsToAMissingRule() throws IOException
+    {
+        DFA dfa = dfa(INCOMPLETE, false);
+        assertEquals("ERROR: no rule defined for δ(q1,b)", dfa.run("aaab").getMessage());
+        assertEquals("ERROR: no rule defined for δ(q2,a)", dfa.run("ba").getMessage());
+        assertEquals(Result.Status.ACCEPTED, dfa.run("b").getStatus());
+        assertEquals(ALPHABET_ERROR, dfa.run("aaz").getMessage());
+    }
+
+    @Test
+    public void agreesWithARunToTheEnd() throws IOException
+    {
+        // every string on {a,b,z} up to 6 symbols: early or not, a run ends with the same outcome
+        DFA dfa = dfa(STARTS_WITH_AB, false), generated = dfa(STARTS_WITH_AB, true);
+        for(String s: DFAProductTest.strings("abz", 6))
+        {
+            boolean valid = (s.indexOf('z')==-1);
+            Result.Status expected = (!valid ? Result.Status.ERROR : s.startsWith("ab") ? Result.Status.ACCEPTED : Result.Status.REJECTED);
+            assertEquals(s, expected, dfa.run(s).getStatus());
+            assertEquals(s, expected, generated.run(s).getStatus());
+        }
+    }
+
+    @Test
+    public void stopsAnNFAInAnAcceptingSink() throws IOException
+    {
+        Machine nfa = nfa(NFA);
+        Result r = nfa.run("aabab");
+        assertEquals(Result.Status.ACCEPTED, r.getStatus());
+        assertEquals("String accepted: NFA entered state 'qC' after reading 2 symbol(s), from which every string is accepted", r.getMessage());
+
+        assertEquals(Result.Status.REJECTED, nfa.run("abbb").getStatus());
+    }
+
+    @Test
+    public void stopsAnNFAWithNoFinalStateAhead() throws IOException
+    {
+        Machine nfa = nfa(NFA_DEAD);
+        Result r = nfa.run("aabaab");
+        assertEquals(Result.Status.REJECTED, r.getStatus());
+        assertTrue(r.getMessage(), r.getMessage().startsWith("String rejected: NFA halted after reading 4 symbol(s)"));
+        assertEquals(Result.Status.ACCEPTED, nfa.run("aab").getStatus());
+    }
+
+    @Test
+    public void reportsASymbolOutsideTheAlphabetAfterAnNFAStops() throws IOException
+    {
+        Machine nfa = nfa(NFA), dead = nfa(NFA_DEAD);
+        String inputs[] = { "aac", "bbbbz", "b" + repeat('a', 3*InputSource.CHUNK_SIZE) + "z" };
+        for(String s: inputs)
+        {
+            assertEquals(ALPHABET_ERROR, nfa.run(s).getMessage());
+            assertEquals(ALPHABET_ERROR, dead.run("aab" + s).getMessage());
+        }
+    }
+
+    private static DFA dfa(String text, boolean codegen) throws IOException
+    {
+        DFA dfa = new DFA(TestFiles.write(text, "dfa"), null, false);
+        dfa.setCodegen(codegen);
+        TestFiles.beginCapture();
+        boolean ok = dfa.prepare();
+        String out = TestFiles.endCapture();
+        assertTrue(out, ok);
+        return dfa;
+    }
+
+    private static Machine nfa(String text) throws IOException
+    {
+        TestFiles.beginCapture();
+        try {
+            return TestFiles.load("nfa", text);
+        } finally {
+            TestFiles.endCapture();
+        }
+    }
+
+    private static String repeat(char c, int count)
+    {
+        StringBuilder sb = new StringBuilder(count);
+        for(int i=0; i<count; i++) sb.append(c);
+        return sb.toString();
+    }
+}
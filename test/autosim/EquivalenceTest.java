@@ -0,0 +1,121 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class EquivalenceTest
+{
+    private static final String EQUIVALENT = "The automata are equivalent";
+    private static final Pattern COUNTEREXAMPLE = Pattern.compile("The automata are not equivalent: ('(.*)'|" + AutoSim.LAMBDA_PRINT_CHAR + ") is accepted by '(.*)' only");
+
+    // strings on {a,b} beginning with ab, as in examples/dfa1.dfa
+    private static final String STARTS_WITH_AB =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q3\nd(q1,a)=q3\nd(q1,b)=q2\nd(q3,a)=q3\nd(q3,b)=q3\nd(q2,a)=q2\nd(q2,b)=q2\n";
+
+    // the same, without the dead state, and with the final state split in two
+    private static final String STARTS_WITH_AB_INCOMPLETE =
+        "Q={s0,s1,s2,s3}\nE={a,b}\nI=s0\nF={s2,s3}\n" +
+        "d(s0,a)=s1\nd(s1,b)=s2\nd(s2,a)=s3\nd(s2,b)=s2\nd(s3,a)=s2\nd(s3,b)=s3\n";
+
+    private static final String ENDS_IN_AB_DFA =
+        "Q={d0,d1,d2}\nE={a,b}\nI=d0\nF={d2}\n" +
+        "d(d0,a)=d1\nd(d0,b)=d0\nd(d1,a)=d1\nd(d1,b)=d2\nd(d2,a)=d1\nd(d2,b)=d0\n";
+
+    private static final String ENDS_IN_AB_NFA =
+        "Q={n0,n1,n2}\nE={a,b}\nI=n0\nF={n2}\n" +
+        "d(n0,a)={ n0, n1 }\nd(n0,b)={ n0 }\nd(n1,b)={ n2 }\n";
+
+    private static final String ENDS_IN_B_DFA =
+        "Q={e0,e1}\nE={a,b}\nI=e0\nF={e1}\n" +
+        "d(e0,a)=e0\nd(e0,b)=e1\nd(e1,a)=e0\nd(e1,b)=e1\n";
+
+    @Test
+    public void findsDFAsOfDifferentShapesEquivalent() throws IOException
+    {
+        assertEquals(EQUIVALENT, compare(STARTS_WITH_AB, "dfa", STARTS_WITH_AB_INCOMPLETE, "dfa"));
+    }
+
+    @Test
+    public void findsAnNFAEquivalentToADFA() throws IOException
+    {
+        assertEquals(EQUIVALENT, compare(ENDS_IN_AB_NFA, "nfa", ENDS_IN_AB_DFA, "dfa"));
+        assertEquals(EQUIVALENT, compare(ENDS_IN_AB_DFA, "dfa", ENDS_IN_AB_NFA, "nfa"));
+    }
+
+    @Test
+    public void printsAShortestCounterexample() throws IOException
+    {
+        checkCounterexample(STARTS_WITH_AB, "dfa", ENDS_IN_AB_DFA, "dfa", 3);
+        checkCounterexample(ENDS_IN_B_DFA, "dfa", ENDS_IN_AB_NFA, "nfa", 1);
+        checkCounterexample(ENDS_IN_AB_NFA, "nfa", STARTS_WITH_AB_INCOMPLETE, "dfa", 3);
+    }
+
+    @Test
+    public void printsTheEmptyStringAsLambda() throws IOException
+    {
+        String all = "Q={q0}\nE={a,b}\nI=q0\nF={q0}\nd(q0,a)=q0\nd(q0,b)=q0\n";
+        String out = compare(all, "dfa", ENDS_IN_B_DFA, "dfa");
+        assertTrue(out, out.startsWith("The automata are not equivalent: " + AutoSim.LAMBDA_PRINT_CHAR + " is accepted by "));
+    }
+
+    @Test
+    public void takesASymbolOutsideAnAlphabetToReject() throws IOException
+    {
+        // the second also accepts c, which the first does not know
+        String withC = ENDS_IN_B_DFA.replace("E={a,b}", "E={a,b,c}") + "d(e0,c)=e1\nd(e1,c)=e1\n";
+        checkCounterexample(ENDS_IN_B_DFA, "dfa", withC, "dfa", 1);
+    }
+
+    // the counterexample is accepted by the automaton named, not by the other, and no string of fewer symbols is
+    private static void checkCounterexample(String x, String xType, String y, String yType, int length) throws IOException
+    {
+        String xFile = TestFiles.write(x, xType), yFile = TestFiles.write(y, yType);
+        String out = compare(xFile, yFile);
+        Matcher m = COUNTEREXAMPLE.matcher(out);
+        assertTrue(out, m.matches());
+
+        String s = (m.group(2)==null ? "" : m.group(2));
+        Machine mx = load(xType, xFile), my = load(yType, yFile);
+        boolean byX = mx.run(s).isAccepted(), byY = my.run(s).isAccepted();
+        assertNotEquals(out, byX, byY);
+        assertEquals(out, byX ? xFile : yFile, m.group(3));
+
+        assertEquals(out, length, s.length());
+        for(String t: DFAProductTest.strings("abc", length-1)) assertEquals(t, mx.run(t).isAccepted(), my.run(t).isAccepted());
+    }
+
+    private static String compare(String x, String xType, String y, String yType) throws IOException
+    {
+        return compare(TestFiles.write(x, xType), TestFiles.write(y, yType));
+    }
+
+    // the verdict, printed after any warnings about the automata
+    private static String compare(String xFile, String yFile)
+    {
+        TestFiles.beginCapture();
+        new Equivalence(xFile, yFile).simulate();
+        String lines[] = TestFiles.endCapture().trim().split("\\r?\\n");
+        return lines[lines.length-1];
+    }
+
+    private static Machine load(String type, String descFile)
+    {
+        TestFiles.beginCapture();
+        Machine m = Automata.load(type, descFile);
+        TestFiles.endCapture();
+        assertTrue(m!=null);
+        return m;
+    }
+}
@@ -0,0 +1,79 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+
+public class InputCharsetTest
+{
+    private static final String ACCEPTED = "String accepted";
+    private static final String REJECTED = "String rejected";
+
+    // strings on {a,é} with at least one é; the description, written as UTF-8, has two bytes for é
+    private static final String HAS_E_ACUTE =
+        "Q={q0,q1}\nE={a,é}\nI=q0\nF={q1}\n" +
+        "d(q0,a)=q0\nd(q0,é)=q1\nd(q1,a)=q1\nd(q1,é)=q1\n";
+
+    @Test
+    public void readsAFileAndTheStandardInputAlike() throws IOException
+    {
+        String desc = TestFiles.write(HAS_E_ACUTE, "dfa");
+        byte utf8[] = "a\u00e9a".getBytes("UTF-8");
+        byte latin1[] = "a\u00e9a".getBytes("ISO-8859-1");
+
+        assertTrue(fromFile(desc, utf8).contains(ACCEPTED));
+        assertTrue(fromStandardInput(desc, utf8).contains(ACCEPTED));
+
+        // the same symbols as the description and -input, whatever the platform's default encoding
+        DFA dfa = new DFA(desc, null, false);
+        TestFiles.beginCapture();
+        dfa.prepare();
+        TestFiles.endCapture();
+        assertEquals(Result.Status.ACCEPTED, dfa.run("a\u00e9a").getStatus());
+
+        // a byte which is not UTF-8 is no symbol, read from a file or a pipe
+        assertTrue(fromFile(desc, latin1).contains(REJECTED));
+        assertTrue(fromStandardInput(desc, latin1).contains(REJECTED));
+    }
+
+    @Test
+    public void writesDescriptionsAsItReadsThem() throws IOException
+    {
+        // the product of the DFA with itself still knows é
+        String desc = TestFiles.write(HAS_E_ACUTE, "dfa"), out = TestFiles.newFile("dfa");
+        TestFiles.beginCapture();
+        new DFAProduct(desc, desc, out, DFAProduct.Operation.AND).simulate();
+        TestFiles.endCapture();
+        assertTrue(fromFile(out, "\u00e9".getBytes("UTF-8")).contains(ACCEPTED));
+    }
+
+    private static String fromFile(String desc, byte data[]) throws IOException
+    {
+        DFA dfa = new DFA(desc, new MappedInput(TestFiles.write(data, "txt")), false);
+        TestFiles.beginCapture();
+        dfa.simulate();
+        return TestFiles.endCapture();
+    }
+
+    private static String fromStandardInput(String desc, byte data[])
+    {
+        InputStream saved = System.in;
+        System.setIn(new ByteArrayInputStream(data));
+        TestFiles.beginCapture();
+        try {
+            AutoSim.main(new String[] { "-dfa", "-desc", desc, "-data", "-" });
+        } finally {
+            System.setIn(saved);
+        }
+        return TestFiles.endCapture();
+    }
+}
@@ -0,0 +1,185 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+import org.junit.Test;
+
+public class MatchScannerTest
+{
+    // ab*
+    private static final String AB_STAR =
+        "Q={q0,q1}\nE={a,b}\nI=q0\nF={q1}\n" +
+        "d(q0,a)=q1\nd(q1,b)=q1\n";
+
+    // a+a*b, which on a run of a's finds each a but keeps looking for a b as far as the run goes
+    private static final String A_OR_A_STAR_B =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q1,q3}\n" +
+        "d(q0,a)={ q1, q2 }\nd(q0,b)={ q3 }\nd(q2,a)={ q2 }\nd(q2,b)={ q3 }\n";
+
+    @Test
+    public void printsTheMatchesOfEachMode() throws IOException
+    {
+        Scannable dfa = scannable("dfa", AB_STAR);
+        assertEquals("Match ending at 2\nMatch ending at 3\nMatch ending at 4\nMatch ending at 5\nMatch ending at 6\nMatch ending at 7\n",
+                     scan(dfa, "cabbaab", MatchScanner.Mode.ALL));
+        assertEquals("Match ending at 1\nMatch ending at 2\nMatch ending at 3\n", scan(dfa, "abbcab", MatchScanner.Mode.PREFIX));
+        assertEquals("", scan(dfa, "cab", MatchScanner.Mode.PREFIX));
+        assertEquals("Match: 1-4\nMatch: 4-5\nMatch: 5-7\n", scan(dfa, "cabbaab", MatchScanner.Mode.LONGEST));
+    }
+
+    @Test
+    public void findsTheLongestMatchesAfterALongerOneFails() throws IOException
+    {
+        Scannable nfa = scannable("nfa", A_OR_A_STAR_B);
+        assertEquals("Match: 0-1\nMatch: 1-2\nMatch: 2-3\n", scan(nfa, "aaa", MatchScanner.Mode.LONGEST));
+        assertEquals("Match: 0-4\nMatch: 5-6\n", scan(nfa, "aaabca", MatchScanner.Mode.LONGEST));
+        assertEquals("Match: 0-3\nMatch: 3-5\n", scan(nfa, "aabab", MatchScanner.Mode.LONGEST));
+    }
+
+    @Test(timeout = 20000)
+    public void readsTheTextOnceForTheLongestMatches() throws IOException
+    {
+        // each a is a match, found only once the a*b run from it fails at the end: a scan which went back
+        // to the end of each match to read the text again would take time in the square of its length
+        int n = 1 << 20;
+        StringBuilder sb = new StringBuilder(n);
+        for(int i=0; i<n; i++) sb.append('a');
+
+        Scannable nfa = scannable("nfa", A_OR_A_STAR_B);
+        PrintStream none = new PrintStream(new OutputStream() {
+            public void write(int b) { }
+        });
+        assertEquals(n, nfa.getScanner().scan(new StringInput(sb), MatchScanner.Mode.LONGEST, none));
+    }
+
+    @Test
+    public void agreesWithTheMatchesFoundOneByOne() throws IOException
+    {
+        Random r = new Random(42);
+        for(int test=0; test<150; test++)
+        {
+            boolean nfa = (test%2==1);
+            Machine m = load(nfa ? "nfa" : "dfa", randomMachine(r, nfa));
+            for(int k=0; k<10; k++)
+            {
+                StringBuilder sb = new StringBuilder();
+                int length = r.nextInt(14);
+                for(int i=0; i<length; i++) sb.append("abbac".charAt(r.nextInt(5)));
+                String text = sb.toString();
+
+                for(MatchScanner.Mode mode: MatchScanner.Mode.values())
+                {
+                    assertEquals(mode + " on '" + text + "'", expected(m, text, mode), scan((Scannable)m, text, mode));
+                }
+            }
+        }
+    }
+
+    // the matches by their definition, trying each substring in turn
+    private static String expected(Machine m, String text, MatchScanner.Mode mode)
+    {
+        StringBuilder sb = new StringBuilder();
+        int n = text.length();
+        if(mode==MatchScanner.Mode.LONGEST)
+        {
+            for(int s=0; s<n; )
+            {
+                int end = -1;
+                for(int e=s+1; e<=n; e++) if(m.run(text.substring(s, e)).isAccepted()) end = e;
+                if(end==-1)
+                {
+                    s++;
+                    continue;
+                }
+                sb.append("Match: " + s + "-" + end + "\n");
+                s = end;
+            }
+            return sb.toString();
+        }
+
+        for(int e=1; e<=n; e++)
+        {
+            for(int s=0; s<(mode==MatchScanner.Mode.PREFIX ? 1 : e); s++)
+            {
+                if(!m.run(text.substring(s, e)).isAccepted()) continue;
+                sb.append("Match ending at " + e + "\n");
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    // a DFA or NFA of a few states on {a,b}, with missing rules, and lambda-transitions for an NFA
+    static String randomMachine(Random r, boolean nfa)
+    {
+        int n = 1 + r.nextInt(4);
+        StringBuilder sb = new StringBuilder("Q={");
+        for(int i=0; i<n; i++) sb.append(i>0 ? "," : "").append("q").append(i);
+        sb.append("}\nE={a,b}\nI=q0\nF={");
+        boolean any = false;
+        for(int i=0; i<n; i++)
+        {
+            if(r.nextInt(3)!=0) continue;
+            sb.append(any ? "," : "").append("q").append(i);
+            any = true;
+        }
+        if(!any) sb.append("q").append(n-1);
+        sb.append("}\n");
+
+        String symbols = (nfa ? "ab~" : "ab");
+        for(int i=0; i<n; i++)
+        {
+            for(int j=0; j<symbols.length(); j++)
+            {
+                if(r.nextInt(4)==0 || (symbols.charAt(j)=='~' && r.nextInt(2)==0)) continue;
+                sb.append("d(q").append(i).append(",").append(symbols.charAt(j)).append(")=");
+                if(!nfa)
+                {
+                    sb.append("q").append(r.nextInt(n)).append("\n");
+                    continue;
+                }
+                int a = r.nextInt(n), b = r.nextInt(n);
+                sb.append("{ q").append(a).append(a!=b ? ", q" + b : "").append(" }\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Scannable scannable(String type, String text) throws IOException
+    {
+        return (Scannable)load(type, text);
+    }
+
+    private static Machine load(String type, String text) throws IOException
+    {
+        TestFiles.beginCapture();
+        try {
+            return TestFiles.load(type, text);
+        } finally {
+            TestFiles.endCapture();
+        }
+    }
+
+    private static String scan(Scannable m, String text, MatchScanner.Mode mode)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            PrintStream out = new PrintStream(bytes, true, "UTF-8");
+            m.getScanner().scan(new StringInput(text), mode, out);
+            return bytes.toString("UTF-8").replace("\r\n", "\n");
+        } catch(UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class NFAToRegexTest
+{
+    // strings on {a,b} beginning with b or with a b* a, as in examples/nfa1.nfa
+    private static final String NFA =
+        "Q={qA,qB,qC}\nE={a,b}\nI=qA\nF={qC}\n" +
+        "d(qA,a)={ qB }\nd(qA,b)={ qC }\nd(qB,a)={ qC }\nd(qB,b)={ qB }\nd(qC,a)={ qC }\nd(qC,b)={ qC }\n";
+
+    @Test
+    public void writesAnExpressionForTheExample() throws IOException
+    {
+        String nfa = TestFiles.write(NFA, "nfa");
+        for(EliminationOrder order: EliminationOrder.values()) assertEquivalent(nfa, order);
+    }
+
+    @Test
+    public void writesAnEquivalentExpressionInEveryOrder() throws IOException
+    {
+        // the expression is compiled back into an NFA by -regex-to-nfa, and compared with the NFA it was
+        // written for by -equiv; the orderings only change the size of the expression, not its language
+        Random r = new Random(27);
+        for(int test=0; test<60; test++)
+        {
+            String nfa = TestFiles.write(MatchScannerTest.randomMachine(r, true), "nfa");
+            for(EliminationOrder order: EliminationOrder.values()) assertEquivalent(nfa, order);
+        }
+    }
+
+    @Test
+    public void writesTheEmptySetWhenNoFinalStateIsReachable() throws IOException
+    {
+        String nfa = TestFiles.write("Q={q0,q1}\nE={a,b}\nI=q0\nF={q1}\nd(q0,a)={ q0 }\n", "nfa");
+        assertEquivalent(nfa, EliminationOrder.DEGREE);
+    }
+
+    private static void assertEquivalent(String nfaFile, EliminationOrder order) throws IOException
+    {
+        String regexFile = TestFiles.newFile("regex");
+        TestFiles.beginCapture();
+        new NFAToRegexConverter(nfaFile, regexFile, false, order).simulate();
+        String out = TestFiles.endCapture();
+        assertTrue(out, out.contains("Equivalent regular expression"));
+
+        String back = RegexMatcherTest.toNFA(regexFile);
+        TestFiles.beginCapture();
+        new Equivalence(nfaFile, back).simulate();
+        String verdict = TestFiles.endCapture().trim();
+        assertEquals(order + ": " + out, "The automata are equivalent", verdict.substring(verdict.lastIndexOf('\n')+1).trim());
+    }
+}
@@ -0,0 +1,138 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import org.junit.Test;
+
+public class OffHeapTableTest
+{
+    private static final String MEALY =
+        "Q={q0,q1}\nE={a,b}\nI=q0\nT={0,1}\n" +
+        "d(q0,a)=(q1,0)\nd(q0,b)=(q1,1)\nd(q1,a)=(q0,1)\nd(q1,b)=(q0,0)\n";
+
+    private static final String MOORE =
+        "Q={q0,q1}\nE={a,b}\nI=q0\nT={0,1}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q1\nd(q1,a)=q0\nd(q1,b)=q0\no(q0)=0\no(q1)=1\n";
+
+    // strings on {a,b} beginning with ab, with no rules out of the dead state q3
+    private static final String DFA_INCOMPLETE =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q3\nd(q1,a)=q3\nd(q1,b)=q2\nd(q2,a)=q2\nd(q2,b)=q2\n";
+
+    @Test
+    public void holdsTwoByteEntriesInDirectMemory() throws IOException
+    {
+        OffHeapTable t = OffHeapTable.create(300, 7, 0xFFFF, null);
+        assertEquals(2, t.getEntryWidth());
+        assertNull(t.getFileName());
+        fill(t, 0xFFFF);
+        check(t, 0xFFFF);
+    }
+
+    @Test
+    public void widensEntriesForLargeValues() throws IOException
+    {
+        OffHeapTable t = OffHeapTable.create(300, 7, 0x10000, null);
+        assertEquals(4, t.getEntryWidth());
+        fill(t, 0x10000);
+        check(t, 0x10000);
+    }
+
+    @Test
+    public void sharesTheEntriesThroughTheFile() throws IOException
+    {
+        String file = TestFiles.newFile("tbl");
+        OffHeapTable t = OffHeapTable.create(50, 3, 50, file);
+        fill(t, 50);
+
+        // a second process loading the same machine maps the same file
+        OffHeapTable u = OffHeapTable.create(50, 3, 50, file);
+        check(u, 50);
+
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer header = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, 16).order(ByteOrder.nativeOrder());
+            assertEquals(OffHeapTable.MAGIC, header.getInt(0));
+            assertEquals(50, header.getInt(4));
+            assertEquals(3, header.getInt(8));
+            assertEquals(2, header.getInt(12));
+            assertEquals(16 + t.getSize(), f.length());
+        } finally {
+            f.close();
+        }
+    }
+
+    @Test
+    public void runsADFAFromATableFile() throws IOException
+    {
+        String desc = TestFiles.write(DFA_INCOMPLETE, "dfa");
+        DFA heap = new DFA(desc, null, false), file = new DFA(desc, null, false);
+        file.setTableFile(TestFiles.newFile("tbl"));
+        prepare(heap);
+        prepare(file);
+
+        // the same outcome, though a table outside the heap has no stop states (see DFA.getStopStates())
+        for(String s: DFAProductTest.strings("abz", 5)) assertEquals(s, heap.run(s).getStatus(), file.run(s).getStatus());
+        assertEquals(Result.Status.ACCEPTED, file.run("abba").getStatus());
+        assertEquals(Result.Status.ERROR, file.run("aaa").getStatus());
+        assertEquals(Result.Status.ERROR, file.run("abz").getStatus());
+    }
+
+    @Test
+    public void runsMooreAndMealyMachinesFromATableFile() throws IOException
+    {
+        MooreMachine moore = new MooreMachine(TestFiles.write(MOORE, "moore"), null, false);
+        moore.setTableFile(TestFiles.newFile("tbl"));
+        prepare(moore);
+        assertEquals("01010", moore.run("abab").getOutput());
+        assertEquals(Result.Status.ERROR, moore.run("abc").getStatus());
+
+        MealyMachine mealy = new MealyMachine(TestFiles.write(MEALY, "mealy"), null, false);
+        mealy.setTableFile(TestFiles.newFile("tbl"));
+        prepare(mealy);
+        assertEquals("0011", mealy.run("abba").getOutput());
+        assertEquals(Result.Status.ERROR, mealy.run("abc").getStatus());
+    }
+
+    private static void prepare(Machine m)
+    {
+        TestFiles.beginCapture();
+        boolean ok = m.prepare();
+        String out = TestFiles.endCapture();
+        assertEquals(out, true, ok);
+    }
+
+    // a value of each row and column below the limit, or -1 for none
+    private static int value(int row, int column, int limit)
+    {
+        int x = (row * 31 + column * 17) % limit;
+        return((row + column) % 5==0 ? -1 : limit-1 - x);
+    }
+
+    private static void fill(OffHeapTable t, int limit)
+    {
+        for(int i=0; i<t.getRowCount(); i++)
+        {
+            for(int j=0; j<t.getColumnCount(); j++) t.set(i, j, value(i, j, limit));
+        }
+    }
+
+    private static void check(OffHeapTable t, int limit)
+    {
+        for(int i=0; i<t.getRowCount(); i++)
+        {
+            for(int j=0; j<t.getColumnCount(); j++) assertEquals(value(i, j, limit), t.get(i, j));
+        }
+    }
+}
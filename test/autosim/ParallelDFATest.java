@@ -0,0 +1,168 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class ParallelDFATest
+{
+    // counts the '/' read modulo 3; 'a' leaves the state alone
+    private static final int SLASH_NEXT[] = { 0, 1, 1, 2, 2, 0 };
+
+    // q0 -a-> q1 -a-> q0, and 'b' leads to the dead state q2
+    private static final int DEAD_NEXT[] = { 1, 2, 0, 2, 2, 2 };
+
+    @Test
+    public void matchesASequentialRunOnRandomInputs() throws IOException
+    {
+        Random r = new Random(40);
+        String pieces[] = { "a", "a", "a", "/", " ", "\n", "// a/a/\n" };
+        for(int test=0; test<20; test++)
+        {
+            StringBuilder sb = new StringBuilder();
+            int length = 1000 + r.nextInt(200000);
+            while(sb.length() < length) sb.append(pieces[r.nextInt(pieces.length)]);
+            byte data[] = sb.toString().getBytes("US-ASCII");
+
+            int expected = runSequentially(SLASH_NEXT, data);
+            for(int threads=1; threads<=4; threads++) assertEquals(expected, slash().run(map(data), 0, threads));
+        }
+    }
+
+    @Test
+    public void doesNotSplitTheSlashesOfAComment() throws IOException
+    {
+        // four chunks with one thread: the first would end between the slashes of "//"
+        byte data[] = new byte[1 << 16];
+        Arrays.fill(data, (byte)'a');
+        int b = data.length / 4;
+        data[b-1] = data[b] = '/';
+        data[b+100] = '\n';
+        data[b+101] = '/';
+
+        assertEquals(1, runSequentially(SLASH_NEXT, data));
+        assertEquals(1, slash().run(map(data), 0, 1));
+    }
+
+    @Test
+    public void leavesACommentAcrossChunksToASequentialRun() throws IOException
+    {
+        // no line break near the boundary, so the first chunk ends in the comment
+        byte data[] = new byte[1 << 20];
+        Arrays.fill(data, (byte)'a');
+        int b = data.length / 4;
+        data[b-1] = data[b] = '/';
+        data[b + (1 << 17)] = '\n';
+
+        assertEquals(0, runSequentially(SLASH_NEXT, data));
+        assertEquals(-1, slash().run(map(data), 0, 1));
+    }
+
+    @Test
+    public void doesNotSplitACharacter() throws IOException
+    {
+        // "é" is two bytes in UTF-8, and the first boundary of four chunks falls between them
+        int n = 50002;
+        byte data[] = new byte[2*n];
+        for(int i=0; i<n; i++)
+        {
+            data[2*i] = (byte)0xC3;
+            data[2*i+1] = (byte)0xA9;
+        }
+
+        ParallelDFA dfa = new ParallelDFA(SLASH_NEXT, 3, 2, columns("a\u00e9"), null);
+        assertEquals(n % 3, dfa.run(map(data), 0, 1));
+    }
+
+    @Test
+    public void rejectsASymbolOutsideTheAlphabet() throws IOException
+    {
+        byte data[] = new byte[100000];
+        Arrays.fill(data, (byte)'a');
+        data[77777] = 'z';
+        assertEquals(-1, slash().run(map(data), 0, 2));
+    }
+
+    @Test
+    public void endsAtTheFirstStopState() throws IOException
+    {
+        boolean stop[] = { false, false, true };
+        ParallelDFA dfa = new ParallelDFA(DEAD_NEXT, 3, 2, columns("ab"), stop);
+
+        // the dead state is entered in an early chunk, while a later chunk has an invalid symbol
+        byte data[] = new byte[100000];
+        Arrays.fill(data, (byte)'a');
+        data[30000] = 'b';
+        data[90000] = 'z';
+        assertEquals(2, dfa.run(map(data), 0, 4));
+
+        Arrays.fill(data, (byte)'a');
+        assertEquals(0, dfa.run(map(data), 0, 4));
+    }
+
+    @Test
+    public void runsADFAOnSeveralThreadsAsOnOne() throws IOException
+    {
+        // a "//" at the first boundary of the chunks for 4 threads, with the next line break far away
+        byte data[] = new byte[(int)ParallelDFA.THRESHOLD + (1 << 20)];
+        Arrays.fill(data, (byte)'a');
+        int b = data.length / 16;
+        data[b-1] = data[b] = '/';
+        data[b + 100000] = '\n';
+        String dataFile = TestFiles.write(data, "txt");
+        String descFile = TestFiles.write("Q={q0,q1,q2}\nE={a,/}\nI=q0\nF={q0}\n" +
+            "d(q0,a)=q0\nd(q0,/)=q1\nd(q1,a)=q1\nd(q1,/)=q2\nd(q2,a)=q2\nd(q2,/)=q0\n", "dfa");
+
+        String one = runDFA(descFile, dataFile, 1), four = runDFA(descFile, dataFile, 4);
+        assertEquals(one, four);
+        assertEquals(true, one.contains("accepted"));
+    }
+
+    private static String runDFA(String descFile, String dataFile, int threads) throws IOException
+    {
+        DFA dfa = new DFA(descFile, new MappedInput(dataFile), false);
+        dfa.setThreads(threads);
+        TestFiles.beginCapture();
+        dfa.simulate();
+        return TestFiles.endCapture();
+    }
+
+    private static ParallelDFA slash()
+    {
+        return new ParallelDFA(SLASH_NEXT, 3, 2, columns("a/"), null);
+    }
+
+    private static int[] columns(String symbols)
+    {
+        int columns[] = new int[256];
+        Arrays.fill(columns, -1);
+        for(int i=0; i<symbols.length(); i++) columns[symbols.charAt(i)] = i;
+        return columns;
+    }
+
+    private static MappedInput map(byte data[]) throws IOException
+    {
+        return new MappedInput(TestFiles.write(data, "txt"));
+    }
+
+    // the state the input ends in, read from the start as a sequential run reads it
+    private static int runSequentially(int next[], byte data[]) throws IOException
+    {
+        MappedInput input = map(data);
+        char buf[] = new char[InputSource.CHUNK_SIZE];
+        int state = 0;
+        for(int n; (n=input.read(buf))!=-1; )
+        {
+            for(int i=0; i<n; i++) state = next[state*2 + (buf[i]=='a' ? 0 : 1)];
+        }
+        return state;
+    }
+}
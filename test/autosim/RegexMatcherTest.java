@@ -0,0 +1,129 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class RegexMatcherTest
+{
+    @Test
+    public void matchesTheExample() throws IOException
+    {
+        // as in examples/regex1.regex: the strings on {a,b} beginning with ab
+        Machine m = load("regex", "ab(a+b)*\n");
+        for(String s: DFAProductTest.strings("ab", 6)) assertEquals(s, s.startsWith("ab"), m.run(s).isAccepted());
+        assertEquals(Result.Status.REJECTED, m.run("abc").getStatus());
+    }
+
+    @Test
+    public void readsTheEmptySetAndTheEmptyString() throws IOException
+    {
+        // as nfa-to-regex writes them out, e.g. Φ for an NFA with no final state ahead
+        Machine empty = load("regex", AutoSim.NULL_PRINT_CHAR + "\n");
+        assertEquals(Result.Status.REJECTED, empty.run("").getStatus());
+        assertEquals(Result.Status.REJECTED, empty.run("a").getStatus());
+
+        Machine m = load("regex", "a(" + AutoSim.LAMBDA_PRINT_CHAR + "+b+" + AutoSim.NULL_PRINT_CHAR + ")\n");
+        assertTrue(m.run("a").isAccepted());
+        assertTrue(m.run("ab").isAccepted());
+        assertEquals(Result.Status.REJECTED, m.run("abb").getStatus());
+    }
+
+    @Test
+    public void agreesWithTheNFAItIsCompiledTo() throws IOException
+    {
+        // the matcher steps a DFA built lazily from the Thompson NFA; the same NFA written out by
+        // -regex-to-nfa is run by the NFA simulator, and java.util.regex reads the same expression
+        Random r = new Random(29);
+        ArrayList<String> inputs = DFAProductTest.strings("ab", 7);
+        for(int test=0; test<200; test++)
+        {
+            String regex = randomRegex(r, 4);
+            String desc = TestFiles.write(regex + "\n", "regex");
+            Machine matcher = loadFile("regex", desc);
+            Machine nfa = loadFile("nfa", toNFA(desc));
+            Pattern p = Pattern.compile(regex.replace("+", "|").replace(String.valueOf(AutoSim.LAMBDA_CHAR), "()"));
+
+            for(String s: inputs)
+            {
+                boolean expected = p.matcher(s).matches();
+                assertEquals(regex + " on '" + s + "'", expected, matcher.run(s).isAccepted());
+                assertEquals(regex + " on '" + s + "' (NFA)", expected, nfa.run(s).isAccepted());
+            }
+        }
+    }
+
+    @Test
+    public void sharesTheLazyDFAAcrossThreads() throws Exception
+    {
+        final Machine m = load("regex", "(a+b)*a(a+b)(a+b)(a+b)\n");
+        final ArrayList<String> inputs = DFAProductTest.strings("ab", 10);
+        final int failures[] = new int[1];
+
+        Thread threads[] = new Thread[8];
+        for(int t=0; t<threads.length; t++)
+        {
+            threads[t] = new Thread() {
+                public void run()
+                {
+                    for(String s: inputs)
+                    {
+                        boolean expected = (s.length() >= 4 && s.charAt(s.length()-4)=='a');
+                        if(m.run(s).isAccepted()!=expected) synchronized(failures) { failures[0]++; }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread t: threads) t.join();
+        assertEquals(0, failures[0]);
+    }
+
+    // an expression on {a,b} of unions, concatenations, closures and the empty string, nested up to 'depth'
+    private static String randomRegex(Random r, int depth)
+    {
+        if(depth==0 || r.nextInt(4)==0) return String.valueOf("aab~b".charAt(r.nextInt(5)));
+
+        switch(r.nextInt(3))
+        {
+            case 0: return "(" + randomRegex(r, depth-1) + "+" + randomRegex(r, depth-1) + ")";
+            case 1: return randomRegex(r, depth-1) + randomRegex(r, depth-1);
+            default: return "(" + randomRegex(r, depth-1) + ")*";
+        }
+    }
+
+    // the NFA of the expression, written out by -regex-to-nfa
+    static String toNFA(String regexFile) throws IOException
+    {
+        String nfaFile = TestFiles.newFile("nfa");
+        TestFiles.beginCapture();
+        new RegexToNFAConverter(regexFile, nfaFile, false).simulate();
+        String out = TestFiles.endCapture();
+        assertTrue(out, out.contains("written to"));
+        return nfaFile;
+    }
+
+    private static Machine load(String type, String text) throws IOException
+    {
+        return loadFile(type, TestFiles.write(text, type));
+    }
+
+    private static Machine loadFile(String type, String descFile)
+    {
+        TestFiles.beginCapture();
+        Machine m = Automata.load(type, descFile);
+        String out = TestFiles.endCapture();
+        assertTrue(out, m!=null);
+        return m;
+    }
+}
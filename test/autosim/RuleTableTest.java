@@ -0,0 +1,199 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.Test;
+
+public class RuleTableTest
+{
+    @Test
+    public void keepsTheLastRuleSetInAPlace()
+    {
+        RuleTable<String> t = new RuleTable<String>(3, 2);
+        t.set(2, 1, "x");
+        t.set(0, 0, "y");
+        t.set(2, 1, "z");
+        t.set(1, 0, "w");
+        t.set(1, 0, null);
+
+        assertEquals("z", t.get(2, 1));
+        assertNull(t.get(1, 0));
+        assertEquals(2, t.getRuleCount());
+
+        t.finish();
+        assertEquals("z", t.get(2, 1));
+        assertEquals("y", t.get(0, 0));
+        assertNull(t.get(1, 0));
+        assertEquals(2, t.getRuleCount());
+    }
+
+    @Test
+    public void laysOutDenseAndCompressedTables()
+    {
+        RuleTable<Integer> dense = new RuleTable<Integer>(4, 4);
+        for(int i=0; i<4; i++) dense.set(i, i, i);
+        dense.finish();
+        assertFalse(dense.isCompressed());
+
+        RuleTable<Integer> sparse = new RuleTable<Integer>(1000, 50);
+        for(int i=0; i<1000; i++) sparse.set(i, (i*7) % 50, i);
+        sparse.finish();
+        assertTrue(sparse.isCompressed());
+
+        for(int i=0; i<1000; i++)
+        {
+            for(int j=0; j<50; j++) assertEquals(j==(i*7) % 50 ? Integer.valueOf(i) : null, sparse.get(i, j));
+        }
+        assertEquals(1000, sparse.getRuleCount());
+        assertFalse(sparse.isComplete());
+    }
+
+    @Test
+    public void isCompleteWithARuleInEveryPlace()
+    {
+        RuleTable<Integer> t = new RuleTable<Integer>(2, 3);
+        for(int j=2; j>=0; j--) for(int i=1; i>=0; i--) t.set(i, j, i+j);
+        assertTrue(t.isComplete());
+        t.finish();
+        assertTrue(t.isComplete());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotBeChangedOnceLaidOut()
+    {
+        RuleTable<String> t = new RuleTable<String>(1, 1);
+        t.finish();
+        t.set(0, 0, "x");
+    }
+
+    @Test
+    public void keepsColumnsBeforeAndAfterLayingOut()
+    {
+        for(int laidOut=0; laidOut<2; laidOut++)
+        {
+            RuleTable<String> t = new RuleTable<String>(2, 3);
+            t.set(0, 0, "a");
+            t.set(0, 2, "c");
+            t.set(1, 1, "e");
+            if(laidOut==1) t.finish();
+
+            t.keepColumns(new int[] { 2, 1 });
+            assertEquals(2, t.getColumnCount());
+            assertEquals("c", t.get(0, 0));
+            assertNull(t.get(0, 1));
+            assertNull(t.get(1, 0));
+            assertEquals("e", t.get(1, 1));
+            assertEquals(2, t.getRuleCount());
+
+            // a table still being built can still be changed
+            if(laidOut==0)
+            {
+                t.set(1, 0, "f");
+                assertEquals("f", t.get(1, 0));
+            }
+        }
+    }
+
+    @Test
+    public void matchesAMapOfTheRules()
+    {
+        Random r = new Random(46);
+        for(int test=0; test<2000; test++)
+        {
+            int rows = 1 + r.nextInt(40), columns = 1 + r.nextInt(20);
+            RuleTable<Integer> t = new RuleTable<Integer>(rows, columns);
+            HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+
+            // in order, as descriptions mostly are, or at random with rules set again and removed
+            boolean inOrder = r.nextBoolean();
+            int count = r.nextInt(test%2==0 ? 30 : 1500), next = 0;
+            for(int k=0; k<count; k++)
+            {
+                int i, j;
+                if(inOrder)
+                {
+                    i = next / columns;
+                    j = next % columns;
+                    next += 1 + r.nextInt(3);
+                    if(i >= rows) break;
+                } else {
+                    i = r.nextInt(rows);
+                    j = r.nextInt(columns);
+                }
+
+                Integer x = (r.nextInt(5)==0 ? null : Integer.valueOf(r.nextInt(100)));
+                t.set(i, j, x);
+                if(x==null) expected.remove((long)i*columns + j);
+                else expected.put((long)i*columns + j, x);
+
+                if(r.nextInt(50)==0)
+                {
+                    int a = r.nextInt(rows), b = r.nextInt(columns);
+                    assertEquals(expected.get((long)a*columns + b), t.get(a, b));
+                    assertEquals(expected.size(), t.getRuleCount());
+                }
+            }
+
+            if(r.nextBoolean()) t.finish();
+            if(r.nextBoolean())
+            {
+                int keep[] = new int[1 + r.nextInt(columns)];
+                for(int c=0; c<keep.length; c++) keep[c] = r.nextInt(columns);
+                if(keep.length < columns)
+                {
+                    t.keepColumns(keep);
+                    HashMap<Long, Integer> kept = new HashMap<Long, Integer>();
+                    for(int i=0; i<rows; i++)
+                    {
+                        for(int c=0; c<keep.length; c++)
+                        {
+                            Integer x = expected.get((long)i*columns + keep[c]);
+                            if(x!=null) kept.put((long)i*keep.length + c, x);
+                        }
+                    }
+                    expected = kept;
+                    columns = keep.length;
+                }
+            }
+            if(r.nextBoolean()) t.finish();
+
+            for(int i=0; i<rows; i++)
+            {
+                for(int j=0; j<columns; j++) assertEquals(expected.get((long)i*columns + j), t.get(i, j));
+            }
+            assertEquals(expected.size(), t.getRuleCount());
+
+            ArrayList<Integer> rules = t.getRules(), values = new ArrayList<Integer>(expected.values());
+            Collections.sort(rules);
+            Collections.sort(values);
+            assertEquals(values, rules);
+
+            // every rule once, in row and column order
+            final HashMap<Long, Integer> visited = new HashMap<Long, Integer>();
+            final long last[] = { -1 };
+            final int width = columns;
+            t.visitRules(new RuleTable.Visitor<Integer>() {
+                public void visit(int row, int column, Integer rule)
+                {
+                    long key = (long)row*width + column;
+                    assertTrue(key > last[0]);
+                    last[0] = key;
+                    visited.put(key, rule);
+                }
+            });
+            assertEquals(expected, visited);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+// Descriptions and inputs of the tests, written to temporary files as the simulators read them, and the
+// capture of what the simulators print on the standard output
+final class TestFiles
+{
+    private static PrintStream saved;
+    private static ByteArrayOutputStream captured;
+
+    private TestFiles()
+    {
+    }
+
+    // writes the text to a temporary file, deleted when the JVM exits, and returns its name; the file
+    // is encoded as AutoSim reads descriptions and inputs
+    public static String write(String text, String extension) throws IOException
+    {
+        File f = File.createTempFile("autosim", "." + extension);
+        f.deleteOnExit();
+        Writer w = new OutputStreamWriter(new FileOutputStream(f), AutoSim.FILE_CHARSET);
+        try {
+            w.write(text);
+        } finally {
+            w.close();
+        }
+        return f.getPath();
+    }
+
+    // a temporary file holding the given bytes, e.g. a large input for -data
+    public static String write(byte data[], String extension) throws IOException
+    {
+        File f = File.createTempFile("autosim", "." + extension);
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return f.getPath();
+    }
+
+    // a temporary file name which does not exist yet, for the simulators to write to
+    public static String newFile(String extension) throws IOException
+    {
+        File f = File.createTempFile("autosim", "." + extension);
+        f.delete();
+        f.deleteOnExit();
+        return f.getPath();
+    }
+
+    // the machine of the description, prepared; fails the test if it cannot be loaded
+    public static Machine load(String type, String text) throws IOException
+    {
+        Machine m = Automata.load(type, write(text, type));
+        if(m==null) throw new AssertionError("The " + type + " cannot be loaded");
+        return m;
+    }
+
+    // starts collecting what is printed on the standard output, until endCapture()
+    public static void beginCapture()
+    {
+        saved = System.out;
+        captured = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(captured, true, "UTF-8"));
+        } catch(UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static String endCapture()
+    {
+        System.out.flush();
+        System.setOut(saved);
+        try {
+            return captured.toString("UTF-8");
+        } catch(UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// ---------------------------------------------------------------------------------------------
+//  Copyright (c) Akash Nag. All rights reserved.
+//  Licensed under the MIT License. See LICENSE.md in the project root for license information.
+// ---------------------------------------------------------------------------------------------
+
+package autosim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import org.junit.Test;
+
+public class TraceLogTest
+{
+    private static final String STATES[] = { "q0", "{ q1, q2 }", "f(x)" };
+    private static final char SYMBOLS[] = { 'a', ',', AutoSim.LAMBDA_CHAR };
+
+    // strings on {a,b} beginning with ab, as in examples/dfa1.dfa
+    private static final String STARTS_WITH_AB =
+        "Q={q0,q1,q2,q3}\nE={a,b}\nI=q0\nF={q2}\n" +
+        "d(q0,a)=q1\nd(q0,b)=q3\nd(q1,a)=q3\nd(q1,b)=q2\nd(q3,a)=q3\nd(q3,b)=q3\nd(q2,a)=q2\nd(q2,b)=q2\n";
+
+    @Test
+    public void keepsTheStepsOfAStateByItsID()
+    {
+        // names with commas and parentheses, which the machines print in their steps
+        assertEquals("1 a\n1 ,\nTrace: 2 of 5 step(s) shown\n", trace("{ q1, q2 }", 0, 1));
+        assertEquals("1 ,\nTrace: 1 of 5 step(s) shown\n", trace("{ q1, q2 },,", 0, 1));
+        assertEquals("2 a\nTrace: 1 of 5 step(s) shown\n", trace("f(x),a", 0, 1));
+        assertEquals("0 " + AutoSim.LAMBDA_CHAR + "\nTrace: 1 of 5 step(s) shown\n", trace("*," + AutoSim.LAMBDA_PRINT_CHAR, 0, 1));
+        assertEquals("Trace: 0 of 5 step(s) shown\n", trace("q9", 0, 1));
+    }
+
+    @Test
+    public void keepsEveryKthAndTheLastSteps()
+    {
+        assertEquals("0 a\n1 ,\n0 " + AutoSim.LAMBDA_CHAR + "\nTrace: 3 of 5 step(s) shown\n", trace(null, 0, 2));
+        assertEquals("... 3 earlier step(s) not shown\n2 a\n0 " + AutoSim.LAMBDA_CHAR + "\n", trace(null, 2, 1));
+    }
+
+    @Test
+    public void keepsTheLinesOfAStepWithIt()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceLog log = TraceLog.begin(stream(bytes), true, TraceLog.Sampling.parse(1, 1, "q0"), STATES, SYMBOLS);
+        for(int i=0; i<3; i++)
+        {
+            if(!log.wants(0, 0)) continue;
+            log.println("step " + i);
+            log.println("\ttape " + i);
+        }
+        assertFalse(log.wants(1, 0));
+        log.finish(Result.error("ERROR"));
+        assertEquals("... 2 earlier step(s) not shown\nstep 2\n\ttape 2\n", text(bytes));
+    }
+
+    @Test
+    public void printsEveryStepWithoutASampling()
+    {
+        assertNull(TraceLog.begin(System.out, false, null, STATES, SYMBOLS));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceLog log = TraceLog.begin(stream(bytes), true, null, STATES, SYMBOLS);
+        assertTrue(log.wants(2, 1));
+        log.println("x");
+        log.finish(Result.error("ERROR"));
+        assertEquals("x\n", text(bytes));
+    }
+
+    @Test
+    public void rejectsAFilterWithoutAState()
+    {
+        TestFiles.beginCapture();
+        TraceLog.Sampling s = TraceLog.Sampling.parse(0, 1, " ,a");
+        String out = TestFiles.endCapture();
+        assertNull(s);
+        assertTrue(out, out.startsWith("ERROR: Invalid trace filter"));
+    }
+
+    @Test
+    public void samplesTheRunsOfEachMachineOnItsOwn() throws IOException
+    {
+        String desc = TestFiles.write(STARTS_WITH_AB, "dfa");
+        DFA sampled = new DFA(desc, null, true), full = new DFA(desc, null, true);
+        sampled.setTraceSampling(TraceLog.Sampling.parse(0, 1, "q1,b"));
+
+        TestFiles.beginCapture();
+        assertTrue(sampled.prepare() && full.prepare());
+        sampled.run(new StringInput("ab"));
+        full.run(new StringInput("ab"));
+        String out = TestFiles.endCapture().replace("\r\n", "\n");
+
+        String accepted = "String accepted: DFA halted in state 'q2'\n";
+        assertEquals("Executing Rule: δ(q1, b) = q2\nTrace: 1 of 2 step(s) shown\n" + accepted
+                   + "Executing Rule: δ(q0, a) = q1\nExecuting Rule: δ(q1, b) = q2\n" + accepted, out);
+    }
+
+    // the steps of a run through each state on each symbol in turn, kept by the filter, -trace-last and -trace-every
+    private static String trace(String only, int last, int every)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceLog log = TraceLog.begin(stream(bytes), true, TraceLog.Sampling.parse(last, every, only), STATES, SYMBOLS);
+        int steps[][] = { { 0, 0 }, { 1, 0 }, { 1, 1 }, { 2, 0 }, { 0, 2 } };
+        for(int step[]: steps)
+        {
+            if(log.wants(step[0], step[1])) log.println(step[0] + " " + SYMBOLS[step[1]]);
+        }
+        log.finish(Result.error("ERROR"));
+        return text(bytes);
+    }
+
+    private static PrintStream stream(ByteArrayOutputStream bytes)
+    {
+        try {
+            return new PrintStream(bytes, true, "UTF-8");
+        } catch(UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String text(ByteArrayOutputStream bytes)
+    {
+        try {
+            return bytes.toString("UTF-8").replace("\r\n", "\n");
+        } catch(UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}